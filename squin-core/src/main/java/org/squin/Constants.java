@@ -16,4 +16,8 @@ public class Constants
 	static final public String MIME_TYPE_XML1 = "application/xml";
 	static final public String MIME_TYPE_XML2 = "text/xml";
 	static final public String MIME_TYPE_JSON = "application/json";
+	static final public String MIME_TYPE_EVENT_STREAM = "text/event-stream";
+
+	/** response header field that marks results that may be partial because a traversal budget was exhausted */
+	static final public String HTTP_HEADER_PARTIAL_RESULT = "X-SQUIN-Partial-Result";
 }
\ No newline at end of file
@@ -25,7 +25,7 @@ import org.squin.dataset.Triple;
 import org.squin.dataset.hashimpl.combined.QueriedDatasetImpl;
 import org.squin.dataset.jenacommon.JenaIOBasedQueriedDataset;
 import org.squin.ldcache.AccessContext;
-import org.squin.ldcache.DataRetrievedListener;
+import org.squin.ldcache.DataAvailability;
 import org.squin.ldcache.jenaimpl.JenaIOBasedLinkedDataCache;
 
 
@@ -35,7 +35,7 @@ import org.squin.ldcache.jenaimpl.JenaIOBasedLinkedDataCache;
  *
  * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
  */
-public class ModLDCache implements ArgModuleGeneral, DataRetrievedListener
+public class ModLDCache implements ArgModuleGeneral
 {
 	final protected ModLookup modLookup = new ModLookup ();
 
@@ -45,8 +45,6 @@ public class ModLDCache implements ArgModuleGeneral, DataRetrievedListener
 	final protected ArgDecl lookupDecl = new ArgDecl( ArgDecl.HasValue, "lookup" );
 	private List<URI> lookupURIs = null;
 
-	final private List<Integer> pendingLookups = new ArrayList<Integer> ();
-
 	protected JenaIOBasedQueriedDataset qds = null;
 	protected JenaIOBasedLinkedDataCache ldcache = null;
 
@@ -90,6 +88,11 @@ public class ModLDCache implements ArgModuleGeneral, DataRetrievedListener
 		}
 	}
 
+	public ModLookup getLookUpModule ()
+	{
+		return modLookup;
+	}
+
 	public JenaIOBasedLinkedDataCache getLDCache () throws CmdException
 	{
 		if ( ldcache == null ) {
@@ -100,27 +103,23 @@ public class ModLDCache implements ArgModuleGeneral, DataRetrievedListener
 			{
 				AccessContext ac = ldcache.registerAccessContext();
 
-				for ( URI lookupURI : lookupURIs ) {
-					Node uriNode = Node.createURI( lookupURI.toString() );
-					int uriId = qds.nodeDict.createId( uriNode );
-					Integer uriID = Integer.valueOf( uriId );
-					synchronized( pendingLookups ) {
-						if ( ! pendingLookups.contains(uriID) ) {
-							if ( ! ldcache.ensureAvailability(ac,uriId,Priority.HIGH,this) ) {
-								pendingLookups.add( uriID );
-							}
-						}
-					}
+				int[] uriIds = new int[ lookupURIs.size() ];
+				for ( int i = 0; i < uriIds.length; i++ ) {
+					Node uriNode = Node.createURI( lookupURIs.get(i).toString() );
+					uriIds[i] = qds.nodeDict.createId( uriNode );
 				}
 
-				ldcache.unregisterAccessContext( ac );
-
-				while ( hasPendingLookups() ) {
-					try {
-						Thread.sleep( 500 ); // 0.5 sec
-					} catch ( InterruptedException e ) {
-						throw new CmdException( "Waiting for pending look-ups caused an unexpected " + e.getClass().getName() + ": " + e.getMessage(), e );
-					}
+				// unregistering the access context would withdraw the
+				// look-ups; hence, we close it after they have finished
+				try {
+					DataAvailability lookups = ldcache.ensureAvailabilityAsync( ac, uriIds, Priority.HIGH );
+					lookups.get();
+				}
+				catch ( InterruptedException e ) {
+					throw new CmdException( "Waiting for pending look-ups caused an unexpected " + e.getClass().getName() + ": " + e.getMessage(), e );
+				}
+				finally {
+					ac.close();
 				}
 			}
 		}
@@ -148,20 +147,4 @@ public class ModLDCache implements ArgModuleGeneral, DataRetrievedListener
 		return qds;
 	}
 
-	private boolean hasPendingLookups ()
-	{
-		synchronized( pendingLookups ) {
-			return ! pendingLookups.isEmpty();
-		}
-	}
-
-	// implementation of the DataRetrievedListener interface
-
-	public void ensureAvailabilityFinished ( int uriId )
-	{
-		synchronized ( pendingLookups ) {
-			pendingLookups.remove( Integer.valueOf(uriId) );
-		}
-	}
-
-}
+}
\ No newline at end of file
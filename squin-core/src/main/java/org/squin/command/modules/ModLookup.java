@@ -4,12 +4,16 @@
 */
 package org.squin.command.modules;
 
+import arq.cmd.CmdException;
 import arq.cmdline.ArgDecl;
 import arq.cmdline.ArgModuleGeneral;
 import arq.cmdline.CmdArgModule;
 import arq.cmdline.CmdGeneral;
 
+import org.squin.common.impl.FairShareTaskQueue;
+import org.squin.common.impl.TaskExecutorFactory;
 import org.squin.dataset.jenacommon.JenaIOBasedQueriedDataset;
+import org.squin.engine.LinkTraversalBasedQueryEngineConfig;
 import org.squin.lookup.jenaimpl.JenaIOBasedURILookUpManager;
 
 
@@ -25,6 +29,15 @@ public class ModLookup implements ArgModuleGeneral
 	final protected ArgDecl uriSearchDecl = new ArgDecl( ArgDecl.NoValue, "enable-urisearch", "urisearch" );
 	private boolean enableURISearch = false;
 
+	final protected ArgDecl maxTasksDecl = new ArgDecl( ArgDecl.HasValue, "max-lookup-tasks" );
+	private int maxTasks = 0;
+
+	final protected ArgDecl reachabilityDecl = new ArgDecl( ArgDecl.HasValue, "reachability" );
+	private String reachability = null;
+
+	final protected ArgDecl sameHostDecl = new ArgDecl( ArgDecl.NoValue, "same-host-links" );
+	private boolean sameHostLinksOnly = false;
+
 
 	public void registerWith ( CmdGeneral cmdline )
 	{
@@ -32,11 +45,55 @@ public class ModLookup implements ArgModuleGeneral
 		cmdline.add( uriSearchDecl,
 		             "--enable-urisearch",
 		             "Enable URI search as part of the URI look-up process during query execution" );
+		cmdline.add( maxTasksDecl,
+		             "--max-lookup-tasks=N",
+		             "Execute up to N look-up (and dereferencing) tasks concurrently, admitted by priority, instead of using fixed size thread pools" );
+		cmdline.add( reachabilityDecl,
+		             "--reachability=C",
+		             "Follow all links (C=ALL, default), the links in triples that match a triple pattern of the query (C=MATCH), or no links (C=NONE)" );
+		cmdline.add( sameHostDecl,
+		             "--same-host-links",
+		             "Follow only links between URIs of the same host" );
 	}
 
 	public void processArgs ( CmdArgModule cmdline )
 	{
 		enableURISearch = cmdline.contains( uriSearchDecl );
+
+		if ( cmdline.contains(maxTasksDecl) )
+		{
+			try {
+				maxTasks = Integer.parseInt( cmdline.getValue(maxTasksDecl) );
+			}
+			catch ( NumberFormatException e ) {
+				throw new CmdException( "The value of --max-lookup-tasks is not an integer (" + cmdline.getValue(maxTasksDecl) + ")." );
+			}
+			if ( maxTasks < 1 ) {
+				throw new CmdException( "The value of --max-lookup-tasks must be positive (" + maxTasks + ")." );
+			}
+		}
+
+		if ( cmdline.contains(reachabilityDecl) ) {
+			reachability = cmdline.getValue( reachabilityDecl );
+		}
+		sameHostLinksOnly = cmdline.contains( sameHostDecl );
+	}
+
+	/**
+	 * Sets the options of the given query engine configuration that
+	 * correspond to the given arguments.
+	 */
+	public void configure ( LinkTraversalBasedQueryEngineConfig config ) throws CmdException
+	{
+		try {
+			if ( reachability != null ) {
+				config.setValue( LinkTraversalBasedQueryEngineConfig.REACHABILITY_CRITERION, reachability );
+			}
+			config.setValue( LinkTraversalBasedQueryEngineConfig.SAME_HOST_LINKS_ONLY, sameHostLinksOnly );
+		}
+		catch ( IllegalArgumentException e ) {
+			throw new CmdException( e.getMessage() );
+		}
 	}
 
 	public boolean isURISearchEnabled ()
@@ -46,6 +103,8 @@ public class ModLookup implements ArgModuleGeneral
 
 	public JenaIOBasedURILookUpManager createURILookUpManager ( JenaIOBasedQueriedDataset dataset )
 	{
-		return new JenaIOBasedURILookUpManager( dataset, isURISearchEnabled() );
+		// the selected mode applies to the managers created here only
+		TaskExecutorFactory executorFactory = ( maxTasks > 0 ) ? new TaskExecutorFactory( maxTasks, FairShareTaskQueue.DEFAULT_QUANTUM ) : TaskExecutorFactory.DEFAULT;
+		return new JenaIOBasedURILookUpManager( dataset, isURISearchEnabled(), executorFactory );
 	}
 }
@@ -9,6 +9,7 @@ import java.io.PrintStream;
 import arq.cmdline.CmdARQ;
 import arq.cmdline.ModQueryIn;
 
+import com.hp.hpl.jena.query.ARQ;
 import com.hp.hpl.jena.query.Dataset;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryExecution;
@@ -20,6 +21,9 @@ import com.hp.hpl.jena.sparql.util.QueryExecUtils ;
 import org.squin.engine.LinkedDataCacheWrappingDataset;
 import org.squin.engine.LinkTraversalBasedQueryEngine;
 import org.squin.engine.LinkTraversalBasedQueryEngineConfig;
+import org.squin.engine.QueryPlan;
+import org.squin.engine.QueryPlanCache;
+import org.squin.engine.TraversalHistory;
 import org.squin.ldcache.jenaimpl.JenaIOBasedLinkedDataCache;
 
 import org.squin.command.modules.ModLDCache;
@@ -83,14 +87,19 @@ public class query extends CmdARQ
 			ldcache = modCache.getLDCache();
 			Dataset dsARQ = new LinkedDataCacheWrappingDataset( ldcache );
 
-			Query query = modQuery.getQuery() ;
+			// a config in the global context is copied because the changes
+			// below apply to this execution only
+			LinkTraversalBasedQueryEngineConfig config = ARQ.getContext().isDefined( LinkTraversalBasedQueryEngine.ctxtKeyConfig ) ? new LinkTraversalBasedQueryEngineConfig( (LinkTraversalBasedQueryEngineConfig) ARQ.getContext().get(LinkTraversalBasedQueryEngine.ctxtKeyConfig) ) : new LinkTraversalBasedQueryEngineConfig();
+			config.setValue( LinkTraversalBasedQueryEngineConfig.RECORD_PROVENANCE, modResults.isProvenanceRecordingEnabled() );
+			modCache.getLookUpModule().configure( config );
+
+			QueryPlan plan = QueryPlanCache.getDefault().getPlan( modQuery.getQuery(), config );
+			Query query = plan.query;
 
 			modMonitor.startTimer();
 			QueryExecution qe = QueryExecutionFactory.create( query, dsARQ );
-
-			LinkTraversalBasedQueryEngineConfig config = qe.getContext().isDefined( LinkTraversalBasedQueryEngine.ctxtKeyConfig ) ? (LinkTraversalBasedQueryEngineConfig) qe.getContext().get( LinkTraversalBasedQueryEngine.ctxtKeyConfig ) : new LinkTraversalBasedQueryEngineConfig();
-			config.setValue( LinkTraversalBasedQueryEngineConfig.RECORD_PROVENANCE, modResults.isProvenanceRecordingEnabled() );
 			qe.getContext().set( LinkTraversalBasedQueryEngine.ctxtKeyConfig, config );
+			qe.getContext().set( LinkTraversalBasedQueryEngine.ctxtKeyQueryPlan, plan );
 
 			execQuery( query, qe );
 
@@ -105,6 +114,12 @@ public class query extends CmdARQ
 			}
 
 			qe.close();
+
+			if ( modMonitor.statisticsEnabled() ) {
+				System.out.println( "Traversal history statistics:" );
+				TraversalHistory.getDefault().getStatistics().print( System.out, 1 );
+			}
+
 			ldcache.shutdownNow( 4000 ); // 4 sec.
 		}
 		catch ( Exception e ) {
@@ -30,4 +30,16 @@ public interface PrioritizedQueue<T>
 	 * Returns true if the queue contains the given object.
 	 */
 	public boolean contains ( T t );
+
+	/**
+	 * Removes the given object from this queue.
+	 *
+	 * @return true if the queue contained the given object
+	 */
+	public boolean remove ( T t );
+
+	/**
+	 * Returns the number of objects in this queue.
+	 */
+	public int size ();
 }
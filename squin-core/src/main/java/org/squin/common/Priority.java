@@ -9,12 +9,19 @@ import com.hp.hpl.jena.sparql.util.Symbol;
 
 /**
  * Represents different priorities.
+ * There are three levels of priority (see {@link #HIGH}, {@link #MEDIUM},
+ * and {@link #LOW}). Within a level, priorities may be further distinguished
+ * by a numeric score (see {@link #create}); e.g. to order URI look-ups by
+ * the estimated relevance of the URIs.
  *
  * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
  */
 public class Priority extends Symbol
                       implements Comparable<Priority>
 {
+	/** the score of the plain priority levels */
+	final static public double DEFAULT_SCORE = 0.5;
+
 	final static public Priority HIGH = new Priority( "HIGH", 2 );
 	final static public Priority MEDIUM = new Priority( "MEDIUM", 1 );
 	final static public Priority LOW = new Priority( "LOW", 0 );
@@ -22,22 +29,64 @@ public class Priority extends Symbol
 
 	// members
 
+	/** the level of this priority */
 	final public int numericalValue;
 
+	/** distinguishes priorities of the same level (a value between 0 and 1; higher is more important) */
+	final public double score;
+
 
 	// initialization
 
 	protected Priority ( String name, int numericalValue )
+	{
+		this( name, numericalValue, DEFAULT_SCORE );
+	}
+
+	protected Priority ( String name, int numericalValue, double score )
 	{
 		super( Priority.class.getName() + "." + name );
 		this.numericalValue = numericalValue;
+		this.score = score;
+	}
+
+	/**
+	 * Returns a priority of the same level as the given priority with the
+	 * given score (which is adjusted to the range between 0 and 1).
+	 */
+	static public Priority create ( Priority level, double score )
+	{
+		score = Math.max( 0.0, Math.min(1.0,score) );
+		return new Priority( levelName(level) + "@" + score, level.numericalValue, score );
 	}
 
 
 	// implementation of the Comparable<Priority> interface
 
+	/**
+	 * Compares the levels of the two priorities first and their scores
+	 * second; the more important priority is "less than" the other one.
+	 */
 	public int compareTo ( Priority other )
 	{
-		return other.numericalValue - this.numericalValue;
+		int levelBasedResult = other.numericalValue - this.numericalValue;
+		if ( levelBasedResult != 0 ) {
+			return levelBasedResult;
+		}
+		return Double.compare( other.score, this.score );
+	}
+
+
+	// helpers
+
+	static protected String levelName ( Priority level )
+	{
+		if ( level.numericalValue == HIGH.numericalValue ) {
+			return "HIGH";
+		} else if ( level.numericalValue == MEDIUM.numericalValue ) {
+			return "MEDIUM";
+		} else {
+			return "LOW";
+		}
 	}
 }
@@ -21,7 +21,7 @@ public class PriorityBasedComparator<T extends PrioritizedObject> implements Com
 
 	public int compare ( T o1, T o2 )
 	{
-		return ( (PrioritizedObject) o2 ).getPriority().numericalValue - ( (PrioritizedObject) o1 ).getPriority().numericalValue;
+		return ( (PrioritizedObject) o1 ).getPriority().compareTo( ((PrioritizedObject) o2).getPriority() );
 	}
 
 	@Override
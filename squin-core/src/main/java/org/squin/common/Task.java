@@ -25,6 +25,22 @@ public interface Task<R> extends TemporallyPrioritizedObject, Comparable<Task>,
 	 */
 	public void registerListener ( TaskListener<R> listener, Priority priority ) throws IllegalStateException;
 
+	/**
+	 * Unregisters the given listener from this task.
+	 * Unregistering is impossible as soon as the task notifies its listeners.
+	 *
+	 * @param listener the listener to be unregistered
+	 * @return true if the listener has been unregistered; false if it was
+	 *         not registered or if this task is already notifying its
+	 *         listeners
+	 */
+	public boolean unregisterListener ( TaskListener<R> listener );
+
+	/**
+	 * Returns the number of listeners currently registered with this task.
+	 */
+	public int getListenerCount ();
+
 	/**
 	 * Returns true if this task is currently being executed.
 	 */
@@ -52,4 +68,21 @@ public interface Task<R> extends TemporallyPrioritizedObject, Comparable<Task>,
 	 * to execute.
 	 */
 	public long getExecutionStartTimestamp ();
+
+	/**
+	 * Returns the share of the execution capacity to which this task is
+	 * accounted (e.g. the access context of the query execution that
+	 * requested the task), or null if the task does not belong to a
+	 * particular share (see {@link org.squin.common.impl.FairShareTaskQueue}).
+	 */
+	public Object getShare ();
+
+	/**
+	 * Returns the time (in ms since the epoch) by which this task should
+	 * have been executed (e.g. the deadline of the query execution that
+	 * requested the task), or 0 if the task does not have a deadline.
+	 * Among tasks with the same priority, the task with the earliest
+	 * deadline is executed first.
+	 */
+	public long getDeadline ();
 }
@@ -35,7 +35,7 @@ public class ComparableTemporallyPrioritizedObjectBase<T extends TemporallyPrior
 
 	public int compareTo ( TemporallyPrioritizedObject other )
 	{
-		int priorityBasedResult = other.getPriority().numericalValue - this.getPriority().numericalValue;
+		int priorityBasedResult = this.getPriority().compareTo( other.getPriority() );
 		if ( priorityBasedResult != 0 ) {
 			return priorityBasedResult;
 		}
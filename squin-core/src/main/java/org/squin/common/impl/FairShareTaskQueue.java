@@ -0,0 +1,305 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.common.impl;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.squin.common.Task;
+
+
+/**
+ * An unbounded blocking queue for the tasks waiting for execution that
+ * shares the execution capacity fairly among the tasks of different shares
+ * (see {@link Task#getShare}); e.g. among the tasks requested for
+ * different query executions.
+ * The queue is scheduled by deficit round-robin: every share that has
+ * waiting tasks gets the given quantum of tasks dequeued in each round,
+ * and the tasks of a share are dequeued in the order of their priorities
+ * (i.e. by their natural ordering, as for a
+ * {@link java.util.concurrent.PriorityBlockingQueue}). Hence, a share with
+ * many waiting tasks cannot starve the other shares, and if all tasks
+ * belong to the same share this queue behaves like a priority queue.
+ * The shares that are due in the same round are served in the natural
+ * ordering of their first tasks; e.g. the share whose first task has the
+ * earliest deadline is served first (see {@link TaskBase#compareTo}).
+ * A share that becomes active joins the round after the current one, as
+ * if it had been appended to the list of a classic round-robin.
+ * Tasks that are not {@link Task}s and tasks without a share are queued in
+ * a common share.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class FairShareTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable>
+{
+	// members
+
+	static final public int DEFAULT_QUANTUM = 1;
+
+	/** the number of tasks dequeued for a share per round */
+	final public int quantum;
+
+	// attention: access to the following members must be synchronized on
+	//            this queue
+	/** the shares that have waiting tasks */
+	final protected Map<Object,Share> shares = new HashMap<Object,Share> ();
+	/** the round of the share that has been served last */
+	protected long currentRound = 0L;
+	protected int size = 0;
+
+
+	// initialization
+
+	public FairShareTaskQueue ()
+	{
+		this( DEFAULT_QUANTUM );
+	}
+
+	public FairShareTaskQueue ( int quantum )
+	{
+		if ( quantum < 1 ) {
+			throw new IllegalArgumentException( "The quantum must be positive (" + quantum + ")." );
+		}
+		this.quantum = quantum;
+	}
+
+
+	// accessors
+
+	/**
+	 * Returns the number of shares that have waiting tasks.
+	 */
+	synchronized public int getActiveShareCount ()
+	{
+		return shares.size();
+	}
+
+	@Override
+	synchronized public int size ()
+	{
+		return size;
+	}
+
+	public int remainingCapacity ()
+	{
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the task that would be dequeued next.
+	 */
+	synchronized public Runnable peek ()
+	{
+		Share s = nextShare();
+		return ( s == null ) ? null : s.tasks.peek();
+	}
+
+	/**
+	 * Returns an iterator over a snapshot of the waiting tasks (in no
+	 * particular order). Removing tasks with this iterator removes them from
+	 * this queue.
+	 */
+	@Override
+	public Iterator<Runnable> iterator ()
+	{
+		final List<Runnable> snapshot = new ArrayList<Runnable> ();
+		synchronized ( this ) {
+			for ( Share s : shares.values() ) {
+				snapshot.addAll( s.tasks );
+			}
+		}
+
+		return new Iterator<Runnable> () {
+			final Iterator<Runnable> it = snapshot.iterator();
+			Runnable last = null;
+			public boolean hasNext () { return it.hasNext(); }
+			public Runnable next () { return last = it.next(); }
+			public void remove ()
+			{
+				if ( last == null ) {
+					throw new IllegalStateException();
+				}
+				FairShareTaskQueue.this.remove( last );
+				last = null;
+			}
+		};
+	}
+
+
+	// operations
+
+	synchronized public boolean offer ( Runnable task )
+	{
+		if ( task == null ) {
+			throw new NullPointerException();
+		}
+
+		Object key = getShare( task );
+		Share s = shares.get( key );
+		if ( s == null ) {
+			s = new Share( key, currentRound + 1L );
+			shares.put( key, s );
+		}
+
+		s.tasks.offer( task );
+		size++;
+		notifyAll();
+		return true;
+	}
+
+	public boolean offer ( Runnable task, long timeout, TimeUnit unit )
+	{
+		return offer( task );
+	}
+
+	public void put ( Runnable task )
+	{
+		offer( task );
+	}
+
+	synchronized public Runnable poll ()
+	{
+		Share s = nextShare();
+		if ( s == null ) {
+			return null;
+		}
+
+		if ( s.deficit == 0 ) {
+			s.deficit = quantum;
+		}
+		currentRound = s.round;
+
+		Runnable task = s.tasks.poll();
+		s.deficit--;
+		size--;
+
+		if ( s.tasks.isEmpty() ) {
+			shares.remove( s.key );
+		}
+		else if ( s.deficit == 0 ) {
+			// the share used up its quantum; it is the next share's turn
+			s.round++;
+		}
+		return task;
+	}
+
+	synchronized public Runnable poll ( long timeout, TimeUnit unit ) throws InterruptedException
+	{
+		long deadline = System.nanoTime() + unit.toNanos( timeout );
+		while ( size == 0 )
+		{
+			long remaining = deadline - System.nanoTime();
+			if ( remaining <= 0L ) {
+				return null;
+			}
+			TimeUnit.NANOSECONDS.timedWait( this, remaining );
+		}
+		return poll();
+	}
+
+	synchronized public Runnable take () throws InterruptedException
+	{
+		while ( size == 0 ) {
+			wait();
+		}
+		return poll();
+	}
+
+	@Override
+	synchronized public boolean remove ( Object task )
+	{
+		if ( ! (task instanceof Runnable) ) {
+			return false;
+		}
+
+		Share s = shares.get( getShare((Runnable) task) );
+		if ( s == null || ! s.tasks.remove(task) ) {
+			return false;
+		}
+
+		size--;
+		if ( s.tasks.isEmpty() ) {
+			shares.remove( s.key );
+		}
+		return true;
+	}
+
+	public int drainTo ( Collection<? super Runnable> c )
+	{
+		return drainTo( c, Integer.MAX_VALUE );
+	}
+
+	synchronized public int drainTo ( Collection<? super Runnable> c, int maxElements )
+	{
+		if ( c == this ) {
+			throw new IllegalArgumentException();
+		}
+
+		int n = 0;
+		Runnable task;
+		while ( n < maxElements && (task=poll()) != null ) {
+			c.add( task );
+			n++;
+		}
+		return n;
+	}
+
+
+	// helper methods
+
+	/**
+	 * Returns the share to be served next; i.e. among the shares of the
+	 * earliest round, the share whose first task is the least.
+	 * Must be called while synchronized on this queue.
+	 */
+	protected Share nextShare ()
+	{
+		Share next = null;
+		for ( Share s : shares.values() )
+		{
+			if (    next == null
+			     || s.round < next.round
+			     || ( s.round == next.round && compare(s.tasks.peek(),next.tasks.peek()) < 0 ) ) {
+				next = s;
+			}
+		}
+		return next;
+	}
+
+	@SuppressWarnings("unchecked")
+	static protected int compare ( Runnable t1, Runnable t2 )
+	{
+		return ( (Comparable<Object>) t1 ).compareTo( t2 );
+	}
+
+	static protected Object getShare ( Runnable task )
+	{
+		return ( task instanceof Task ) ? ( (Task) task ).getShare() : null;
+	}
+
+
+	// helpers
+
+	static class Share
+	{
+		final Object key;
+		final PriorityQueue<Runnable> tasks = new PriorityQueue<Runnable> ();
+		/** the round in which this share is served next */
+		long round;
+		/** the number of tasks that may still be dequeued in this round */
+		int deficit = 0;
+
+		Share ( Object key, long round ) { this.key = key; this.round = round; }
+	}
+
+}
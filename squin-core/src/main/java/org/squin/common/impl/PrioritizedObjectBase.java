@@ -40,13 +40,29 @@ public class PrioritizedObjectBase implements PrioritizedObject
 	 */
 	public void upgradePriority ( Priority newPriority ) throws IllegalArgumentException
 	{
-		if ( newPriority.numericalValue < priority.numericalValue ) {
+		if ( newPriority.compareTo(priority) > 0 ) {
 			throw new IllegalArgumentException( "Cannot upgrade to a less important priority (" + newPriority.toString() + "; current priority is: " + priority.toString() + ")." );
 		}
 
 		priority = newPriority;
 	}
 
+	/**
+	 * Downgrades the priority of this object to the given priority.
+	 *
+	 * @param newPriority the new priority
+	 * @throws IllegalArgumentException the given priority is more important
+	 *                                  than the current priority
+	 */
+	public void downgradePriority ( Priority newPriority ) throws IllegalArgumentException
+	{
+		if ( newPriority.compareTo(priority) < 0 ) {
+			throw new IllegalArgumentException( "Cannot downgrade to a more important priority (" + newPriority.toString() + "; current priority is: " + priority.toString() + ")." );
+		}
+
+		priority = newPriority;
+	}
+
 
 	// implementation of the PrioritizedObject interface
 
@@ -68,6 +68,29 @@ public class PrioritizedQueueImpl<T> implements PrioritizedQueue<T>
 		return getContainingQueue( t ) != null;
 	}
 
+	public boolean remove ( T t )
+	{
+		for ( Queue<T> queue : queues ) {
+			synchronized ( queue ) {
+				if ( queue.remove(t) ) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	public int size ()
+	{
+		int size = 0;
+		for ( Queue<T> queue : queues ) {
+			synchronized ( queue ) {
+				size += queue.size();
+			}
+		}
+		return size;
+	}
+
 
 	// helpers
 
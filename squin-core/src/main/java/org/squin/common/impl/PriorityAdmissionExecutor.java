@@ -0,0 +1,176 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.common.impl;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A {@link ThreadPoolExecutor} without a fixed maximum number of threads
+ * that limits the number of concurrently executed tasks by admission
+ * control instead.
+ * A task is admitted for execution immediately if fewer than the given
+ * maximum number of tasks are executed; otherwise it waits in an admission
+ * queue that is ordered by the natural ordering of the tasks (i.e. the
+ * tasks have to be {@link Comparable}, as for a thread pool with a
+ * {@link java.util.concurrent.PriorityBlockingQueue}), unless another
+ * admission queue is given (e.g. a {@link FairShareTaskQueue}). Whenever an
+ * admitted task finishes, the first task in the admission queue is admitted.
+ * Threads are created on demand and terminate after being idle for the
+ * given keep-alive time. Hence, many tasks that spend most of their time
+ * waiting (e.g. for HTTP responses) can be executed concurrently without
+ * keeping a large pool of threads.
+ * Tasks that are still waiting for admission when the executor is shut
+ * down (see {@link #shutdown}) are executed by the threads of the last
+ * admitted tasks.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class PriorityAdmissionExecutor extends ThreadPoolExecutor
+{
+	// members
+
+	/** the maximum number of tasks executed concurrently */
+	final public int maxAdmittedTasks;
+
+	// attention: access to the following members must be synchronized on
+	//            the admission queue
+	final protected Queue<Runnable> admissionQueue;
+	protected int admittedTasks = 0;
+
+
+	// initialization
+
+	public PriorityAdmissionExecutor ( int maxAdmittedTasks, long keepAliveTime, TimeUnit unit )
+	{
+		this( maxAdmittedTasks, keepAliveTime, unit, new PriorityQueue<Runnable> () );
+	}
+
+	public PriorityAdmissionExecutor ( int maxAdmittedTasks, long keepAliveTime, TimeUnit unit, Queue<Runnable> admissionQueue )
+	{
+		super( 0, Integer.MAX_VALUE, keepAliveTime, unit, new SynchronousQueue<Runnable> () );
+
+		if ( maxAdmittedTasks < 1 ) {
+			throw new IllegalArgumentException( "The maximum number of admitted tasks must be positive (" + maxAdmittedTasks + ")." );
+		}
+		assert admissionQueue != null;
+
+		this.maxAdmittedTasks = maxAdmittedTasks;
+		this.admissionQueue = admissionQueue;
+	}
+
+
+	// accessors
+
+	/**
+	 * Returns the number of tasks waiting for admission.
+	 */
+	public int getAdmissionQueueSize ()
+	{
+		synchronized ( admissionQueue ) {
+			return admissionQueue.size();
+		}
+	}
+
+	@Override
+	public long getTaskCount ()
+	{
+		return super.getTaskCount() + getAdmissionQueueSize();
+	}
+
+
+	// redefinition of ThreadPoolExecutor methods
+
+	@Override
+	public void execute ( Runnable task )
+	{
+		if ( isShutdown() ) {
+			throw new RejectedExecutionException( "This executor has been shut down." );
+		}
+
+		synchronized ( admissionQueue )
+		{
+			if ( admittedTasks >= maxAdmittedTasks ) {
+				admissionQueue.offer( task );
+				return;
+			}
+			admittedTasks++;
+		}
+
+		try {
+			super.execute( task );
+		}
+		catch ( RejectedExecutionException e ) {
+			synchronized ( admissionQueue ) {
+				admittedTasks--;
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean remove ( Runnable task )
+	{
+		synchronized ( admissionQueue ) {
+			if ( admissionQueue.remove(task) ) {
+				return true;
+			}
+		}
+		return super.remove( task );
+	}
+
+	@Override
+	public List<Runnable> shutdownNow ()
+	{
+		List<Runnable> result = super.shutdownNow();
+		synchronized ( admissionQueue ) {
+			result.addAll( admissionQueue );
+			admissionQueue.clear();
+		}
+		return result;
+	}
+
+	@Override
+	protected void afterExecute ( Runnable task, Throwable t )
+	{
+		super.afterExecute( task, t );
+
+		// pass the admission of the finished task on to the next task
+		Runnable next;
+		synchronized ( admissionQueue )
+		{
+			next = admissionQueue.poll();
+			if ( next == null ) {
+				admittedTasks--;
+				return;
+			}
+		}
+
+		try {
+			super.execute( next );
+		}
+		catch ( RejectedExecutionException e ) {
+			// the executor has been shut down; the waiting tasks are
+			// executed by this thread
+			while ( next != null )
+			{
+				next.run();
+				synchronized ( admissionQueue ) {
+					next = admissionQueue.poll();
+					if ( next == null ) {
+						admittedTasks--;
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -13,6 +13,7 @@ import org.squin.common.PrioritizedQueue;
 import org.squin.common.Priority;
 import org.squin.common.Task;
 import org.squin.common.TaskListener;
+import org.squin.common.TemporallyPrioritizedObject;
 
 
 /**
@@ -21,6 +22,11 @@ import org.squin.common.TaskListener;
  * on this abstract class, only have to implement the methods
  * {@link java.util.concurrent.Callable#call} and
  * {@link #createFailureResult}.
+ * Tasks with the same priority are ordered by their deadlines (see
+ * {@link #getDeadline}); i.e. the executors run the task with the earliest
+ * deadline first. Tasks that implement {@link #createExpiredResult} are
+ * dropped instead of executed if their deadline has passed before their
+ * execution starts.
  *
  * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
  */
@@ -38,6 +44,11 @@ public abstract class TaskBase<R> extends ComparableTemporallyPrioritizedObjectB
 	final private PrioritizedQueue<TaskListener<R>> listenerQueue = new PrioritizedQueueImpl<TaskListener<R>> ();
 
 	private long execStartTimestamp;
+	private long execFinishTimestamp;
+
+	private volatile Object share = null;
+	private volatile long deadline = 0L;
+	private boolean dropped = false;
 
 
 	// initialization
@@ -77,6 +88,21 @@ public abstract class TaskBase<R> extends ComparableTemporallyPrioritizedObjectB
 		return;
 	}
 
+	synchronized public boolean unregisterListener ( TaskListener<R> listener )
+	{
+		if ( notifying || done ) {
+			return false;
+		}
+
+		log.trace( "Listener unregistered (task type: {}, task: {}, listener type: {}, listener: {})", new Object[] {getClass().getName(),toString(),listener.getClass().getName(),listener.toString()} );
+		return listenerQueue.remove( listener );
+	}
+
+	synchronized public int getListenerCount ()
+	{
+		return listenerQueue.size();
+	}
+
 	synchronized final public boolean isRunning ()
 	{
 		return running;
@@ -102,6 +128,100 @@ public abstract class TaskBase<R> extends ComparableTemporallyPrioritizedObjectB
 		return execStartTimestamp;
 	}
 
+	final public Object getShare ()
+	{
+		return share;
+	}
+
+	final public long getDeadline ()
+	{
+		return deadline;
+	}
+
+	/**
+	 * Returns true if this task has been dropped instead of executed because
+	 * its deadline had passed (see {@link #createExpiredResult}).
+	 */
+	synchronized final public boolean hasBeenDropped ()
+	{
+		return dropped;
+	}
+
+	/**
+	 * Returns true if this task has a deadline and it has been dropped or
+	 * its execution finished after the deadline.
+	 * As long as the execution of this task did not finish, this method
+	 * returns false.
+	 */
+	synchronized final public boolean hasMissedDeadline ()
+	{
+		return deadline > 0L && ( dropped || execFinishTimestamp > deadline );
+	}
+
+	/**
+	 * Returns true if the given deadline is later than the deadline of this
+	 * task, where 0 (i.e. no deadline) is later than any other deadline.
+	 * A task that serves several requests has to meet the latest of their
+	 * deadlines (see {@link #setDeadline}).
+	 */
+	final public boolean isLaterDeadline ( long otherDeadline )
+	{
+		long d = deadline;
+		return d > 0L && ( otherDeadline == 0L || otherDeadline > d );
+	}
+
+
+	// operations
+
+	/**
+	 * Sets the share of the execution capacity to which this task is
+	 * accounted (see {@link Task#getShare}).
+	 * Must be called before the task is queued for execution.
+	 */
+	final public void setShare ( Object share )
+	{
+		this.share = share;
+	}
+
+	/**
+	 * Sets the time (in ms since the epoch) by which this task should have
+	 * been executed; 0 means no deadline (see {@link Task#getDeadline}).
+	 * Since the deadline determines the order of queued tasks, it must
+	 * not be changed while this task is queued for execution.
+	 */
+	final public void setDeadline ( long deadline )
+	{
+		assert deadline >= 0L;
+		this.deadline = deadline;
+	}
+
+
+	// redefinition of ComparableTemporallyPrioritizedObjectBase methods
+
+	/**
+	 * Orders tasks by priority, tasks with the same priority by deadline
+	 * (tasks without a deadline last), and the remaining tasks by timestamp.
+	 */
+	@Override
+	public int compareTo ( TemporallyPrioritizedObject other )
+	{
+		if ( other instanceof Task && getPriority().compareTo(other.getPriority()) == 0 )
+		{
+			long d1 = deadline;
+			long d2 = ( (Task) other ).getDeadline();
+			if ( d1 != d2 ) {
+				if ( d1 == 0L ) {
+					return 1;
+				} else if ( d2 == 0L ) {
+					return -1;
+				} else {
+					return ( d1 < d2 ) ? -1 : 1;
+				}
+			}
+		}
+		return super.compareTo( other );
+	}
+
 
 	// implementation of the Runnable interface
 
@@ -128,17 +248,33 @@ public abstract class TaskBase<R> extends ComparableTemporallyPrioritizedObjectB
 		log.debug( "Execution of task started (task type: {}, task: {})", getClass().getName(), toString() );
 
 		execStartTimestamp = System.currentTimeMillis();
+		R expiredResult = null;
+		if ( deadline > 0L && execStartTimestamp >= deadline ) {
+			expiredResult = createExpiredResult();
+		}
+
 		boolean success;
-		try {
-			result = call();
+		if ( expiredResult != null )
+		{
+			log.debug( "Deadline of task passed before its execution started; dropping it (task type: {}, task: {})", getClass().getName(), toString() );
+			synchronized ( this ) { dropped = true; }
+			result = expiredResult;
 			success = true;
 		}
-		catch ( Exception e ) {
-			log.warn( "Execution of a task caused a {}: {}  (task type: {}, task: {})", new Object[]{e.getClass().getName(),e.getMessage(),getClass().getName(),toString()} );
-			log.warn( "stack trace:", e );
-			result = createFailureResult( e );
-			success = false;
+		else
+		{
+			try {
+				result = call();
+				success = true;
+			}
+			catch ( Exception e ) {
+				log.warn( "Execution of a task caused a {}: {}  (task type: {}, task: {})", new Object[]{e.getClass().getName(),e.getMessage(),getClass().getName(),toString()} );
+				log.warn( "stack trace:", e );
+				result = createFailureResult( e );
+				success = false;
+			}
 		}
+		synchronized ( this ) { execFinishTimestamp = System.currentTimeMillis(); }
 
 		log.debug( "Execution of task finished. Notifying listeners ...  (task type: {}, task: {})", getClass().getName(), toString() );
 
@@ -167,6 +303,16 @@ public abstract class TaskBase<R> extends ComparableTemporallyPrioritizedObjectB
 	 */
 	abstract protected R createFailureResult ( Exception e );
 
+	/**
+	 * Creates the result of this task for the case that its deadline has
+	 * passed before its execution started, or returns null if the task has
+	 * to be executed nevertheless (which is the default).
+	 */
+	protected R createExpiredResult ()
+	{
+		return null;
+	}
+
 
 	// helper methods
 
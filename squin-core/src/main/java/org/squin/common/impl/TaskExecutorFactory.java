@@ -0,0 +1,170 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.common.impl;
+
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.squin.util.ResourceCleaner;
+
+
+/**
+ * Creates the executors used by the look-up, dereferencing, and URI search
+ * managers.
+ * By default these executors are thread pools with a fixed maximum size and
+ * a queue that orders the waiting tasks by priority. Alternatively, the
+ * executors may use admission control (see {@link PriorityAdmissionExecutor})
+ * which permits a much larger number of concurrently executed tasks.
+ * In both cases, the waiting tasks are scheduled fairly among the shares
+ * of the tasks (see {@link FairShareTaskQueue}) unless fair sharing has
+ * been disabled. The modes are fixed for a factory; a manager that is
+ * created with a factory uses the modes of this factory (see e.g.
+ * {@link org.squin.lookup.impl.URILookUpManagerBase}).
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class TaskExecutorFactory
+{
+	// members
+
+	static final private Logger log = LoggerFactory.getLogger( TaskExecutorFactory.class );
+
+	static final public int DEFAULT_MAX_ADMITTED_TASKS = 1000;
+
+	/**
+	 * The factory for thread pools with fair sharing of the default quantum;
+	 * used by the managers that are created without a factory.
+	 */
+	static final public TaskExecutorFactory DEFAULT = new TaskExecutorFactory();
+
+	/** the maximum number of admitted tasks if admission control is used, 0 otherwise */
+	final protected int maxAdmittedTasks;
+
+	/** the number of tasks dequeued per share and round, 0 if fair sharing is disabled */
+	final protected int shareQuantum;
+
+
+	// initialization
+
+	/**
+	 * Creates a factory for thread pools with a fixed maximum size that
+	 * schedule the waiting tasks fairly among their shares with the quantum
+	 * {@link FairShareTaskQueue#DEFAULT_QUANTUM}.
+	 */
+	public TaskExecutorFactory ()
+	{
+		this( 0, FairShareTaskQueue.DEFAULT_QUANTUM );
+	}
+
+	/**
+	 * Creates a factory for executors that execute up to the given number of
+	 * tasks concurrently (or for thread pools with a fixed maximum size if
+	 * the number is 0) and that schedule the waiting tasks fairly among their
+	 * shares, dequeuing the given number of tasks per share and round (or by
+	 * priority only, regardless of the shares, if the quantum is 0).
+	 */
+	public TaskExecutorFactory ( int maxAdmittedTasks, int shareQuantum )
+	{
+		if ( maxAdmittedTasks < 0 ) {
+			throw new IllegalArgumentException( "The maximum number of admitted tasks must not be negative (" + maxAdmittedTasks + ")." );
+		}
+		if ( shareQuantum < 0 ) {
+			throw new IllegalArgumentException( "The quantum must not be negative (" + shareQuantum + ")." );
+		}
+		this.maxAdmittedTasks = maxAdmittedTasks;
+		this.shareQuantum = shareQuantum;
+	}
+
+
+	// accessors
+
+	public boolean isAdmissionControlUsed ()
+	{
+		return maxAdmittedTasks > 0;
+	}
+
+	public boolean isFairSharingUsed ()
+	{
+		return shareQuantum > 0;
+	}
+
+	/**
+	 * Returns the number of shares that have tasks waiting for execution by
+	 * the given executor, or -1 if the executor does not use fair sharing.
+	 */
+	static public int getActiveShareCount ( ThreadPoolExecutor executor )
+	{
+		Queue<Runnable> q = ( executor instanceof PriorityAdmissionExecutor ) ? ( (PriorityAdmissionExecutor) executor ).admissionQueue : executor.getQueue();
+		return ( q instanceof FairShareTaskQueue ) ? ( (FairShareTaskQueue) q ).getActiveShareCount() : -1;
+	}
+
+
+	// operations
+
+	/**
+	 * Creates an executor for tasks that are ordered by priority (and
+	 * scheduled fairly among their shares if fair sharing is used).
+	 * The given pool sizes are used only if admission control is not used.
+	 */
+	public ThreadPoolExecutor createExecutor ( int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit )
+	{
+		if ( maxAdmittedTasks > 0 ) {
+			Queue<Runnable> admissionQueue = ( shareQuantum > 0 ) ? new FairShareTaskQueue( shareQuantum ) : new PriorityQueue<Runnable> ();
+			return new PriorityAdmissionExecutor( maxAdmittedTasks, keepAliveTime, unit, admissionQueue );
+		}
+
+		BlockingQueue<Runnable> queue = ( shareQuantum > 0 ) ? new FairShareTaskQueue( shareQuantum ) : new PriorityBlockingQueue<Runnable> ();
+		return new ThreadPoolExecutor( corePoolSize,
+		                               maximumPoolSize,
+		                               keepAliveTime,
+		                               unit,
+		                               queue );
+	}
+
+	/**
+	 * Makes sure that the given executor is shut down if the given owner
+	 * becomes unreachable without having shut it down (see
+	 * {@link ResourceCleaner}).
+	 */
+	static public ResourceCleaner.Cleanable shutdownWhenUnreachable ( Object owner, ThreadPoolExecutor executor )
+	{
+		return ResourceCleaner.register( owner, new ExecutorShutdown(executor, owner.getClass().getName()) );
+	}
+
+
+	// helpers
+
+	/**
+	 * Shuts down the executor of an unreachable owner; must not refer to the
+	 * owner itself.
+	 */
+	static class ExecutorShutdown implements Runnable
+	{
+		final protected ThreadPoolExecutor executor;
+		final protected String ownerType;
+
+		public ExecutorShutdown ( ThreadPoolExecutor executor, String ownerType )
+		{
+			this.executor = executor;
+			this.ownerType = ownerType;
+		}
+
+		public void run ()
+		{
+			if ( ! executor.isTerminated() ) {
+				log.warn( "A manager (type: {}) that still seems to be running became unreachable. Let's shut down its thread pool.", ownerType );
+				executor.shutdownNow();
+			}
+		}
+	}
+
+}
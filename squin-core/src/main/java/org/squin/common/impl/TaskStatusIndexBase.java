@@ -15,7 +15,10 @@ import org.squin.common.TaskStatus;
 /**
  * Base class for implementations of {@link TaskStatusIndex}.
  * This implementation assumes that L extends S!
- * Attention: This class is not thread-safe.
+ * Attention: This class is not thread-safe; however, the methods that lock
+ * and unlock statuses synchronize on the index because a thread that waits
+ * for the lock of a status must not block the thread that holds this lock
+ * (which needs the index to unlock the status).
  *
  * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
  */
@@ -43,19 +46,42 @@ public abstract class TaskStatusIndexBase<S extends TaskStatus,L extends Lockabl
 	}
 
 	@SuppressWarnings("unchecked")
-	public S getLockedStatus ( int key )
+	synchronized public S getLockedStatus ( int key )
 	{
-		L s = map.get( Integer.valueOf(key) );
-		if ( s == null ) {
-			s = getNewUnknownStatus();
-			put( key, s );
+		boolean interrupted = false;
+		try {
+			while ( true )
+			{
+				// the status may have been replaced while we were waiting
+				L s = map.get( Integer.valueOf(key) );
+				if ( s == null ) {
+					s = getNewUnknownStatus();
+					put( key, s );
+				}
+
+				if ( s.tryLock() ) {
+					return (S) s;
+				}
+
+				// the status is locked by another thread; we wait without
+				// holding the monitor of this index because the other thread
+				// needs it to unlock the status
+				try {
+					wait();
+				}
+				catch ( InterruptedException e ) {
+					interrupted = true;
+				}
+			}
+		}
+		finally {
+			if ( interrupted ) {
+				Thread.currentThread().interrupt();
+			}
 		}
-
-		s.lock();
-		return (S) s;
 	}
 
-	public void unlockStatus ( int key ) throws ConcurrentModificationException, IllegalArgumentException
+	synchronized public void unlockStatus ( int key ) throws ConcurrentModificationException, IllegalArgumentException
 	{
 		L s = map.get( Integer.valueOf(key) );
 		if ( s == null ) {
@@ -71,9 +97,10 @@ public abstract class TaskStatusIndexBase<S extends TaskStatus,L extends Lockabl
 		}
 
 		s.unlock();
+		notifyAll();
 	}
 
-	public void updateStatus ( int key, L newStatus ) throws ConcurrentModificationException, IllegalArgumentException
+	synchronized public void updateStatus ( int key, L newStatus ) throws ConcurrentModificationException, IllegalArgumentException
 	{
 		if ( newStatus.isLocked() ) {
 			throw new IllegalArgumentException( "The given status is locked." );
@@ -86,6 +113,7 @@ public abstract class TaskStatusIndexBase<S extends TaskStatus,L extends Lockabl
 
 		put( key, newStatus );
 		oldStatus.unlock();
+		notifyAll();
 	}
 
 	public void clear ()
@@ -0,0 +1,74 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.jenacommon;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.TripleMatch;
+
+import org.squin.dataset.Triple;
+
+
+/**
+ * The ID-based representation of a Jena TripleMatch.
+ * Encoding a triple match never adds RDF terms to the node dictionary:
+ * if one of the terms of the match is not in the dictionary there cannot
+ * be any matching triple and, thus, there is no ID-based representation.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class EncodedTripleMatch
+{
+	// members
+
+	final public int s;
+	final public int p;
+	final public int o;
+
+
+	// initialization
+
+	protected EncodedTripleMatch ( int s, int p, int o )
+	{
+		this.s = s;
+		this.p = p;
+		this.o = o;
+	}
+
+	/**
+	 * Encodes the given triple match using the given dictionary.
+	 * Wildcards are encoded as {@link Triple#UNKNOWN_IDENTIFIER}.
+	 *
+	 * @return the encoded match, or null if one of the RDF terms of the
+	 *         match is unknown to the dictionary
+	 */
+	static public EncodedTripleMatch encode ( TripleMatch m, NodeDictionary nodeDict )
+	{
+		int s = encode( m.getMatchSubject(), nodeDict );
+		int p = encode( m.getMatchPredicate(), nodeDict );
+		int o = encode( m.getMatchObject(), nodeDict );
+
+		if ( s == UNKNOWN_TERM || p == UNKNOWN_TERM || o == UNKNOWN_TERM ) {
+			return null;
+		}
+
+		return new EncodedTripleMatch( s, p, o );
+	}
+
+
+	// helpers
+
+	static final private int UNKNOWN_TERM = -1;
+
+	static private int encode ( Node n, NodeDictionary nodeDict )
+	{
+		if ( n == null ) {
+			return Triple.UNKNOWN_IDENTIFIER;
+		}
+
+		int id = nodeDict.getId( n );
+		return ( id == Triple.UNKNOWN_IDENTIFIER ) ? UNKNOWN_TERM : id;
+	}
+
+}
@@ -43,6 +43,9 @@ public class JenaIOBasedQueriedDataset implements QueriedDataset
 	// members
 
 	final public NodeDictionary nodeDict;
+
+	/** the cache for decoding that is shared by all Jena-based views of this dataset */
+	final public NodeDecodeCache decodeCache;
 	final protected QueriedDataset wrappedDataset;
 
 
@@ -52,6 +55,7 @@ public class JenaIOBasedQueriedDataset implements QueriedDataset
 	{
 		this.wrappedDataset = wrappedDataset;
 		this.nodeDict = nodeDict;
+		this.decodeCache = new NodeDecodeCache( nodeDict );
 	}
 
 	public JenaIOBasedQueriedDataset ( QueriedDataset wrappedDataset )
@@ -138,6 +142,7 @@ public class JenaIOBasedQueriedDataset implements QueriedDataset
 		StatisticsImpl.AttributeList statAttrs = new StatisticsImpl.AttributeList();
 		statAttrs.add( "wrappedDataset", wrappedDataset.getStatistics() );
 		statAttrs.add( "nodeDict", nodeDict.getStatistics() );
+		statAttrs.add( "decodeCache", decodeCache.getStatistics() );
 
 		if ( StatisticsImpl.isObjectProfilingPossible() ) {
 			statAttrs.add( "size", StatisticsImpl.sizeof(this) );
@@ -0,0 +1,164 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.jenacommon;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.hp.hpl.jena.graph.Node;
+
+import org.squin.common.Statistics;
+import org.squin.common.impl.StatisticsImpl;
+import org.squin.dataset.Triple;
+
+
+/**
+ * A node dictionary that caches the RDF terms of another node dictionary
+ * for decoding.
+ * The identifiers assigned by a node dictionary never change. Hence, once
+ * the RDF term for an identifier has been looked up in the wrapped
+ * dictionary, this cache returns it without acquiring the lock of the
+ * wrapped dictionary. All other methods are delegated to the wrapped
+ * dictionary.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class NodeDecodeCache implements NodeDictionary
+{
+	// members
+
+	static final protected int DEFAULT_INITIAL_CAPACITY = 1024;
+
+	final public NodeDictionary wrappedDict;
+
+	/** the cached nodes, indexed by their identifiers */
+	private volatile AtomicReferenceArray<Node> nodes;
+
+	// counters for statistics
+	private long hitCounter = 0;
+	private long missCounter = 0;
+
+
+	// initialization
+
+	public NodeDecodeCache ( NodeDictionary wrappedDict )
+	{
+		this.wrappedDict = wrappedDict;
+		this.nodes = new AtomicReferenceArray<Node> ( DEFAULT_INITIAL_CAPACITY );
+	}
+
+
+	// implementation of the NodeDictionary interface
+
+	public Node getNode ( int id )
+	{
+		if ( id == Triple.UNKNOWN_IDENTIFIER ) {
+			return null;
+		}
+
+		AtomicReferenceArray<Node> a = nodes;
+		if ( id < a.length() ) {
+			Node n = a.get( id );
+			if ( n != null ) {
+				hitCounter++;
+				return n;
+			}
+		}
+
+		missCounter++;
+		Node n = wrappedDict.getNode( id );
+		if ( n != null ) {
+			put( id, n );
+		}
+		return n;
+	}
+
+	public void getNodes ( int[] ids, int count, Node[] nodes )
+	{
+		AtomicReferenceArray<Node> a = this.nodes;
+		int[] missingIds = null;
+		int[] missingPos = null;
+		int missing = 0;
+		for ( int i = 0; i < count; i++ )
+		{
+			int id = ids[i];
+			Node n = ( id != Triple.UNKNOWN_IDENTIFIER && id < a.length() ) ? a.get( id ) : null;
+			nodes[i] = n;
+			if ( n == null && id != Triple.UNKNOWN_IDENTIFIER )
+			{
+				if ( missingIds == null ) {
+					missingIds = new int[count - i];
+					missingPos = new int[count - i];
+				}
+				missingIds[missing] = id;
+				missingPos[missing] = i;
+				missing++;
+			}
+		}
+
+		hitCounter += count - missing;
+		if ( missing == 0 ) {
+			return;
+		}
+
+		// look up all missing terms with a single call of the wrapped dictionary
+		missCounter += missing;
+		Node[] missingNodes = new Node[missing];
+		wrappedDict.getNodes( missingIds, missing, missingNodes );
+		for ( int j = 0; j < missing; j++ )
+		{
+			nodes[ missingPos[j] ] = missingNodes[j];
+			if ( missingNodes[j] != null ) {
+				put( missingIds[j], missingNodes[j] );
+			}
+		}
+	}
+
+	public int getId ( Node n )
+	{
+		return wrappedDict.getId( n );
+	}
+
+	public int createId ( Node n )
+	{
+		return wrappedDict.createId( n );
+	}
+
+
+	// implementation of the StatisticsProvider interface
+
+	public Statistics getStatistics ()
+	{
+		StatisticsImpl.AttributeList statAttrs = new StatisticsImpl.AttributeList();
+		statAttrs.add( "capacity", nodes.length() );
+		statAttrs.add( "hitCounter", hitCounter );
+		statAttrs.add( "missCounter", missCounter );
+		statAttrs.add( "wrappedDictionary", wrappedDict.getStatistics() );
+		return new StatisticsImpl( statAttrs );
+	}
+
+
+	// helpers
+
+	synchronized private void put ( int id, Node n )
+	{
+		AtomicReferenceArray<Node> a = nodes;
+		if ( id >= a.length() )
+		{
+			int newLength = a.length();
+			while ( newLength <= id ) {
+				newLength *= 2;
+			}
+
+			AtomicReferenceArray<Node> b = new AtomicReferenceArray<Node> ( newLength );
+			for ( int i = 0; i < a.length(); i++ ) {
+				b.set( i, a.get(i) );
+			}
+			nodes = a = b;
+		}
+
+		a.set( id, n );
+	}
+
+}
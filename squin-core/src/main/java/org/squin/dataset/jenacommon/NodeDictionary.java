@@ -24,6 +24,15 @@ public interface NodeDictionary extends StatisticsProvider
 // 	public Node getNode ( long id );
 	public Node getNode ( int id );
 
+	/**
+	 * Looks up the RDF terms identified by the first <code>count</code>
+	 * identifiers in the given array and writes them to the corresponding
+	 * positions of the given node array (null for unknown identifiers).
+	 * Implementations should look up all terms with a single access to
+	 * their synchronized data structures.
+	 */
+	public void getNodes ( int[] ids, int count, Node[] nodes );
+
 	/**
 	 * Returns the identifier that identifies the given RDF term (Jena Node
 	 * object), or {@link org.squin.dataset.Triple#UNKNOWN_IDENTIFIER} if
@@ -19,6 +19,7 @@ import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.graph.TripleMatch;
 import com.hp.hpl.jena.graph.impl.GraphBase;
 import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.NullIterator;
 
 import com.hp.hpl.jena.sparql.core.DatasetGraph;
 import com.hp.hpl.jena.sparql.core.DatasetGraphBase;
@@ -138,12 +139,13 @@ public class QueriedDatasetWrappingARQDatasetGraph extends DatasetGraphBase
 		@Override
 		protected ExtendedIterator<com.hp.hpl.jena.graph.Triple> graphBaseFind ( TripleMatch m )
 		{
-			int s = ( m.getMatchSubject() == null ) ? Triple.UNKNOWN_IDENTIFIER : queriedDataset.nodeDict.createId( m.getMatchSubject() );
-			int p = ( m.getMatchPredicate() == null ) ? Triple.UNKNOWN_IDENTIFIER : queriedDataset.nodeDict.createId( m.getMatchPredicate() );
-			int o = ( m.getMatchObject() == null ) ? Triple.UNKNOWN_IDENTIFIER : queriedDataset.nodeDict.createId( m.getMatchObject() );
+			EncodedTripleMatch em = EncodedTripleMatch.encode( m, queriedDataset.nodeDict );
+			if ( em == null ) {
+				return NullIterator.instance();
+			}
 
-			Iterator<Triple> tmpIt = new EnsureGraphIterator( url, queriedDataset.find(s,p,o) );
-			return new DecodingTriplesIterator( queriedDataset.nodeDict, tmpIt );
+			Iterator<Triple> tmpIt = new EnsureGraphIterator( url, queriedDataset.find(em.s,em.p,em.o) );
+			return new DecodingTriplesIterator( queriedDataset.decodeCache, tmpIt );
 		}
 
 		@Override
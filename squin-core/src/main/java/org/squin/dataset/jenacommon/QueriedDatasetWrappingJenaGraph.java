@@ -9,6 +9,7 @@ import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.graph.TripleMatch;
 import com.hp.hpl.jena.graph.impl.GraphBase;
 import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.NullIterator;
 
 import org.squin.dataset.QueriedDataset;
 
@@ -42,11 +43,12 @@ public class QueriedDatasetWrappingJenaGraph extends GraphBase
 	@Override
 	protected ExtendedIterator<Triple> graphBaseFind ( TripleMatch m )
 	{
-		int s = ( m.getMatchSubject() == null ) ? org.squin.dataset.Triple.UNKNOWN_IDENTIFIER : queriedDataset.nodeDict.createId( m.getMatchSubject() );
-		int p = ( m.getMatchPredicate() == null ) ? org.squin.dataset.Triple.UNKNOWN_IDENTIFIER : queriedDataset.nodeDict.createId( m.getMatchPredicate() );
-		int o = ( m.getMatchObject() == null ) ? org.squin.dataset.Triple.UNKNOWN_IDENTIFIER : queriedDataset.nodeDict.createId( m.getMatchObject() );
+		EncodedTripleMatch em = EncodedTripleMatch.encode( m, queriedDataset.nodeDict );
+		if ( em == null ) {
+			return NullIterator.instance();
+		}
 
-		return new DecodingTriplesIterator( queriedDataset.nodeDict, queriedDataset.find(s,p,o) );
+		return new DecodingTriplesIterator( queriedDataset.decodeCache, queriedDataset.find(em.s,em.p,em.o) );
 	}
 
 	@Override
@@ -48,6 +48,13 @@ public class NodeDictionaryImpl implements NodeDictionary
 		return dictId2Node.get( id-1 );
 	}
 
+	synchronized final public void getNodes ( int[] ids, int count, Node[] nodes )
+	{
+		for ( int i = 0; i < count; i++ ) {
+			nodes[i] = ( ids[i] == Triple.UNKNOWN_IDENTIFIER ) ? null : dictId2Node.get( ids[i]-1 );
+		}
+	}
+
 // 	synchronized final public long getId ( Node n )
 	synchronized final public int getId ( Node n )
 	{
@@ -4,13 +4,19 @@
 */
 package org.squin.dataset.query.arq;
 
+import java.util.Set;
+
 import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.algebra.Op;
 import com.hp.hpl.jena.sparql.core.DatasetGraph;
+import com.hp.hpl.jena.sparql.core.Var;
 import com.hp.hpl.jena.sparql.engine.ExecutionContext;
 import com.hp.hpl.jena.sparql.engine.main.OpExecutorFactory;
 import com.hp.hpl.jena.sparql.util.Context;
 
 import org.squin.dataset.jenacommon.NodeDictionary;
+import org.squin.util.IntHashMap;
 
 
 /**
@@ -27,6 +33,27 @@ public class IdBasedExecutionContext extends ExecutionContext
 	final public VarDictionary varDict;
 	final public boolean recordProvenance;
 
+	private volatile boolean cancelled = false;
+
+	/**
+	 * The maximum number of RDF terms in the {@link #decodeCache}. If the
+	 * cache grows larger it is emptied.
+	 */
+	static final public int DECODE_CACHE_CAPACITY = 65536;
+
+	/**
+	 * caches the RDF terms decoded during the query execution that uses this
+	 * context; attention: the cache is not synchronized because it is only
+	 * accessed by the thread that consumes the query results
+	 */
+	final protected IntHashMap<Node> decodeCache = new IntHashMap<Node> ();
+
+	/** the variables required by the operators of the executed operator tree */
+	private RequiredVars requiredVars = null;
+
+	/** memorizes the matches of triple patterns (null if disabled) */
+	private MatchCache matchCache = null;
+
 
 	// initialization
 
@@ -44,4 +71,131 @@ public class IdBasedExecutionContext extends ExecutionContext
 		this.recordProvenance = recordProvenance;
 	}
 
+
+	// accessors
+
+	/**
+	 * Returns true if the query execution that uses this context has been
+	 * cancelled.
+	 */
+	public boolean isCancelled ()
+	{
+		return cancelled;
+	}
+
+	/**
+	 * Returns the variables that the operators of the given operator tree
+	 * require from the given operator, or null if all variables are
+	 * required (or nothing is known about the given operator).
+	 */
+	public Set<Var> getRequiredVars ( Op op )
+	{
+		return ( requiredVars == null ) ? null : requiredVars.get( op );
+	}
+
+
+	/**
+	 * Returns the cache for the matches of triple patterns that is used
+	 * during the query execution, or null if no such cache is used.
+	 */
+	public MatchCache getMatchCache ()
+	{
+		return matchCache;
+	}
+
+	/**
+	 * Returns the version of the queried data; i.e. a number that changes
+	 * whenever data is added to the queried dataset. This implementation
+	 * assumes that the dataset does not change during the query execution
+	 * and, thus, always returns 0.
+	 */
+	public long getDataVersion ()
+	{
+		return 0L;
+	}
+
+
+	// operations
+
+	/**
+	 * Sets the cache for the matches of triple patterns to be used during
+	 * the query execution (null disables memorizing matches).
+	 */
+	public void setMatchCache ( MatchCache matchCache )
+	{
+		this.matchCache = matchCache;
+	}
+
+	/**
+	 * Decodes the first <code>count</code> node identifiers of the given
+	 * array into the corresponding positions of the given node array.
+	 * Terms that have been decoded before during the query execution are
+	 * taken from a cache; all other terms are looked up with a single call
+	 * of {@link NodeDictionary#getNodes}.
+	 * This method must only be called by the thread that consumes the query
+	 * results.
+	 */
+	public void decode ( int[] ids, int count, Node[] nodes )
+	{
+		int[] missingIds = null;
+		int[] missingPos = null;
+		int missing = 0;
+		for ( int i = 0; i < count; i++ )
+		{
+			nodes[i] = decodeCache.get( ids[i] );
+			if ( nodes[i] == null )
+			{
+				if ( missingIds == null ) {
+					missingIds = new int[count - i];
+					missingPos = new int[count - i];
+				}
+				missingIds[missing] = ids[i];
+				missingPos[missing] = i;
+				missing++;
+			}
+		}
+
+		if ( missing == 0 ) {
+			return;
+		}
+
+		Node[] missingNodes = new Node[missing];
+		nodeDict.getNodes( missingIds, missing, missingNodes );
+
+		if ( decodeCache.size() + missing > DECODE_CACHE_CAPACITY ) {
+			decodeCache.clear();
+		}
+
+		for ( int j = 0; j < missing; j++ )
+		{
+			nodes[ missingPos[j] ] = missingNodes[j];
+			if ( missingNodes[j] != null ) {
+				decodeCache.put( missingIds[j], missingNodes[j] );
+			}
+		}
+	}
+
+	/**
+	 * Sets the analysis of the operator tree executed with this context.
+	 * Without such an analysis all variables are decoded for every ID-based
+	 * operator.
+	 */
+	public void setRequiredVars ( RequiredVars requiredVars )
+	{
+		this.requiredVars = requiredVars;
+	}
+
+	/**
+	 * Marks the query execution that uses this context as cancelled.
+	 * The ID-based iterators stop producing solution mappings as soon as
+	 * they notice the cancellation.
+	 * This method may be called asynchronously (i.e. by another thread than
+	 * the one that consumes the iterators). Subclasses that override this
+	 * method to cancel outstanding work must call the super implementation.
+	 */
+	public void cancel ()
+	{
+		cancelled = true;
+	}
+
 }
@@ -0,0 +1,440 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import com.hp.hpl.jena.sparql.expr.E_BNode;
+import com.hp.hpl.jena.sparql.expr.E_Bound;
+import com.hp.hpl.jena.sparql.expr.E_Equals;
+import com.hp.hpl.jena.sparql.expr.E_Function;
+import com.hp.hpl.jena.sparql.expr.E_LogicalAnd;
+import com.hp.hpl.jena.sparql.expr.E_LogicalOr;
+import com.hp.hpl.jena.sparql.expr.E_NotEquals;
+import com.hp.hpl.jena.sparql.expr.E_Random;
+import com.hp.hpl.jena.sparql.expr.E_SameTerm;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprEvalException;
+import com.hp.hpl.jena.sparql.expr.ExprFunction;
+import com.hp.hpl.jena.sparql.expr.ExprFunction2;
+import com.hp.hpl.jena.sparql.expr.ExprFunctionOp;
+
+import org.squin.dataset.Triple;
+import org.squin.dataset.jenacommon.NodeDictionary;
+import org.squin.dataset.query.SolutionMapping;
+import org.squin.util.IntHashMap;
+
+
+/**
+ * A FILTER expression that can be evaluated directly on ID-based
+ * {@link SolutionMapping}s.
+ * Upon creation the given expression is compiled into a condition that
+ * works on the identifiers as far as possible:
+ * sameTerm as well as (in)equality of non-literal terms are decided by
+ * comparing identifiers, bound() is decided by the solution mapping itself,
+ * and expressions that mention a single variable only (e.g. isIRI, isLiteral,
+ * regex, str) are evaluated once per identifier and the result is cached.
+ * Everything else is evaluated by ARQ for a binding that contains only the
+ * decoded values of the variables mentioned in the expression.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class IdBasedFilter
+{
+	// members
+
+	/** the maximum number of cached results per single-variable expression */
+	static final public int MAX_CACHE_SIZE = 100000;
+
+	final protected Expr expr;
+	final protected IdBasedExecutionContext execCxt;
+	final protected NodeDictionary nodeDict;
+
+	/** the variables mentioned in the expression that are known to the variable dictionary */
+	final protected Var[] vars;
+	final protected int[] varIds;
+
+	final protected Condition condition;
+
+
+	// initialization
+
+	/**
+	 * Creates a filter for the given expression.
+	 *
+	 * @throws IllegalArgumentException if the given expression is not
+	 *                                  supported (see {@link #isSupported})
+	 */
+	public IdBasedFilter ( Expr expr, IdBasedExecutionContext execCxt ) throws IllegalArgumentException
+	{
+		if ( ! isSupported(expr) ) {
+			throw new IllegalArgumentException( "The given expression (" + expr.toString() + ") cannot be evaluated on ID-based solution mappings." );
+		}
+
+		this.expr = expr;
+		this.execCxt = execCxt;
+		this.nodeDict = execCxt.nodeDict;
+
+		List<Var> known = new ArrayList<Var> ();
+		for ( Var v : expr.getVarsMentioned() ) {
+			if ( execCxt.varDict.contains(v) ) {
+				known.add( v );
+			}
+		}
+
+		vars = known.toArray( new Var[known.size()] );
+		varIds = new int[vars.length];
+		for ( int i = 0; i < vars.length; i++ ) {
+			varIds[i] = execCxt.varDict.getId( vars[i] );
+		}
+
+		condition = compile( expr );
+	}
+
+
+	// accessors
+
+	public Expr getExpr ()
+	{
+		return expr;
+	}
+
+	/**
+	 * Returns the variables mentioned in the expression of this filter.
+	 */
+	public Set<Var> getVarsMentioned ()
+	{
+		return expr.getVarsMentioned();
+	}
+
+	/**
+	 * Returns true if expressions of the given type may be evaluated on
+	 * ID-based solution mappings (all expressions except those that contain
+	 * graph patterns such as EXISTS and NOT EXISTS).
+	 */
+	static public boolean isSupported ( Expr e )
+	{
+		if ( e instanceof ExprFunctionOp ) {
+			return false;
+		}
+
+		if ( e.isFunction() )
+		{
+			for ( Expr arg : e.getFunction().getArgs() ) {
+				if ( ! isSupported(arg) ) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+
+	// operations
+
+	/**
+	 * Returns true if the given solution mapping satisfies the expression of
+	 * this filter.
+	 */
+	public boolean accept ( SolutionMapping m )
+	{
+		return condition.accept( m );
+	}
+
+
+	// helpers
+
+	protected Condition compile ( Expr e )
+	{
+		if ( e instanceof E_LogicalAnd ) {
+			return new AndCondition( compile(((ExprFunction2) e).getArg1()), compile(((ExprFunction2) e).getArg2()) );
+		}
+
+		if ( e instanceof E_LogicalOr ) {
+			return new OrCondition( compile(((ExprFunction2) e).getArg1()), compile(((ExprFunction2) e).getArg2()) );
+		}
+
+		if ( e instanceof E_Bound && ((E_Bound) e).getArg().isVariable() ) {
+			return new BoundCondition( getVarId(((E_Bound) e).getArg().asVar()) );
+		}
+
+		if ( e instanceof E_SameTerm )
+		{
+			Expr a1 = ( (ExprFunction2) e ).getArg1();
+			Expr a2 = ( (ExprFunction2) e ).getArg2();
+			if ( isTerm(a1) && isTerm(a2) ) {
+				return new SameTermCondition( e, a1.isVariable(), getTermId(a1), a2.isVariable(), getTermId(a2) );
+			}
+		}
+
+		Set<Var> mentioned = e.getVarsMentioned();
+		int known = 0;
+		int varId = -1;
+		for ( Var v : mentioned ) {
+			if ( execCxt.varDict.contains(v) ) {
+				known++;
+				varId = execCxt.varDict.getId( v );
+			}
+		}
+
+		if ( known == 1 && isDeterministic(e) ) {
+			return new CachingSingleVarCondition( e, varId );
+		}
+
+		if ( e instanceof E_Equals || e instanceof E_NotEquals )
+		{
+			Expr a1 = ( (ExprFunction2) e ).getArg1();
+			Expr a2 = ( (ExprFunction2) e ).getArg2();
+			if ( isTerm(a1) && isTerm(a2) ) {
+				return new EqualityCondition( e, a1.isVariable(), getTermId(a1), a2.isVariable(), getTermId(a2), (e instanceof E_NotEquals) );
+			}
+		}
+
+		return new GenericCondition( e );
+	}
+
+	/**
+	 * Returns true if the given expression is a variable that is known to the
+	 * variable dictionary or a constant RDF term.
+	 */
+	final protected boolean isTerm ( Expr e )
+	{
+		if ( e.isVariable() ) {
+			return execCxt.varDict.contains( e.asVar() );
+		}
+		return e.isConstant();
+	}
+
+	/**
+	 * Returns the variable identifier (if the given expression is a variable)
+	 * or the node identifier (if the expression is a constant). For constants
+	 * that are (not yet) known to the node dictionary this method returns
+	 * {@link Triple#UNKNOWN_IDENTIFIER}. Notice, the node dictionary grows
+	 * while the query is executed; hence, such a constant may get an
+	 * identifier later.
+	 */
+	final protected int getTermId ( Expr e )
+	{
+		if ( e.isVariable() ) {
+			return execCxt.varDict.getId( e.asVar() );
+		}
+		return nodeDict.getId( e.getConstant().asNode() );
+	}
+
+	/**
+	 * Returns the identifier of the given variable or -1 if the variable is
+	 * unknown to the variable dictionary (and, thus, never bound).
+	 */
+	final protected int getVarId ( Var v )
+	{
+		return execCxt.varDict.contains(v) ? execCxt.varDict.getId(v) : -1;
+	}
+
+	/**
+	 * Returns true if the given expression always evaluates to the same value
+	 * for the same input.
+	 */
+	static protected boolean isDeterministic ( Expr e )
+	{
+		if ( e instanceof E_Random || e instanceof E_BNode || e instanceof E_Function ) {
+			return false;
+		}
+
+		if ( e.isFunction() )
+		{
+			ExprFunction f = e.getFunction();
+			for ( Expr arg : f.getArgs() ) {
+				if ( ! isDeterministic(arg) ) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Evaluates the given expression using ARQ for a binding that contains the
+	 * decoded values of the (known) variables bound in the given mapping.
+	 */
+	final protected boolean evaluate ( Expr e, SolutionMapping m )
+	{
+		BindingMap b = new BindingMap();
+		for ( int i = 0; i < varIds.length; i++ ) {
+			if ( m.contains(varIds[i]) ) {
+				b.add( vars[i], nodeDict.getNode(m.get(varIds[i])) );
+			}
+		}
+
+		try {
+			return e.isSatisfied( b, execCxt );
+		}
+		catch ( ExprEvalException ex ) {
+			return false;
+		}
+	}
+
+
+	/**
+	 * A compiled (part of a) FILTER expression.
+	 */
+	static abstract protected class Condition
+	{
+		abstract public boolean accept ( SolutionMapping m );
+	}
+
+	static protected class AndCondition extends Condition
+	{
+		final protected Condition c1, c2;
+		public AndCondition ( Condition c1, Condition c2 ) { this.c1 = c1; this.c2 = c2; }
+		public boolean accept ( SolutionMapping m ) { return c1.accept(m) && c2.accept(m); }
+	}
+
+	static protected class OrCondition extends Condition
+	{
+		final protected Condition c1, c2;
+		public OrCondition ( Condition c1, Condition c2 ) { this.c1 = c1; this.c2 = c2; }
+		public boolean accept ( SolutionMapping m ) { return c1.accept(m) || c2.accept(m); }
+	}
+
+	static protected class BoundCondition extends Condition
+	{
+		final protected int varId;
+		public BoundCondition ( int varId ) { this.varId = varId; }
+		public boolean accept ( SolutionMapping m ) { return varId >= 0 && m.contains(varId); }
+	}
+
+	/**
+	 * sameTerm is decided by comparing the identifiers of the terms only.
+	 * The identifier of a constant that has been unknown to the node
+	 * dictionary when this filter was compiled is resolved again on use; as
+	 * long as it remains unknown the expression is evaluated by ARQ.
+	 */
+	protected class SameTermCondition extends Condition
+	{
+		final protected Expr e;
+		final protected boolean isVar1, isVar2;
+		protected int id1, id2;
+
+		public SameTermCondition ( Expr e, boolean isVar1, int id1, boolean isVar2, int id2 )
+		{
+			this.e = e;
+			this.isVar1 = isVar1;
+			this.id1 = id1;
+			this.isVar2 = isVar2;
+			this.id2 = id2;
+		}
+
+		public boolean accept ( SolutionMapping m )
+		{
+			if ( ! isVar1 && id1 == Triple.UNKNOWN_IDENTIFIER ) {
+				id1 = getTermId( ((ExprFunction2) e).getArg1() );
+			}
+			if ( ! isVar2 && id2 == Triple.UNKNOWN_IDENTIFIER ) {
+				id2 = getTermId( ((ExprFunction2) e).getArg2() );
+			}
+			if (    ( ! isVar1 && id1 == Triple.UNKNOWN_IDENTIFIER )
+			     || ( ! isVar2 && id2 == Triple.UNKNOWN_IDENTIFIER ) ) {
+				return evaluate( e, m );
+			}
+
+			int v1 = ( isVar1 ) ? m.get( id1 ) : id1;
+			int v2 = ( isVar2 ) ? m.get( id2 ) : id2;
+			if ( v1 == SolutionMapping.UNBOUND || v2 == SolutionMapping.UNBOUND ) {
+				return false; // evaluation error
+			}
+			return v1 == v2;
+		}
+	}
+
+	/**
+	 * (In)equality is decided by comparing identifiers unless one of the
+	 * terms is a literal; literals with different identifiers may still be
+	 * equal (e.g. "1"^^xsd:integer and "01"^^xsd:integer) and are compared
+	 * by ARQ.
+	 */
+	protected class EqualityCondition extends Condition
+	{
+		final protected Expr e;
+		final protected boolean isVar1, isVar2;
+		final protected int id1, id2;
+		final protected boolean negated;
+
+		public EqualityCondition ( Expr e, boolean isVar1, int id1, boolean isVar2, int id2, boolean negated )
+		{
+			this.e = e;
+			this.isVar1 = isVar1;
+			this.id1 = id1;
+			this.isVar2 = isVar2;
+			this.id2 = id2;
+			this.negated = negated;
+		}
+
+		public boolean accept ( SolutionMapping m )
+		{
+			int v1 = ( isVar1 ) ? m.get( id1 ) : id1;
+			int v2 = ( isVar2 ) ? m.get( id2 ) : id2;
+			if ( v1 != SolutionMapping.UNBOUND && v2 != SolutionMapping.UNBOUND )
+			{
+				if ( v1 == v2 ) {
+					return ! negated;
+				}
+
+				Node n1 = nodeDict.getNode( v1 );
+				Node n2 = nodeDict.getNode( v2 );
+				if ( ! n1.isLiteral() && ! n2.isLiteral() ) {
+					return negated;
+				}
+			}
+
+			return evaluate( e, m );
+		}
+	}
+
+	/**
+	 * An expression that mentions a single variable is evaluated only once
+	 * for every value of this variable.
+	 */
+	protected class CachingSingleVarCondition extends Condition
+	{
+		final protected Expr e;
+		final protected int varId;
+		final protected IntHashMap<Boolean> cache = new IntHashMap<Boolean> ();
+
+		public CachingSingleVarCondition ( Expr e, int varId )
+		{
+			this.e = e;
+			this.varId = varId;
+		}
+
+		public boolean accept ( SolutionMapping m )
+		{
+			int valueId = m.get( varId ); // UNBOUND is a valid cache key as well
+			Boolean result = cache.get( valueId );
+			if ( result == null )
+			{
+				result = Boolean.valueOf( evaluate(e,m) );
+				if ( cache.size() < MAX_CACHE_SIZE ) {
+					cache.put( valueId, result );
+				}
+			}
+			return result.booleanValue();
+		}
+	}
+
+	protected class GenericCondition extends Condition
+	{
+		final protected Expr e;
+		public GenericCondition ( Expr e ) { this.e = e; }
+		public boolean accept ( SolutionMapping m ) { return evaluate( e, m ); }
+	}
+
+}
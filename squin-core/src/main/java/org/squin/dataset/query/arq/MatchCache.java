@@ -0,0 +1,192 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.squin.dataset.Triple;
+
+
+/**
+ * Memorizes the triples that match (ID-based) triple patterns during a
+ * single query execution.
+ * Triple pattern iterators usually look up the same substituted pattern
+ * for many input solution mappings (e.g. if many of them bind a join
+ * variable to the same value). With this cache the matching triples are
+ * retrieved from the queried dataset only once; they are recorded while
+ * the first lookup is consumed and added to the cache when it has been
+ * consumed completely.
+ * Each entry is tagged with the version of the queried data at the time
+ * of the lookup (see {@link IdBasedExecutionContext#getDataVersion}); an
+ * entry is ignored if the data has changed since then (e.g. because a
+ * newly retrieved graph has been indexed during link traversal).
+ * The number of memorized triples is bounded; if the bound is reached, the
+ * cache is emptied.
+ * This cache may be accessed by multiple threads (see
+ * {@link org.squin.dataset.query.arq.iterators.ParallelQueryIter}).
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class MatchCache
+{
+	// members
+
+	/** the default maximum number of memorized triples */
+	static final public int DEFAULT_CAPACITY = 100000;
+
+	/** the maximum number of memorized triples */
+	final public int capacity;
+
+	final protected ConcurrentHashMap<Key,Entry> entries = new ConcurrentHashMap<Key,Entry> ();
+
+	/** the number of memorized triples */
+	final protected AtomicInteger size = new AtomicInteger( 0 );
+
+
+	// initialization
+
+	public MatchCache ( int capacity )
+	{
+		this.capacity = capacity;
+	}
+
+
+	// accessors
+
+	/**
+	 * Returns an iterator over the memorized matches of the given pattern,
+	 * or null if there are no matches for the given data version.
+	 * Variables in the pattern are denoted by
+	 * {@link Triple#UNKNOWN_IDENTIFIER}.
+	 */
+	public Iterator<? extends Triple> get ( int s, int p, int o, long dataVersion )
+	{
+		Entry e = entries.get( new Key(s,p,o) );
+		if ( e == null || e.dataVersion != dataVersion ) {
+			return null;
+		}
+		return e.matches.iterator();
+	}
+
+
+	// operations
+
+	/**
+	 * Returns an iterator that provides the given matches of the given
+	 * pattern and that adds them to this cache as soon as it has been
+	 * consumed completely.
+	 *
+	 * @param dataVersion the version of the queried data that has been
+	 *                    determined before the matches were looked up
+	 */
+	public <T extends Triple> Iterator<T> record ( int s, int p, int o, long dataVersion, Iterator<T> matches )
+	{
+		return new RecordingIterator<T>( new Key(s,p,o), dataVersion, matches );
+	}
+
+
+	// helpers
+
+	protected void put ( Key key, long dataVersion, List<? extends Triple> matches )
+	{
+		if ( matches.size() > capacity ) {
+			return;
+		}
+
+		if ( size.addAndGet(matches.size()) > capacity ) {
+			entries.clear();
+			size.set( matches.size() );
+		}
+
+		Entry old = entries.put( key, new Entry(dataVersion,matches) );
+		if ( old != null ) {
+			size.addAndGet( - old.matches.size() );
+		}
+	}
+
+	static protected class Key
+	{
+		final public int s, p, o;
+
+		public Key ( int s, int p, int o ) { this.s = s; this.p = p; this.o = o; }
+
+		@Override
+		public int hashCode () { return ( s * 31 + p ) * 31 + o; }
+
+		@Override
+		public boolean equals ( Object other )
+		{
+			if ( ! (other instanceof Key) ) {
+				return false;
+			}
+			Key k = (Key) other;
+			return s == k.s && p == k.p && o == k.o;
+		}
+	}
+
+	static protected class Entry
+	{
+		final public long dataVersion;
+		final public List<? extends Triple> matches;
+
+		public Entry ( long dataVersion, List<? extends Triple> matches ) { this.dataVersion = dataVersion; this.matches = matches; }
+	}
+
+	protected class RecordingIterator<T extends Triple> implements Iterator<T>
+	{
+		final protected Key key;
+		final protected long dataVersion;
+		final protected Iterator<T> matches;
+		protected List<T> recorded = new ArrayList<T> ();
+
+		public RecordingIterator ( Key key, long dataVersion, Iterator<T> matches )
+		{
+			this.key = key;
+			this.dataVersion = dataVersion;
+			this.matches = matches;
+		}
+
+		public boolean hasNext ()
+		{
+			if ( matches.hasNext() ) {
+				return true;
+			}
+
+			if ( recorded != null ) {
+				put( key, dataVersion, recorded );
+				recorded = null;
+			}
+			return false;
+		}
+
+		public T next ()
+		{
+			if ( ! hasNext() ) {
+				throw new NoSuchElementException();
+			}
+
+			T t = matches.next();
+			if ( recorded != null )
+			{
+				recorded.add( t );
+				if ( recorded.size() > capacity ) {
+					recorded = null; // too many matches to be memorized
+				}
+			}
+			return t;
+		}
+
+		public void remove ()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -4,24 +4,58 @@
 */
 package org.squin.dataset.query.arq;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.op.Op1;
+import com.hp.hpl.jena.sparql.algebra.op.Op2;
 import com.hp.hpl.jena.sparql.algebra.op.OpAssign;
 import com.hp.hpl.jena.sparql.algebra.op.OpBGP;
+import com.hp.hpl.jena.sparql.algebra.op.OpConditional;
+import com.hp.hpl.jena.sparql.algebra.op.OpDistinct;
+import com.hp.hpl.jena.sparql.algebra.op.OpFilter;
+import com.hp.hpl.jena.sparql.algebra.op.OpGroup;
+import com.hp.hpl.jena.sparql.algebra.op.OpOrder;
+import com.hp.hpl.jena.sparql.algebra.op.OpPath;
+import com.hp.hpl.jena.sparql.algebra.op.OpProject;
+import com.hp.hpl.jena.sparql.algebra.op.OpReduced;
+import com.hp.hpl.jena.sparql.algebra.op.OpSequence;
+import com.hp.hpl.jena.sparql.algebra.op.OpSlice;
+import com.hp.hpl.jena.sparql.algebra.op.OpUnion;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+import com.hp.hpl.jena.sparql.core.TriplePath;
 import com.hp.hpl.jena.sparql.core.Var;
 import com.hp.hpl.jena.sparql.engine.ExecutionContext;
 import com.hp.hpl.jena.sparql.engine.QueryIterator;
 import com.hp.hpl.jena.sparql.engine.iterator.QueryIterAssign;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterFilterExpr;
 import com.hp.hpl.jena.sparql.engine.main.OpExecutorFactory;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprList;
+import com.hp.hpl.jena.sparql.path.Path;
 
 import org.squin.dataset.jenacommon.NodeDictionary;
 import org.squin.dataset.jenacommon.QueriedDatasetWrappingJenaGraph;
 import org.squin.dataset.query.SolutionMapping;
 import org.squin.dataset.query.TriplePattern;
 import org.squin.dataset.query.arq.iterators.DecodeBindingsIterator;
+import org.squin.dataset.query.arq.iterators.DistinctQueryIter;
 import org.squin.dataset.query.arq.iterators.EncodeBindingsIterator;
-import org.squin.dataset.query.arq.iterators.TriplePatternQueryIter;
+import org.squin.dataset.query.arq.iterators.FilterQueryIter;
+import org.squin.dataset.query.arq.iterators.GroupQueryIter;
+import org.squin.dataset.query.arq.iterators.OptionalQueryIter;
+import org.squin.dataset.query.arq.iterators.OrderQueryIter;
+import org.squin.dataset.query.arq.iterators.PathQueryIter;
+import org.squin.dataset.query.arq.iterators.ProjectQueryIter;
 import org.squin.dataset.query.arq.iterators.QueryIterAssignWrapper;
+import org.squin.dataset.query.arq.iterators.SliceQueryIter;
+import org.squin.dataset.query.arq.iterators.SubPlan;
+import org.squin.dataset.query.arq.iterators.TriplePatternQueryIter;
+import org.squin.dataset.query.arq.iterators.UnionQueryIter;
 
 
 /**
@@ -59,22 +93,138 @@ public class OpExecutor extends com.hp.hpl.jena.sparql.engine.main.OpExecutor
 	@Override
 	public QueryIterator execute ( OpBGP opBGP, QueryIterator input )
 	{
-		if (    opBGP.getPattern().isEmpty()
-		     || ! (execCxt.getDataset().getDefaultGraph() instanceof QueriedDatasetWrappingJenaGraph) )
-		{
+		if ( opBGP.getPattern().isEmpty() || ! isIdBasedExecutionPossible() ) {
 			return super.execute( opBGP, input );
 		}
 
-		IdBasedExecutionContext ourExecCxt = (IdBasedExecutionContext) execCxt;
-		VarDictionary varDict = ourExecCxt.varDict;
-		NodeDictionary nodeDict = ourExecCxt.nodeDict;
+		return executeIdBased( opBGP, input );
+	}
 
-		Iterator<SolutionMapping> qIt = new EncodeBindingsIterator( input, ourExecCxt );
-		for ( com.hp.hpl.jena.graph.Triple t : opBGP.getPattern().getList() ) {
-			qIt = new TriplePatternQueryIter( encode(t,varDict,nodeDict), qIt, ourExecCxt );
+	@Override
+	protected QueryIterator execute ( OpPath opPath, QueryIterator input )
+	{
+		if ( ! isIdBasedExecutionPossible() || ! isIdBasedExecutionSupported(opPath) ) {
+			return super.execute( opPath, input );
+		}
+
+		return executeIdBased( opPath, input );
+	}
+
+	/**
+	 * Evaluates the expressions of the given filter on the ID-based solution
+	 * mappings; if possible, within the iterator chain for the BGP underneath
+	 * the filter (see {@link #createFilteredIterator}).
+	 * Expressions that cannot be evaluated this way (e.g. EXISTS) are
+	 * evaluated by ARQ afterwards.
+	 */
+	@Override
+	protected QueryIterator execute ( OpFilter opFilter, QueryIterator input )
+	{
+		if ( ! isIdBasedExecutionPossible() || ! isIdBasedExecutionSupported(opFilter) ) {
+			return super.execute( opFilter, input );
+		}
+
+		return executeIdBased( opFilter, input );
+	}
+
+	@Override
+	protected QueryIterator execute ( OpSequence opSequence, QueryIterator input )
+	{
+		if ( ! isIdBasedExecutionPossible() || ! isIdBasedExecutionSupported(opSequence) ) {
+			return super.execute( opSequence, input );
+		}
+
+		return executeIdBased( opSequence, input );
+	}
+
+	@Override
+	protected QueryIterator execute ( OpConditional opCondition, QueryIterator input )
+	{
+		if ( ! isIdBasedExecutionPossible() || ! isIdBasedExecutionSupported(opCondition) ) {
+			return super.execute( opCondition, input );
+		}
+
+		return executeIdBased( opCondition, input );
+	}
+
+	@Override
+	protected QueryIterator execute ( OpUnion opUnion, QueryIterator input )
+	{
+		if ( ! isIdBasedExecutionPossible() || ! isIdBasedExecutionSupported(opUnion) ) {
+			return super.execute( opUnion, input );
+		}
+
+		return executeIdBased( opUnion, input );
+	}
+
+	@Override
+	protected QueryIterator execute ( OpDistinct opDistinct, QueryIterator input )
+	{
+		if ( ! isIdBasedExecutionPossible() || ! isIdBasedExecutionSupported(opDistinct) ) {
+			return super.execute( opDistinct, input );
+		}
+
+		return executeIdBased( opDistinct, input );
+	}
+
+	@Override
+	protected QueryIterator execute ( OpReduced opReduced, QueryIterator input )
+	{
+		if ( ! isIdBasedExecutionPossible() || ! isIdBasedExecutionSupported(opReduced) ) {
+			return super.execute( opReduced, input );
+		}
+
+		return executeIdBased( opReduced, input );
+	}
+
+	@Override
+	protected QueryIterator execute ( OpSlice opSlice, QueryIterator input )
+	{
+		if ( ! isIdBasedExecutionPossible() || ! isIdBasedExecutionSupported(opSlice) ) {
+			return super.execute( opSlice, input );
+		}
+
+		return executeIdBased( opSlice, input );
+	}
+
+	@Override
+	protected QueryIterator execute ( OpProject opProject, QueryIterator input )
+	{
+		if ( ! isIdBasedExecutionPossible() || ! isIdBasedExecutionSupported(opProject) ) {
+			return super.execute( opProject, input );
+		}
+
+		return executeIdBased( opProject, input );
+	}
+
+	@Override
+	protected QueryIterator execute ( OpOrder opOrder, QueryIterator input )
+	{
+		if ( ! isIdBasedExecutionPossible() || ! isIdBasedExecutionSupported(opOrder) ) {
+			return super.execute( opOrder, input );
+		}
+
+		return executeIdBased( opOrder, input );
+	}
+
+	/**
+	 * Evaluates the given grouping with a {@link GroupQueryIter} if the
+	 * grouping and the operator underneath are supported; that is, the
+	 * solution mappings are grouped and aggregated without decoding them.
+	 */
+	@Override
+	protected QueryIterator execute ( OpGroup opGroup, QueryIterator input )
+	{
+		if (    ! isIdBasedExecutionPossible()
+		     || ! GroupQueryIter.isSupported(opGroup)
+		     || ! isIdBasedExecutionSupported(opGroup.getSubOp()) ) {
+			return super.execute( opGroup, input );
 		}
 
-		return new DecodeBindingsIterator( qIt, ourExecCxt );
+		IdBasedExecutionContext ourExecCxt = (IdBasedExecutionContext) execCxt;
+		return new GroupQueryIter( createIdBasedIterator(opGroup.getSubOp(),new EncodeBindingsIterator(input,ourExecCxt)),
+		                           opGroup,
+		                           ourExecCxt );
 	}
 
 	@Override
@@ -84,8 +234,463 @@ public class OpExecutor extends com.hp.hpl.jena.sparql.engine.main.OpExecutor
 		return new QueryIterAssignWrapper( in, (IdBasedExecutionContext) execCxt );
 	}
 
+
+	// ID-based evaluation
+
+	/**
+	 * Evaluates the given operator (including all its sub-operators) in an
+	 * ID-based manner. The bindings of the given input iterator are encoded
+	 * once and the results are decoded once; in between, all operators work
+	 * on {@link SolutionMapping}s. Only the bindings for the variables that
+	 * are required by the operators above the given one are decoded (see
+	 * {@link IdBasedExecutionContext#getRequiredVars}).
+	 */
+	protected QueryIterator executeIdBased ( Op op, QueryIterator input )
+	{
+		IdBasedExecutionContext ourExecCxt = (IdBasedExecutionContext) execCxt;
+		return new DecodeBindingsIterator( createIdBasedIterator(op,new EncodeBindingsIterator(input,ourExecCxt)),
+		                                   ourExecCxt,
+		                                   ourExecCxt.getRequiredVars(op) );
+	}
+
+	/**
+	 * Creates an iterator that evaluates the given operator for the solution
+	 * mappings of the given input iterator.
+	 *
+	 * @throws IllegalArgumentException if the given operator cannot be
+	 *                                  evaluated in an ID-based manner
+	 *                                  (see {@link #isIdBasedExecutionSupported})
+	 */
+	protected Iterator<SolutionMapping> createIdBasedIterator ( Op op, Iterator<SolutionMapping> input )
+	{
+		IdBasedExecutionContext ourExecCxt = (IdBasedExecutionContext) execCxt;
+
+		if ( op instanceof OpBGP )
+		{
+			if ( ((OpBGP) op).getPattern().isEmpty() ) {
+				return input;
+			}
+			return createIteratorChain( (OpBGP) op, null, input );
+		}
+
+		if ( op instanceof OpPath )
+		{
+			TriplePath tp = ((OpPath) op).getTriplePath();
+			boolean sIsVar = Var.isVar( tp.getSubject() );
+			boolean oIsVar = Var.isVar( tp.getObject() );
+			return createPathQueryIter( sIsVar,
+			                            (sIsVar) ? ourExecCxt.varDict.getId((Var) tp.getSubject()) : ourExecCxt.nodeDict.createId(tp.getSubject()),
+			                            tp.getPath(),
+			                            oIsVar,
+			                            (oIsVar) ? ourExecCxt.varDict.getId((Var) tp.getObject()) : ourExecCxt.nodeDict.createId(tp.getObject()),
+			                            input );
+		}
+
+		if ( op instanceof OpFilter )
+		{
+			ExprList supported = new ExprList();
+			ExprList remaining = new ExprList();
+			for ( Expr e : ExprList.splitConjunction(((OpFilter) op).getExprs()) )
+			{
+				if ( IdBasedFilter.isSupported(e) ) {
+					supported.add( e );
+				} else {
+					remaining.add( e );
+				}
+			}
+
+			Iterator<SolutionMapping> qIt;
+			if ( supported.isEmpty() ) {
+				qIt = createIdBasedIterator( ((OpFilter) op).getSubOp(), input );
+			} else {
+				qIt = createFilteredIterator( ((OpFilter) op).getSubOp(), supported, input );
+			}
+
+			if ( ! remaining.isEmpty() )
+			{
+				QueryIterator qIter = new DecodeBindingsIterator( qIt, ourExecCxt );
+				for ( Expr e : remaining ) {
+					qIter = new QueryIterFilterExpr( qIter, e, execCxt );
+				}
+				qIt = new EncodeBindingsIterator( qIter, ourExecCxt );
+			}
+
+			return qIt;
+		}
+
+		if ( op instanceof OpSequence )
+		{
+			Iterator<SolutionMapping> qIt = input;
+			for ( Op elt : ((OpSequence) op).getElements() ) {
+				qIt = createIdBasedIterator( elt, qIt );
+			}
+			return qIt;
+		}
+
+		if ( op instanceof OpConditional ) {
+			return new OptionalQueryIter( createIdBasedIterator(((OpConditional) op).getLeft(),input),
+			                              createSubPlan(((OpConditional) op).getRight()) );
+		}
+
+		if ( op instanceof OpUnion )
+		{
+			List<SubPlan> operands = new ArrayList<SubPlan> ();
+			collectUnionOperands( (OpUnion) op, operands );
+			return new UnionQueryIter( input, operands );
+		}
+
+		if ( op instanceof OpDistinct ) {
+			return new DistinctQueryIter( createIdBasedIterator(((OpDistinct) op).getSubOp(),input) );
+		}
+
+		if ( op instanceof OpReduced ) {
+			return new DistinctQueryIter( createIdBasedIterator(((OpReduced) op).getSubOp(),input) );
+		}
+
+		if ( op instanceof OpSlice ) {
+			return new SliceQueryIter( createIdBasedIterator(((OpSlice) op).getSubOp(),input),
+			                           ((OpSlice) op).getStart(),
+			                           ((OpSlice) op).getLength() );
+		}
+
+		if ( op instanceof OpProject )
+		{
+			List<Integer> ids = new ArrayList<Integer> ();
+			for ( Var v : ((OpProject) op).getVars() ) {
+				if ( ourExecCxt.varDict.contains(v) ) {
+					ids.add( Integer.valueOf(ourExecCxt.varDict.getId(v)) );
+				}
+			}
+
+			int[] varIds = new int[ ids.size() ];
+			for ( int i = 0; i < varIds.length; i++ ) {
+				varIds[i] = ids.get( i ).intValue();
+			}
+
+			return new ProjectQueryIter( createIdBasedIterator(((OpProject) op).getSubOp(),input), varIds );
+		}
+
+		if ( op instanceof OpOrder ) {
+			return new OrderQueryIter( createIdBasedIterator(((OpOrder) op).getSubOp(),input), ((OpOrder) op).getConditions(), ourExecCxt );
+		}
+
+		throw new IllegalArgumentException( "There is no ID-based implementation for operators of type " + op.getClass().getName() + "." );
+	}
+
+	/**
+	 * Creates an iterator that evaluates the given operator with the given
+	 * filter expressions (which must be supported by {@link IdBasedFilter}).
+	 * If the operator is a BGP, each expression is attached to the first
+	 * triple pattern iterator after which all variables mentioned in the
+	 * expression are bound. Hence, solution mappings that do not satisfy
+	 * the expression are rejected as early as possible.
+	 */
+	protected Iterator<SolutionMapping> createFilteredIterator ( Op subOp, ExprList exprs, Iterator<SolutionMapping> input )
+	{
+		if ( subOp instanceof OpBGP && ! ((OpBGP) subOp).getPattern().isEmpty() ) {
+			return createIteratorChain( (OpBGP) subOp, exprs, input );
+		}
+
+		ExprList remaining = new ExprList();
+		Iterator<SolutionMapping> qIt;
+		if ( subOp instanceof OpSequence && ((OpSequence) subOp).size() > 0 && ((OpSequence) subOp).get(0) instanceof OpBGP )
+		{
+			// For a sequence (and a conditional, see below) we may only push
+			// those expressions into the first BGP whose variables are bound
+			// by this BGP; the values of these variables do not change in
+			// the rest of the sequence.
+			OpSequence opSeq = (OpSequence) subOp;
+			OpBGP first = (OpBGP) opSeq.get( 0 );
+			ExprList pushed = selectBoundByBGP( exprs, first, remaining );
+
+			List<Op> elts = new ArrayList<Op> ( opSeq.getElements() );
+			if ( ! pushed.isEmpty() ) {
+				elts.set( 0, OpFilter.filterDirect(pushed,first) );
+			}
+			qIt = createIdBasedIterator( opSeq.copy(elts), input );
+		}
+		else if ( subOp instanceof OpConditional && ((OpConditional) subOp).getLeft() instanceof OpBGP )
+		{
+			OpConditional opCond = (OpConditional) subOp;
+			OpBGP left = (OpBGP) opCond.getLeft();
+			ExprList pushed = selectBoundByBGP( exprs, left, remaining );
+
+			Op newLeft = ( pushed.isEmpty() ) ? left : OpFilter.filterDirect( pushed, left );
+			qIt = createIdBasedIterator( opCond.copy(newLeft,opCond.getRight()), input );
+		}
+		else
+		{
+			remaining = exprs;
+			qIt = createIdBasedIterator( subOp, input );
+		}
+
+		if ( remaining.isEmpty() ) {
+			return qIt;
+		}
+
+		List<IdBasedFilter> filters = new ArrayList<IdBasedFilter> ();
+		for ( Expr e : remaining ) {
+			filters.add( new IdBasedFilter(e,(IdBasedExecutionContext) execCxt) );
+		}
+		return new FilterQueryIter( qIt, filters );
+	}
+
+	/**
+	 * Returns a sub-plan that evaluates the given operator in an ID-based
+	 * manner.
+	 */
+	protected SubPlan createSubPlan ( final Op op )
+	{
+		return new SubPlan() {
+			public Iterator<SolutionMapping> execute ( Iterator<SolutionMapping> input ) { return createIdBasedIterator( op, input ); }
+		};
+	}
+
+
 	// helper methods
 
+	/**
+	 * Returns true if the given operator and all its sub-operators have an
+	 * ID-based implementation. Other operators (e.g. GROUP BY or BIND) may
+	 * introduce variables and RDF terms that are unknown to the dictionaries
+	 * and, thus, are evaluated by ARQ (GROUP BY consumes ID-based solution
+	 * mappings nonetheless, see {@link #execute(OpGroup,QueryIterator)}).
+	 */
+	protected boolean isIdBasedExecutionSupported ( Op op )
+	{
+		if ( op instanceof OpBGP ) {
+			return true;
+		}
+
+		if ( op instanceof OpPath ) {
+			return PathQueryIter.isSupported( ((OpPath) op).getTriplePath().getPath() );
+		}
+
+		if ( op instanceof OpFilter ) {
+			return isIdBasedExecutionSupported( ((OpFilter) op).getSubOp() );
+		}
+
+		if ( op instanceof OpSequence )
+		{
+			for ( Op elt : ((OpSequence) op).getElements() ) {
+				if ( ! isIdBasedExecutionSupported(elt) ) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		if ( op instanceof OpConditional || op instanceof OpUnion ) {
+			return    isIdBasedExecutionSupported( ((Op2) op).getLeft() )
+			       && isIdBasedExecutionSupported( ((Op2) op).getRight() );
+		}
+
+		if (    op instanceof OpDistinct || op instanceof OpReduced
+		     || op instanceof OpSlice || op instanceof OpProject || op instanceof OpOrder ) {
+			return isIdBasedExecutionSupported( ((Op1) op).getSubOp() );
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns true if BGPs may be evaluated with ID-based iterators in the
+	 * current execution context.
+	 */
+	protected boolean isIdBasedExecutionPossible ()
+	{
+		return execCxt.getDataset().getDefaultGraph() instanceof QueriedDatasetWrappingJenaGraph;
+	}
+
+	/**
+	 * Creates the iterator that evaluates the given triple pattern (with the
+	 * given filters attached) for the solution mappings of the given input
+	 * iterator.
+	 */
+	protected Iterator<SolutionMapping> createTriplePatternQueryIter ( TriplePattern tp, Iterator<SolutionMapping> input, List<IdBasedFilter> filters )
+	{
+		return new TriplePatternQueryIter( tp, input, (IdBasedExecutionContext) execCxt, filters );
+	}
+
+	/**
+	 * Creates the iterator that evaluates the i-th triple pattern of the
+	 * given chain (with the given filters attached) for the solution mappings
+	 * of the given input iterator. This implementation ignores the other
+	 * patterns of the chain; subclasses may override this method if the
+	 * iterator depends on the patterns evaluated after the i-th pattern.
+	 */
+	protected Iterator<SolutionMapping> createTriplePatternQueryIter ( TriplePattern[] chain, int i, Iterator<SolutionMapping> input, List<IdBasedFilter> filters )
+	{
+		return createTriplePatternQueryIter( chain[i], input, filters );
+	}
+
+	/**
+	 * Creates the iterator that evaluates the given property path pattern
+	 * for the solution mappings of the given input iterator. The subject and
+	 * the object are identifiers of query variables (if the corresponding
+	 * flag is true) or of RDF terms.
+	 */
+	protected Iterator<SolutionMapping> createPathQueryIter ( boolean sIsVar, int s, Path path, boolean oIsVar, int o, Iterator<SolutionMapping> input )
+	{
+		return new PathQueryIter( sIsVar, s, path, oIsVar, o, input, (IdBasedExecutionContext) execCxt );
+	}
+
+	/**
+	 * Creates the chain of ID-based iterators that evaluates the given BGP.
+	 *
+	 * @param exprs filter expressions to be evaluated within the chain (may
+	 *              be null); all of these expressions must be supported
+	 *              by {@link IdBasedFilter}
+	 */
+	final protected Iterator<SolutionMapping> createIteratorChain ( final OpBGP opBGP, final ExprList exprs, Iterator<SolutionMapping> input )
+	{
+		SubPlan chain = new SubPlan() {
+			public Iterator<SolutionMapping> execute ( Iterator<SolutionMapping> input ) { return createSequentialIteratorChain( opBGP, exprs, input ); }
+		};
+		return executeIteratorChain( chain, input );
+	}
+
+	/**
+	 * Evaluates the given chain of ID-based iterators (that has been created
+	 * for a BGP) for the solution mappings of the given input iterator.
+	 * This implementation simply creates a single copy of the chain that
+	 * consumes the input. Subclasses may override this method to evaluate
+	 * multiple copies of the chain in parallel (see
+	 * {@link org.squin.dataset.query.arq.iterators.ParallelQueryIter}).
+	 */
+	protected Iterator<SolutionMapping> executeIteratorChain ( SubPlan chain, Iterator<SolutionMapping> input )
+	{
+		return chain.execute( input );
+	}
+
+	/**
+	 * Creates a single chain of ID-based iterators that evaluates the given
+	 * BGP; that is, one iterator for each triple pattern.
+	 */
+	final protected Iterator<SolutionMapping> createSequentialIteratorChain ( OpBGP opBGP, ExprList exprs, Iterator<SolutionMapping> input )
+	{
+		IdBasedExecutionContext ourExecCxt = (IdBasedExecutionContext) execCxt;
+		VarDictionary varDict = ourExecCxt.varDict;
+		NodeDictionary nodeDict = ourExecCxt.nodeDict;
+
+		List<com.hp.hpl.jena.graph.Triple> pattern = opBGP.getPattern().getList();
+		List<List<IdBasedFilter>> filters = placeFilters( pattern, exprs );
+		TriplePattern[] encoded = encode( opBGP.getPattern() );
+
+		Iterator<SolutionMapping> qIt = input;
+		for ( int i = 0; i < pattern.size(); i++ ) {
+			qIt = createTriplePatternQueryIter( encoded, i, qIt, filters.get(i) );
+		}
+
+		return qIt;
+	}
+
+	/**
+	 * Determines for each of the given filter expressions the index of the
+	 * first triple pattern after which all variables mentioned in the
+	 * expression are bound. Expressions that mention variables not bound by
+	 * the given pattern are attached to the last triple pattern.
+	 */
+	final protected List<List<IdBasedFilter>> placeFilters ( List<com.hp.hpl.jena.graph.Triple> pattern, ExprList exprs )
+	{
+		List<List<IdBasedFilter>> result = new ArrayList<List<IdBasedFilter>> ( pattern.size() );
+		for ( int i = 0; i < pattern.size(); i++ ) {
+			result.add( new ArrayList<IdBasedFilter> () );
+		}
+
+		if ( exprs == null ) {
+			return result;
+		}
+
+		for ( Expr e : exprs )
+		{
+			Set<Var> unbound = new HashSet<Var> ( e.getVarsMentioned() );
+			int pos = 0;
+			while ( ! unbound.isEmpty() && pos < pattern.size() - 1 ) {
+				removeVars( unbound, pattern.get(pos) );
+				if ( ! unbound.isEmpty() ) {
+					pos++;
+				}
+			}
+
+			result.get( pos ).add( new IdBasedFilter(e,(IdBasedExecutionContext) execCxt) );
+		}
+
+		return result;
+	}
+
+	/**
+	 * Adds the operands of the given union (and of all unions nested directly
+	 * in it) to the given list.
+	 */
+	protected void collectUnionOperands ( OpUnion opUnion, List<SubPlan> operands )
+	{
+		if ( opUnion.getLeft() instanceof OpUnion ) {
+			collectUnionOperands( (OpUnion) opUnion.getLeft(), operands );
+		} else {
+			operands.add( createSubPlan(opUnion.getLeft()) );
+		}
+
+		if ( opUnion.getRight() instanceof OpUnion ) {
+			collectUnionOperands( (OpUnion) opUnion.getRight(), operands );
+		} else {
+			operands.add( createSubPlan(opUnion.getRight()) );
+		}
+	}
+
+	/**
+	 * Returns those of the given expressions whose variables are all bound by
+	 * the given BGP; all other expressions are added to the given list of
+	 * remaining expressions.
+	 */
+	static protected ExprList selectBoundByBGP ( ExprList exprs, OpBGP opBGP, ExprList remaining )
+	{
+		Set<Var> vars = new HashSet<Var> ();
+		for ( com.hp.hpl.jena.graph.Triple t : opBGP.getPattern().getList() ) {
+			addVars( vars, t );
+		}
+
+		ExprList result = new ExprList();
+		for ( Expr e : exprs )
+		{
+			if ( vars.containsAll(e.getVarsMentioned()) ) {
+				result.add( e );
+			} else {
+				remaining.add( e );
+			}
+		}
+		return result;
+	}
+
+	static protected void addVars ( Set<Var> vars, com.hp.hpl.jena.graph.Triple t )
+	{
+		if ( Var.isVar(t.getSubject()) ) { vars.add( (Var) t.getSubject() ); }
+		if ( Var.isVar(t.getPredicate()) ) { vars.add( (Var) t.getPredicate() ); }
+		if ( Var.isVar(t.getObject()) ) { vars.add( (Var) t.getObject() ); }
+	}
+
+	static protected void removeVars ( Set<Var> vars, com.hp.hpl.jena.graph.Triple t )
+	{
+		if ( Var.isVar(t.getSubject()) ) { vars.remove( t.getSubject() ); }
+		if ( Var.isVar(t.getPredicate()) ) { vars.remove( t.getPredicate() ); }
+		if ( Var.isVar(t.getObject()) ) { vars.remove( t.getObject() ); }
+	}
+
+	/**
+	 * Returns the ID-based representations of the triple patterns of the
+	 * given BGP. Subclasses may override this method in order to reuse
+	 * representations that have been created before.
+	 */
+	protected TriplePattern[] encode ( BasicPattern pattern )
+	{
+		IdBasedExecutionContext ourExecCxt = (IdBasedExecutionContext) execCxt;
+		TriplePattern[] result = new TriplePattern[ pattern.size() ];
+		for ( int i = 0; i < result.length; i++ ) {
+			result[i] = encode( pattern.get(i), ourExecCxt.varDict, ourExecCxt.nodeDict );
+		}
+		return result;
+	}
+
 	final protected TriplePattern encode ( com.hp.hpl.jena.graph.Triple tp, VarDictionary varDict, NodeDictionary nodeDict )
 	{
 		boolean sIsVar = Var.isVar( tp.getSubject() );
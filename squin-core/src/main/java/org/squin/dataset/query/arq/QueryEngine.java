@@ -38,6 +38,9 @@ public class QueryEngine extends QueryEngineMain
 {
 	final public boolean RECORD_PROVENANCE = false;
 
+	/** the capacity of the cache for triple pattern matches (0 disables the cache) */
+	final public int MATCH_CACHE_CAPACITY = MatchCache.DEFAULT_CAPACITY;
+
 	/**
 	 * The factory object that creates an {@link QueryEngine}.
 	 */
@@ -106,6 +109,10 @@ public class QueryEngine extends QueryEngineMain
 		}
 
 		IdBasedExecutionContext execCxt = createExecutionContext ( op, dsg, context );
+		execCxt.setRequiredVars( RequiredVars.analyze(op) );
+		if ( MATCH_CACHE_CAPACITY > 0 ) {
+			execCxt.setMatchCache( new MatchCache(MATCH_CACHE_CAPACITY) );
+		}
 		return createIteratorChain( op, input, execCxt );
 	}
 
@@ -0,0 +1,278 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.OpVars;
+import com.hp.hpl.jena.sparql.algebra.op.Op1;
+import com.hp.hpl.jena.sparql.algebra.op.Op2;
+import com.hp.hpl.jena.sparql.algebra.op.OpAssign;
+import com.hp.hpl.jena.sparql.algebra.op.OpConditional;
+import com.hp.hpl.jena.sparql.algebra.op.OpExtend;
+import com.hp.hpl.jena.sparql.algebra.op.OpFilter;
+import com.hp.hpl.jena.sparql.algebra.op.OpGroup;
+import com.hp.hpl.jena.sparql.algebra.op.OpJoin;
+import com.hp.hpl.jena.sparql.algebra.op.OpLeftJoin;
+import com.hp.hpl.jena.sparql.algebra.op.OpN;
+import com.hp.hpl.jena.sparql.algebra.op.OpOrder;
+import com.hp.hpl.jena.sparql.algebra.op.OpProject;
+import com.hp.hpl.jena.sparql.algebra.op.OpSequence;
+import com.hp.hpl.jena.sparql.algebra.op.OpSlice;
+import com.hp.hpl.jena.sparql.algebra.op.OpUnion;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.core.VarExprList;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprAggregator;
+import com.hp.hpl.jena.sparql.expr.ExprFunctionOp;
+import com.hp.hpl.jena.sparql.expr.ExprList;
+import com.hp.hpl.jena.sparql.expr.ExprVisitorBase;
+import com.hp.hpl.jena.sparql.expr.ExprWalker;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCountDistinct;
+
+
+/**
+ * Determines for the operators of an operator tree which variables of the
+ * solutions of an operator are used by the operators above it.
+ * When an operator is evaluated in an ID-based manner (and its solutions
+ * are consumed by ARQ operators) only the bindings for these variables have
+ * to be decoded.
+ * The analysis is conservative: for operators that are not covered here
+ * (and for operators below them) all variables are required.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class RequiredVars
+{
+	// members
+
+	/**
+	 * maps the (identity of the) operators to their required variables; a
+	 * null value (or a missing entry) means all variables are required
+	 */
+	final protected Map<Op,Set<Var>> requiredVars = new IdentityHashMap<Op,Set<Var>> ();
+
+
+	// initialization
+
+	protected RequiredVars ()
+	{
+	}
+
+	/**
+	 * Analyzes the operator tree of which the given operator is root.
+	 * All variables of the root operator are required.
+	 */
+	static public RequiredVars analyze ( Op root )
+	{
+		RequiredVars result = new RequiredVars();
+		result.analyze( root, null );
+		return result;
+	}
+
+
+	// accessors
+
+	/**
+	 * Returns the variables of the given operator that are required by the
+	 * operators above it, or null if all variables are required (or the
+	 * operator is not part of the analyzed tree).
+	 */
+	public Set<Var> get ( Op op )
+	{
+		return requiredVars.get( op );
+	}
+
+
+	// helper methods
+
+	/**
+	 * @param required the variables required by the operators above the
+	 *                 given operator, or null for all variables
+	 */
+	protected void analyze ( Op op, Set<Var> required )
+	{
+		requiredVars.put( op, required );
+
+		if ( op instanceof OpProject ) {
+			analyze( ((OpProject) op).getSubOp(), new HashSet<Var>(((OpProject) op).getVars()) );
+		}
+		else if ( op instanceof OpFilter ) {
+			analyze( ((OpFilter) op).getSubOp(), union(required,((OpFilter) op).getExprs()) );
+		}
+		else if ( op instanceof OpSlice ) {
+			analyze( ((OpSlice) op).getSubOp(), required );
+		}
+		else if ( op instanceof OpOrder )
+		{
+			Set<Var> sub = copy( required );
+			for ( SortCondition c : ((OpOrder) op).getConditions() ) {
+				sub = union( sub, c.getExpression() );
+			}
+			analyze( ((OpOrder) op).getSubOp(), sub );
+		}
+		else if ( op instanceof OpExtend ) {
+			analyze( ((OpExtend) op).getSubOp(), union(required,((OpExtend) op).getVarExprList()) );
+		}
+		else if ( op instanceof OpAssign ) {
+			analyze( ((OpAssign) op).getSubOp(), union(required,((OpAssign) op).getVarExprList()) );
+		}
+		else if ( op instanceof OpGroup ) {
+			analyze( ((OpGroup) op).getSubOp(), groupInput((OpGroup) op) );
+		}
+		else if ( op instanceof OpUnion ) {
+			analyze( ((OpUnion) op).getLeft(), required );
+			analyze( ((OpUnion) op).getRight(), required );
+		}
+		else if ( op instanceof OpJoin || op instanceof OpLeftJoin || op instanceof OpConditional )
+		{
+			// each side has to provide the variables that are required above
+			// and the variables that it shares with the other side (or that
+			// are used by the expressions of the left join)
+			Op2 op2 = (Op2) op;
+			Set<Var> left = union( required, OpVars.allVars(op2.getRight()) );
+			Set<Var> right = union( required, OpVars.allVars(op2.getLeft()) );
+			if ( op instanceof OpLeftJoin && ((OpLeftJoin) op).getExprs() != null ) {
+				left = union( left, ((OpLeftJoin) op).getExprs() );
+				right = union( right, ((OpLeftJoin) op).getExprs() );
+			}
+			analyze( op2.getLeft(), left );
+			analyze( op2.getRight(), right );
+		}
+		else if ( op instanceof OpSequence )
+		{
+			List<Op> elts = ((OpSequence) op).getElements();
+			for ( Op elt : elts )
+			{
+				Set<Var> sub = copy( required );
+				for ( Op other : elts ) {
+					if ( other != elt ) {
+						sub = union( sub, OpVars.allVars(other) );
+					}
+				}
+				analyze( elt, sub );
+			}
+		}
+		else if ( op instanceof OpN )
+		{
+			for ( Op elt : ((OpN) op).getElements() ) {
+				analyze( elt, null );
+			}
+		}
+		else
+		{
+			// all other operators (e.g. DISTINCT, whose result depends on
+			// all variables) require all variables of their sub-operators
+			analyzeAllRequired( op );
+		}
+	}
+
+	protected void analyzeAllRequired ( Op op )
+	{
+		if ( op instanceof Op1 ) {
+			analyze( ((Op1) op).getSubOp(), null );
+		}
+		else if ( op instanceof Op2 ) {
+			analyze( ((Op2) op).getLeft(), null );
+			analyze( ((Op2) op).getRight(), null );
+		}
+	}
+
+	/**
+	 * Returns the variables required to evaluate the given grouping, or
+	 * null if all variables are required.
+	 */
+	static protected Set<Var> groupInput ( OpGroup opGroup )
+	{
+		Set<Var> result = union( new HashSet<Var>(), opGroup.getGroupVars() );
+		for ( ExprAggregator agg : opGroup.getAggregators() )
+		{
+			Expr e = agg.getAggregator().getExpr();
+			if ( e == null ) {
+				// COUNT(*) only depends on the number of solutions, but
+				// COUNT(DISTINCT *) depends on all variables
+				if ( agg.getAggregator() instanceof AggCountDistinct ) {
+					return null;
+				}
+			}
+			else {
+				result = union( result, e );
+			}
+		}
+		return result;
+	}
+
+	static protected Set<Var> copy ( Set<Var> vars )
+	{
+		return ( vars == null ) ? null : new HashSet<Var> ( vars );
+	}
+
+	static protected Set<Var> union ( Set<Var> vars, Set<Var> others )
+	{
+		if ( vars == null ) {
+			return null;
+		}
+		Set<Var> result = new HashSet<Var> ( vars );
+		result.addAll( others );
+		return result;
+	}
+
+	static protected Set<Var> union ( Set<Var> vars, ExprList exprs )
+	{
+		for ( Expr e : exprs ) {
+			vars = union( vars, e );
+		}
+		return vars;
+	}
+
+	static protected Set<Var> union ( Set<Var> vars, VarExprList exprs )
+	{
+		if ( vars == null ) {
+			return null;
+		}
+
+		Set<Var> result = new HashSet<Var> ( vars );
+		for ( Var v : exprs.getVars() )
+		{
+			result.add( v );
+			if ( exprs.hasExpr(v) ) {
+				result = union( result, exprs.getExpr(v) );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the variables mentioned in the given expression. Returns null
+	 * (i.e. all variables) if the expression contains a graph pattern
+	 * (e.g. EXISTS) because the variables of such a pattern are not covered
+	 * by {@link Expr#getVarsMentioned}.
+	 */
+	static protected Set<Var> union ( Set<Var> vars, Expr e )
+	{
+		if ( vars == null || e == null ) {
+			return vars;
+		}
+
+		final boolean[] containsPattern = new boolean[] { false };
+		ExprWalker.walk( new ExprVisitorBase() {
+			@Override
+			public void visit ( ExprFunctionOp funcOp ) { containsPattern[0] = true; }
+		}, e );
+
+		if ( containsPattern[0] ) {
+			return null;
+		}
+
+		return union( vars, e.getVarsMentioned() );
+	}
+
+}
@@ -60,6 +60,14 @@ public class VarDictionary
 		return  i.intValue();
 	}
 
+	/**
+	 * Returns true if the given query variable is known to this dictionary.
+	 */
+	final public boolean contains ( Var v )
+	{
+		return dictVarName2Id.containsKey( v.getVarName() );
+	}
+
 	/**
 	 * Returns the number of query variables known by this dictionary.
 	 */
@@ -5,13 +5,15 @@
 package org.squin.dataset.query.arq.iterators;
 
 import java.util.Iterator;
+import java.util.Set;
 
 import org.openjena.atlas.lib.Closeable;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.core.Var;
 import com.hp.hpl.jena.sparql.engine.iterator.QueryIter;
 import com.hp.hpl.jena.sparql.engine.binding.Binding;
 import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
 
-import org.squin.dataset.jenacommon.NodeDictionary;
 import org.squin.dataset.query.SolutionMapping;
 import org.squin.dataset.query.arq.IdBasedExecutionContext;
 import org.squin.dataset.query.arq.VarDictionary;
@@ -19,6 +21,10 @@ import org.squin.dataset.query.arq.VarDictionary;
 
 /**
  * This iterator converts {@link SolutionMapping}s to {@link Binding}s.
+ * If the variables that are required by the consumer of this iterator are
+ * known only the bindings for these variables are decoded; the bindings for
+ * all other variables (e.g. variables that have only been used for joins)
+ * are dropped.
  *
  * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
  */
@@ -26,22 +32,58 @@ public class DecodeBindingsIterator extends QueryIter
 {
 	// members
 
-	final protected NodeDictionary nodeDict;
+	final protected IdBasedExecutionContext execCxt;
 	final protected VarDictionary varDict;
 
 	/** the input iterator consumed by this one */
 	final protected Iterator<SolutionMapping> input;
 
+	/**
+	 * the identifiers of the variables to be decoded, or null if all
+	 * variables have to be decoded
+	 */
+	final protected int[] varIds;
+
+	// buffers for decoding the bindings of one solution mapping at once
+	protected int[] curVarIds = new int[0];
+	protected int[] curNodeIds = new int[0];
+	protected Node[] curNodes = new Node[0];
+
 
 	// initialization
 
 	public DecodeBindingsIterator ( Iterator<SolutionMapping> input, IdBasedExecutionContext execCxt )
+	{
+		this( input, execCxt, null );
+	}
+
+	/**
+	 * @param requiredVars the variables to be decoded, or null if all
+	 *                     variables have to be decoded
+	 */
+	public DecodeBindingsIterator ( Iterator<SolutionMapping> input, IdBasedExecutionContext execCxt, Set<Var> requiredVars )
 	{
 		super( execCxt );
 
 		this.input = input;
-		this.nodeDict = execCxt.nodeDict;
+		this.execCxt = execCxt;
 		this.varDict = execCxt.varDict;
+
+		if ( requiredVars == null ) {
+			varIds = null;
+		}
+		else
+		{
+			int[] tmp = new int[ requiredVars.size() ];
+			int i = 0;
+			for ( Var v : requiredVars ) {
+				if ( varDict.contains(v) ) {
+					tmp[i++] = varDict.getId( v );
+				}
+			}
+			varIds = new int[i];
+			System.arraycopy( tmp, 0, varIds, 0, i );
+		}
 	}
 
 	// implementation of the QueryIteratorBase abstract methods
@@ -55,22 +97,51 @@ public class DecodeBindingsIterator extends QueryIter
 	{
 		SolutionMapping curInput = input.next();
 
-		BindingMap curOutput = new BindingMap();
-		for ( int i = curInput.size() - 1; i >= 0; i-- )
+		int maxCount = ( varIds == null ) ? curInput.size() : varIds.length;
+		if ( curNodeIds.length < maxCount ) {
+			curVarIds = new int[maxCount];
+			curNodeIds = new int[maxCount];
+			curNodes = new Node[maxCount];
+		}
+
+		// collect the bindings to be decoded
+		int count = 0;
+		if ( varIds == null )
+		{
+			for ( int i = curInput.size() - 1; i >= 0; i-- ) {
+				if ( curInput.contains(i) ) {
+					curVarIds[count] = i;
+					curNodeIds[count++] = curInput.get( i );
+				}
+			}
+		}
+		else
 		{
-			if ( curInput.contains(i) ) {
-				curOutput.add( varDict.getVar(i),
-				               nodeDict.getNode(curInput.get(i)) );
+			for ( int i = 0; i < varIds.length; i++ ) {
+				if ( varIds[i] < curInput.size() && curInput.contains(varIds[i]) ) {
+					curVarIds[count] = varIds[i];
+					curNodeIds[count++] = curInput.get( varIds[i] );
+				}
 			}
 		}
 
+		execCxt.decode( curNodeIds, count, curNodes );
+
+		BindingMap curOutput = new BindingMap();
+		for ( int i = 0; i < count; i++ ) {
+			curOutput.add( varDict.getVar(curVarIds[i]), curNodes[i] );
+		}
+
 		return curOutput;
 	}
 
 	protected void requestCancel ()
 	{
-		// Do we have to cancel the (chain of) input iterator(s) ?
-		throw new UnsupportedOperationException( "TODO (DecodeBindingsIterator.requestCancel)" );
+		// This method may be called by another thread than the one that
+		// consumes the input iterators. Hence, we do not close the input
+		// here but let the ID-based iterators notice the cancellation via
+		// the execution context (they will be closed by ARQ later on).
+		execCxt.cancel();
 	}
 
 	protected void closeIterator ()
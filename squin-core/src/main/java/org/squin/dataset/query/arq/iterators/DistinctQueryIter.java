@@ -0,0 +1,118 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq.iterators;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.openjena.atlas.lib.Closeable;
+
+import org.squin.dataset.query.SolutionMapping;
+
+
+/**
+ * An ID-based implementation of DISTINCT.
+ * Since equal RDF terms have the same identifier, duplicates are detected
+ * by hashing the identifiers of the solution mappings; no decoding is
+ * necessary.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class DistinctQueryIter implements Iterator<SolutionMapping>, Closeable
+{
+	// members
+
+	/** the input iterator consumed by this one */
+	final protected Iterator<SolutionMapping> input;
+
+	/** the keys of all solution mappings returned so far */
+	final protected Set<Key> seen = new HashSet<Key> ();
+
+	protected SolutionMapping nextMapping = null;
+
+
+	// initialization
+
+	public DistinctQueryIter ( Iterator<SolutionMapping> input )
+	{
+		this.input = input;
+	}
+
+
+	// implementation of the Iterator interface
+
+	public boolean hasNext ()
+	{
+		while ( nextMapping == null && input.hasNext() )
+		{
+			SolutionMapping m = input.next();
+			if ( seen.add(new Key(m)) ) {
+				nextMapping = m;
+			}
+		}
+
+		return nextMapping != null;
+	}
+
+	public SolutionMapping next ()
+	{
+		if ( ! hasNext() ) {
+			throw new NoSuchElementException();
+		}
+
+		SolutionMapping result = nextMapping;
+		nextMapping = null;
+		return result;
+	}
+
+	public void remove ()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+	// implementation of the Closable interface
+
+	public void close ()
+	{
+		seen.clear();
+		OptionalQueryIter.close( input );
+	}
+
+
+	/**
+	 * The identifiers of a solution mapping, used as a hash key.
+	 */
+	static protected class Key
+	{
+		final protected int[] ids;
+		final protected int hash;
+
+		public Key ( SolutionMapping m )
+		{
+			ids = new int[ m.size() ];
+			for ( int i = 0; i < ids.length; i++ ) {
+				ids[i] = m.get( i );
+			}
+			hash = Arrays.hashCode( ids );
+		}
+
+		@Override
+		public int hashCode ()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals ( Object o )
+		{
+			return ( o instanceof Key ) && Arrays.equals( ids, ((Key) o).ids );
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq.iterators;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.openjena.atlas.lib.Closeable;
+
+import org.squin.dataset.query.SolutionMapping;
+import org.squin.dataset.query.arq.IdBasedFilter;
+
+
+/**
+ * An iterator that provides those of its input solution mappings which
+ * satisfy all of the given filters. This iterator is used for filters that
+ * cannot be attached to a triple pattern iterator (e.g. filters over a
+ * union).
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class FilterQueryIter implements Iterator<SolutionMapping>, Closeable
+{
+	// members
+
+	/** the input iterator consumed by this one */
+	final protected Iterator<SolutionMapping> input;
+
+	final protected IdBasedFilter[] filters;
+
+	protected SolutionMapping nextMapping = null;
+
+
+	// initialization
+
+	public FilterQueryIter ( Iterator<SolutionMapping> input, List<IdBasedFilter> filters )
+	{
+		this.input = input;
+		this.filters = filters.toArray( new IdBasedFilter[filters.size()] );
+	}
+
+
+	// implementation of the Iterator interface
+
+	public boolean hasNext ()
+	{
+		while ( nextMapping == null && input.hasNext() )
+		{
+			SolutionMapping m = input.next();
+
+			boolean accepted = true;
+			for ( int i = 0; accepted && i < filters.length; i++ ) {
+				accepted = filters[i].accept( m );
+			}
+
+			if ( accepted ) {
+				nextMapping = m;
+			}
+		}
+
+		return nextMapping != null;
+	}
+
+	public SolutionMapping next ()
+	{
+		if ( ! hasNext() ) {
+			throw new NoSuchElementException();
+		}
+
+		SolutionMapping result = nextMapping;
+		nextMapping = null;
+		return result;
+	}
+
+	public void remove ()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+	// implementation of the Closable interface
+
+	public void close ()
+	{
+		OptionalQueryIter.close( input );
+	}
+
+}
@@ -0,0 +1,533 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq.iterators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.openjena.atlas.lib.Closeable;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.algebra.op.OpGroup;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.core.VarExprList;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIter;
+import com.hp.hpl.jena.sparql.expr.ExprAggregator;
+import com.hp.hpl.jena.sparql.expr.ExprVar;
+import com.hp.hpl.jena.sparql.expr.NodeValue;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCount;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCountDistinct;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCountVar;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCountVarDistinct;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggMax;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggMaxDistinct;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggMin;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggMinDistinct;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggSample;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggSampleDistinct;
+import com.hp.hpl.jena.sparql.expr.aggregate.Aggregator;
+
+import org.squin.dataset.query.SolutionMapping;
+import org.squin.dataset.query.arq.IdBasedExecutionContext;
+import org.squin.dataset.query.arq.VarDictionary;
+import org.squin.util.IntHashMap;
+import org.squin.util.IntHashSet;
+
+
+/**
+ * An ID-based implementation of GROUP BY (with aggregation) that consumes
+ * {@link SolutionMapping}s and returns {@link Binding}s.
+ * The solution mappings are grouped on the identifiers of the values of
+ * the grouping variables, using a hash table with open addressing over
+ * primitive arrays. COUNT, COUNT DISTINCT and SAMPLE are computed without
+ * decoding any RDF term; MIN and MAX decode each distinct candidate value
+ * at most once (to compare it as ARQ does). Only the final group keys and
+ * aggregated values are decoded.
+ * Grouping on expressions and aggregators other than the ones mentioned are
+ * not supported (see {@link #isSupported}).
+ * As ARQ does, this iterator returns a single solution with the values of
+ * the aggregators for empty groups if its input is empty.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class GroupQueryIter extends QueryIter
+{
+	// members
+
+	final protected IdBasedExecutionContext execCxt;
+
+	/** the input iterator consumed by this one */
+	final protected Iterator<SolutionMapping> input;
+
+	final protected List<Var> groupVars;
+	final protected List<ExprAggregator> aggregators;
+
+	/** the identifiers of the grouping variables (-1 for unknown variables) */
+	final protected int[] keyVarIds;
+
+	/** the accumulators, one for each aggregator */
+	final protected Accumulator[] accs;
+
+	/**
+	 * the keys of all groups, i.e. the identifiers of the values of the
+	 * grouping variables for the first group, followed by those for the
+	 * second group, etc.
+	 */
+	protected int[] groupKeys = new int[16];
+	protected int groupCount = 0;
+
+	/** hash table over the groups; contains group indexes + 1 (0 for empty slots) */
+	protected int[] table = new int[16];
+
+	/** index of the next group to be returned (-1 until the input has been consumed) */
+	protected int nextGroup = -1;
+
+	/** true if the input was empty and the solution for empty groups has not been returned yet */
+	protected boolean pendingEmptySolution = false;
+
+	// buffers for decoding one solution at once
+	protected int[] curIds;
+	protected Node[] curNodes;
+
+	/** the values of the RDF terms compared by MIN and MAX accumulators */
+	final protected IntHashMap<NodeValue> nodeValues = new IntHashMap<NodeValue> ();
+	final protected int[] decodeBuffer = new int[1];
+	final protected Node[] decodedBuffer = new Node[1];
+
+
+	// initialization
+
+	public GroupQueryIter ( Iterator<SolutionMapping> input, OpGroup opGroup, IdBasedExecutionContext execCxt )
+	{
+		super( execCxt );
+
+		this.input = input;
+		this.execCxt = execCxt;
+		this.groupVars = opGroup.getGroupVars().getVars();
+		this.aggregators = opGroup.getAggregators();
+
+		VarDictionary varDict = execCxt.varDict;
+		keyVarIds = new int[ groupVars.size() ];
+		for ( int i = 0; i < keyVarIds.length; i++ ) {
+			keyVarIds[i] = getVarId( groupVars.get(i), varDict );
+		}
+
+		accs = new Accumulator[ aggregators.size() ];
+		for ( int i = 0; i < accs.length; i++ ) {
+			accs[i] = createAccumulator( aggregators.get(i).getAggregator(), varDict );
+		}
+
+		curIds = new int[ keyVarIds.length + accs.length ];
+		curNodes = new Node[ curIds.length ];
+	}
+
+	/**
+	 * Returns true if the given grouping can be evaluated by this iterator;
+	 * that is, it groups on variables only and uses COUNT, SAMPLE, MIN, or
+	 * MAX aggregators whose expression (if any) is a variable.
+	 */
+	static public boolean isSupported ( OpGroup opGroup )
+	{
+		VarExprList groupVars = opGroup.getGroupVars();
+		for ( Var v : groupVars.getVars() ) {
+			if ( groupVars.hasExpr(v) ) {
+				return false;
+			}
+		}
+
+		for ( ExprAggregator agg : opGroup.getAggregators() )
+		{
+			Aggregator a = agg.getAggregator();
+			if ( a instanceof AggCount || a instanceof AggCountDistinct ) {
+				continue;
+			}
+
+			boolean supportedType =    a instanceof AggCountVar || a instanceof AggCountVarDistinct
+			                        || a instanceof AggSample || a instanceof AggSampleDistinct
+			                        || a instanceof AggMin || a instanceof AggMinDistinct
+			                        || a instanceof AggMax || a instanceof AggMaxDistinct;
+			if ( ! supportedType || ! (a.getExpr() instanceof ExprVar) ) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	// implementation of the QueryIteratorBase abstract methods
+
+	protected boolean hasNextBinding ()
+	{
+		if ( nextGroup == -1 ) {
+			consumeInput();
+		}
+
+		return pendingEmptySolution || nextGroup < groupCount;
+	}
+
+	protected Binding moveToNextBinding ()
+	{
+		BindingMap curOutput = new BindingMap();
+
+		if ( pendingEmptySolution )
+		{
+			pendingEmptySolution = false;
+			for ( ExprAggregator agg : aggregators ) {
+				Node n = agg.getAggregator().getValueEmpty();
+				if ( n != null ) {
+					curOutput.add( agg.getVar(), n );
+				}
+			}
+			return curOutput;
+		}
+
+		int g = nextGroup++;
+
+		// decode the group key and the aggregated values at once
+		int count = 0;
+		for ( int i = 0; i < keyVarIds.length; i++ ) {
+			curIds[count++] = groupKeys[ g*keyVarIds.length + i ];
+		}
+		for ( int i = 0; i < accs.length; i++ ) {
+			curIds[count++] = accs[i].getValueId( g );
+		}
+		execCxt.decode( curIds, count, curNodes );
+
+		for ( int i = 0; i < keyVarIds.length; i++ ) {
+			if ( curNodes[i] != null ) {
+				curOutput.add( groupVars.get(i), curNodes[i] );
+			}
+		}
+		for ( int i = 0; i < accs.length; i++ )
+		{
+			Node n = ( curIds[keyVarIds.length + i] != SolutionMapping.UNBOUND ) ? curNodes[keyVarIds.length + i] : accs[i].getValue( g );
+			if ( n != null ) {
+				curOutput.add( aggregators.get(i).getVar(), n );
+			}
+		}
+
+		return curOutput;
+	}
+
+	protected void requestCancel ()
+	{
+		// see DecodeBindingsIterator.requestCancel
+		execCxt.cancel();
+	}
+
+	protected void closeIterator ()
+	{
+		if ( input instanceof Closeable ) {
+			( (Closeable) input ).close();
+		}
+	}
+
+
+	// helper methods
+
+	protected void consumeInput ()
+	{
+		int[] key = new int[ keyVarIds.length ];
+		while ( input.hasNext() && ! execCxt.isCancelled() )
+		{
+			SolutionMapping m = input.next();
+			for ( int i = 0; i < keyVarIds.length; i++ ) {
+				key[i] = getValueId( m, keyVarIds[i] );
+			}
+
+			int g = getGroup( key );
+			for ( int i = 0; i < accs.length; i++ ) {
+				accs[i].accumulate( g, m );
+			}
+		}
+
+		pendingEmptySolution = ( groupCount == 0 && accs.length > 0 );
+		nextGroup = 0;
+	}
+
+	/**
+	 * Returns the index of the group with the given key; the group is
+	 * created if it does not exist yet.
+	 */
+	protected int getGroup ( int[] key )
+	{
+		int k = key.length;
+		int mask = table.length - 1;
+		int pos = hash( key ) & mask;
+		while ( table[pos] != 0 )
+		{
+			int g = table[pos] - 1;
+			boolean equal = true;
+			for ( int i = 0; equal && i < k; i++ ) {
+				equal = ( groupKeys[g*k + i] == key[i] );
+			}
+			if ( equal ) {
+				return g;
+			}
+			pos = ( pos + 1 ) & mask;
+		}
+
+		int g = groupCount++;
+		if ( groupKeys.length < groupCount * k ) {
+			groupKeys = Arrays.copyOf( groupKeys, Math.max(2*groupKeys.length, groupCount*k) );
+		}
+		System.arraycopy( key, 0, groupKeys, g*k, k );
+		table[pos] = g + 1;
+
+		for ( int i = 0; i < accs.length; i++ ) {
+			accs[i].ensureCapacity( groupCount );
+		}
+
+		// keep the load factor of the hash table below 0.5
+		if ( 2 * groupCount > table.length ) {
+			rehash();
+		}
+		return g;
+	}
+
+	protected void rehash ()
+	{
+		int k = keyVarIds.length;
+		int[] key = new int[k];
+		table = new int[ 2 * table.length ];
+		int mask = table.length - 1;
+		for ( int g = 0; g < groupCount; g++ )
+		{
+			System.arraycopy( groupKeys, g*k, key, 0, k );
+			int pos = hash( key ) & mask;
+			while ( table[pos] != 0 ) {
+				pos = ( pos + 1 ) & mask;
+			}
+			table[pos] = g + 1;
+		}
+	}
+
+	static protected int hash ( int[] key )
+	{
+		int h = Arrays.hashCode( key );
+		return h ^ ( h >>> 16 );
+	}
+
+	static protected int getVarId ( Var v, VarDictionary varDict )
+	{
+		return varDict.contains( v ) ? varDict.getId( v ) : -1;
+	}
+
+	/**
+	 * Returns the identifier of the value of the given variable in the given
+	 * solution mapping, or {@link SolutionMapping#UNBOUND}.
+	 */
+	static protected int getValueId ( SolutionMapping m, int varId )
+	{
+		if ( varId < 0 || varId >= m.size() || ! m.contains(varId) ) {
+			return SolutionMapping.UNBOUND;
+		}
+		return m.get( varId );
+	}
+
+	protected Accumulator createAccumulator ( Aggregator a, VarDictionary varDict )
+	{
+		if ( a instanceof AggCount ) {
+			return new CountAll();
+		}
+		if ( a instanceof AggCountDistinct ) {
+			return new CountAllDistinct();
+		}
+
+		int varId = getVarId( ((ExprVar) a.getExpr()).asVar(), varDict );
+		if ( a instanceof AggCountVar ) {
+			return new CountVar( varId );
+		}
+		if ( a instanceof AggCountVarDistinct ) {
+			return new CountVarDistinct( varId );
+		}
+		if ( a instanceof AggSample || a instanceof AggSampleDistinct ) {
+			return new Sample( varId );
+		}
+		if ( a instanceof AggMin || a instanceof AggMinDistinct ) {
+			return new MinMax( varId, false );
+		}
+		return new MinMax( varId, true );
+	}
+
+	/**
+	 * Returns the value of the RDF term with the given identifier.
+	 * The values are cached because the same term is usually compared
+	 * multiple times.
+	 */
+	protected NodeValue getNodeValue ( int id )
+	{
+		NodeValue nv = nodeValues.get( id );
+		if ( nv == null )
+		{
+			decodeBuffer[0] = id;
+			execCxt.decode( decodeBuffer, 1, decodedBuffer );
+			nv = NodeValue.makeNode( decodedBuffer[0] );
+			nodeValues.put( id, nv );
+		}
+		return nv;
+	}
+
+
+	// accumulators
+
+	/**
+	 * Computes the value of an aggregator for every group.
+	 */
+	static abstract protected class Accumulator
+	{
+		/** makes sure that the accumulator can store values for the given number of groups */
+		abstract public void ensureCapacity ( int groupCount );
+
+		abstract public void accumulate ( int group, SolutionMapping m );
+
+		/**
+		 * Returns the identifier of the RDF term that is the value of the
+		 * given group, or {@link SolutionMapping#UNBOUND} if the value is not
+		 * an RDF term in the node dictionary (see {@link #getValue}).
+		 */
+		public int getValueId ( int group ) { return SolutionMapping.UNBOUND; }
+
+		/**
+		 * Returns the value of the given group if it is not identified by
+		 * {@link #getValueId}; null if there is no value.
+		 */
+		public Node getValue ( int group ) { return null; }
+	}
+
+	/**
+	 * Base class for accumulators of aggregators over the values of a
+	 * variable. As ARQ does, such an accumulator has no value for a group
+	 * if the variable is unbound in one of the solutions of the group.
+	 */
+	static abstract protected class VarAccumulator extends Accumulator
+	{
+		final protected int varId;
+		protected boolean[] errors = new boolean[16];
+
+		public VarAccumulator ( int varId ) { this.varId = varId; }
+
+		public void ensureCapacity ( int groupCount )
+		{
+			if ( errors.length < groupCount ) {
+				errors = Arrays.copyOf( errors, 2*errors.length );
+				grow( errors.length );
+			}
+		}
+
+		public void accumulate ( int group, SolutionMapping m )
+		{
+			int id = GroupQueryIter.getValueId( m, varId );
+			if ( id == SolutionMapping.UNBOUND ) {
+				errors[group] = true;
+			} else if ( ! errors[group] ) {
+				accumulate( group, id );
+			}
+		}
+
+		abstract protected void grow ( int length );
+		abstract protected void accumulate ( int group, int valueId );
+	}
+
+	static protected class CountAll extends Accumulator
+	{
+		protected long[] counts = new long[16];
+
+		public void ensureCapacity ( int groupCount ) {
+			if ( counts.length < groupCount ) { counts = Arrays.copyOf( counts, 2*counts.length ); }
+		}
+		public void accumulate ( int group, SolutionMapping m ) { counts[group]++; }
+		public Node getValue ( int group ) { return NodeValue.makeInteger( counts[group] ).asNode(); }
+	}
+
+	static protected class CountAllDistinct extends Accumulator
+	{
+		final protected List<Set<DistinctQueryIter.Key>> rows = new ArrayList<Set<DistinctQueryIter.Key>> ();
+
+		public void ensureCapacity ( int groupCount ) {
+			while ( rows.size() < groupCount ) { rows.add( new HashSet<DistinctQueryIter.Key>() ); }
+		}
+		public void accumulate ( int group, SolutionMapping m ) { rows.get( group ).add( new DistinctQueryIter.Key(m) ); }
+		public Node getValue ( int group ) { return NodeValue.makeInteger( rows.get(group).size() ).asNode(); }
+	}
+
+	static protected class CountVar extends VarAccumulator
+	{
+		protected long[] counts = new long[16];
+
+		public CountVar ( int varId ) { super( varId ); }
+		protected void grow ( int length ) { counts = Arrays.copyOf( counts, length ); }
+		protected void accumulate ( int group, int valueId ) { counts[group]++; }
+		public Node getValue ( int group ) { return errors[group] ? null : NodeValue.makeInteger( counts[group] ).asNode(); }
+	}
+
+	static protected class CountVarDistinct extends VarAccumulator
+	{
+		protected IntHashSet[] values = new IntHashSet[16];
+
+		public CountVarDistinct ( int varId ) { super( varId ); }
+		protected void grow ( int length ) { values = Arrays.copyOf( values, length ); }
+		protected void accumulate ( int group, int valueId )
+		{
+			if ( values[group] == null ) {
+				values[group] = new IntHashSet();
+			}
+			values[group].add( valueId );
+		}
+		public Node getValue ( int group )
+		{
+			if ( errors[group] ) {
+				return null;
+			}
+			return NodeValue.makeInteger( (values[group] == null) ? 0 : values[group].size() ).asNode();
+		}
+	}
+
+	static protected class Sample extends VarAccumulator
+	{
+		protected int[] sampleIds = new int[16];
+
+		public Sample ( int varId ) { super( varId ); }
+		protected void grow ( int length ) { sampleIds = Arrays.copyOf( sampleIds, length ); }
+		protected void accumulate ( int group, int valueId )
+		{
+			if ( sampleIds[group] == SolutionMapping.UNBOUND ) {
+				sampleIds[group] = valueId;
+			}
+		}
+		public int getValueId ( int group ) { return errors[group] ? SolutionMapping.UNBOUND : sampleIds[group]; }
+	}
+
+	protected class MinMax extends VarAccumulator
+	{
+		final protected boolean max;
+		protected int[] bestIds = new int[16];
+
+		public MinMax ( int varId, boolean max ) { super( varId ); this.max = max; }
+		protected void grow ( int length ) { bestIds = Arrays.copyOf( bestIds, length ); }
+		protected void accumulate ( int group, int valueId )
+		{
+			int bestId = bestIds[group];
+			if ( bestId == SolutionMapping.UNBOUND ) {
+				bestIds[group] = valueId;
+			}
+			else if ( bestId != valueId )
+			{
+				int c = NodeValue.compareAlways( getNodeValue(bestId), getNodeValue(valueId) );
+				if ( (max && c < 0) || (! max && c > 0) ) {
+					bestIds[group] = valueId;
+				}
+			}
+		}
+		public int getValueId ( int group ) { return errors[group] ? SolutionMapping.UNBOUND : bestIds[group]; }
+	}
+
+}
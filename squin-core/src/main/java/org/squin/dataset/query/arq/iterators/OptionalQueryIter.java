@@ -0,0 +1,124 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq.iterators;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openjena.atlas.lib.Closeable;
+
+import org.squin.dataset.query.SolutionMapping;
+
+
+/**
+ * An ID-based implementation of the (streaming) left join that ARQ uses for
+ * OPTIONAL patterns (see {@link com.hp.hpl.jena.sparql.algebra.op.OpConditional}).
+ * For each input solution mapping this iterator evaluates the optional part
+ * with the input mapping as the only input. If the optional part provides
+ * results, these are returned; otherwise, the input mapping is returned.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class OptionalQueryIter implements Iterator<SolutionMapping>, Closeable
+{
+	// members
+
+	/** the input iterator consumed by this one */
+	final protected Iterator<SolutionMapping> input;
+
+	/** the optional part */
+	final protected SubPlan optionalPart;
+
+	/** the results of the optional part for the current input solution mapping */
+	protected Iterator<SolutionMapping> currentOptionalResults = null;
+
+	/**
+	 * the current input solution mapping if it has to be returned because
+	 * there are no results of the optional part for it
+	 */
+	protected SolutionMapping pendingInputMapping = null;
+
+
+	// initialization
+
+	public OptionalQueryIter ( Iterator<SolutionMapping> input, SubPlan optionalPart )
+	{
+		this.input = input;
+		this.optionalPart = optionalPart;
+	}
+
+
+	// implementation of the Iterator interface
+
+	public boolean hasNext ()
+	{
+		if ( pendingInputMapping != null ) {
+			return true;
+		}
+
+		while ( currentOptionalResults == null || ! currentOptionalResults.hasNext() )
+		{
+			close( currentOptionalResults );
+			currentOptionalResults = null;
+
+			if ( ! input.hasNext() ) {
+				return false;
+			}
+
+			SolutionMapping currentInputMapping = input.next();
+			currentOptionalResults = optionalPart.execute( Collections.singletonList(currentInputMapping).iterator() );
+
+			if ( ! currentOptionalResults.hasNext() ) {
+				pendingInputMapping = currentInputMapping;
+				return true;
+			}
+		}
+
+		return true;
+	}
+
+	public SolutionMapping next ()
+	{
+		if ( ! hasNext() ) {
+			throw new NoSuchElementException();
+		}
+
+		if ( pendingInputMapping != null ) {
+			SolutionMapping result = pendingInputMapping;
+			pendingInputMapping = null;
+			return result;
+		}
+
+		return currentOptionalResults.next();
+	}
+
+	public void remove ()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+	// implementation of the Closable interface
+
+	public void close ()
+	{
+		close( currentOptionalResults );
+		currentOptionalResults = null;
+		pendingInputMapping = null;
+		close( input );
+	}
+
+
+	// helper methods
+
+	static protected void close ( Iterator<SolutionMapping> it )
+	{
+		if ( it instanceof Closeable ) {
+			( (Closeable) it ).close();
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq.iterators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.openjena.atlas.lib.Closeable;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingComparator;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+
+import org.squin.dataset.query.SolutionMapping;
+import org.squin.dataset.query.arq.IdBasedExecutionContext;
+
+
+/**
+ * An ID-based implementation of ORDER BY.
+ * This iterator materializes its input. For the comparison it decodes only
+ * the variables mentioned in the sort conditions (once per solution mapping);
+ * the solution mappings themselves remain ID-based.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class OrderQueryIter implements Iterator<SolutionMapping>, Closeable
+{
+	// members
+
+	final protected IdBasedExecutionContext execCxt;
+
+	/** the input iterator consumed by this one */
+	final protected Iterator<SolutionMapping> input;
+
+	final protected List<SortCondition> conditions;
+
+	/** the sorted solution mappings (null until the input has been consumed) */
+	protected Iterator<SolutionMapping> sorted = null;
+
+
+	// initialization
+
+	public OrderQueryIter ( Iterator<SolutionMapping> input, List<SortCondition> conditions, IdBasedExecutionContext execCxt )
+	{
+		this.input = input;
+		this.conditions = conditions;
+		this.execCxt = execCxt;
+	}
+
+
+	// implementation of the Iterator interface
+
+	public boolean hasNext ()
+	{
+		if ( sorted == null ) {
+			sort();
+		}
+
+		return sorted.hasNext();
+	}
+
+	public SolutionMapping next ()
+	{
+		if ( ! hasNext() ) {
+			throw new NoSuchElementException();
+		}
+
+		return sorted.next();
+	}
+
+	public void remove ()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+	// implementation of the Closable interface
+
+	public void close ()
+	{
+		sorted = Collections.<SolutionMapping>emptyList().iterator();
+		OptionalQueryIter.close( input );
+	}
+
+
+	// helper methods
+
+	protected void sort ()
+	{
+		Set<Var> vars = new HashSet<Var> ();
+		for ( SortCondition c : conditions ) {
+			vars.addAll( c.getExpression().getVarsMentioned() );
+		}
+
+		List<Var> knownVars = new ArrayList<Var> ();
+		for ( Var v : vars ) {
+			if ( execCxt.varDict.contains(v) ) {
+				knownVars.add( v );
+			}
+		}
+
+		int[] varIds = new int[ knownVars.size() ];
+		for ( int i = 0; i < varIds.length; i++ ) {
+			varIds[i] = execCxt.varDict.getId( knownVars.get(i) );
+		}
+
+		List<Entry> entries = new ArrayList<Entry> ();
+		while ( input.hasNext() )
+		{
+			SolutionMapping m = input.next();
+			BindingMap b = new BindingMap();
+			for ( int i = 0; i < varIds.length; i++ ) {
+				if ( m.contains(varIds[i]) ) {
+					Node n = execCxt.nodeDict.getNode( m.get(varIds[i]) );
+					if ( n != null ) {
+						b.add( knownVars.get(i), n );
+					}
+				}
+			}
+			entries.add( new Entry(m,b) );
+		}
+
+		final BindingComparator cmp = new BindingComparator( conditions, execCxt );
+		Collections.sort( entries, new Comparator<Entry> () {
+			public int compare ( Entry e1, Entry e2 ) { return cmp.compare( e1.binding, e2.binding ); }
+		} );
+
+		List<SolutionMapping> result = new ArrayList<SolutionMapping> ( entries.size() );
+		for ( Entry e : entries ) {
+			result.add( e.mapping );
+		}
+		sorted = result.iterator();
+	}
+
+	static protected class Entry
+	{
+		final public SolutionMapping mapping;
+		final public Binding binding;
+		public Entry ( SolutionMapping mapping, Binding binding ) { this.mapping = mapping; this.binding = binding; }
+	}
+
+}
@@ -0,0 +1,360 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq.iterators;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.openjena.atlas.lib.Closeable;
+
+import org.squin.dataset.query.SolutionMapping;
+import org.squin.dataset.query.arq.IdBasedExecutionContext;
+
+
+/**
+ * An iterator that evaluates a sub-plan in parallel.
+ * This iterator partitions the input solution mappings into batches and
+ * hands each batch to a worker of the given executor. Each worker evaluates
+ * its own copy of the sub-plan (i.e. its own chain of iterators) for its
+ * batch and hands over every result as soon as it is produced. At most the
+ * given number of batches are evaluated at the same time, and the workers
+ * wait if the consumer of this iterator falls behind by more than
+ * {@link #RESULTS_PER_WORKER} results per worker. Only the thread
+ * that consumes this iterator consumes the input iterator.
+ * The results are either returned in the order of the input (which makes
+ * the output deterministic; results of later batches are buffered until
+ * the earlier batches are finished) or as soon as they are available.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class ParallelQueryIter implements Iterator<SolutionMapping>, Closeable
+{
+	// members
+
+	static final public int DEFAULT_BATCH_SIZE = 32;
+
+	/**
+	 * the number of results per worker that may be handed over but not yet
+	 * be taken by the consumer of this iterator
+	 */
+	static final public int RESULTS_PER_WORKER = 256;
+
+	/** the input iterator consumed by this one */
+	final protected Iterator<SolutionMapping> input;
+
+	/** the sub-plan evaluated for each batch */
+	final protected SubPlan subPlan;
+
+	final protected Executor executor;
+	final protected IdBasedExecutionContext execCxt;
+	final protected boolean preserveOrder;
+	final protected int batchSize;
+
+	/** the maximum number of batches that are evaluated at the same time */
+	final protected int parallelism;
+
+	/**
+	 * the maximum number of batches that are submitted but not consumed
+	 * completely; limits the results buffered if {@link #preserveOrder} is
+	 * true
+	 */
+	final protected int maxPendingBatches;
+
+	/** batches submitted but not consumed completely, in the order of the input */
+	final protected LinkedList<Batch> pendingBatches = new LinkedList<Batch> ();
+
+	/** the number of batches that are still evaluated */
+	protected int runningBatches = 0;
+
+	/** the results handed over by the workers (for all batches) */
+	final protected BlockingQueue<BatchResult> results;
+
+	/** the result to be returned next */
+	protected SolutionMapping nextResult = null;
+
+	private volatile boolean closed = false;
+
+
+	// initialization
+
+	public ParallelQueryIter ( Iterator<SolutionMapping> input,
+	                           SubPlan subPlan,
+	                           Executor executor,
+	                           int parallelism,
+	                           boolean preserveOrder,
+	                           IdBasedExecutionContext execCxt )
+	{
+		this( input, subPlan, executor, parallelism, preserveOrder, DEFAULT_BATCH_SIZE, execCxt );
+	}
+
+	public ParallelQueryIter ( Iterator<SolutionMapping> input,
+	                           SubPlan subPlan,
+	                           Executor executor,
+	                           int parallelism,
+	                           boolean preserveOrder,
+	                           int batchSize,
+	                           IdBasedExecutionContext execCxt )
+	{
+		assert parallelism > 0;
+		assert batchSize > 0;
+
+		this.input = input;
+		this.subPlan = subPlan;
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.preserveOrder = preserveOrder;
+		this.batchSize = batchSize;
+		this.execCxt = execCxt;
+
+		// in order to preserve the order, the workers may finish some more
+		// batches while the consumer of this iterator still waits for the
+		// oldest one
+		maxPendingBatches = 2 * parallelism;
+
+		// a bounded queue makes the workers wait for a slow consumer instead
+		// of buffering all results
+		results = new ArrayBlockingQueue<BatchResult> ( parallelism * RESULTS_PER_WORKER );
+	}
+
+
+	// implementation of the Iterator interface
+
+	public boolean hasNext ()
+	{
+		while ( nextResult == null )
+		{
+			if ( closed || execCxt.isCancelled() ) {
+				return false;
+			}
+
+			submitBatches();
+
+			if ( pendingBatches.isEmpty() ) {
+				return false;
+			}
+
+			if ( preserveOrder )
+			{
+				// the results of the oldest batch may have been buffered
+				// while we waited for an earlier batch
+				Batch oldest = pendingBatches.getFirst();
+				if ( ! oldest.buffered.isEmpty() ) {
+					nextResult = oldest.buffered.removeFirst();
+					break;
+				}
+				if ( oldest.finished ) {
+					pendingBatches.removeFirst();
+					oldest.checkFailure();
+					continue;
+				}
+			}
+
+			BatchResult r = takeResult();
+			if ( r.mapping == null )
+			{
+				// the batch is finished; there is capacity for another one
+				r.batch.finished = true;
+				runningBatches--;
+				if ( ! preserveOrder ) {
+					pendingBatches.remove( r.batch );
+					r.batch.checkFailure();
+				}
+			}
+			else if ( ! preserveOrder || r.batch == pendingBatches.getFirst() ) {
+				nextResult = r.mapping;
+			}
+			else {
+				r.batch.buffered.add( r.mapping );
+			}
+		}
+
+		return true;
+	}
+
+	public SolutionMapping next ()
+	{
+		if ( ! hasNext() ) {
+			throw new NoSuchElementException();
+		}
+
+		SolutionMapping result = nextResult;
+		nextResult = null;
+		return result;
+	}
+
+	public void remove ()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+	// implementation of the Closable interface
+
+	public void close ()
+	{
+		closed = true;
+		nextResult = null;
+
+		for ( Batch b : pendingBatches ) {
+			b.future.cancel( true );
+		}
+		pendingBatches.clear();
+		results.clear();
+
+		OptionalQueryIter.close( input );
+	}
+
+
+	// helper methods
+
+	/**
+	 * Reads batches of input solution mappings and submits them to the
+	 * executor until the maximum number of batches is evaluated (or
+	 * pending) or the input is exhausted.
+	 */
+	protected void submitBatches ()
+	{
+		while (    runningBatches < parallelism
+		        && pendingBatches.size() < maxPendingBatches
+		        && input.hasNext() )
+		{
+			List<SolutionMapping> mappings = new ArrayList<SolutionMapping> ( batchSize );
+			while ( mappings.size() < batchSize && input.hasNext() ) {
+				mappings.add( input.next() );
+			}
+
+			Batch b = new Batch( mappings );
+			pendingBatches.add( b );
+			runningBatches++;
+			executor.execute( b.future );
+		}
+	}
+
+	/**
+	 * Waits for the next result handed over by any of the workers.
+	 */
+	protected BatchResult takeResult ()
+	{
+		try {
+			return results.take();
+		}
+		catch ( InterruptedException e ) {
+			throw new RuntimeException( "Waiting for the evaluation of a batch of solution mappings interrupted by " + e.getClass().getName() + ": " + e.getMessage(), e );
+		}
+	}
+
+
+	/**
+	 * A batch of input solution mappings together with the state of its
+	 * evaluation.
+	 */
+	protected class Batch implements Runnable
+	{
+		final protected List<SolutionMapping> mappings;
+		final protected FutureTask<Object> future;
+
+		/** results received while an earlier batch was consumed (only if {@link #preserveOrder} is true) */
+		final protected LinkedList<SolutionMapping> buffered = new LinkedList<SolutionMapping> ();
+
+		/** set by the consumer when the last result of this batch has been received */
+		protected boolean finished = false;
+
+		/** set by the worker if the evaluation failed */
+		protected volatile Throwable failure = null;
+
+		public Batch ( List<SolutionMapping> mappings )
+		{
+			this.mappings = mappings;
+			future = new FutureTask<Object> ( this, null );
+		}
+
+		/**
+		 * Evaluates a copy of the sub-plan for this batch and hands over the
+		 * results to the consumer of the parallel iterator.
+		 */
+		public void run ()
+		{
+			Iterator<SolutionMapping> it = null;
+			try {
+				it = subPlan.execute( mappings.iterator() );
+				while ( ! closed && it.hasNext() ) {
+					results.put( new BatchResult(this,it.next()) );
+				}
+			}
+			catch ( Throwable t ) {
+				// includes the interruption by close()
+				failure = t;
+			}
+			finally {
+				if ( it != null ) {
+					OptionalQueryIter.close( it );
+				}
+				handOverEnd();
+			}
+		}
+
+		/**
+		 * Hands over the marker that indicates the end of this batch; the
+		 * marker is dropped if the parallel iterator has been closed
+		 * because nobody takes it anymore.
+		 */
+		protected void handOverEnd ()
+		{
+			BatchResult end = new BatchResult( this, null );
+			while ( ! closed )
+			{
+				try {
+					results.put( end );
+					return;
+				}
+				catch ( InterruptedException e ) {
+					// retry unless we have been interrupted by close()
+				}
+			}
+		}
+
+		/**
+		 * Rethrows the exception caused by the evaluation of this batch (if
+		 * any).
+		 */
+		public void checkFailure ()
+		{
+			if ( failure == null ) {
+				return;
+			}
+			if ( failure instanceof RuntimeException ) {
+				throw (RuntimeException) failure;
+			}
+			if ( failure instanceof Error ) {
+				throw (Error) failure;
+			}
+			throw new RuntimeException( "Evaluating a batch of solution mappings caused a " + failure.getClass().getName() + ": " + failure.getMessage(), failure );
+		}
+	}
+
+	/**
+	 * A result handed over by a worker; a null mapping indicates that the
+	 * evaluation of the batch is finished.
+	 */
+	static protected class BatchResult
+	{
+		final protected Batch batch;
+		final protected SolutionMapping mapping;
+
+		public BatchResult ( Batch batch, SolutionMapping mapping )
+		{
+			this.batch = batch;
+			this.mapping = mapping;
+		}
+	}
+
+}
@@ -0,0 +1,505 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq.iterators;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openjena.atlas.lib.Closeable;
+import com.hp.hpl.jena.sparql.path.P_Alt;
+import com.hp.hpl.jena.sparql.path.P_Inverse;
+import com.hp.hpl.jena.sparql.path.P_Link;
+import com.hp.hpl.jena.sparql.path.P_OneOrMore;
+import com.hp.hpl.jena.sparql.path.P_Path1;
+import com.hp.hpl.jena.sparql.path.P_Path2;
+import com.hp.hpl.jena.sparql.path.P_ReverseLink;
+import com.hp.hpl.jena.sparql.path.P_Seq;
+import com.hp.hpl.jena.sparql.path.P_ZeroOrMore;
+import com.hp.hpl.jena.sparql.path.P_ZeroOrOne;
+import com.hp.hpl.jena.sparql.path.Path;
+
+import org.squin.dataset.Triple;
+import org.squin.dataset.jenacommon.NodeDictionary;
+import org.squin.dataset.jenacommon.QueriedDatasetWrappingJenaGraph;
+import org.squin.dataset.query.SolutionMapping;
+import org.squin.dataset.query.impl.FixedSizeSolutionMappingImpl;
+import org.squin.dataset.query.arq.IdBasedExecutionContext;
+import org.squin.util.IntHashSet;
+
+
+/**
+ * A query iterator that evaluates a property path in an ID-based manner
+ * for the solution mappings provided by an input operator.
+ * The path is evaluated by a breadth-first search over the queried dataset;
+ * the nodes visited by the search are recorded in primitive int sets.
+ * Before the search expands a node (or, for sequences and arbitrary length
+ * paths, all nodes reached by the preceding step at once) it calls
+ * {@link #ensureAvailability} which enables subclasses to retrieve data
+ * about newly reached nodes.
+ *
+ * Supported are links, inverse links, sequences, alternatives and the
+ * modifiers ?, * and +. Arbitrary length paths (and ?) return every
+ * reachable node only once.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class PathQueryIter implements Iterator<SolutionMapping>, Closeable
+{
+	// members
+
+	final protected IdBasedExecutionContext execCxt;
+
+	/** the input iterator consumed by this one */
+	final protected Iterator<SolutionMapping> input;
+
+	final protected boolean sIsVar;
+	final protected int s;
+	final protected PathStep path;
+	final protected boolean oIsVar;
+	final protected int o;
+
+	/** the solution mapping currently consumed from the input iterator */
+	protected SolutionMapping currentInputMapping = null;
+
+	/**
+	 * (start node, end node) pairs of the path for the current input
+	 * solution mapping
+	 */
+	protected IntList currentResults = null;
+	protected int currentResultsPos = 0;
+
+
+	// initialization
+
+	/**
+	 * Creates an iterator for the path pattern that consists of the given
+	 * subject, path and object. The subject and the object are either
+	 * identifiers of query variables (if the corresponding flag is true) or
+	 * identifiers of RDF terms.
+	 *
+	 * @throws IllegalArgumentException if the given path is not supported
+	 *                                  (see {@link #isSupported})
+	 */
+	public PathQueryIter ( boolean sIsVar, int s, Path path, boolean oIsVar, int o, Iterator<SolutionMapping> input, IdBasedExecutionContext execCxt )
+	{
+		this.sIsVar = sIsVar;
+		this.s = s;
+		this.path = compile( path, execCxt.nodeDict );
+		this.oIsVar = oIsVar;
+		this.o = o;
+		this.input = input;
+		this.execCxt = execCxt;
+	}
+
+
+	// accessors
+
+	/**
+	 * Returns true if the given path can be evaluated by this iterator.
+	 */
+	static public boolean isSupported ( Path path )
+	{
+		if ( path instanceof P_Link || path instanceof P_ReverseLink ) {
+			return true;
+		}
+
+		if ( path instanceof P_Inverse || path instanceof P_ZeroOrOne || path instanceof P_ZeroOrMore || path instanceof P_OneOrMore ) {
+			return isSupported( ((P_Path1) path).getSubPath() );
+		}
+
+		if ( path instanceof P_Seq || path instanceof P_Alt ) {
+			return    isSupported( ((P_Path2) path).getLeft() )
+			       && isSupported( ((P_Path2) path).getRight() );
+		}
+
+		return false;
+	}
+
+
+	// implementation of the Iterator interface
+
+	public boolean hasNext ()
+	{
+		while ( currentResults == null || currentResultsPos >= currentResults.size )
+		{
+			currentResults = null;
+
+			if ( execCxt.isCancelled() || ! input.hasNext() ) {
+				return false;
+			}
+
+			currentInputMapping = input.next();
+			currentResults = evaluate( currentInputMapping );
+			currentResultsPos = 0;
+		}
+
+		return true;
+	}
+
+	public SolutionMapping next ()
+	{
+		if ( ! hasNext() ) {
+			throw new NoSuchElementException();
+		}
+
+		int start = currentResults.values[ currentResultsPos++ ];
+		int end = currentResults.values[ currentResultsPos++ ];
+
+		SolutionMapping result = new FixedSizeSolutionMappingImpl( currentInputMapping );
+		if ( sIsVar ) {
+			result.set( s, start, null );
+		}
+		if ( oIsVar ) {
+			result.set( o, end, null );
+		}
+		return result;
+	}
+
+	public void remove ()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+	// implementation of the Closable interface
+
+	public void close ()
+	{
+		currentResults = null;
+		OptionalQueryIter.close( input );
+	}
+
+
+	// operations
+
+	/**
+	 * Returns an iterator over all triples in the queried dataset that match
+	 * the given pattern (with {@link Triple#UNKNOWN_IDENTIFIER} as wildcard).
+	 */
+	protected Iterator<? extends Triple> find ( int s, int p, int o )
+	{
+		return ( (QueriedDatasetWrappingJenaGraph) execCxt.getActiveGraph() ).queriedDataset.find( s, p, o );
+	}
+
+	/**
+	 * Is called before the search expands the given nodes. This
+	 * implementation does nothing; subclasses may override it in order to
+	 * ensure that data about these nodes is available.
+	 *
+	 * @param nodeIDs identifiers of the nodes (may contain nodes that have
+	 *                been passed to this method before)
+	 */
+	protected void ensureAvailability ( int[] nodeIDs )
+	{
+	}
+
+
+	// helper methods
+
+	/**
+	 * Evaluates the path for the given input solution mapping and returns
+	 * the resulting (start node, end node) pairs.
+	 */
+	protected IntList evaluate ( SolutionMapping mapping )
+	{
+		int start = ( sIsVar ) ? mapping.get( s ) : s;
+		int end = ( oIsVar ) ? mapping.get( o ) : o;
+
+		// if both ends are the same variable, they must be bound to the same node
+		boolean sameVar = sIsVar && oIsVar && s == o;
+
+		IntList results = new IntList();
+		IntList ends = new IntList();
+		if ( start != SolutionMapping.UNBOUND )
+		{
+			path.eval( this, start, true, end, ends );
+			for ( int i = 0; i < ends.size; i++ ) {
+				if ( end == SolutionMapping.UNBOUND || ends.values[i] == end ) {
+					results.add( start );
+					results.add( ends.values[i] );
+				}
+			}
+		}
+		else if ( end != SolutionMapping.UNBOUND )
+		{
+			path.eval( this, end, false, SolutionMapping.UNBOUND, ends );
+			for ( int i = 0; i < ends.size; i++ ) {
+				results.add( ends.values[i] );
+				results.add( end );
+			}
+		}
+		else
+		{
+			// both ends are unbound: start from every node in the dataset
+			for ( int n : allNodes().toArray() )
+			{
+				ends.size = 0;
+				path.eval( this, n, true, sameVar ? n : SolutionMapping.UNBOUND, ends );
+				for ( int i = 0; i < ends.size; i++ ) {
+					if ( ! sameVar || ends.values[i] == n ) {
+						results.add( n );
+						results.add( ends.values[i] );
+					}
+				}
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Returns all subjects and objects of the triples in the queried dataset.
+	 */
+	protected IntHashSet allNodes ()
+	{
+		IntHashSet nodes = new IntHashSet();
+		Iterator<? extends Triple> it = find( Triple.UNKNOWN_IDENTIFIER, Triple.UNKNOWN_IDENTIFIER, Triple.UNKNOWN_IDENTIFIER );
+		while ( it.hasNext() ) {
+			Triple t = it.next();
+			nodes.add( t.s );
+			nodes.add( t.o );
+		}
+		return nodes;
+	}
+
+	/**
+	 * Compiles the given path into a tree of {@link PathStep}s.
+	 *
+	 * @throws IllegalArgumentException if the given path is not supported
+	 */
+	static protected PathStep compile ( Path path, NodeDictionary nodeDict )
+	{
+		if ( path instanceof P_Link ) {
+			return new LinkStep( nodeDict.createId(((P_Link) path).getNode()), false );
+		}
+		if ( path instanceof P_ReverseLink ) {
+			return new LinkStep( nodeDict.createId(((P_ReverseLink) path).getNode()), true );
+		}
+		if ( path instanceof P_Inverse ) {
+			return new InverseStep( compile(((P_Inverse) path).getSubPath(),nodeDict) );
+		}
+		if ( path instanceof P_Seq ) {
+			return new SeqStep( compile(((P_Seq) path).getLeft(),nodeDict), compile(((P_Seq) path).getRight(),nodeDict) );
+		}
+		if ( path instanceof P_Alt ) {
+			return new AltStep( compile(((P_Alt) path).getLeft(),nodeDict), compile(((P_Alt) path).getRight(),nodeDict) );
+		}
+		if ( path instanceof P_ZeroOrOne ) {
+			return new ZeroOrOneStep( compile(((P_ZeroOrOne) path).getSubPath(),nodeDict) );
+		}
+		if ( path instanceof P_ZeroOrMore ) {
+			return new ClosureStep( compile(((P_ZeroOrMore) path).getSubPath(),nodeDict), true );
+		}
+		if ( path instanceof P_OneOrMore ) {
+			return new ClosureStep( compile(((P_OneOrMore) path).getSubPath(),nodeDict), false );
+		}
+
+		throw new IllegalArgumentException( "Unsupported property path: " + path.toString() );
+	}
+
+
+	/**
+	 * A growable list of primitive int values.
+	 */
+	static protected class IntList
+	{
+		int[] values = new int[8];
+		int size = 0;
+
+		void add ( int value )
+		{
+			if ( size == values.length ) {
+				int[] tmp = new int[ 2 * values.length ];
+				System.arraycopy( values, 0, tmp, 0, size );
+				values = tmp;
+			}
+			values[size++] = value;
+		}
+
+		int[] toArray ()
+		{
+			int[] result = new int[size];
+			System.arraycopy( values, 0, result, 0, size );
+			return result;
+		}
+	}
+
+	/**
+	 * A compiled part of a property path.
+	 */
+	static abstract protected class PathStep
+	{
+		/**
+		 * Adds the nodes reachable from the given node via this part of the
+		 * path to the given list.
+		 *
+		 * @param forward false if the path has to be followed in reverse
+		 *                direction
+		 * @param target a node that the caller is exclusively interested in,
+		 *               or {@link SolutionMapping#UNBOUND}; implementations
+		 *               may use it to stop the search early
+		 */
+		abstract void eval ( PathQueryIter it, int node, boolean forward, int target, IntList out );
+	}
+
+	static protected class LinkStep extends PathStep
+	{
+		final int p;
+		final boolean reverse;
+
+		LinkStep ( int p, boolean reverse ) { this.p = p; this.reverse = reverse; }
+
+		void eval ( PathQueryIter it, int node, boolean forward, int target, IntList out )
+		{
+			it.ensureAvailability( new int[] {node} );
+
+			boolean subjectToObject = ( forward != reverse );
+			Iterator<? extends Triple> matches = ( subjectToObject ) ? it.find( node, p, Triple.UNKNOWN_IDENTIFIER )
+			                                                         : it.find( Triple.UNKNOWN_IDENTIFIER, p, node );
+			while ( matches.hasNext() ) {
+				Triple t = matches.next();
+				out.add( (subjectToObject) ? t.o : t.s );
+			}
+		}
+	}
+
+	static protected class InverseStep extends PathStep
+	{
+		final PathStep sub;
+
+		InverseStep ( PathStep sub ) { this.sub = sub; }
+
+		void eval ( PathQueryIter it, int node, boolean forward, int target, IntList out )
+		{
+			sub.eval( it, node, ! forward, target, out );
+		}
+	}
+
+	/**
+	 * Before the nodes reached by the first step are expanded by the second
+	 * step, data about all of them is requested at once (see
+	 * {@link PathQueryIter#ensureAvailability}).
+	 */
+	static protected class SeqStep extends PathStep
+	{
+		final PathStep left;
+		final PathStep right;
+
+		SeqStep ( PathStep left, PathStep right ) { this.left = left; this.right = right; }
+
+		void eval ( PathQueryIter it, int node, boolean forward, int target, IntList out )
+		{
+			PathStep first = ( forward ) ? left : right;
+			PathStep second = ( forward ) ? right : left;
+
+			IntList intermediate = new IntList();
+			first.eval( it, node, forward, SolutionMapping.UNBOUND, intermediate );
+			if ( intermediate.size == 0 ) {
+				return;
+			}
+
+			it.ensureAvailability( intermediate.toArray() );
+			for ( int i = 0; i < intermediate.size; i++ ) {
+				second.eval( it, intermediate.values[i], forward, target, out );
+			}
+		}
+	}
+
+	static protected class AltStep extends PathStep
+	{
+		final PathStep left;
+		final PathStep right;
+
+		AltStep ( PathStep left, PathStep right ) { this.left = left; this.right = right; }
+
+		void eval ( PathQueryIter it, int node, boolean forward, int target, IntList out )
+		{
+			// both alternatives expand the same node; we request the data
+			// about it once before evaluating either of them
+			it.ensureAvailability( new int[] {node} );
+
+			left.eval( it, node, forward, target, out );
+			right.eval( it, node, forward, target, out );
+		}
+	}
+
+	static protected class ZeroOrOneStep extends PathStep
+	{
+		final PathStep sub;
+
+		ZeroOrOneStep ( PathStep sub ) { this.sub = sub; }
+
+		void eval ( PathQueryIter it, int node, boolean forward, int target, IntList out )
+		{
+			IntHashSet seen = new IntHashSet();
+			seen.add( node );
+			out.add( node );
+
+			IntList reached = new IntList();
+			sub.eval( it, node, forward, target, reached );
+			for ( int i = 0; i < reached.size; i++ ) {
+				if ( seen.add(reached.values[i]) ) {
+					out.add( reached.values[i] );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evaluates * (if {@link #includeZeroLength} is true) or + by a breadth
+	 * first search. Before the nodes of the current frontier are expanded,
+	 * data about all of them is requested at once (see
+	 * {@link PathQueryIter#ensureAvailability}).
+	 */
+	static protected class ClosureStep extends PathStep
+	{
+		final PathStep sub;
+		final boolean includeZeroLength;
+
+		ClosureStep ( PathStep sub, boolean includeZeroLength ) { this.sub = sub; this.includeZeroLength = includeZeroLength; }
+
+		void eval ( PathQueryIter it, int node, boolean forward, int target, IntList out )
+		{
+			IntHashSet visited = new IntHashSet();
+			IntList frontier = new IntList();
+
+			if ( includeZeroLength ) {
+				visited.add( node );
+				out.add( node );
+				if ( node == target ) {
+					return;
+				}
+			}
+			frontier.add( node );
+
+			while ( frontier.size > 0 && ! it.execCxt.isCancelled() )
+			{
+				int[] toExpand = frontier.toArray();
+				it.ensureAvailability( toExpand );
+
+				IntList next = new IntList();
+				IntList reached = new IntList();
+				for ( int n : toExpand )
+				{
+					reached.size = 0;
+					sub.eval( it, n, forward, SolutionMapping.UNBOUND, reached );
+					for ( int i = 0; i < reached.size; i++ )
+					{
+						int m = reached.values[i];
+						if ( visited.add(m) ) {
+							out.add( m );
+							if ( m == target ) {
+								return;
+							}
+							next.add( m );
+						}
+					}
+				}
+				frontier = next;
+			}
+		}
+	}
+
+}
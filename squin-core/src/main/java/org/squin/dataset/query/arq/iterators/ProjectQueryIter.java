@@ -0,0 +1,75 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq.iterators;
+
+import java.util.Iterator;
+
+import org.openjena.atlas.lib.Closeable;
+
+import org.squin.dataset.query.SolutionMapping;
+import org.squin.dataset.query.impl.FixedSizeSolutionMappingImpl;
+
+
+/**
+ * An ID-based implementation of the projection. The solution mappings
+ * provided by this iterator bind only the projection variables.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class ProjectQueryIter implements Iterator<SolutionMapping>, Closeable
+{
+	// members
+
+	/** the input iterator consumed by this one */
+	final protected Iterator<SolutionMapping> input;
+
+	/** the identifiers of the projection variables */
+	final protected int[] varIds;
+
+
+	// initialization
+
+	public ProjectQueryIter ( Iterator<SolutionMapping> input, int[] varIds )
+	{
+		this.input = input;
+		this.varIds = varIds;
+	}
+
+
+	// implementation of the Iterator interface
+
+	public boolean hasNext ()
+	{
+		return input.hasNext();
+	}
+
+	public SolutionMapping next ()
+	{
+		SolutionMapping curInput = input.next();
+
+		SolutionMapping result = new FixedSizeSolutionMappingImpl( curInput.size() );
+		for ( int i = 0; i < varIds.length; i++ ) {
+			if ( curInput.contains(varIds[i]) ) {
+				result.set( varIds[i], curInput.get(varIds[i]), curInput.getProvenance(varIds[i]) );
+			}
+		}
+
+		return result;
+	}
+
+	public void remove ()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+	// implementation of the Closable interface
+
+	public void close ()
+	{
+		OptionalQueryIter.close( input );
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq.iterators;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openjena.atlas.lib.Closeable;
+
+import com.hp.hpl.jena.query.Query;
+
+import org.squin.dataset.query.SolutionMapping;
+
+
+/**
+ * An ID-based implementation of OFFSET and LIMIT.
+ * As soon as the limit is reached this iterator closes its input iterator.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class SliceQueryIter implements Iterator<SolutionMapping>, Closeable
+{
+	// members
+
+	/** the input iterator consumed by this one */
+	final protected Iterator<SolutionMapping> input;
+
+	/** the number of input solution mappings that still have to be skipped */
+	protected long toSkip;
+
+	/** the number of solution mappings that may still be returned, or a negative number for no limit */
+	protected long remaining;
+
+	protected boolean inputClosed = false;
+
+
+	// initialization
+
+	/**
+	 * @param offset the number of solution mappings to skip, or
+	 *               {@link Query#NOLIMIT}
+	 * @param limit the maximum number of solution mappings to return, or
+	 *              {@link Query#NOLIMIT}
+	 */
+	public SliceQueryIter ( Iterator<SolutionMapping> input, long offset, long limit )
+	{
+		this.input = input;
+		this.toSkip = ( offset == Query.NOLIMIT || offset < 0 ) ? 0 : offset;
+		this.remaining = ( limit == Query.NOLIMIT || limit < 0 ) ? -1 : limit;
+	}
+
+
+	// implementation of the Iterator interface
+
+	public boolean hasNext ()
+	{
+		if ( remaining == 0 ) {
+			closeInput();
+			return false;
+		}
+
+		while ( toSkip > 0 && input.hasNext() ) {
+			input.next();
+			toSkip--;
+		}
+
+		return input.hasNext();
+	}
+
+	public SolutionMapping next ()
+	{
+		if ( ! hasNext() ) {
+			throw new NoSuchElementException();
+		}
+
+		if ( remaining > 0 ) {
+			remaining--;
+		}
+		return input.next();
+	}
+
+	public void remove ()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+	// implementation of the Closable interface
+
+	public void close ()
+	{
+		closeInput();
+	}
+
+
+	// helper methods
+
+	protected void closeInput ()
+	{
+		if ( ! inputClosed ) {
+			inputClosed = true;
+			OptionalQueryIter.close( input );
+		}
+	}
+
+}
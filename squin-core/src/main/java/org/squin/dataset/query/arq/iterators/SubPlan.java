@@ -0,0 +1,28 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq.iterators;
+
+import java.util.Iterator;
+
+import org.squin.dataset.query.SolutionMapping;
+
+
+/**
+ * A part of a query execution plan that is evaluated in an ID-based manner.
+ * Iterators such as {@link OptionalQueryIter} and {@link UnionQueryIter}
+ * use such a sub-plan to evaluate an operand for each of their input
+ * solution mappings.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public interface SubPlan
+{
+	/**
+	 * Returns an iterator that provides the solution mappings of this
+	 * sub-plan which are compatible with the solution mappings provided by
+	 * the given input iterator.
+	 */
+	Iterator<SolutionMapping> execute ( Iterator<SolutionMapping> input );
+}
@@ -5,6 +5,7 @@
 package org.squin.dataset.query.arq.iterators;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.openjena.atlas.lib.Closeable;
@@ -18,6 +19,8 @@ import org.squin.dataset.query.SolutionMapping;
 import org.squin.dataset.query.TriplePattern;
 import org.squin.dataset.query.impl.FixedSizeSolutionMappingImpl;
 import org.squin.dataset.query.arq.IdBasedExecutionContext;
+import org.squin.dataset.query.arq.IdBasedFilter;
+import org.squin.dataset.query.arq.MatchCache;
 
 
 /**
@@ -39,6 +42,12 @@ public class TriplePatternQueryIter implements Iterator<SolutionMapping>, Closea
 	/** the triple pattern matched by this iterator */
 	final protected TriplePattern tp;
 
+	/**
+	 * the filters that have to be satisfied by the solution mappings provided
+	 * by this iterator (null if there are no such filters)
+	 */
+	final protected IdBasedFilter[] filters;
+
 	/** the solution mapping currently consumed from the input iterator */
 	protected SolutionMapping currentInputMapping = null;
 
@@ -60,10 +69,21 @@ public class TriplePatternQueryIter implements Iterator<SolutionMapping>, Closea
 	// initialization
 
 	public TriplePatternQueryIter ( TriplePattern tp, Iterator<SolutionMapping> input, IdBasedExecutionContext execCxt )
+	{
+		this( tp, input, execCxt, null );
+	}
+
+	/**
+	 * Creates an iterator that provides only those solution mappings that
+	 * satisfy all of the given filters.
+	 * Rejected solution mappings are never constructed.
+	 */
+	public TriplePatternQueryIter ( TriplePattern tp, Iterator<SolutionMapping> input, IdBasedExecutionContext execCxt, List<IdBasedFilter> filters )
 	{
 		this.tp = tp;
 		this.input = input;
 		this.execCxt = execCxt;
+		this.filters = ( filters == null || filters.isEmpty() ) ? null : filters.toArray( new IdBasedFilter[filters.size()] );
 	}
 
 
@@ -73,24 +93,13 @@ public class TriplePatternQueryIter implements Iterator<SolutionMapping>, Closea
 	{
 		while ( currentMatches == null || ! currentMatches.hasNext() )
 		{
-			if ( ! input.hasNext() ) {
+			if ( execCxt.isCancelled() || ! input.hasNext() ) {
 				return false;
 			}
 
-			QueriedDataset queriedDataset = ( (QueriedDatasetWrappingJenaGraph) execCxt.getActiveGraph() ).queriedDataset;
-
 			currentInputMapping = input.next();
 			currentQueryPattern = substitute( tp, currentInputMapping );
-
-			if ( execCxt.recordProvenance ) {
-				currentMatches = queriedDataset.findWithProvenance( (currentQueryPattern.sIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.s,
-				                                                    (currentQueryPattern.pIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.p,
-				                                                    (currentQueryPattern.oIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.o );
-			} else {
-				currentMatches = queriedDataset.find( (currentQueryPattern.sIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.s,
-				                                      (currentQueryPattern.pIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.p,
-				                                      (currentQueryPattern.oIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.o );
-			}
+			currentMatches = applyFilters( findMatches(currentQueryPattern) );
 		}
 
 		return true;
@@ -142,6 +151,62 @@ public class TriplePatternQueryIter implements Iterator<SolutionMapping>, Closea
 
 	// helper methods
 
+	/**
+	 * Returns an iterator over all triples that match the given query
+	 * pattern. If the execution context provides a {@link MatchCache} the
+	 * matches are taken from this cache or, if they are not in the cache,
+	 * they are looked up (see {@link #find}) and recorded in the cache.
+	 */
+	protected Iterator<? extends Triple> findMatches ( TriplePattern queryPattern )
+	{
+		int s = ( queryPattern.sIsVar ) ? Triple.UNKNOWN_IDENTIFIER : queryPattern.s;
+		int p = ( queryPattern.pIsVar ) ? Triple.UNKNOWN_IDENTIFIER : queryPattern.p;
+		int o = ( queryPattern.oIsVar ) ? Triple.UNKNOWN_IDENTIFIER : queryPattern.o;
+
+		MatchCache matchCache = execCxt.getMatchCache();
+		if ( matchCache == null ) {
+			return find( s, p, o );
+		}
+
+		// determine the version before the look-up; if the data changes
+		// during the look-up the recorded matches will not be used
+		long dataVersion = execCxt.getDataVersion();
+		Iterator<? extends Triple> matches = matchCache.get( s, p, o, dataVersion );
+		if ( matches != null ) {
+			return matches;
+		}
+		return matchCache.record( s, p, o, dataVersion, find(s,p,o) );
+	}
+
+	/**
+	 * Looks up the triples that match the given pattern in the queried
+	 * dataset (with provenance if the execution context requires it).
+	 * Variables are denoted by {@link Triple#UNKNOWN_IDENTIFIER}.
+	 */
+	protected Iterator<? extends Triple> find ( int s, int p, int o )
+	{
+		QueriedDataset queriedDataset = ( (QueriedDatasetWrappingJenaGraph) execCxt.getActiveGraph() ).queriedDataset;
+		if ( execCxt.recordProvenance ) {
+			return queriedDataset.findWithProvenance( s, p, o );
+		} else {
+			return queriedDataset.find( s, p, o );
+		}
+	}
+
+	/**
+	 * Returns an iterator over those of the given matching triples that,
+	 * together with the current input solution mapping, satisfy the filters
+	 * of this iterator. If there are no filters the given iterator is returned.
+	 */
+	protected Iterator<? extends Triple> applyFilters ( Iterator<? extends Triple> matches )
+	{
+		if ( filters == null ) {
+			return matches;
+		}
+
+		return new FilteredMatchesIterator( matches, currentInputMapping, currentQueryPattern, filters );
+	}
+
 	/**
 	 * Replaces each query variable in the given triple pattern that is bound to
 	 * a value in the given solution mapping by this value.
@@ -206,4 +271,114 @@ public class TriplePatternQueryIter implements Iterator<SolutionMapping>, Closea
 		public TriplePattern getMatchedTriplePattern () { return matchedTriplePattern; }
 	}
 
+
+	/**
+	 * An iterator that skips all matching triples for which the solution
+	 * mapping that would be constructed does not satisfy the given filters.
+	 * To avoid constructing these solution mappings the filters are evaluated
+	 * on a {@link MatchExtendedSolutionMapping}.
+	 */
+	static protected class FilteredMatchesIterator implements Iterator<Triple>
+	{
+		final protected Iterator<? extends Triple> matches;
+		final protected IdBasedFilter[] filters;
+		final protected MatchExtendedSolutionMapping candidate;
+		protected Triple nextMatch = null;
+
+		public FilteredMatchesIterator ( Iterator<? extends Triple> matches, SolutionMapping inputMapping, TriplePattern queryPattern, IdBasedFilter[] filters )
+		{
+			this.matches = matches;
+			this.filters = filters;
+			this.candidate = new MatchExtendedSolutionMapping( inputMapping, queryPattern );
+		}
+
+		public boolean hasNext ()
+		{
+			while ( nextMatch == null && matches.hasNext() )
+			{
+				Triple t = matches.next();
+				candidate.match = t;
+
+				boolean accepted = true;
+				for ( int i = 0; accepted && i < filters.length; i++ ) {
+					accepted = filters[i].accept( candidate );
+				}
+
+				if ( accepted ) {
+					nextMatch = t;
+				}
+			}
+
+			return nextMatch != null;
+		}
+
+		public Triple next ()
+		{
+			if ( ! hasNext() ) {
+				throw new NoSuchElementException();
+			}
+
+			Triple t = nextMatch;
+			nextMatch = null;
+			return t;
+		}
+
+		public void remove ()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * A read-only view of the solution mapping that extends a given input
+	 * solution mapping by the bindings for a matching triple. This view is
+	 * used to test a matching triple without copying the input mapping.
+	 */
+	static protected class MatchExtendedSolutionMapping implements SolutionMapping
+	{
+		final protected SolutionMapping base;
+		final protected TriplePattern queryPattern;
+		protected Triple match = null;
+
+		public MatchExtendedSolutionMapping ( SolutionMapping base, TriplePattern queryPattern )
+		{
+			this.base = base;
+			this.queryPattern = queryPattern;
+		}
+
+		public void set ( int varId, int valueId, BindingProvenance prv )
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public boolean contains ( int varId )
+		{
+			return get( varId ) != SolutionMapping.UNBOUND;
+		}
+
+		public int get ( int varId )
+		{
+			if ( queryPattern.oIsVar && queryPattern.o == varId ) {
+				return match.o;
+			}
+			if ( queryPattern.pIsVar && queryPattern.p == varId ) {
+				return match.p;
+			}
+			if ( queryPattern.sIsVar && queryPattern.s == varId ) {
+				return match.s;
+			}
+			return base.get( varId );
+		}
+
+		public BindingProvenance getProvenance ( int varId )
+		{
+			return base.getProvenance( varId );
+		}
+
+		public int size ()
+		{
+			return base.size();
+		}
+	}
+
 }
@@ -0,0 +1,103 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.dataset.query.arq.iterators;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.openjena.atlas.lib.Closeable;
+
+import org.squin.dataset.query.SolutionMapping;
+
+
+/**
+ * An ID-based implementation of UNION.
+ * For each input solution mapping this iterator returns the results of all
+ * of its operands (one after another), each evaluated with the input mapping
+ * as the only input.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class UnionQueryIter implements Iterator<SolutionMapping>, Closeable
+{
+	// members
+
+	/** the input iterator consumed by this one */
+	final protected Iterator<SolutionMapping> input;
+
+	/** the operands of the union */
+	final protected List<SubPlan> operands;
+
+	/** the solution mapping currently consumed from the input iterator */
+	protected SolutionMapping currentInputMapping = null;
+
+	/** the index of the operand that is currently evaluated */
+	protected int currentOperand = 0;
+
+	/** the results of the current operand for the current input solution mapping */
+	protected Iterator<SolutionMapping> currentResults = null;
+
+
+	// initialization
+
+	public UnionQueryIter ( Iterator<SolutionMapping> input, List<SubPlan> operands )
+	{
+		this.input = input;
+		this.operands = operands;
+	}
+
+
+	// implementation of the Iterator interface
+
+	public boolean hasNext ()
+	{
+		while ( currentResults == null || ! currentResults.hasNext() )
+		{
+			OptionalQueryIter.close( currentResults );
+			currentResults = null;
+
+			if ( currentInputMapping == null || currentOperand == operands.size() )
+			{
+				if ( ! input.hasNext() ) {
+					return false;
+				}
+
+				currentInputMapping = input.next();
+				currentOperand = 0;
+			}
+
+			currentResults = operands.get( currentOperand++ ).execute( Collections.singletonList(currentInputMapping).iterator() );
+		}
+
+		return true;
+	}
+
+	public SolutionMapping next ()
+	{
+		if ( ! hasNext() ) {
+			throw new NoSuchElementException();
+		}
+
+		return currentResults.next();
+	}
+
+	public void remove ()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+	// implementation of the Closable interface
+
+	public void close ()
+	{
+		OptionalQueryIter.close( currentResults );
+		currentResults = null;
+		OptionalQueryIter.close( input );
+	}
+
+}
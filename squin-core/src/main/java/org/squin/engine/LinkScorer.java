@@ -0,0 +1,156 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine;
+
+import com.hp.hpl.jena.graph.Node;
+
+import org.squin.common.Priority;
+import org.squin.dataset.jenacommon.NodeDictionary;
+import org.squin.dataset.query.TriplePattern;
+import org.squin.ldcache.HostStatistics;
+import org.squin.util.IntHashMap;
+
+
+/**
+ * Scores the URIs discovered during a link traversal based query execution
+ * according to how relevant their look-up probably is for the query result.
+ * The score is a weighted sum of the following features:
+ * <ul>
+ * <li>whether the URI is bound to a variable that is probed by a later
+ *     triple pattern (i.e. whether a matching triple can only be found after
+ *     the URI has been looked up),</li>
+ * <li>the number of solutions that wait for the look-up,</li>
+ * <li>the average number of triples that past look-ups at the host of the
+ *     URI have yielded, and</li>
+ * <li>the traversal depth of the URI; that is, the number of links followed
+ *     from the URIs in the query to the URI.</li>
+ * </ul>
+ * The score refines the given priority level; that is, look-ups with the
+ * same level are executed in the order of their score (see
+ * {@link Priority#create}).
+ * An object of this class is used by all iterators of a single query
+ * execution.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class LinkScorer
+{
+	// members
+
+	static final public double PROBED_WEIGHT = 0.4;
+	static final public double WAITING_WEIGHT = 0.3;
+	static final public double HOST_WEIGHT = 0.2;
+	static final public double DEPTH_WEIGHT = 0.1;
+
+	/** the average number of triples per look-up for which the host feature is 0.5 */
+	static final public double HOST_YIELD_HALF_SCORE = 50.0;
+
+	final protected NodeDictionary nodeDict;
+	final protected HostStatistics hostStats;
+
+	// attention: access to this member must be synchronized on this object
+	/** the traversal depths of the URIs discovered during the query execution */
+	final protected IntHashMap<Integer> depths = new IntHashMap<Integer> ();
+
+
+	// initialization
+
+	public LinkScorer ( NodeDictionary nodeDict, HostStatistics hostStats )
+	{
+		assert nodeDict != null;
+		assert hostStats != null;
+
+		this.nodeDict = nodeDict;
+		this.hostStats = hostStats;
+	}
+
+
+	// accessors
+
+	/**
+	 * Returns the traversal depth of the URI with the given identifier;
+	 * URIs that have not been discovered during the query execution (i.e.
+	 * the URIs in the query) have depth 0.
+	 */
+	synchronized public int getDepth ( int uriID )
+	{
+		Integer d = depths.get( uriID );
+		return ( d == null ) ? 0 : d.intValue();
+	}
+
+
+	// operations
+
+	/**
+	 * Returns a priority of the given level that carries the score of the
+	 * look-up of the URI with the given identifier.
+	 *
+	 * @param probed true if the URI is bound to a variable that is probed by
+	 *               a later triple pattern
+	 * @param waiting the number of solutions that wait for the look-up
+	 */
+	public Priority score ( Priority level, int uriID, boolean probed, int waiting )
+	{
+		double s = 0.0;
+		if ( probed ) {
+			s += PROBED_WEIGHT;
+		}
+		s += WAITING_WEIGHT * ( 1.0 - 1.0/(1+waiting) );
+		s += HOST_WEIGHT * getHostScore( uriID );
+		s += DEPTH_WEIGHT / ( 1 + getDepth(uriID) );
+		return Priority.create( level, s );
+	}
+
+	/**
+	 * Records that the URI with the given identifier has been discovered in
+	 * a triple that matches the given (substituted) triple pattern. The
+	 * traversal depth of the URI is one more than the smallest depth of the
+	 * URIs in the pattern. The first discovery of a URI determines its depth.
+	 */
+	public void recordDiscovery ( int uriID, TriplePattern origin )
+	{
+		synchronized ( this )
+		{
+			if ( depths.containsKey(uriID) ) {
+				return;
+			}
+
+			int d = Integer.MAX_VALUE;
+			if ( ! origin.sIsVar && origin.s != uriID ) {
+				d = Math.min( d, getDepth(origin.s) );
+			}
+			if ( ! origin.oIsVar && origin.o != uriID ) {
+				d = Math.min( d, getDepth(origin.o) );
+			}
+			if ( d != Integer.MAX_VALUE ) {
+				depths.put( uriID, Integer.valueOf(d+1) );
+			}
+		}
+	}
+
+
+	// helper methods
+
+	/**
+	 * Returns a value between 0 and 1 that is the greater the more triples
+	 * look-ups at the host of the given URI have yielded in the past; 0.5 if
+	 * nothing is known about the host.
+	 */
+	protected double getHostScore ( int uriID )
+	{
+		Node n = nodeDict.getNode( uriID );
+		if ( n == null || ! n.isURI() ) {
+			return 0.5;
+		}
+
+		String host = HostStatistics.getHost( n.getURI() );
+		double avg = ( host == null ) ? -1.0 : hostStats.getAverageTripleCount( host );
+		if ( avg < 0.0 ) {
+			return 0.5;
+		}
+		return avg / ( avg + HOST_YIELD_HALF_SCORE );
+	}
+
+}
@@ -4,16 +4,24 @@
 */
 package org.squin.engine;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import com.hp.hpl.jena.graph.Graph;
 import com.hp.hpl.jena.sparql.core.DatasetGraph;
 import com.hp.hpl.jena.sparql.engine.main.OpExecutorFactory;
 import com.hp.hpl.jena.sparql.util.Context;
 
+import org.squin.common.Priority;
 import org.squin.dataset.jenacommon.NodeDictionary;
 import org.squin.dataset.query.arq.IdBasedExecutionContext;
 import org.squin.dataset.query.arq.VarDictionary;
 import org.squin.ldcache.AccessContext;
 import org.squin.ldcache.LinkedDataCache;
+import org.squin.ldcache.impl.UnregisteredAccessContextException;
+import org.squin.ldcache.TraversalBudget;
+import org.squin.lookup.ReachabilityCriterion;
+import org.squin.util.ConcurrentIntBitSet;
+import org.squin.util.IntHashSet;
 
 
 /**
@@ -30,32 +38,312 @@ public class LinkTraversalBasedExecutionContext extends IdBasedExecutionContext
 	final public AccessContext accessContext;
 	final public boolean predicateLookUpEnabled;
 
+	/** the number of worker threads that evaluate a BGP (1 means no parallel evaluation) */
+	final public int bgpParallelism;
+
+	/** true if a BGP that is evaluated in parallel must return its solutions in the sequential order */
+	final public boolean preserveSolutionOrder;
+
+	/**
+	 * the number of input solution mappings for which an iterator requests
+	 * the required data in advance (0 means that the input solution mappings
+	 * are postponed instead; see {@link OpExecutor})
+	 */
+	final public int lookaheadWindow;
+
+	/** decides which links in retrieved data are followed during this query execution */
+	final public ReachabilityCriterion reachability;
+
+	/** bounds the data retrieval during this query execution (null if unbounded) */
+	final public TraversalBudget traversalBudget;
+
+	/** scores the look-ups requested during this query execution */
+	final public LinkScorer linkScorer;
+
+	/** the time (in ms since the epoch) at which this query execution started */
+	final public long startTime = System.currentTimeMillis();
+
+	final private AtomicBoolean released = new AtomicBoolean( false );
+
+	/** the time (in ms since the epoch) at which the first solution was found (0 if none) */
+	private volatile long firstResultTime = 0L;
+
+	/**
+	 * the IDs of the URIs that contributed to the solutions of this query
+	 * execution (null if contributions are not recorded); access to this
+	 * member must be synchronized on the set
+	 */
+	private IntHashSet contributingURIs = null;
+
+	/**
+	 * the IDs of the nodes for which the iterators of this query execution
+	 * do not need to request prefetching anymore (see
+	 * {@link #markPrefetchRequested})
+	 */
+	final private ConcurrentIntBitSet prefetchRequested = new ConcurrentIntBitSet ();
+
+	/** the maximum number of buffered prefetch requests (see {@link #requestPrefetch}) */
+	static final public int PREFETCH_BATCH_SIZE = 32;
+
+	// the buffered prefetch requests; access to the following members must
+	// be synchronized on the buffer
+	final private int[] prefetchBuffer = new int[ PREFETCH_BATCH_SIZE ];
+	final private Priority[] prefetchPriorities = new Priority[ PREFETCH_BATCH_SIZE ];
+	private int prefetchCount = 0;
+
 
 	// initialization
 
-	public LinkTraversalBasedExecutionContext ( boolean predicateLookUpEnabled,
+	/**
+	 * Creates an execution context whose settings (predicate look-up, BGP
+	 * parallelism, solution order, look-ahead window, and provenance
+	 * recording) are read from the given configuration.
+	 *
+	 * @param reachability decides which links in retrieved data are followed
+	 *                     (if null, all links are followed)
+	 * @param traversalBudget bounds the data retrieval (if null, the data
+	 *                        retrieval is not bounded)
+	 */
+	public LinkTraversalBasedExecutionContext ( LinkTraversalBasedQueryEngineConfig config,
+	                                            ReachabilityCriterion reachability,
+	                                            TraversalBudget traversalBudget,
 	                                            NodeDictionary nodeDict,
 	                                            VarDictionary varDict,
-	                                            boolean recordProvenance,
 	                                            Context params,
 	                                            Graph activeGraph,
 	                                            LinkedDataCacheWrappingDatasetGraph dataset,
 	                                            OpExecutorFactory factory )
 	{
-		super( nodeDict, varDict, recordProvenance, params, activeGraph, dataset, factory );
+		super( nodeDict, varDict, config.isTrue(LinkTraversalBasedQueryEngineConfig.RECORD_PROVENANCE), params, activeGraph, dataset, factory );
 
-		this.predicateLookUpEnabled = predicateLookUpEnabled;
+		this.predicateLookUpEnabled = config.isTrue( LinkTraversalBasedQueryEngineConfig.ENABLE_PREDICATE_LOOKUP );
+		this.bgpParallelism = config.getIntValue( LinkTraversalBasedQueryEngineConfig.BGP_PARALLELISM );
+		this.preserveSolutionOrder = config.isTrue( LinkTraversalBasedQueryEngineConfig.PRESERVE_SOLUTION_ORDER );
+		this.lookaheadWindow = config.getIntValue( LinkTraversalBasedQueryEngineConfig.LOOKAHEAD_WINDOW );
 		this.ldcache = dataset.ldcache;
-		accessContext = ldcache.registerAccessContext();
-		    // TODO: Attention, this implementation does not unregister access
-		    //       contexts! We can only hope the LinkedDataCache implementation
-		    //       takes care of that, as the default implementation does. To
-		    //       properly unregister access contexts registered within the
-		    //       scope of the link traversal based query engine it would be
-		    //       necessary to hook into a close method of the ARQ query
-		    //       processing machinery which would mean the close method of
-		    //       a QueryExecution implementation and, thus, would require to
-		    //       reimplement QueryExecutionFactory it seems.
+		this.reachability = ( reachability == null ) ? ReachabilityCriteria.ALL : reachability;
+		this.traversalBudget = traversalBudget;
+		accessContext = ldcache.registerAccessContext( this.reachability, traversalBudget );
+		linkScorer = new LinkScorer( nodeDict, ldcache.getHostStatistics() );
+	}
+
+
+	// accessors
+
+	/**
+	 * Returns the version of the data in the Linked Data cache, which
+	 * changes whenever a retrieved graph has been indexed.
+	 */
+	@Override
+	public long getDataVersion ()
+	{
+		return ldcache.getDataVersion();
+	}
+
+
+	/**
+	 * Returns the time (in ms) from the start of this query execution until
+	 * the first solution had been found, or -1 if no solution has been found.
+	 */
+	public long getTimeToFirstResult ()
+	{
+		long t = firstResultTime;
+		return ( t == 0L ) ? -1L : t - startTime;
+	}
+
+	/**
+	 * Returns true if prefetching the data about the node with the given ID
+	 * has been requested during this query execution already (or if the
+	 * node is not a URI).
+	 */
+	public boolean isPrefetchRequested ( int nodeID )
+	{
+		return prefetchRequested.contains( nodeID );
+	}
+
+	/**
+	 * Returns true if the URIs that contribute to the solutions of this query
+	 * execution are recorded (see {@link #recordContribution}).
+	 */
+	public boolean isRecordingContributions ()
+	{
+		return contributingURIs != null;
+	}
+
+	/**
+	 * Returns the IDs of the URIs that contributed to the solutions of this
+	 * query execution so far (an empty array if contributions are not
+	 * recorded).
+	 */
+	public int[] getContributingURIs ()
+	{
+		if ( contributingURIs == null ) {
+			return new int[0];
+		}
+
+		synchronized ( contributingURIs ) {
+			return contributingURIs.toArray();
+		}
+	}
+
+
+	// operations
+
+	/**
+	 * Enables the recording of the URIs that contribute to the solutions of
+	 * this query execution; has to be called before the execution starts.
+	 */
+	public void enableContributionRecording ()
+	{
+		if ( contributingURIs == null ) {
+			contributingURIs = new IntHashSet ();
+		}
+	}
+
+	/**
+	 * Records that data about the URI with the given ID has been looked up
+	 * for a triple pattern that has matching triples. Has no effect if the
+	 * recording of contributions is not enabled.
+	 */
+	public void recordContribution ( int uriID )
+	{
+		if ( contributingURIs == null ) {
+			return;
+		}
+
+		synchronized ( contributingURIs ) {
+			contributingURIs.add( uriID );
+		}
+	}
+
+	/**
+	 * Records that prefetching the data about the node with the given ID has
+	 * been requested (or that the node is not a URI) so that the iterators of
+	 * this query execution do not request it again. This method does not
+	 * block.
+	 *
+	 * @return true if the node has not been marked before
+	 */
+	public boolean markPrefetchRequested ( int nodeID )
+	{
+		return prefetchRequested.add( nodeID );
+	}
+
+	/**
+	 * Buffers a request to prefetch the data about the URI with the given ID.
+	 * The buffered requests are issued as a single batch (see
+	 * {@link LinkedDataCache#ensureAvailability(AccessContext,int[],Priority[])})
+	 * when the buffer is full or when {@link #flushPrefetchRequests} is
+	 * called.
+	 */
+	public void requestPrefetch ( int uriID, Priority prio )
+	{
+		int[] uriIDs = null;
+		Priority[] prios = null;
+		synchronized ( prefetchBuffer )
+		{
+			prefetchBuffer[prefetchCount] = uriID;
+			prefetchPriorities[prefetchCount] = prio;
+			prefetchCount++;
+
+			// the full buffer is taken out while we hold the lock; otherwise,
+			// another thread (e.g. of a parallel BGP evaluation) could write
+			// beyond its end before we flush it
+			if ( prefetchCount == PREFETCH_BATCH_SIZE ) {
+				uriIDs = prefetchBuffer.clone();
+				prios = prefetchPriorities.clone();
+				prefetchCount = 0;
+			}
+		}
+
+		if ( uriIDs != null ) {
+			issuePrefetchRequests( uriIDs, prios );
+		}
+	}
+
+	/**
+	 * Issues the buffered prefetch requests (see {@link #requestPrefetch}).
+	 * Iterators have to call this method before they wait for the retrieval
+	 * of data so that the buffered requests are not delayed.
+	 */
+	public void flushPrefetchRequests ()
+	{
+		int[] uriIDs;
+		Priority[] prios;
+		synchronized ( prefetchBuffer )
+		{
+			if ( prefetchCount == 0 ) {
+				return;
+			}
+
+			uriIDs = new int[ prefetchCount ];
+			prios = new Priority[ prefetchCount ];
+			System.arraycopy( prefetchBuffer, 0, uriIDs, 0, prefetchCount );
+			System.arraycopy( prefetchPriorities, 0, prios, 0, prefetchCount );
+			prefetchCount = 0;
+		}
+
+		issuePrefetchRequests( uriIDs, prios );
+	}
+
+	/**
+	 * Requests the given batch of prefetch requests from the Linked Data
+	 * cache; must not be called while the prefetch buffer is locked.
+	 */
+	protected void issuePrefetchRequests ( int[] uriIDs, Priority[] prios )
+	{
+		if ( isCancelled() ) {
+			return;
+		}
+
+		try {
+			ldcache.ensureAvailability( accessContext, uriIDs, prios );
+		}
+		catch ( UnregisteredAccessContextException e ) {
+			// the access context has been released in the meantime
+		}
+	}
+
+	/**
+	 * Records that a solution of the query has been found.
+	 */
+	public void recordResult ()
+	{
+		if ( firstResultTime == 0L ) {
+			firstResultTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Marks the query execution as cancelled and withdraws all data
+	 * retrievals that are still pending within the access context of this
+	 * query execution. Iterators waiting for such a retrieval are woken up.
+	 */
+	@Override
+	public void cancel ()
+	{
+		super.cancel();
+
+		try {
+			ldcache.cancelDataRetrievals( accessContext );
+		}
+		catch ( UnregisteredAccessContextException e ) {
+			// the access context has already been released
+		}
+	}
+
+	/**
+	 * Releases the access context of this query execution; that is, pending
+	 * data retrievals are withdrawn and the access context is unregistered.
+	 * This method has to be called when the query execution is closed; it
+	 * has no effect if it is called again.
+	 */
+	public void release ()
+	{
+		if ( released.compareAndSet(false,true) ) {
+			super.cancel();
+			accessContext.close();
+		}
 	}
 
 }
@@ -4,6 +4,11 @@
 */
 package org.squin.engine;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,14 +25,18 @@ import com.hp.hpl.jena.sparql.engine.QueryIterator;
 import com.hp.hpl.jena.sparql.engine.QueryEngineFactory;
 import com.hp.hpl.jena.sparql.engine.QueryEngineRegistry;
 import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIteratorWrapper;
 import com.hp.hpl.jena.sparql.engine.main.QC;
 import com.hp.hpl.jena.sparql.util.Context;
 import com.hp.hpl.jena.sparql.util.Symbol;
 
 import org.squin.common.Priority;
+import org.squin.dataset.query.arq.MatchCache;
 import org.squin.dataset.query.arq.QueryEngine;
+import org.squin.dataset.query.arq.RequiredVars;
 import org.squin.dataset.query.arq.VarDictionary;
 import org.squin.ldcache.AccessContext;
+import org.squin.ldcache.TraversalBudget;
 import org.squin.ldcache.jenaimpl.JenaIOBasedLinkedDataCache;
 
 
@@ -48,6 +57,23 @@ public class LinkTraversalBasedQueryEngine extends QueryEngine
 
 	static public final Symbol ctxtKeyConfig = Symbol.create( "org.squin.engine.LinkTraversalBasedQueryEngine.ctxtKeyConfig" );
 
+	/**
+	 * The key for a {@link QueryPlan} in the context of a query execution.
+	 * If the context contains a plan for the executed query (and for the
+	 * configuration of the execution) the engine reuses the parts of the
+	 * plan that have been created by previous executions.
+	 */
+	static public final Symbol ctxtKeyQueryPlan = Symbol.create( "org.squin.engine.LinkTraversalBasedQueryEngine.ctxtKeyQueryPlan" );
+
+	/**
+	 * The key for a {@link TraversalBudget} in the context of a query
+	 * execution. If the context does not contain a budget, the engine
+	 * creates one from the configuration (if it specifies any limit). After
+	 * the execution, the budget tells whether the result may be partial (see
+	 * {@link TraversalBudget#hasLimitedTraversal}).
+	 */
+	static public final Symbol ctxtKeyTraversalBudget = Symbol.create( "org.squin.engine.LinkTraversalBasedQueryEngine.ctxtKeyTraversalBudget" );
+
 	/**
 	 * Returns a factory that creates a {@link LinkTraversalBasedQueryEngine}.
 	 */
@@ -98,8 +124,34 @@ public class LinkTraversalBasedQueryEngine extends QueryEngine
 
 	// operations
 
+	@Override
+	protected Op createOp ( Query query )
+	{
+		QueryPlan plan = getQueryPlan();
+		if ( plan != null && plan.query == query ) {
+			return plan.getCompiledOp();
+		}
+
+		return super.createOp( query );
+	}
+
 	@Override
 	protected Op modifyOp ( Op op )
+	{
+		QueryPlan plan = getQueryPlan();
+		if ( plan == null || op != plan.getCompiledOp() ) {
+			return optimize( op );
+		}
+
+		synchronized ( plan ) {
+			if ( plan.getOptimizedOp() == null ) {
+				plan.setOptimizedOp( optimize(op) );
+			}
+			return plan.getOptimizedOp();
+		}
+	}
+
+	protected Op optimize ( Op op )
 	{
 		// We need to apply the query rewriting rules that come with ARQ. In
 		// particular, we need the rule TransformJoinStrategy because this one
@@ -112,6 +164,9 @@ public class LinkTraversalBasedQueryEngine extends QueryEngine
 		// However, we don't want the TransformFilterPlacement rule because it
 		// breaks up BGPs. Hence, we have to disable filterPlacement.
 		//                                                  Olaf,  June 9, 2010
+		// Filters are nonetheless evaluated early: our OpExecutor attaches
+		// them to the triple pattern iterators within the BGP (see
+		// org.squin.dataset.query.arq.OpExecutor#execute(OpFilter,QueryIterator)).
 		context.setFalse( ARQ.optFilterPlacement );
 		return super.modifyOp( op );
 	}
@@ -123,40 +178,252 @@ public class LinkTraversalBasedQueryEngine extends QueryEngine
 			op = Substitute.substitute( op, input );
 		}
 
-		LinkTraversalBasedExecutionContext execCxt = createExecutionContext( op, (LinkedDataCacheWrappingDatasetGraph) dsg, context );
-		prefetchSeedURIs( op, execCxt );
-		return createIteratorChain( op, input, execCxt );
+		// use the query plan only if we execute the optimized operator tree
+		// of the plan (and not, e.g., an operator tree with substituted
+		// variables)
+		QueryPlan plan = getQueryPlan();
+		if ( plan != null && op != plan.getOptimizedOp() ) {
+			plan = null;
+		}
+
+		LinkTraversalBasedQueryEngineConfig config = getConfig( context );
+		LinkTraversalBasedExecutionContext execCxt = createExecutionContext( op, (LinkedDataCacheWrappingDatasetGraph) dsg, context, plan );
+		execCxt.setRequiredVars( getRequiredVars(op,plan) );
+		int matchCacheCapacity = config.getIntValue( LinkTraversalBasedQueryEngineConfig.MATCH_CACHE_CAPACITY );
+		if ( matchCacheCapacity > 0 ) {
+			execCxt.setMatchCache( new MatchCache(matchCacheCapacity) );
+		}
+		prefetchSeedURIs( op, execCxt, plan );
+
+		int maxPredictedURIs = config.getIntValue( LinkTraversalBasedQueryEngineConfig.MAX_PREDICTED_SEED_URIS );
+		if ( maxPredictedURIs == 0 ) {
+			return new ReleasingQueryIter( createIteratorChain(op,input,execCxt), execCxt );
+		}
+
+		TraversalHistory.Key historyKey = getHistoryKey( op, plan );
+		execCxt.enableContributionRecording();
+		List<String> predictedURIs = prefetchPredictedURIs( historyKey, maxPredictedURIs, execCxt );
+		return new ReleasingQueryIter( createIteratorChain(op,input,execCxt), execCxt, historyKey, predictedURIs );
 	}
 
 
 	// helpers
 
-	protected LinkTraversalBasedExecutionContext createExecutionContext ( Op op, LinkedDataCacheWrappingDatasetGraph dsg, Context context )
+	/**
+	 * Returns the configuration in the given context, or a default
+	 * configuration if there is no configuration in the context.
+	 */
+	static protected LinkTraversalBasedQueryEngineConfig getConfig ( Context context )
+	{
+		return context.isDefined( ctxtKeyConfig ) ? (LinkTraversalBasedQueryEngineConfig) context.get( ctxtKeyConfig ) : new LinkTraversalBasedQueryEngineConfig();
+	}
+
+	/**
+	 * Returns the query plan in the context of this engine, or null if there
+	 * is no plan or if the plan has been created for another configuration.
+	 */
+	protected QueryPlan getQueryPlan ()
+	{
+		if ( ! context.isDefined(ctxtKeyQueryPlan) ) {
+			return null;
+		}
+
+		QueryPlan plan = (QueryPlan) context.get( ctxtKeyQueryPlan );
+		if ( ! plan.configSignature.equals(getConfig(context).toString()) ) {
+			log.debug( "Ignoring the query plan for query {} because it has been created for another configuration.", plan.queryString );
+			return null;
+		}
+		return plan;
+	}
+
+	protected LinkTraversalBasedExecutionContext createExecutionContext ( Op op, LinkedDataCacheWrappingDatasetGraph dsg, Context context, QueryPlan plan )
 	{
-		LinkTraversalBasedQueryEngineConfig config = context.isDefined( ctxtKeyConfig ) ? (LinkTraversalBasedQueryEngineConfig) context.get( ctxtKeyConfig ) : new LinkTraversalBasedQueryEngineConfig();
-		VarDictionary varDict = initializeVarDictionary( op );
+		LinkTraversalBasedQueryEngineConfig config = getConfig( context );
 
-		return new LinkTraversalBasedExecutionContext( config.isTrue(LinkTraversalBasedQueryEngineConfig.ENABLE_PREDICATE_LOOKUP),
+		VarDictionary varDict;
+		if ( plan == null ) {
+			varDict = initializeVarDictionary( op );
+		}
+		else synchronized ( plan ) {
+			varDict = plan.getVarDictionary();
+			if ( varDict == null ) {
+				varDict = initializeVarDictionary( op );
+				plan.setVarDictionary( varDict );
+			}
+		}
+
+		TraversalBudget budget = context.isDefined( ctxtKeyTraversalBudget ) ? (TraversalBudget) context.get( ctxtKeyTraversalBudget ) : config.createTraversalBudget();
+
+		return new LinkTraversalBasedExecutionContext( config,
+		                                               ReachabilityCriteria.create(config,op,dsg.ldcache.getNodeDictionary()),
+		                                               budget,
 		                                               dsg.ldcache.getNodeDictionary(),
 		                                               varDict,
-		                                               config.isTrue(LinkTraversalBasedQueryEngineConfig.RECORD_PROVENANCE),
 		                                               context,
 		                                               dsg.getDefaultGraph(),
 		                                               dsg,
 		                                               QC.getFactory(context) ) ;
 	}
 
+	/**
+	 * Returns the variables required by the operators of the given operator
+	 * tree; the analysis is taken from (or recorded in) the given plan.
+	 */
+	protected RequiredVars getRequiredVars ( Op op, QueryPlan plan )
+	{
+		if ( plan == null ) {
+			return RequiredVars.analyze( op );
+		}
+
+		synchronized ( plan )
+		{
+			RequiredVars requiredVars = plan.getRequiredVars();
+			if ( requiredVars == null ) {
+				requiredVars = RequiredVars.analyze( op );
+				plan.setRequiredVars( requiredVars );
+			}
+			return requiredVars;
+		}
+	}
+
+	/**
+	 * Returns the key of the given operator tree in the
+	 * {@link TraversalHistory}; the key is taken from (or recorded in) the
+	 * given plan.
+	 */
+	protected TraversalHistory.Key getHistoryKey ( Op op, QueryPlan plan )
+	{
+		if ( plan == null ) {
+			return TraversalHistory.createKey( op );
+		}
+
+		synchronized ( plan )
+		{
+			TraversalHistory.Key key = plan.getHistoryKey();
+			if ( key == null ) {
+				key = TraversalHistory.createKey( op );
+				plan.setHistoryKey( key );
+			}
+			return key;
+		}
+	}
+
 	/** initializes prefetching of the URIs in the query */
-	protected void prefetchSeedURIs ( Op op, LinkTraversalBasedExecutionContext execCxt )
+	protected void prefetchSeedURIs ( Op op, LinkTraversalBasedExecutionContext execCxt, QueryPlan plan )
 	{
-		URICollector c = new URICollector( execCxt.predicateLookUpEnabled );
-		OpWalker.walk( op, c );
+		Set<Node> seedURIs = ( plan == null ) ? null : plan.getSeedURIs();
+		if ( seedURIs == null )
+		{
+			URICollector c = new URICollector( execCxt.predicateLookUpEnabled );
+			OpWalker.walk( op, c );
+			seedURIs = c.getURIs();
+			if ( plan != null ) {
+				plan.setSeedURIs( seedURIs );
+			}
+		}
+
 		log.debug( "Prefetching seed URIs ..." );
-		for ( Node uriNode : c.getURIs() ) {
+		for ( Node uriNode : seedURIs ) {
 			log.debug( "Requesting seed URI {}", uriNode.getURI() );
 			( (JenaIOBasedLinkedDataCache) execCxt.ldcache ).ensureAvailability( execCxt.accessContext, uriNode, Priority.HIGH );
 		}
 		log.debug( "... requesting seed URIs finished." );
 	}
 
+	/**
+	 * Initializes prefetching of the URIs that contributed to the solutions
+	 * of previous executions of queries with the same shape (see
+	 * {@link TraversalHistory}). These look-ups are speculative; hence, they
+	 * are requested with a lower priority than the seed URIs.
+	 *
+	 * @return the predicted URIs
+	 */
+	protected List<String> prefetchPredictedURIs ( TraversalHistory.Key historyKey, int max, LinkTraversalBasedExecutionContext execCxt )
+	{
+		List<String> predictedURIs = TraversalHistory.getDefault().predict( historyKey, max );
+		if ( predictedURIs.isEmpty() ) {
+			return predictedURIs;
+		}
+
+		log.debug( "Prefetching {} predicted URIs ...", predictedURIs.size() );
+		for ( String uri : predictedURIs ) {
+			( (JenaIOBasedLinkedDataCache) execCxt.ldcache ).ensureAvailability( execCxt.accessContext, Node.createURI(uri), Priority.MEDIUM );
+		}
+		log.debug( "... requesting predicted URIs finished." );
+		return predictedURIs;
+	}
+
+
+	/**
+	 * Wraps the iterator chain of a query execution in order to release the
+	 * execution context when the query execution is closed (e.g. because a
+	 * LIMIT has been reached or an ASK query found a solution) or cancelled.
+	 * This drops the outstanding data retrievals of the query execution.
+	 * If a key in the {@link TraversalHistory} is given, the URIs that
+	 * contributed to the solutions are recorded in the history when the query
+	 * execution is closed.
+	 */
+	static class ReleasingQueryIter extends QueryIteratorWrapper
+	{
+		final protected LinkTraversalBasedExecutionContext execCxt;
+		final protected TraversalHistory.Key historyKey;
+		final protected List<String> predictedURIs;
+
+		public ReleasingQueryIter ( QueryIterator qIter, LinkTraversalBasedExecutionContext execCxt )
+		{
+			this( qIter, execCxt, null, Collections.<String>emptyList() );
+		}
+
+		public ReleasingQueryIter ( QueryIterator qIter, LinkTraversalBasedExecutionContext execCxt, TraversalHistory.Key historyKey, List<String> predictedURIs )
+		{
+			super( qIter );
+			this.execCxt = execCxt;
+			this.historyKey = historyKey;
+			this.predictedURIs = predictedURIs;
+		}
+
+		@Override
+		protected Binding moveToNextBinding ()
+		{
+			Binding b = super.moveToNextBinding();
+			execCxt.recordResult();
+			return b;
+		}
+
+		@Override
+		protected void closeIterator ()
+		{
+			try {
+				super.closeIterator();
+			}
+			finally {
+				execCxt.release();
+				if ( historyKey != null ) {
+					recordTraversal();
+				}
+			}
+		}
+
+		protected void recordTraversal ()
+		{
+			List<String> contributingURIs = new ArrayList<String> ();
+			for ( int id : execCxt.getContributingURIs() )
+			{
+				Node n = execCxt.nodeDict.getNode( id );
+				if ( n != null && n.isURI() ) {
+					contributingURIs.add( n.getURI() );
+				}
+			}
+
+			TraversalHistory.getDefault().record( historyKey, contributingURIs, predictedURIs, execCxt.getTimeToFirstResult() );
+		}
+
+		@Override
+		protected void requestCancel ()
+		{
+			execCxt.cancel();
+			super.requestCancel();
+		}
+	}
+
 }
@@ -6,6 +6,9 @@ package org.squin.engine;
 
 import com.hp.hpl.jena.sparql.util.Symbol;
 
+import org.squin.dataset.query.arq.MatchCache;
+import org.squin.ldcache.TraversalBudget;
+
 
 /**
  * The configuration of a {@link LinkTraversalBasedQueryEngine}.
@@ -22,17 +25,163 @@ public class LinkTraversalBasedQueryEngineConfig
 	/** enables the recording of provenance information during the query execution */
 	public static final ConfigOption RECORD_PROVENANCE = new ConfigOption( "RECORD_PROVENANCE" );
 
+	/**
+	 * the number of worker threads that evaluate a BGP in parallel; with a
+	 * value of 1 a BGP is evaluated completely by the thread that consumes
+	 * the query result
+	 */
+	public static final ConfigOption BGP_PARALLELISM = new ConfigOption( "BGP_PARALLELISM" );
+
+	/**
+	 * ensures that the solutions of a BGP that is evaluated in parallel are
+	 * returned in the same order as if the BGP was evaluated sequentially
+	 */
+	public static final ConfigOption PRESERVE_SOLUTION_ORDER = new ConfigOption( "PRESERVE_SOLUTION_ORDER" );
+
+	/**
+	 * the number of input solution mappings for which an iterator of a
+	 * triple pattern requests the required data in advance (see
+	 * {@link NaiveTriplePatternQueryIter}); with a value of 0 the iterators
+	 * postpone input solution mappings for which the data is missing
+	 * instead (see {@link PostponingTriplePatternQueryIter}); the
+	 * iterators return their solutions in the order of the input if
+	 * {@link #PRESERVE_SOLUTION_ORDER} is enabled
+	 */
+	public static final ConfigOption LOOKAHEAD_WINDOW = new ConfigOption( "LOOKAHEAD_WINDOW" );
+
+	/**
+	 * the maximum number of matching triples that are memorized for the
+	 * triple patterns of a query execution (see
+	 * {@link org.squin.dataset.query.arq.MatchCache}); 0 disables memorizing
+	 */
+	public static final ConfigOption MATCH_CACHE_CAPACITY = new ConfigOption( "MATCH_CACHE_CAPACITY" );
+
+	/**
+	 * the reachability criterion that decides which links in retrieved data
+	 * are followed (see {@link ReachabilityCriteria}); either ALL, MATCH, or
+	 * NONE (the names cAll, cMatch, and cNone are accepted as well)
+	 */
+	public static final ConfigOption REACHABILITY_CRITERION = new ConfigOption( "REACHABILITY_CRITERION" );
+
+	/**
+	 * a white-space separated list of predicate URIs; if not empty, only
+	 * links with one of these predicates are followed
+	 */
+	public static final ConfigOption FOLLOWED_PREDICATES = new ConfigOption( "FOLLOWED_PREDICATES" );
+
+	/** a white-space separated list of predicate URIs; links with one of these predicates are not followed */
+	public static final ConfigOption IGNORED_PREDICATES = new ConfigOption( "IGNORED_PREDICATES" );
+
+	/** restricts link traversal to links between URIs of the same host */
+	public static final ConfigOption SAME_HOST_LINKS_ONLY = new ConfigOption( "SAME_HOST_LINKS_ONLY" );
+
+	/**
+	 * the maximum number of documents retrieved during a query execution;
+	 * 0 means unlimited (see {@link TraversalBudget})
+	 */
+	public static final ConfigOption MAX_DOCUMENTS = new ConfigOption( "MAX_DOCUMENTS" );
+
+	/**
+	 * the maximum number of bytes retrieved during a query execution;
+	 * 0 means unlimited (see {@link TraversalBudget})
+	 */
+	public static final ConfigOption MAX_BYTES = new ConfigOption( "MAX_BYTES" );
+
+	/**
+	 * the maximum number of look-ups that a query execution may have in
+	 * flight at the same time; 0 means unlimited (see {@link TraversalBudget})
+	 */
+	public static final ConfigOption MAX_LOOKUPS_IN_FLIGHT = new ConfigOption( "MAX_LOOKUPS_IN_FLIGHT" );
+
+	/**
+	 * the time (in ms) during which a query execution may retrieve data;
+	 * afterwards the query result is completed with the data in the cache;
+	 * 0 means unlimited (see {@link TraversalBudget}); the resulting deadline
+	 * also schedules the look-ups of the query execution earliest deadline
+	 * first, and look-ups that could not be started before the deadline are
+	 * dropped
+	 */
+	public static final ConfigOption QUERY_TIMEOUT = new ConfigOption( "QUERY_TIMEOUT" );
+
+	/**
+	 * the maximum number of URIs that are looked up at the start of a query
+	 * execution because they contributed to the solutions of previous
+	 * executions of queries with the same shape (see {@link TraversalHistory});
+	 * 0 disables these predictive look-ups
+	 */
+	public static final ConfigOption MAX_PREDICTED_SEED_URIS = new ConfigOption( "MAX_PREDICTED_SEED_URIS" );
+
 
 	// default values for the configuration options
 
 	public static final boolean ENABLE_PREDICATE_LOOKUP_DEFAULT = false;
 	public static final boolean RECORD_PROVENANCE_DEFAULT = false;
+	public static final int BGP_PARALLELISM_DEFAULT = 1;
+	public static final boolean PRESERVE_SOLUTION_ORDER_DEFAULT = true;
+	public static final int LOOKAHEAD_WINDOW_DEFAULT = 0;
+	public static final int MATCH_CACHE_CAPACITY_DEFAULT = MatchCache.DEFAULT_CAPACITY;
+	public static final String REACHABILITY_CRITERION_DEFAULT = "ALL";
+	public static final String FOLLOWED_PREDICATES_DEFAULT = "";
+	public static final String IGNORED_PREDICATES_DEFAULT = "";
+	public static final boolean SAME_HOST_LINKS_ONLY_DEFAULT = false;
+	public static final int MAX_DOCUMENTS_DEFAULT = 0;
+	public static final long MAX_BYTES_DEFAULT = 0L;
+	public static final int MAX_LOOKUPS_IN_FLIGHT_DEFAULT = 0;
+	public static final int QUERY_TIMEOUT_DEFAULT = 0;
+	public static final int MAX_PREDICTED_SEED_URIS_DEFAULT = 64;
 
 
 	// current values
 
 	private Boolean current_ENABLE_PREDICATE_LOOKUP = ENABLE_PREDICATE_LOOKUP_DEFAULT;
 	private Boolean current_RECORD_PROVENANCE = RECORD_PROVENANCE_DEFAULT;
+	private Integer current_BGP_PARALLELISM = BGP_PARALLELISM_DEFAULT;
+	private Boolean current_PRESERVE_SOLUTION_ORDER = PRESERVE_SOLUTION_ORDER_DEFAULT;
+	private Integer current_LOOKAHEAD_WINDOW = LOOKAHEAD_WINDOW_DEFAULT;
+	private Integer current_MATCH_CACHE_CAPACITY = MATCH_CACHE_CAPACITY_DEFAULT;
+	private String current_REACHABILITY_CRITERION = REACHABILITY_CRITERION_DEFAULT;
+	private String current_FOLLOWED_PREDICATES = FOLLOWED_PREDICATES_DEFAULT;
+	private String current_IGNORED_PREDICATES = IGNORED_PREDICATES_DEFAULT;
+	private Boolean current_SAME_HOST_LINKS_ONLY = SAME_HOST_LINKS_ONLY_DEFAULT;
+	private Integer current_MAX_DOCUMENTS = MAX_DOCUMENTS_DEFAULT;
+	private Long current_MAX_BYTES = MAX_BYTES_DEFAULT;
+	private Integer current_MAX_LOOKUPS_IN_FLIGHT = MAX_LOOKUPS_IN_FLIGHT_DEFAULT;
+	private Integer current_QUERY_TIMEOUT = QUERY_TIMEOUT_DEFAULT;
+	private Integer current_MAX_PREDICTED_SEED_URIS = MAX_PREDICTED_SEED_URIS_DEFAULT;
+
+
+	// initialization
+
+	/**
+	 * Creates a configuration with the default values.
+	 */
+	public LinkTraversalBasedQueryEngineConfig ()
+	{
+	}
+
+	/**
+	 * Creates a configuration with the current values of the given one;
+	 * e.g. in order to change some values for a single query execution
+	 * without changing a configuration that is shared.
+	 */
+	public LinkTraversalBasedQueryEngineConfig ( LinkTraversalBasedQueryEngineConfig other )
+	{
+		current_ENABLE_PREDICATE_LOOKUP = other.current_ENABLE_PREDICATE_LOOKUP;
+		current_RECORD_PROVENANCE = other.current_RECORD_PROVENANCE;
+		current_BGP_PARALLELISM = other.current_BGP_PARALLELISM;
+		current_PRESERVE_SOLUTION_ORDER = other.current_PRESERVE_SOLUTION_ORDER;
+		current_LOOKAHEAD_WINDOW = other.current_LOOKAHEAD_WINDOW;
+		current_MATCH_CACHE_CAPACITY = other.current_MATCH_CACHE_CAPACITY;
+		current_REACHABILITY_CRITERION = other.current_REACHABILITY_CRITERION;
+		current_FOLLOWED_PREDICATES = other.current_FOLLOWED_PREDICATES;
+		current_IGNORED_PREDICATES = other.current_IGNORED_PREDICATES;
+		current_SAME_HOST_LINKS_ONLY = other.current_SAME_HOST_LINKS_ONLY;
+		current_MAX_DOCUMENTS = other.current_MAX_DOCUMENTS;
+		current_MAX_BYTES = other.current_MAX_BYTES;
+		current_MAX_LOOKUPS_IN_FLIGHT = other.current_MAX_LOOKUPS_IN_FLIGHT;
+		current_QUERY_TIMEOUT = other.current_QUERY_TIMEOUT;
+		current_MAX_PREDICTED_SEED_URIS = other.current_MAX_PREDICTED_SEED_URIS;
+	}
 
 
 	// generic accessor methods
@@ -53,6 +202,45 @@ public class LinkTraversalBasedQueryEngineConfig
 		else if ( option.equals(RECORD_PROVENANCE) ) {
 			current_RECORD_PROVENANCE = Boolean.valueOf( "true".equalsIgnoreCase(value) || "on".equalsIgnoreCase(value) || "1".equals(value) );
 		}
+		else if ( option.equals(BGP_PARALLELISM) ) {
+			current_BGP_PARALLELISM = parsePositiveInt( option, value );
+		}
+		else if ( option.equals(PRESERVE_SOLUTION_ORDER) ) {
+			current_PRESERVE_SOLUTION_ORDER = Boolean.valueOf( "true".equalsIgnoreCase(value) || "on".equalsIgnoreCase(value) || "1".equals(value) );
+		}
+		else if ( option.equals(LOOKAHEAD_WINDOW) ) {
+			current_LOOKAHEAD_WINDOW = parseNonNegativeInt( option, value );
+		}
+		else if ( option.equals(MATCH_CACHE_CAPACITY) ) {
+			current_MATCH_CACHE_CAPACITY = parseNonNegativeInt( option, value );
+		}
+		else if ( option.equals(REACHABILITY_CRITERION) ) {
+			current_REACHABILITY_CRITERION = parseReachabilityCriterion( option, value );
+		}
+		else if ( option.equals(FOLLOWED_PREDICATES) ) {
+			current_FOLLOWED_PREDICATES = parseURIList( value );
+		}
+		else if ( option.equals(IGNORED_PREDICATES) ) {
+			current_IGNORED_PREDICATES = parseURIList( value );
+		}
+		else if ( option.equals(SAME_HOST_LINKS_ONLY) ) {
+			current_SAME_HOST_LINKS_ONLY = Boolean.valueOf( "true".equalsIgnoreCase(value) || "on".equalsIgnoreCase(value) || "1".equals(value) );
+		}
+		else if ( option.equals(MAX_DOCUMENTS) ) {
+			current_MAX_DOCUMENTS = parseNonNegativeInt( option, value );
+		}
+		else if ( option.equals(MAX_BYTES) ) {
+			current_MAX_BYTES = parseNonNegativeLong( option, value );
+		}
+		else if ( option.equals(MAX_LOOKUPS_IN_FLIGHT) ) {
+			current_MAX_LOOKUPS_IN_FLIGHT = parseNonNegativeInt( option, value );
+		}
+		else if ( option.equals(QUERY_TIMEOUT) ) {
+			current_QUERY_TIMEOUT = parseNonNegativeInt( option, value );
+		}
+		else if ( option.equals(MAX_PREDICTED_SEED_URIS) ) {
+			current_MAX_PREDICTED_SEED_URIS = parseNonNegativeInt( option, value );
+		}
 		else {
 			throw new IllegalArgumentException( "Unknown config option (" + option.toString() + ")." );
 		}
@@ -70,6 +258,18 @@ public class LinkTraversalBasedQueryEngineConfig
 		          value ? "true" : "false" );
 	}
 
+	/**
+	 * Sets an integer configuration option.
+	 *
+	 * @param option denotes the configuration option to be set
+	 * @param value the value
+	 */
+	public void setValue ( ConfigOption option, int value ) throws IllegalArgumentException
+	{
+		setValue( option,
+		          String.valueOf(value) );
+	}
+
 	/**
 	 * Returns an object representation of the value for the given configuration
 	 * option.
@@ -84,6 +284,45 @@ public class LinkTraversalBasedQueryEngineConfig
 		else if ( option.equals(RECORD_PROVENANCE) ) {
 			return current_RECORD_PROVENANCE;
 		}
+		else if ( option.equals(BGP_PARALLELISM) ) {
+			return current_BGP_PARALLELISM;
+		}
+		else if ( option.equals(PRESERVE_SOLUTION_ORDER) ) {
+			return current_PRESERVE_SOLUTION_ORDER;
+		}
+		else if ( option.equals(LOOKAHEAD_WINDOW) ) {
+			return current_LOOKAHEAD_WINDOW;
+		}
+		else if ( option.equals(MATCH_CACHE_CAPACITY) ) {
+			return current_MATCH_CACHE_CAPACITY;
+		}
+		else if ( option.equals(REACHABILITY_CRITERION) ) {
+			return current_REACHABILITY_CRITERION;
+		}
+		else if ( option.equals(FOLLOWED_PREDICATES) ) {
+			return current_FOLLOWED_PREDICATES;
+		}
+		else if ( option.equals(IGNORED_PREDICATES) ) {
+			return current_IGNORED_PREDICATES;
+		}
+		else if ( option.equals(SAME_HOST_LINKS_ONLY) ) {
+			return current_SAME_HOST_LINKS_ONLY;
+		}
+		else if ( option.equals(MAX_DOCUMENTS) ) {
+			return current_MAX_DOCUMENTS;
+		}
+		else if ( option.equals(MAX_BYTES) ) {
+			return current_MAX_BYTES;
+		}
+		else if ( option.equals(MAX_LOOKUPS_IN_FLIGHT) ) {
+			return current_MAX_LOOKUPS_IN_FLIGHT;
+		}
+		else if ( option.equals(QUERY_TIMEOUT) ) {
+			return current_QUERY_TIMEOUT;
+		}
+		else if ( option.equals(MAX_PREDICTED_SEED_URIS) ) {
+			return current_MAX_PREDICTED_SEED_URIS;
+		}
 
 		throw new IllegalArgumentException();
 	}
@@ -105,8 +344,188 @@ public class LinkTraversalBasedQueryEngineConfig
 		}
 	}
 
+	/**
+	 * Returns the value of the given configuration option (for integer
+	 * options only).
+	 *
+	 * @exception IllegalArgumentException The given option is not an integer option.
+	 */
+	public int getIntValue ( ConfigOption option ) throws IllegalArgumentException
+	{
+		Object v = getValue( option );
+		if ( v instanceof Integer ) {
+			return ( (Integer) v ).intValue();
+		}
+		else {
+			throw new IllegalArgumentException( "The config option '" + option.toString() + "' does not have an integer value." );
+		}
+	}
+
+	/**
+	 * Returns the value of the given configuration option (for long integer
+	 * options only).
+	 *
+	 * @exception IllegalArgumentException The given option is not a long integer option.
+	 */
+	public long getLongValue ( ConfigOption option ) throws IllegalArgumentException
+	{
+		Object v = getValue( option );
+		if ( v instanceof Long ) {
+			return ( (Long) v ).longValue();
+		}
+		else {
+			throw new IllegalArgumentException( "The config option '" + option.toString() + "' does not have a long integer value." );
+		}
+	}
+
+	/**
+	 * Returns the value of the given configuration option (for string
+	 * options only).
+	 *
+	 * @exception IllegalArgumentException The given option is not a string option.
+	 */
+	public String getStringValue ( ConfigOption option ) throws IllegalArgumentException
+	{
+		Object v = getValue( option );
+		if ( v instanceof String ) {
+			return (String) v;
+		}
+		else {
+			throw new IllegalArgumentException( "The config option '" + option.toString() + "' does not have a string value." );
+		}
+	}
+
+
+	/**
+	 * Returns a new traversal budget with the limits specified by the
+	 * configuration options {@link #MAX_DOCUMENTS}, {@link #MAX_BYTES},
+	 * {@link #MAX_LOOKUPS_IN_FLIGHT}, and {@link #QUERY_TIMEOUT}, or null if
+	 * none of these options specifies a limit.
+	 */
+	public TraversalBudget createTraversalBudget ()
+	{
+		if (    current_MAX_DOCUMENTS.intValue() == 0
+		     && current_MAX_BYTES.longValue() == 0L
+		     && current_MAX_LOOKUPS_IN_FLIGHT.intValue() == 0
+		     && current_QUERY_TIMEOUT.intValue() == 0 ) {
+			return null;
+		}
+
+		return new TraversalBudget( current_MAX_DOCUMENTS.intValue(),
+		                            current_MAX_BYTES.longValue(),
+		                            current_MAX_LOOKUPS_IN_FLIGHT.intValue(),
+		                            current_QUERY_TIMEOUT.longValue() );
+	}
+
+
+	/**
+	 * Returns a string representation of all current values. Two
+	 * configurations with the same values have the same string
+	 * representation; hence, it can be used to detect configuration changes
+	 * (see {@link QueryPlanCache}).
+	 */
+	@Override
+	public String toString ()
+	{
+		return   "ENABLE_PREDICATE_LOOKUP=" + current_ENABLE_PREDICATE_LOOKUP
+		       + " RECORD_PROVENANCE=" + current_RECORD_PROVENANCE
+		       + " BGP_PARALLELISM=" + current_BGP_PARALLELISM
+		       + " PRESERVE_SOLUTION_ORDER=" + current_PRESERVE_SOLUTION_ORDER
+		       + " LOOKAHEAD_WINDOW=" + current_LOOKAHEAD_WINDOW
+		       + " MATCH_CACHE_CAPACITY=" + current_MATCH_CACHE_CAPACITY
+		       + " REACHABILITY_CRITERION=" + current_REACHABILITY_CRITERION
+		       + " FOLLOWED_PREDICATES=" + current_FOLLOWED_PREDICATES
+		       + " IGNORED_PREDICATES=" + current_IGNORED_PREDICATES
+		       + " SAME_HOST_LINKS_ONLY=" + current_SAME_HOST_LINKS_ONLY
+		       + " MAX_DOCUMENTS=" + current_MAX_DOCUMENTS
+		       + " MAX_BYTES=" + current_MAX_BYTES
+		       + " MAX_LOOKUPS_IN_FLIGHT=" + current_MAX_LOOKUPS_IN_FLIGHT
+		       + " QUERY_TIMEOUT=" + current_QUERY_TIMEOUT
+		       + " MAX_PREDICTED_SEED_URIS=" + current_MAX_PREDICTED_SEED_URIS;
+	}
+
+
 	// helpers
 
+	static protected Integer parsePositiveInt ( ConfigOption option, String value ) throws IllegalArgumentException
+	{
+		int i = parseInt( option, value );
+		if ( i < 1 ) {
+			throw new IllegalArgumentException( "The value for config option '" + option.toString() + "' must be positive (" + value + ")." );
+		}
+		return Integer.valueOf( i );
+	}
+
+	static protected Integer parseNonNegativeInt ( ConfigOption option, String value ) throws IllegalArgumentException
+	{
+		int i = parseInt( option, value );
+		if ( i < 0 ) {
+			throw new IllegalArgumentException( "The value for config option '" + option.toString() + "' must not be negative (" + value + ")." );
+		}
+		return Integer.valueOf( i );
+	}
+
+	static protected Long parseNonNegativeLong ( ConfigOption option, String value ) throws IllegalArgumentException
+	{
+		long l;
+		try {
+			l = Long.parseLong( value.trim() );
+		}
+		catch ( NumberFormatException e ) {
+			throw new IllegalArgumentException( "The value for config option '" + option.toString() + "' is not an integer (" + value + ").", e );
+		}
+
+		if ( l < 0L ) {
+			throw new IllegalArgumentException( "The value for config option '" + option.toString() + "' must not be negative (" + value + ")." );
+		}
+		return Long.valueOf( l );
+	}
+
+	static protected int parseInt ( ConfigOption option, String value ) throws IllegalArgumentException
+	{
+		try {
+			return Integer.parseInt( value.trim() );
+		}
+		catch ( NumberFormatException e ) {
+			throw new IllegalArgumentException( "The value for config option '" + option.toString() + "' is not an integer (" + value + ").", e );
+		}
+	}
+
+	static protected String parseReachabilityCriterion ( ConfigOption option, String value ) throws IllegalArgumentException
+	{
+		String v = value.trim().toUpperCase();
+		if ( v.equals("CALL") || v.equals("CMATCH") || v.equals("CNONE") ) {
+			v = v.substring( 1 );
+		}
+
+		if ( ! v.equals("ALL") && ! v.equals("MATCH") && ! v.equals("NONE") ) {
+			throw new IllegalArgumentException( "The value for config option '" + option.toString() + "' must be ALL, MATCH, or NONE (" + value + ")." );
+		}
+		return v;
+	}
+
+	/**
+	 * Normalizes the given white-space separated list of URIs (which may be
+	 * enclosed in angle brackets) to a list separated by single spaces.
+	 */
+	static protected String parseURIList ( String value )
+	{
+		StringBuilder b = new StringBuilder ();
+		for ( String uri : value.trim().split("\\s+") )
+		{
+			if ( uri.startsWith("<") && uri.endsWith(">") ) {
+				uri = uri.substring( 1, uri.length()-1 );
+			}
+			if ( uri.length() > 0 ) {
+				if ( b.length() > 0 ) {
+					b.append( ' ' );
+				}
+				b.append( uri );
+			}
+		}
+		return b.toString();
+	}
+
 	static class ConfigOption extends Symbol
 	{
 		protected ConfigOption ( String name ) { super("org.squin.engine.LinkTraversalBasedQueryEngineConfig."+name); }
@@ -0,0 +1,160 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine;
+
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.path.Path;
+
+import org.squin.common.Priority;
+import org.squin.dataset.Triple;
+import org.squin.dataset.query.SolutionMapping;
+import org.squin.dataset.query.arq.iterators.PathQueryIter;
+import org.squin.ldcache.DataRetrievedListener;
+import org.squin.util.IntHashSet;
+
+
+/**
+ * A path iterator used for the iterator-based implementation of link
+ * traversal based query execution.
+ * Before the search expands a set of nodes this iterator requests the
+ * look-up of all of these nodes (that have not been requested before) at
+ * once and waits until the data about them has been retrieved. Hence, the
+ * search traverses the Web of Data along the property path.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class LinkTraversalPathQueryIter extends PathQueryIter
+                                        implements DataRetrievedListener
+{
+	final private Logger log = LoggerFactory.getLogger( LinkTraversalPathQueryIter.class );
+
+	// members
+
+	/**
+	 * The maximum time (in ms) that {@link #ensureAvailability} waits without
+	 * checking whether the iterator has been closed or the query execution
+	 * has been cancelled.
+	 */
+	static final public long MAX_WAIT_TIME = 1000L;
+
+	final protected LinkTraversalBasedExecutionContext ltbExecCxt;
+
+	/** identifiers of all nodes requested by this iterator */
+	final protected IntHashSet requestedNodes = new IntHashSet();
+
+	// attention: access to this member must be synchronized on this iterator
+	final private java.util.Set<Integer> pendingDataRetrievals = new java.util.HashSet<Integer> ();
+
+	private volatile boolean closed = false;
+
+
+	// initialization
+
+	public LinkTraversalPathQueryIter ( boolean sIsVar, int s, Path path, boolean oIsVar, int o, Iterator<SolutionMapping> input, LinkTraversalBasedExecutionContext execCxt )
+	{
+		super( sIsVar, s, path, oIsVar, o, input, execCxt );
+		ltbExecCxt = execCxt;
+	}
+
+
+	// accessors
+
+	public boolean isClosed ()
+	{
+		return closed;
+	}
+
+
+	// implementation of the Closable interface
+
+	@Override
+	public void close ()
+	{
+		closed = true;
+		super.close();
+
+		synchronized ( this ) {
+			pendingDataRetrievals.clear();
+			notify(); // wake up a thread that may wait in ensureAvailability
+		}
+	}
+
+
+	// operations
+
+	@Override
+	protected Iterator<? extends Triple> find ( int s, int p, int o )
+	{
+		return ltbExecCxt.ldcache.find( ltbExecCxt.accessContext, s, p, o );
+	}
+
+	/**
+	 * Requests the retrieval of data about all given URIs that have not been
+	 * requested by this iterator before and waits until the data about all
+	 * of them is available.
+	 */
+	@Override
+	protected void ensureAvailability ( int[] nodeIDs )
+	{
+		synchronized ( this )
+		{
+			for ( int nodeID : nodeIDs )
+			{
+				if ( ! requestedNodes.add(nodeID) ) {
+					continue;
+				}
+
+				Node node = ltbExecCxt.nodeDict.getNode( nodeID );
+				if ( node == null || ! node.isURI() ) {
+					continue;
+				}
+
+				if ( ! ltbExecCxt.ldcache.ensureAvailability(ltbExecCxt.accessContext,nodeID,Priority.HIGH,this) ) {
+					pendingDataRetrievals.add( Integer.valueOf(nodeID) );
+				}
+			}
+
+			if ( pendingDataRetrievals.isEmpty() ) {
+				return;
+			}
+
+			log.debug( "Path evaluation waits for {} pending data retrievals.", pendingDataRetrievals.size() );
+			ltbExecCxt.flushPrefetchRequests();
+
+			while ( ! pendingDataRetrievals.isEmpty() )
+			{
+				if ( isClosed() || ltbExecCxt.isCancelled() ) {
+					return;
+				}
+
+				try {
+					wait( MAX_WAIT_TIME );
+				}
+				catch ( InterruptedException e ) {
+					throw new RuntimeException( "Waiting for the retrieval of required data interrupted by " + e.getClass().getName() + ": " + e.getMessage(), e );
+				}
+			}
+		}
+	}
+
+
+	// implementation of the DataRetrievedListener interface
+
+	public void ensureAvailabilityFinished ( int uriID )
+	{
+		synchronized ( this ) {
+			pendingDataRetrievals.remove( Integer.valueOf(uriID) );
+			if ( pendingDataRetrievals.isEmpty() ) {
+				notify();
+			}
+		}
+	}
+
+}
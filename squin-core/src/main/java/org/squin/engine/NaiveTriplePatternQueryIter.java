@@ -7,8 +7,12 @@ package org.squin.engine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import com.hp.hpl.jena.graph.Node;
@@ -20,6 +24,7 @@ import org.squin.dataset.query.BindingProvenance;
 import org.squin.dataset.query.SolutionMapping;
 import org.squin.dataset.query.TriplePattern;
 import org.squin.dataset.query.impl.FixedSizeSolutionMappingImpl;
+import org.squin.dataset.query.arq.IdBasedFilter;
 import org.squin.dataset.query.arq.iterators.TriplePatternQueryIter;
 import org.squin.ldcache.DataRetrievedListener;
 
@@ -33,6 +38,18 @@ import org.squin.ldcache.DataRetrievedListener;
  * {@link #currentQueryPattern} corresponds to \mu_{cur}[{tp_i}] in the paper
  * {@link #currentMatches} corresponds to I_{find} in the paper
  *
+ * The iterator reads ahead up to
+ * {@link LinkTraversalBasedExecutionContext#lookaheadWindow} input solution
+ * mappings and requests the data required for all of them at once; hence,
+ * the look-ups for independent input solution mappings are executed in
+ * parallel instead of one after the other. The matching triples for an
+ * input solution mapping are returned as soon as its data has been
+ * retrieved; if {@link LinkTraversalBasedExecutionContext#preserveSolutionOrder}
+ * is enabled, the iterator waits for the oldest input solution mapping in
+ * the window instead so that the solutions are returned in the order of
+ * the input. With a window of 1 (or less), the iterator waits for the data
+ * of every input solution mapping before it reads the next one.
+ *
  * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
  */
 public class NaiveTriplePatternQueryIter extends TriplePatternQueryIter
@@ -42,11 +59,23 @@ public class NaiveTriplePatternQueryIter extends TriplePatternQueryIter
 
 	// members
 
-	// attention: access to this member must be thread-safe
-	final private Collection<Integer> pendingDataRetrievals = new java.util.HashSet<Integer> ();
-
 	final protected LinkTraversalBasedExecutionContext ltbExecCxt;
 
+	/** the maximum number of input solution mappings in the {@link #window} */
+	final protected int lookaheadWindowSize;
+
+	/** true if the solutions must be returned in the order of the input */
+	final protected boolean preserveOrder;
+
+	// attention: access to the following two members must be synchronized
+	//            on this iterator
+
+	/** the input solution mappings that have been read ahead (in the order of the input) */
+	final private LinkedList<LookAhead> window = new LinkedList<LookAhead> ();
+
+	/** maps the IDs of URIs to the input solution mappings whose data is pending */
+	final private Map<Integer,List<LookAhead>> pendingDataRetrievals = new HashMap<Integer,List<LookAhead>> ();
+
 	private Boolean closed = false;
 
 
@@ -54,8 +83,15 @@ public class NaiveTriplePatternQueryIter extends TriplePatternQueryIter
 
 	public NaiveTriplePatternQueryIter ( TriplePattern tp, Iterator<SolutionMapping> input, LinkTraversalBasedExecutionContext execCxt )
 	{
-		super( tp, input, execCxt );
+		this( tp, input, execCxt, null );
+	}
+
+	public NaiveTriplePatternQueryIter ( TriplePattern tp, Iterator<SolutionMapping> input, LinkTraversalBasedExecutionContext execCxt, List<IdBasedFilter> filters )
+	{
+		super( tp, input, execCxt, filters );
 		ltbExecCxt = execCxt;
+		lookaheadWindowSize = Math.max( 1, execCxt.lookaheadWindow );
+		preserveOrder = execCxt.preserveSolutionOrder;
 	}
 
 
@@ -79,25 +115,26 @@ public class NaiveTriplePatternQueryIter extends TriplePatternQueryIter
 
 		while ( currentMatches == null || ! currentMatches.hasNext() )
 		{
-			if ( ! input.hasNext() ) {
+			if ( ltbExecCxt.isCancelled() ) {
 				return false;
 			}
 
-			currentInputMapping = input.next();
-			currentQueryPattern = substitute( tp, currentInputMapping );
-
-			ensureRequirement( currentQueryPattern ); // this may take some time
-
-			if ( execCxt.recordProvenance ) {
-				currentMatches = ltbExecCxt.ldcache.findWithProvenance( ltbExecCxt.accessContext,
-				                                                        (currentQueryPattern.sIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.s,
-				                                                        (currentQueryPattern.pIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.p,
-				                                                        (currentQueryPattern.oIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.o );
-			} else {
-				currentMatches = ltbExecCxt.ldcache.find( ltbExecCxt.accessContext,
-				                                          (currentQueryPattern.sIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.s,
-				                                          (currentQueryPattern.pIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.p,
-				                                          (currentQueryPattern.oIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.o );
+			fillWindow();
+
+			LookAhead la = awaitRequirement(); // this may take some time
+
+			// the query execution may have been cancelled or closed while we
+			// were waiting for the required data
+			if ( la == null || ltbExecCxt.isCancelled() || isClosed() ) {
+				return false;
+			}
+
+			currentInputMapping = la.mapping;
+			currentQueryPattern = la.pattern;
+
+			currentMatches = applyFilters( findMatches(currentQueryPattern) );
+			if ( currentMatches.hasNext() ) {
+				recordContribution( currentQueryPattern );
 			}
 		}
 
@@ -129,49 +166,145 @@ public class NaiveTriplePatternQueryIter extends TriplePatternQueryIter
 		super.close();
 
 		synchronized ( this ) {
+			window.clear();
 			pendingDataRetrievals.clear();
+			notify(); // wake up a thread that may wait in awaitRequirement
 		}
 	}
 
 
 	// operations
 
-	protected void ensureRequirement ( TriplePattern p )
+	/**
+	 * Looks up the matching triples in the Linked Data cache.
+	 */
+	@Override
+	protected Iterator<? extends Triple> find ( int s, int p, int o )
+	{
+		if ( execCxt.recordProvenance ) {
+			return ltbExecCxt.ldcache.findWithProvenance( ltbExecCxt.accessContext, s, p, o );
+		} else {
+			return ltbExecCxt.ldcache.find( ltbExecCxt.accessContext, s, p, o );
+		}
+	}
+
+	/**
+	 * Reads input solution mappings until the look-ahead window is full (or
+	 * the input is exhausted) and requests the data required for each of
+	 * them.
+	 */
+	protected void fillWindow ()
 	{
+		while ( true )
+		{
+			synchronized ( this ) {
+				if ( window.size() >= lookaheadWindowSize ) {
+					return;
+				}
+			}
+
+			if ( isClosed() || ! input.hasNext() ) {
+				return;
+			}
+
+			SolutionMapping m = input.next();
+			LookAhead la = new LookAhead( m, substitute(tp,m) );
+			synchronized ( this ) {
+				window.addLast( la );
+				requestRequirement( la );
+			}
+		}
+	}
+
+	/**
+	 * Requests the data for the URIs of the substituted triple pattern of
+	 * the given input solution mapping. Must be called while holding the
+	 * lock of this iterator; hence, the notification about retrieved data
+	 * cannot arrive before the input solution mapping has been registered
+	 * as waiting.
+	 */
+	protected void requestRequirement ( LookAhead la )
+	{
+		TriplePattern p = la.pattern;
 		log.debug( "Ensuring look-up requirement for triple pattern {} ...", p.toString() );
 
-		boolean blocking = false;
-		if ( ! p.sIsVar && ! ensureAvailability(p.s) ) {
-			blocking = true;
+		if ( ! p.sIsVar ) {
+			ensureAvailability( p.s, la );
 		}
-		if ( ltbExecCxt.predicateLookUpEnabled && ! p.pIsVar && ! ensureAvailability(p.p) ) {
-			blocking = true;
+		if ( ltbExecCxt.predicateLookUpEnabled && ! p.pIsVar ) {
+			ensureAvailability( p.p, la );
 		}
-		if ( ! p.oIsVar && ! ensureAvailability(p.o) ) {
-			blocking = true;
+		if ( ! p.oIsVar ) {
+			ensureAvailability( p.o, la );
 		}
 
-		if ( ! blocking ) {
+		if ( la.missing == 0 ) {
 			log.debug( "... look-up requirement for triple pattern {} ensured (no blocking).", p.toString() );
-			return;
 		}
+	}
 
-		log.debug( "... look-up requirement for triple pattern {} blocks query execution ...", p.toString() );
-
-		synchronized( this ) {
-			if ( pendingDataRetrievals.isEmpty() ) {
-				log.debug( "... look-up requirement for triple pattern {} ensured.", p.toString() );
-				return;
+	/**
+	 * Waits until the data required for an input solution mapping in the
+	 * look-ahead window has been retrieved and removes this input solution
+	 * mapping from the window. If the order of the input must be preserved,
+	 * only the oldest input solution mapping is considered.
+	 *
+	 * @return null, if the window is empty (or if this iterator has been
+	 *         closed in the meantime)
+	 */
+	protected LookAhead awaitRequirement ()
+	{
+		synchronized ( this )
+		{
+			while ( ! window.isEmpty() && ! isClosed() && ! ltbExecCxt.isCancelled() )
+			{
+				if ( preserveOrder ) {
+					if ( window.getFirst().missing == 0 ) {
+						return window.removeFirst();
+					}
+				}
+				else {
+					for ( Iterator<LookAhead> it = window.iterator(); it.hasNext(); ) {
+						LookAhead la = it.next();
+						if ( la.missing == 0 ) {
+							it.remove();
+							return la;
+						}
+					}
+				}
+
+				log.debug( "Look-up requirements of {} input solution mapping(s) block query execution ...", window.size() );
+				ltbExecCxt.flushPrefetchRequests();
+				try {
+					wait();
+				}
+				catch ( InterruptedException e ) {
+					throw new RuntimeException( "Waiting for the retrieval of required data interrupted by " + e.getClass().getName() + ": " + e.getMessage(), e );
+				}
 			}
+			return null;
+		}
+	}
 
-			try {
-				wait();
-			}
-			catch ( InterruptedException e ) {
-				throw new RuntimeException( "Waiting for the retrieval of required data interrupted by " + e.getClass().getName() + ": " + e.getMessage(), e );
-			}
+	/**
+	 * Records the URIs of the given (substituted) triple pattern as
+	 * contributing to the solutions of the query execution because the
+	 * pattern has matching triples.
+	 */
+	protected void recordContribution ( TriplePattern p )
+	{
+		if ( ! ltbExecCxt.isRecordingContributions() ) {
+			return;
+		}
 
-			log.debug( "... look-up requirement for triple pattern {} ensured (after blocking).", p.toString() );
+		if ( ! p.sIsVar ) {
+			ltbExecCxt.recordContribution( p.s );
+		}
+		if ( ltbExecCxt.predicateLookUpEnabled && ! p.pIsVar ) {
+			ltbExecCxt.recordContribution( p.p );
+		}
+		if ( ! p.oIsVar ) {
+			ltbExecCxt.recordContribution( p.o );
 		}
 	}
 
@@ -203,37 +336,36 @@ public class NaiveTriplePatternQueryIter extends TriplePatternQueryIter
 	 * This method ensures that the Linked Data cache ensures all data for the
 	 * URI identified by the given ID is available.
 	 * Since the Linked Data cache executes such requests in an asynchronous
-	 * manner, this method may add the given ID to the list of
-	 * {@link #pendingDataRetrievals}.
-	 *
-	 * @param nodeID the identifier for the URI in question
-	 * @return true, if everything is done already (i.e. the data is available
-	 *         and, thus, it was not necessary to add something to the list of
-	 *         {@link #pendingDataRetrievals})
+	 * manner, this method may add the given input solution mapping to the
+	 * {@link #pendingDataRetrievals} of the URI. Must be called while holding
+	 * the lock of this iterator.
 	 */
-	protected boolean ensureAvailability ( int nodeID )
+	protected void ensureAvailability ( int nodeID, LookAhead la )
 	{
-		Node node = ltbExecCxt.nodeDict.getNode( nodeID );
-		if ( node == null || ! node.isURI() ) {
-			return true;
-		}
-
-		synchronized ( this ) {
-			if ( pendingDataRetrievals.contains(Integer.valueOf(nodeID)) ) {
-				log.debug( "ensureAvailability for URI <{}> with ID {}: already pending", node.getURI(), nodeID );
-				return true;
+		Integer id = Integer.valueOf( nodeID );
+		List<LookAhead> waiting = pendingDataRetrievals.get( id );
+		if ( waiting == null )
+		{
+			Node node = ltbExecCxt.nodeDict.getNode( nodeID );
+			if ( node == null || ! node.isURI() ) {
+				return;
 			}
 
 			if ( ltbExecCxt.ldcache.ensureAvailability(ltbExecCxt.accessContext,nodeID,Priority.HIGH,this) ) {
 				log.debug( "ensureAvailability for URI <{}> with ID {}: finished immediately", node.getURI(), nodeID );
-				return true;
-			}
-			else {
-				log.debug( "ensureAvailability for URI <{}> with ID {}: logged as pending", node.getURI(), nodeID );
-				pendingDataRetrievals.add( Integer.valueOf(nodeID) );
-				return false;
+				return;
 			}
+
+			log.debug( "ensureAvailability for URI <{}> with ID {}: logged as pending", node.getURI(), nodeID );
+			waiting = new ArrayList<LookAhead> ();
+			pendingDataRetrievals.put( id, waiting );
 		}
+		else {
+			log.debug( "ensureAvailability for URI with ID {}: already pending", nodeID );
+		}
+
+		waiting.add( la );
+		la.missing++;
 	}
 
 
@@ -242,16 +374,44 @@ public class NaiveTriplePatternQueryIter extends TriplePatternQueryIter
 	public void ensureAvailabilityFinished ( int uriID )
 	{
 		synchronized ( this ) {
-			log.debug( "Pending data retrieval for URI {} finished (pending data retrievals: {}).", uriID, pendingDataRetrievals.size()-1 );
-			if ( log.isWarnEnabled() && ! pendingDataRetrievals.contains(Integer.valueOf(uriID)) ) {
+			List<LookAhead> waiting = pendingDataRetrievals.remove( Integer.valueOf(uriID) );
+			if ( waiting == null ) {
 				log.warn( "No pending data retrieval logged for URI {}. Ignoring.", uriID );
+				return;
+			}
+
+			log.debug( "Pending data retrieval for URI {} finished (pending data retrievals: {}).", uriID, pendingDataRetrievals.size() );
+
+			boolean becameReady = false;
+			for ( LookAhead la : waiting ) {
+				if ( --la.missing == 0 ) {
+					becameReady = true;
+				}
 			}
 
-			pendingDataRetrievals.remove( Integer.valueOf(uriID) );
-			if ( pendingDataRetrievals.isEmpty() ) {
+			if ( becameReady ) {
 				notify();
 			}
 		}
 	}
 
+
+	/**
+	 * An input solution mapping that has been read ahead, together with the
+	 * triple pattern of this iterator substituted by it and the number of
+	 * URIs of this pattern whose data has not been retrieved yet.
+	 */
+	static protected class LookAhead
+	{
+		final public SolutionMapping mapping;
+		final public TriplePattern pattern;
+		public int missing = 0;
+
+		public LookAhead ( SolutionMapping mapping, TriplePattern pattern )
+		{
+			this.mapping = mapping;
+			this.pattern = pattern;
+		}
+	}
+
 }
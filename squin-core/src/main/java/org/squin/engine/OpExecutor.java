@@ -5,20 +5,22 @@
 package org.squin.engine;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
-import com.hp.hpl.jena.graph.Triple;
-
-import com.hp.hpl.jena.sparql.algebra.op.OpBGP;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
 import com.hp.hpl.jena.sparql.engine.ExecutionContext;
-import com.hp.hpl.jena.sparql.engine.QueryIterator;
 import com.hp.hpl.jena.sparql.engine.main.OpExecutorFactory;
+import com.hp.hpl.jena.sparql.path.Path;
 
-import org.squin.dataset.jenacommon.NodeDictionary;
 import org.squin.dataset.query.SolutionMapping;
-import org.squin.dataset.query.arq.iterators.DecodeBindingsIterator;
-import org.squin.dataset.query.arq.iterators.EncodeBindingsIterator;
-
-import org.squin.dataset.query.arq.VarDictionary;
+import org.squin.dataset.query.TriplePattern;
+import org.squin.dataset.query.arq.IdBasedFilter;
+import org.squin.dataset.query.arq.iterators.ParallelQueryIter;
+import org.squin.dataset.query.arq.iterators.SubPlan;
+import org.squin.util.IntHashSet;
 
 
 /**
@@ -30,6 +32,7 @@ import org.squin.dataset.query.arq.VarDictionary;
 public class OpExecutor extends org.squin.dataset.query.arq.OpExecutor
 {
 	static private OpExecutorFactory factory;
+	static private ExecutorService bgpEvaluationExecutor;
 
 	/**
 	 * Returns the factory object that creates this OpExecutor implementation.
@@ -44,6 +47,30 @@ public class OpExecutor extends org.squin.dataset.query.arq.OpExecutor
 		return factory;
 	}
 
+	/**
+	 * Returns the thread pool that is shared by all query executions for
+	 * the parallel evaluation of BGPs. The pool creates (daemon) threads on
+	 * demand and reuses idle ones; it is not bounded by the number of
+	 * available processors because the workers mostly wait for data
+	 * retrievals. Instead, each query execution evaluates at most
+	 * {@link LinkTraversalBasedQueryEngineConfig#BGP_PARALLELISM} batches per
+	 * BGP at the same time (see {@link ParallelQueryIter}).
+	 */
+	synchronized static public ExecutorService getBGPEvaluationExecutor ()
+	{
+		if ( bgpEvaluationExecutor == null ) {
+			ThreadFactory threadFactory = new ThreadFactory() {
+				public Thread newThread ( Runnable r ) {
+					Thread t = new Thread( r, "SQUIN BGP evaluation" );
+					t.setDaemon( true );
+					return t;
+				}
+			};
+			bgpEvaluationExecutor = Executors.newCachedThreadPool( threadFactory );
+		}
+		return bgpEvaluationExecutor;
+	}
+
 
 	// initialization
 
@@ -53,29 +80,106 @@ public class OpExecutor extends org.squin.dataset.query.arq.OpExecutor
 	}
 
 
-	// operations
+	// helper methods
 
 	@Override
-	public QueryIterator execute ( OpBGP opBGP, QueryIterator input )
+	protected boolean isIdBasedExecutionPossible ()
 	{
-		if (    opBGP.getPattern().isEmpty()
-		     || ! (execCxt.getDataset() instanceof LinkedDataCacheWrappingDatasetGraph) )
+		return execCxt.getDataset() instanceof LinkedDataCacheWrappingDatasetGraph;
+	}
+
+	/**
+	 * Evaluates the given chain with multiple workers in parallel if the
+	 * query execution has been configured accordingly (see
+	 * {@link LinkTraversalBasedQueryEngineConfig#BGP_PARALLELISM}).
+	 */
+	@Override
+	protected Iterator<SolutionMapping> executeIteratorChain ( SubPlan chain, Iterator<SolutionMapping> input )
+	{
+		LinkTraversalBasedExecutionContext ltbExecCxt = (LinkTraversalBasedExecutionContext) execCxt;
+		if ( ltbExecCxt.bgpParallelism <= 1 ) {
+			return chain.execute( input );
+		}
+
+		return new ParallelQueryIter( input,
+		                              chain,
+		                              getBGPEvaluationExecutor(),
+		                              ltbExecCxt.bgpParallelism,
+		                              ltbExecCxt.preserveSolutionOrder,
+		                              ltbExecCxt );
+	}
+
+	@Override
+	protected Iterator<SolutionMapping> createTriplePatternQueryIter ( TriplePattern tp, Iterator<SolutionMapping> input, List<IdBasedFilter> filters )
+	{
+		LinkTraversalBasedExecutionContext ltbExecCxt = (LinkTraversalBasedExecutionContext) execCxt;
+// 		return new NaiveTriplePatternQueryIter( tp, input, ltbExecCxt, filters );
+		if ( ltbExecCxt.lookaheadWindow > 0 ) {
+			return new PrefetchingTriplePatternQueryIter( tp, input, ltbExecCxt, filters );
+		}
+		return new PostponingTriplePatternQueryIter( tp, input, ltbExecCxt, filters );
+	}
+
+	/**
+	 * Creates the iterator for the i-th triple pattern of the given chain
+	 * such that it knows the variables that are probed by the later
+	 * patterns of the chain (see {@link LinkScorer}).
+	 */
+	@Override
+	protected Iterator<SolutionMapping> createTriplePatternQueryIter ( TriplePattern[] chain, int i, Iterator<SolutionMapping> input, List<IdBasedFilter> filters )
+	{
+		LinkTraversalBasedExecutionContext ltbExecCxt = (LinkTraversalBasedExecutionContext) execCxt;
+
+		IntHashSet probedVariables = new IntHashSet ();
+		for ( int j = i+1; j < chain.length; j++ )
 		{
-			return super.execute( opBGP, input );
+			TriplePattern tp = chain[j];
+			if ( tp.sIsVar ) {
+				probedVariables.add( tp.s );
+			}
+			if ( tp.pIsVar && ltbExecCxt.predicateLookUpEnabled ) {
+				probedVariables.add( tp.p );
+			}
+			if ( tp.oIsVar ) {
+				probedVariables.add( tp.o );
+			}
+		}
+
+		if ( ltbExecCxt.lookaheadWindow > 0 ) {
+			return new PrefetchingTriplePatternQueryIter( chain[i], input, ltbExecCxt, filters, probedVariables );
 		}
+		return new PostponingTriplePatternQueryIter( chain[i], input, ltbExecCxt, filters, probedVariables );
+	}
 
+	/**
+	 * Reuses the ID-based representation of the given BGP if the BGP is part
+	 * of the query plan of the current query execution (see
+	 * {@link LinkTraversalBasedQueryEngine#ctxtKeyQueryPlan}).
+	 */
+	@Override
+	protected TriplePattern[] encode ( BasicPattern pattern )
+	{
 		LinkTraversalBasedExecutionContext ltbExecCxt = (LinkTraversalBasedExecutionContext) execCxt;
-		VarDictionary varDict = ltbExecCxt.varDict;
-		NodeDictionary nodeDict = ltbExecCxt.nodeDict;
-
-		Iterator<SolutionMapping> qIt = new EncodeBindingsIterator( input, ltbExecCxt );
-		for ( Triple t : opBGP.getPattern().getList() ) {
-// 			qIt = new NaiveTriplePatternQueryIter( encode(t,varDict,nodeDict), qIt, ltbExecCxt );
-// 			qIt = new PrefetchingTriplePatternQueryIter( encode(t,varDict,nodeDict), qIt, ltbExecCxt );
-			qIt = new PostponingTriplePatternQueryIter( encode(t,varDict,nodeDict), qIt, ltbExecCxt );
+		QueryPlan plan = (QueryPlan) ltbExecCxt.getContext().get( LinkTraversalBasedQueryEngine.ctxtKeyQueryPlan );
+
+		// the representations of the plan are only valid with the dictionary
+		// of query variables of the plan
+		if ( plan == null || plan.getVarDictionary() != ltbExecCxt.varDict ) {
+			return super.encode( pattern );
 		}
 
-		return new DecodeBindingsIterator( qIt, ltbExecCxt );
+		TriplePattern[] encoded = plan.getEncodedPattern( pattern, ltbExecCxt.nodeDict );
+		if ( encoded == null ) {
+			encoded = super.encode( pattern );
+			plan.putEncodedPattern( pattern, ltbExecCxt.nodeDict, encoded );
+		}
+		return encoded;
+	}
+
+	@Override
+	protected Iterator<SolutionMapping> createPathQueryIter ( boolean sIsVar, int s, Path path, boolean oIsVar, int o, Iterator<SolutionMapping> input )
+	{
+		return new LinkTraversalPathQueryIter( sIsVar, s, path, oIsVar, o, input, (LinkTraversalBasedExecutionContext) execCxt );
 	}
 
 }
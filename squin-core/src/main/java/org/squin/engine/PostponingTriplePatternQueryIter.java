@@ -4,43 +4,70 @@
 */
 package org.squin.engine;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
-import java.util.Random;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.hp.hpl.jena.graph.Node;
+
 import org.squin.common.Priority;
-import org.squin.dataset.Triple;
 import org.squin.dataset.query.SolutionMapping;
 import org.squin.dataset.query.TriplePattern;
+import org.squin.dataset.query.arq.IdBasedFilter;
+import org.squin.util.IntHashSet;
 
 
 /**
  * A postponing iterator used for the iterator-based implementation of link
  * traversal based query execution.
  *
+ * If the data for the URIs of a substituted triple pattern is not available
+ * yet, the input solution mapping is postponed: it is added to the wait-list
+ * of each of these URIs and the iterator continues with the next input
+ * mapping. As a {@link org.squin.ldcache.DataRetrievedListener} the iterator
+ * is notified when the data for a URI has been retrieved; a postponed
+ * mapping becomes ready again as soon as the data for all URIs it waits for
+ * has been retrieved. If there is neither a ready mapping nor further
+ * input, the iterator waits for such a notification.
+ * The more postponed mappings wait for a URI the more important its look-up
+ * becomes; whenever the size of a wait-list doubles, the look-up is
+ * requested again with the updated score (see {@link LinkScorer}).
+ *
  * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
  */
 public class PostponingTriplePatternQueryIter extends PrefetchingTriplePatternQueryIter
 {
 	// members
 
-	static Random random = new Random( System.currentTimeMillis() );
-
 	final private Logger log = LoggerFactory.getLogger( PostponingTriplePatternQueryIter.class );
 
 	// Attention: we manage the postponed solutions in the postponing iterator
 	//            (instead of explicitly introducing a postpone function and
 	//             having the predecessor iterator manage them)
-	final protected Queue<SolutionMapping> postponedSolutions = new LinkedList<SolutionMapping> ();
+	//            access to the following three members must be synchronized
+	//            on this iterator
+
+	/** maps the IDs of URIs to the postponed solutions that wait for them */
+	final protected Map<Integer,List<PostponedSolution>> waitLists = new HashMap<Integer,List<PostponedSolution>> ();
+
+	/** postponed solutions for which all required data has been retrieved */
+	final protected Queue<SolutionMapping> readySolutions = new LinkedList<SolutionMapping> ();
+
+	/** the number of postponed solutions that are not ready yet */
+	protected int waitingCounter = 0;
 
 	// counters for statistics
 	protected long tryCounter = 0;
 	protected long retryCounter = 0;
 	protected long newtryCounter = 0;
+	protected long postponeCounter = 0;
 	protected long solCounter = 0;
 
 
@@ -51,6 +78,16 @@ public class PostponingTriplePatternQueryIter extends PrefetchingTriplePatternQu
 		super( tp, input, execCxt );
 	}
 
+	public PostponingTriplePatternQueryIter ( TriplePattern tp, Iterator<SolutionMapping> input, LinkTraversalBasedExecutionContext execCxt, List<IdBasedFilter> filters )
+	{
+		super( tp, input, execCxt, filters );
+	}
+
+	public PostponingTriplePatternQueryIter ( TriplePattern tp, Iterator<SolutionMapping> input, LinkTraversalBasedExecutionContext execCxt, List<IdBasedFilter> filters, IntHashSet probedVariables )
+	{
+		super( tp, input, execCxt, filters, probedVariables );
+	}
+
 
 	// implementation of the Iterator interface
 
@@ -62,47 +99,40 @@ public class PostponingTriplePatternQueryIter extends PrefetchingTriplePatternQu
 
 		while ( currentMatches == null || ! currentMatches.hasNext() )
 		{
-			if ( ! input.hasNext() && postponedSolutions.isEmpty() ) {
+			if ( ltbExecCxt.isCancelled() || isClosed() ) {
 				return false;
 			}
 
-			boolean retry;
-			int postponeSleepTime;
-			if ( postponedSolutions.isEmpty() ) {
-				retry = false;
-				postponeSleepTime = 1;
-			} else if ( ! input.hasNext() ) {
-				retry = true;
-				postponeSleepTime = 100; // avoid busy waiting
-			} else {
-				retry = random.nextBoolean();
-				postponeSleepTime = 1;
+			// the prefetch requests for the previous input solution mapping
+			ltbExecCxt.flushPrefetchRequests();
+
+			SolutionMapping m;
+			synchronized ( this ) {
+				m = readySolutions.poll();
 			}
 
-			tryCounter++;
-			if ( retry ) {
+			if ( m != null ) {
 				retryCounter++;
-			} else {
+			}
+			else if ( input.hasNext() ) {
+				m = input.next();
 				newtryCounter++;
 			}
-
-			currentInputMapping = ( retry ) ? postponedSolutions.remove() : input.next();
-			currentQueryPattern = substitute( tp, currentInputMapping );
-
-			if ( requestAvailability(currentQueryPattern) ) {
-				currentMatches = ltbExecCxt.ldcache.find( ltbExecCxt.accessContext,
-				                                          (currentQueryPattern.sIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.s,
-				                                          (currentQueryPattern.pIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.p,
-				                                          (currentQueryPattern.oIsVar) ? Triple.UNKNOWN_IDENTIFIER : currentQueryPattern.o );
+			else if ( awaitReadySolution() ) {
+				continue;
 			}
 			else {
-				postponedSolutions.offer( currentInputMapping ); // POSTPONE
+				return false;
+			}
 
-				try {
-// 					Thread.sleep( 0, 1 ); // 0.000001 ms
-					Thread.sleep( postponeSleepTime ); // 1 ms
-				} catch ( Exception e ) {
-					log.debug( "Unexpected exception (type: {}) caught: {}", e.getClass().getName(), e.getMessage() );
+			tryCounter++;
+			currentInputMapping = m;
+			currentQueryPattern = substitute( tp, currentInputMapping );
+
+			if ( requestAvailability(currentQueryPattern,currentInputMapping) ) {
+				currentMatches = applyFilters( findMatches(currentQueryPattern) );
+				if ( currentMatches.hasNext() ) {
+					recordContribution( currentQueryPattern );
 				}
 			}
 		}
@@ -112,29 +142,174 @@ public class PostponingTriplePatternQueryIter extends PrefetchingTriplePatternQu
 	}
 
 
+	// implementation of the Closable interface
+
+	@Override
+	public void close ()
+	{
+		synchronized ( this ) {
+			waitLists.clear();
+			readySolutions.clear();
+			waitingCounter = 0;
+		}
+
+		super.close(); // wakes up the thread that may wait in awaitReadySolution
+	}
+
+
+	// implementation of the DataRetrievedListener interface
+
+	@Override
+	public void ensureAvailabilityFinished ( int uriID )
+	{
+		synchronized ( this )
+		{
+			List<PostponedSolution> waiting = waitLists.remove( Integer.valueOf(uriID) );
+			if ( waiting == null ) {
+				log.debug( "No postponed solutions wait for URI {}. Ignoring.", uriID );
+				return;
+			}
+
+			log.debug( "Data retrieval for URI {} finished; {} postponed solution(s) waited for it.", uriID, waiting.size() );
+
+			boolean becameReady = false;
+			for ( PostponedSolution ps : waiting )
+			{
+				if ( --ps.missing == 0 ) {
+					readySolutions.offer( ps.solution );
+					waitingCounter--;
+					becameReady = true;
+				}
+			}
+
+			if ( becameReady ) {
+				notify();
+			}
+		}
+	}
+
+
 	// operations
 
 	/**
 	 * This method initiates that the Linked Data cache ensures all data for the
-	 * URIs in the given triple pattern is available.
+	 * URIs in the given triple pattern is available. If the data for some of
+	 * these URIs is not available yet, the given solution mapping is
+	 * postponed until the data has been retrieved.
 	 *
-	 * @return true, if the data is already available and, thus, it was
-	 *         not necessary to queue asynchronous data retrieval tasks
+	 * @param p the given solution mapping substituted into the triple pattern
+	 *          of this iterator
+	 * @return true, if the data is already available and, thus, the given
+	 *         solution mapping has not been postponed
+	 */
+	protected boolean requestAvailability ( TriplePattern p, SolutionMapping m )
+	{
+		PostponedSolution ps = new PostponedSolution( m );
+
+		synchronized ( this )
+		{
+			if ( ! p.sIsVar ) {
+				requestAvailability( p.s, ps );
+			}
+			if ( ltbExecCxt.predicateLookUpEnabled && ! p.pIsVar ) {
+				requestAvailability( p.p, ps );
+			}
+			if ( ! p.oIsVar ) {
+				requestAvailability( p.o, ps );
+			}
+
+			if ( ps.missing == 0 ) {
+				return true;
+			}
+
+			waitingCounter++;
+		}
+
+		postponeCounter++;
+		return false; // POSTPONE
+	}
+
+
+	// helper methods
+
+	/**
+	 * Adds the given postponed solution to the wait-list of the given URI if
+	 * the data for this URI is not available yet. Must be called while
+	 * holding the lock of this iterator; hence, the notification about the
+	 * retrieved data cannot arrive before the solution has been added to the
+	 * wait-list.
 	 */
-	protected boolean requestAvailability ( TriplePattern p )
+	protected void requestAvailability ( int nodeID, PostponedSolution ps )
 	{
-		boolean nonBlocking = true;
-		if ( ! p.sIsVar && ! requestAvailability(p.s,Priority.MEDIUM) ) {
-			nonBlocking = false;
+		Integer id = Integer.valueOf( nodeID );
+		List<PostponedSolution> waiting = waitLists.get( id );
+		if ( waiting == null )
+		{
+			Node node = ltbExecCxt.nodeDict.getNode( nodeID );
+			if ( node == null || ! node.isURI() ) {
+				return;
+			}
+
+			Priority prio = ltbExecCxt.linkScorer.score( Priority.MEDIUM, nodeID, true, 1 );
+			if ( ltbExecCxt.ldcache.ensureAvailability(ltbExecCxt.accessContext,nodeID,prio,this) ) {
+				return;
+			}
+
+			waiting = new ArrayList<PostponedSolution> ();
+			waitLists.put( id, waiting );
 		}
-		if ( ltbExecCxt.predicateLookUpEnabled && ! p.pIsVar && ! requestAvailability(p.p,Priority.MEDIUM) ) {
-			nonBlocking = false;
+
+		waiting.add( ps );
+		ps.missing++;
+
+		// the wait-list has doubled; the look-up has become more important
+		int size = waiting.size();
+		if ( size > 1 && (size & (size-1)) == 0 )
+		{
+			Priority prio = ltbExecCxt.linkScorer.score( Priority.MEDIUM, nodeID, true, size );
+			ltbExecCxt.ldcache.ensureAvailability( ltbExecCxt.accessContext, nodeID, prio );
 		}
-		if ( ! p.oIsVar && ! requestAvailability(p.o,Priority.MEDIUM) ) {
-			nonBlocking = false;
+	}
+
+	/**
+	 * Waits until a postponed solution becomes ready.
+	 *
+	 * @return false, if there are no postponed solutions that could become
+	 *         ready (or if this iterator has been closed in the meantime)
+	 */
+	protected boolean awaitReadySolution ()
+	{
+		synchronized ( this )
+		{
+			while ( readySolutions.isEmpty() )
+			{
+				if ( waitingCounter == 0 || isClosed() || ltbExecCxt.isCancelled() ) {
+					return false;
+				}
+
+				log.debug( "Waiting for the data required by {} postponed solution(s) ...", waitingCounter );
+				ltbExecCxt.flushPrefetchRequests();
+				try {
+					wait();
+				}
+				catch ( InterruptedException e ) {
+					throw new RuntimeException( "Waiting for the retrieval of required data interrupted by " + e.getClass().getName() + ": " + e.getMessage(), e );
+				}
+			}
+			return true;
 		}
+	}
+
+	/**
+	 * A postponed solution mapping together with the number of URIs whose
+	 * data has not been retrieved yet.
+	 */
+	static protected class PostponedSolution
+	{
+		final public SolutionMapping solution;
+		public int missing = 0;
 
-		return nonBlocking;
+		public PostponedSolution ( SolutionMapping solution ) { this.solution = solution; }
 	}
 
 }
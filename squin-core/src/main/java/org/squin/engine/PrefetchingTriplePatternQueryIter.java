@@ -5,6 +5,7 @@
 package org.squin.engine;
 
 import java.util.Iterator;
+import java.util.List;
 
 import com.hp.hpl.jena.graph.Node;
 
@@ -15,26 +16,72 @@ import org.squin.dataset.query.BindingProvenance;
 import org.squin.dataset.query.SolutionMapping;
 import org.squin.dataset.query.TriplePattern;
 import org.squin.dataset.query.impl.FixedSizeSolutionMappingImpl;
+import org.squin.dataset.query.arq.IdBasedFilter;
+import org.squin.util.IntHashSet;
 
 
 /**
  * A prefetching iterator used for the iterator-based implementation of link
  * traversal based query execution.
  *
+ * The look-ups of URIs that are bound by this iterator are requested with
+ * low priority; the {@link LinkScorer} of the query execution orders these
+ * look-ups, where URIs bound to variables that are probed by later triple
+ * patterns (see {@link #probedVariables}) are preferred. URIs are only
+ * prefetched if the reachability criterion of the query execution follows
+ * the link established by the matching triple (see
+ * {@link LinkTraversalBasedExecutionContext#reachability}).
+ * Each URI is prefetched at most once per query execution (see
+ * {@link LinkTraversalBasedExecutionContext#markPrefetchRequested}). The
+ * prefetch requests are buffered in the execution context and issued in
+ * batches (see {@link LinkTraversalBasedExecutionContext#requestPrefetch});
+ * a batch is issued when the buffer is full, when the iterator proceeds to
+ * the next input solution mapping, and when an iterator of the query
+ * execution waits for the retrieval of data.
+ *
  * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
  */
 public class PrefetchingTriplePatternQueryIter extends NaiveTriplePatternQueryIter
 {
+	// members
+
+	/**
+	 * the identifiers of the variables that occur in the subject or object
+	 * position (or in the predicate position, if predicate look-ups are
+	 * enabled) of a triple pattern evaluated after the pattern of this
+	 * iterator; null means that every variable is considered to be probed
+	 */
+	final protected IntHashSet probedVariables;
+
+
 	// initialization
 
 	public PrefetchingTriplePatternQueryIter ( TriplePattern tp, Iterator<SolutionMapping> input, LinkTraversalBasedExecutionContext execCxt )
 	{
-		super( tp, input, execCxt );
+		this( tp, input, execCxt, null, null );
+	}
+
+	public PrefetchingTriplePatternQueryIter ( TriplePattern tp, Iterator<SolutionMapping> input, LinkTraversalBasedExecutionContext execCxt, List<IdBasedFilter> filters )
+	{
+		this( tp, input, execCxt, filters, null );
+	}
+
+	public PrefetchingTriplePatternQueryIter ( TriplePattern tp, Iterator<SolutionMapping> input, LinkTraversalBasedExecutionContext execCxt, List<IdBasedFilter> filters, IntHashSet probedVariables )
+	{
+		super( tp, input, execCxt, filters );
+		this.probedVariables = probedVariables;
 	}
 
 
 	// operations
 
+	@Override
+	protected LookAhead awaitRequirement ()
+	{
+		ltbExecCxt.flushPrefetchRequests();
+		return super.awaitRequirement();
+	}
+
 	@Override
 	protected SolutionMapping constructResult ( Triple currentMatch )
 	{
@@ -44,19 +91,19 @@ public class PrefetchingTriplePatternQueryIter extends NaiveTriplePatternQueryIt
 
 		if ( currentQueryPattern.sIsVar ) {
 			result.set( currentQueryPattern.s, currentMatch.s, currentMatchProvenance );
-			requestAvailability( currentMatch.s, Priority.LOW ); // prefetch
+			prefetch( currentMatch, currentQueryPattern.s, currentMatch.s );
 		}
 
 		if ( currentQueryPattern.pIsVar ) {
 			result.set( currentQueryPattern.p, currentMatch.p, currentMatchProvenance );
 			if ( ltbExecCxt.predicateLookUpEnabled ) {
-				requestAvailability( currentMatch.p, Priority.LOW ); // prefetch
+				prefetch( currentMatch, currentQueryPattern.p, currentMatch.p );
 			}
 		}
 
 		if ( currentQueryPattern.oIsVar ) {
 			result.set( currentQueryPattern.o, currentMatch.o, currentMatchProvenance );
-			requestAvailability( currentMatch.o, Priority.LOW ); // prefetch
+			prefetch( currentMatch, currentQueryPattern.o, currentMatch.o );
 		}
 
 		return result;
@@ -65,6 +112,50 @@ public class PrefetchingTriplePatternQueryIter extends NaiveTriplePatternQueryIt
 
 	// helper methods
 
+	/**
+	 * Returns true if the variable with the given identifier is probed by a
+	 * triple pattern evaluated after the pattern of this iterator.
+	 */
+	protected boolean isProbed ( int varID )
+	{
+		return probedVariables == null || probedVariables.contains( varID );
+	}
+
+	/**
+	 * Requests the look-up of the URI with the given identifier, which has
+	 * been bound to the variable with the given identifier by the given
+	 * matching triple, with a low but scored priority. The look-up is not
+	 * requested if the reachability criterion of the query execution does
+	 * not follow the link.
+	 */
+	protected void prefetch ( Triple match, int varID, int nodeID )
+	{
+		// checking this first avoids the (synchronized) node dictionary for
+		// nodes that we have seen already
+		if ( nodeID < 0 || ltbExecCxt.isPrefetchRequested(nodeID) ) {
+			return;
+		}
+
+		Node node = ltbExecCxt.nodeDict.getNode( nodeID );
+		if ( node == null || ! node.isURI() ) {
+			ltbExecCxt.markPrefetchRequested( nodeID );
+			return;
+		}
+
+		// the link may be followed if the URI is discovered via another triple
+		if ( ! ltbExecCxt.reachability.followLink(match,nodeID) ) {
+			return;
+		}
+
+		if ( ! ltbExecCxt.markPrefetchRequested(nodeID) ) {
+			return;
+		}
+
+		LinkScorer scorer = ltbExecCxt.linkScorer;
+		scorer.recordDiscovery( nodeID, currentQueryPattern );
+		ltbExecCxt.requestPrefetch( nodeID, scorer.score(Priority.LOW,nodeID,isProbed(varID),0) );
+	}
+
 	/**
 	 * This method initiates that the Linked Data cache ensures all data for the
 	 * URI identified by the given ID is available.
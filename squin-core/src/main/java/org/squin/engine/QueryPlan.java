@@ -0,0 +1,218 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.algebra.Algebra;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.OpVisitorBase;
+import com.hp.hpl.jena.sparql.algebra.OpWalker;
+import com.hp.hpl.jena.sparql.algebra.op.OpBGP;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+
+import org.squin.dataset.jenacommon.NodeDictionary;
+import org.squin.dataset.query.TriplePattern;
+import org.squin.dataset.query.arq.RequiredVars;
+import org.squin.dataset.query.arq.VarDictionary;
+
+
+/**
+ * Everything that a {@link LinkTraversalBasedQueryEngine} derives from a
+ * query before it starts executing the query; i.e. the parsed query, the
+ * compiled and the optimized operator tree, the dictionary of query
+ * variables, the variables required by the operators of the tree, the seed
+ * URIs, the key in the {@link TraversalHistory}, and the ID-based
+ * representations of the BGPs.
+ * Plans are created and shared by a {@link QueryPlanCache}. The engine fills
+ * in the parts of a plan during the first execution of the plan and reuses
+ * them for all subsequent executions.
+ * A plan is only valid for the engine configuration it has been created
+ * for (see {@link #configSignature}).
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class QueryPlan
+{
+	// members
+
+	/** the (normalized) query string this plan has been created for */
+	final public String queryString;
+
+	final public Query query;
+
+	/** the string representation of the engine configuration this plan is valid for */
+	final public String configSignature;
+
+	private Op compiledOp = null;
+	private Op optimizedOp = null;
+	private VarDictionary varDict = null;
+	private RequiredVars requiredVars = null;
+	private Set<Node> seedURIs = null;
+	private TraversalHistory.Key historyKey = null;
+
+	/**
+	 * the ID-based representations of the BGPs in the optimized operator
+	 * tree; contains all BGPs of the tree as keys (initially with a null
+	 * value) so that we never cache the encodings of other BGPs (e.g.
+	 * BGPs that have been created by substituting variables at runtime)
+	 */
+	final private Map<BasicPattern,TriplePattern[]> encodedPatterns = new IdentityHashMap<BasicPattern,TriplePattern[]> ();
+
+	/** the dictionary that has been used to create the {@link #encodedPatterns} */
+	private NodeDictionary encodingDict = null;
+
+
+	// initialization
+
+	public QueryPlan ( String queryString, Query query, String configSignature )
+	{
+		this.queryString = queryString;
+		this.query = query;
+		this.configSignature = configSignature;
+
+		// ARQ calls this method for every execution of the query; we call it
+		// here already so that the shared query object is not modified later
+		query.setResultVars();
+	}
+
+
+	// accessors
+
+	/**
+	 * Returns the operator tree compiled from the query; the tree is compiled
+	 * during the first call of this method.
+	 */
+	synchronized public Op getCompiledOp ()
+	{
+		if ( compiledOp == null ) {
+			compiledOp = Algebra.compile( query );
+		}
+		return compiledOp;
+	}
+
+	/**
+	 * Returns the optimized operator tree, or null if it has not been set.
+	 */
+	synchronized public Op getOptimizedOp ()
+	{
+		return optimizedOp;
+	}
+
+	/**
+	 * Returns the dictionary of query variables, or null if it has not been
+	 * set. The dictionary must not be modified.
+	 */
+	synchronized public VarDictionary getVarDictionary ()
+	{
+		return varDict;
+	}
+
+	/**
+	 * Returns the variables required by the operators of the optimized
+	 * operator tree, or null if they have not been set.
+	 */
+	synchronized public RequiredVars getRequiredVars ()
+	{
+		return requiredVars;
+	}
+
+	/**
+	 * Returns the URIs to be looked up before the execution starts, or null
+	 * if they have not been set.
+	 */
+	synchronized public Set<Node> getSeedURIs ()
+	{
+		return seedURIs;
+	}
+
+	/**
+	 * Returns the key of the optimized operator tree in the
+	 * {@link TraversalHistory}, or null if it has not been set.
+	 */
+	synchronized public TraversalHistory.Key getHistoryKey ()
+	{
+		return historyKey;
+	}
+
+	/**
+	 * Returns the ID-based representation of the given BGP of the optimized
+	 * operator tree, or null if there is no such representation for the
+	 * given node dictionary.
+	 */
+	synchronized public TriplePattern[] getEncodedPattern ( BasicPattern pattern, NodeDictionary nodeDict )
+	{
+		if ( nodeDict != encodingDict ) {
+			return null;
+		}
+		return encodedPatterns.get( pattern );
+	}
+
+
+	// operations
+
+	synchronized public void setOptimizedOp ( Op op )
+	{
+		optimizedOp = op;
+		requiredVars = null;
+		historyKey = null;
+
+		encodedPatterns.clear();
+		OpWalker.walk( op, new OpVisitorBase() {
+			@Override
+			public void visit ( OpBGP opBGP ) { encodedPatterns.put( opBGP.getPattern(), null ); }
+		} );
+	}
+
+	synchronized public void setVarDictionary ( VarDictionary varDict )
+	{
+		this.varDict = varDict;
+	}
+
+	synchronized public void setRequiredVars ( RequiredVars requiredVars )
+	{
+		this.requiredVars = requiredVars;
+	}
+
+	synchronized public void setSeedURIs ( Set<Node> seedURIs )
+	{
+		this.seedURIs = seedURIs;
+	}
+
+	synchronized public void setHistoryKey ( TraversalHistory.Key historyKey )
+	{
+		this.historyKey = historyKey;
+	}
+
+	/**
+	 * Records the ID-based representation of the given BGP (which has been
+	 * created with the given node dictionary and with the dictionary of query
+	 * variables of this plan). Representations of BGPs that are not part of
+	 * the optimized operator tree are ignored.
+	 */
+	synchronized public void putEncodedPattern ( BasicPattern pattern, NodeDictionary nodeDict, TriplePattern[] encoded )
+	{
+		if ( ! encodedPatterns.containsKey(pattern) ) {
+			return;
+		}
+
+		if ( nodeDict != encodingDict )
+		{
+			// the plan is executed over another dataset now; forget the
+			// representations that we created for the previous one
+			for ( Map.Entry<BasicPattern,TriplePattern[]> e : encodedPatterns.entrySet() ) {
+				e.setValue( null );
+			}
+			encodingDict = nodeDict;
+		}
+
+		encodedPatterns.put( pattern, encoded );
+	}
+
+}
@@ -0,0 +1,287 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryException;
+import com.hp.hpl.jena.query.QueryFactory;
+
+import org.squin.common.Statistics;
+import org.squin.common.StatisticsProvider;
+import org.squin.common.impl.StatisticsImpl;
+
+
+/**
+ * A bounded cache of {@link QueryPlan}s that evicts the least recently used
+ * plan. Plans are identified by the normalized query string (see
+ * {@link #normalize}). A cached plan is replaced by a new one if it is
+ * requested for another engine configuration than the one it has been
+ * created for.
+ * To use a plan for a query execution it has to be put into the context of
+ * the query execution (see {@link LinkTraversalBasedQueryEngine#ctxtKeyQueryPlan}).
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class QueryPlanCache implements StatisticsProvider
+{
+	static private Logger log = LoggerFactory.getLogger( QueryPlanCache.class );
+
+	// members
+
+	static final public int DEFAULT_CAPACITY = 128;
+
+	static private QueryPlanCache defaultCache;
+
+	final public int capacity;
+
+	// attention: access to this member must be synchronized on this cache
+	final private LinkedHashMap<String,QueryPlan> plans;
+
+	// counters for statistics
+	private long hitCounter = 0;
+	private long missCounter = 0;
+	private long invalidatedCounter = 0;
+
+
+	// initialization
+
+	public QueryPlanCache ( int capacity )
+	{
+		if ( capacity < 1 ) {
+			throw new IllegalArgumentException( "The capacity of a query plan cache must be positive (" + capacity + ")." );
+		}
+
+		this.capacity = capacity;
+		plans = new LinkedHashMap<String,QueryPlan> ( 16, 0.75f, true ) {
+			@Override
+			protected boolean removeEldestEntry ( Map.Entry<String,QueryPlan> eldest ) { return size() > QueryPlanCache.this.capacity; }
+		};
+	}
+
+	/**
+	 * Returns the cache that is shared by the SQUIN servlet and the command
+	 * line tool.
+	 */
+	synchronized static public QueryPlanCache getDefault ()
+	{
+		if ( defaultCache == null ) {
+			defaultCache = new QueryPlanCache( DEFAULT_CAPACITY );
+		}
+		return defaultCache;
+	}
+
+
+	// operations
+
+	/**
+	 * Returns the plan for the given query string and engine configuration.
+	 * If there is no such plan in the cache this method parses the query
+	 * and adds a new plan to the cache.
+	 *
+	 * @throws QueryException if the given query string cannot be parsed
+	 */
+	public QueryPlan getPlan ( String queryString, LinkTraversalBasedQueryEngineConfig config ) throws QueryException
+	{
+		String key = normalize( queryString );
+		String configSignature = config.toString();
+
+		synchronized ( this )
+		{
+			QueryPlan plan = plans.get( key );
+			if ( plan != null && plan.configSignature.equals(configSignature) ) {
+				hitCounter++;
+				return plan;
+			}
+
+			if ( plan != null ) {
+				log.debug( "Query plan for query {} invalidated by a configuration change.", key );
+				invalidatedCounter++;
+			}
+			missCounter++;
+		}
+
+		// parse outside of the lock; if another thread parses the same query
+		// string concurrently, one of the two plans simply replaces the other
+		Query query = QueryFactory.create( queryString );
+		QueryPlan plan = new QueryPlan( key, query, configSignature );
+
+		synchronized ( this ) {
+			plans.put( key, plan );
+		}
+		return plan;
+	}
+
+	/**
+	 * Returns the plan for the given (already parsed) query and engine
+	 * configuration. The plan is identified by the normalized serialization
+	 * of the query. If there is no such plan in the cache this method adds
+	 * a new plan for the given query to the cache.
+	 */
+	public QueryPlan getPlan ( Query query, LinkTraversalBasedQueryEngineConfig config )
+	{
+		String key = normalize( query.serialize() );
+		String configSignature = config.toString();
+
+		synchronized ( this )
+		{
+			QueryPlan plan = plans.get( key );
+			if ( plan != null && plan.configSignature.equals(configSignature) ) {
+				hitCounter++;
+				return plan;
+			}
+
+			if ( plan != null ) {
+				log.debug( "Query plan for query {} invalidated by a configuration change.", key );
+				invalidatedCounter++;
+			}
+			missCounter++;
+
+			plan = new QueryPlan( key, query, configSignature );
+			plans.put( key, plan );
+			return plan;
+		}
+	}
+
+	/**
+	 * Removes all plans from this cache.
+	 */
+	synchronized public void clear ()
+	{
+		invalidatedCounter += plans.size();
+		plans.clear();
+	}
+
+	/**
+	 * Returns a normalized version of the given query string where leading
+	 * and trailing whitespace is removed and any other sequence of whitespace
+	 * (outside of string literals, IRIs and comments) is replaced by a single
+	 * space or, if the sequence contains a line break, by a single line
+	 * break (line breaks terminate comments).
+	 */
+	static public String normalize ( String queryString )
+	{
+		StringBuilder b = new StringBuilder( queryString.length() );
+		int len = queryString.length();
+		boolean pendingSpace = false;
+		boolean pendingNewline = false;
+
+		int i = 0;
+		while ( i < len )
+		{
+			char c = queryString.charAt( i );
+
+			if ( c == ' ' || c == '\t' || c == '\r' || c == '\n' ) {
+				if ( c == '\n' ) { pendingNewline = true; } else { pendingSpace = true; }
+				i++;
+				continue;
+			}
+
+			if ( b.length() > 0 ) {
+				if ( pendingNewline ) { b.append( '\n' ); }
+				else if ( pendingSpace ) { b.append( ' ' ); }
+			}
+			pendingSpace = pendingNewline = false;
+
+			int end;
+			if ( c == '"' || c == '\'' ) {
+				end = endOfString( queryString, i, c );
+			} else if ( c == '#' ) {
+				end = endOfComment( queryString, i );
+			} else if ( c == '<' ) {
+				end = endOfIRI( queryString, i );
+			} else {
+				end = i + 1;
+			}
+
+			b.append( queryString, i, end );
+			i = end;
+		}
+
+		return b.toString();
+	}
+
+
+	// implementation of the StatisticsProvider interface
+
+	public Statistics getStatistics ()
+	{
+		StatisticsImpl.AttributeList statAttrs = new StatisticsImpl.AttributeList();
+		synchronized ( this ) {
+			statAttrs.add( "capacity", capacity );
+			statAttrs.add( "size", plans.size() );
+			statAttrs.add( "hitCounter", hitCounter );
+			statAttrs.add( "missCounter", missCounter );
+			statAttrs.add( "invalidatedCounter", invalidatedCounter );
+		}
+		return new StatisticsImpl( statAttrs );
+	}
+
+
+	// helpers
+
+	/**
+	 * Returns the position after the string literal that starts at the given
+	 * position with the given quote character.
+	 */
+	static private int endOfString ( String s, int start, char quote )
+	{
+		String delim = new String( new char[] {quote,quote,quote} );
+		boolean isLong = s.startsWith( delim, start );
+
+		int i = start + ( (isLong) ? 3 : 1 );
+		while ( i < s.length() )
+		{
+			char c = s.charAt( i );
+			if ( c == '\\' ) {
+				i += 2;
+			} else if ( isLong && s.startsWith(delim,i) ) {
+				// a long literal may end with up to two additional quotes
+				i += 3;
+				while ( i < s.length() && s.charAt(i) == quote ) {
+					i++;
+				}
+				return i;
+			} else if ( ! isLong && c == quote ) {
+				return i + 1;
+			} else {
+				i++;
+			}
+		}
+		return s.length();
+	}
+
+	static private int endOfComment ( String s, int start )
+	{
+		int i = s.indexOf( '\n', start );
+		return ( i == -1 ) ? s.length() : i;
+	}
+
+	/**
+	 * Returns the position after the IRI that starts at the given position,
+	 * or the position after the given position if the '<' character at this
+	 * position does not start an IRI (but is a comparison operator).
+	 */
+	static private int endOfIRI ( String s, int start )
+	{
+		for ( int i = start + 1; i < s.length(); i++ )
+		{
+			char c = s.charAt( i );
+			if ( c == '>' ) {
+				return i + 1;
+			}
+			if ( c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '"' || c == '\'' || c == '<' ) {
+				break;
+			}
+		}
+		return start + 1;
+	}
+
+}
@@ -0,0 +1,301 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.OpVisitorBase;
+import com.hp.hpl.jena.sparql.algebra.OpWalker;
+import com.hp.hpl.jena.sparql.algebra.op.OpBGP;
+import com.hp.hpl.jena.sparql.algebra.op.OpPath;
+import com.hp.hpl.jena.sparql.algebra.op.OpQuadPattern;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+
+import org.squin.dataset.Triple;
+import org.squin.dataset.jenacommon.NodeDictionary;
+import org.squin.ldcache.HostStatistics;
+import org.squin.lookup.ReachabilityCriterion;
+import org.squin.util.IntHashSet;
+
+
+/**
+ * Provides the reachability criteria that may be used for link traversal
+ * based query execution (see
+ * {@link LinkTraversalBasedQueryEngineConfig#REACHABILITY_CRITERION}).
+ * <ul>
+ * <li>{@link #ALL} follows every link (cAll),</li>
+ * <li>{@link #NONE} follows no link in retrieved data (cNone); only the
+ *     URIs in the query are looked up, and</li>
+ * <li>{@link #match} follows the links in those triples that match a
+ *     triple pattern of the query (cMatch).</li>
+ * </ul>
+ * Each of these criteria may be restricted further to links with certain
+ * predicates (see {@link #restrictPredicates}) and to links between URIs of
+ * the same host (see {@link #restrictToSameHost}).
+ * URIs that have been discovered without an RDF triple (e.g. via link
+ * elements in HTML documents) are considered to be part of dereferencing
+ * the source URI; hence, only the same-host restriction applies to them.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class ReachabilityCriteria
+{
+	/** follows every link */
+	static final public ReachabilityCriterion ALL = new ReachabilityCriterion() {
+		public boolean followLink ( Triple t, int uriID ) { return true; }
+		public boolean followDiscoveredURI ( int srcUriID, int uriID ) { return true; }
+		@Override public String toString () { return "ALL"; }
+	};
+
+	/** follows no link in retrieved data */
+	static final public ReachabilityCriterion NONE = new ReachabilityCriterion() {
+		public boolean followLink ( Triple t, int uriID ) { return false; }
+		public boolean followDiscoveredURI ( int srcUriID, int uriID ) { return true; }
+		@Override public String toString () { return "NONE"; }
+	};
+
+
+	// operations
+
+	/**
+	 * Creates the reachability criterion specified by the given
+	 * configuration for the execution of the given query.
+	 */
+	static public ReachabilityCriterion create ( LinkTraversalBasedQueryEngineConfig config, Op op, NodeDictionary nodeDict )
+	{
+		String name = config.getStringValue( LinkTraversalBasedQueryEngineConfig.REACHABILITY_CRITERION );
+
+		ReachabilityCriterion c;
+		if ( name.equals("NONE") ) {
+			c = NONE;
+		} else if ( name.equals("MATCH") ) {
+			c = match( op, nodeDict );
+		} else {
+			c = ALL;
+		}
+
+		IntHashSet followed = encode( config.getStringValue(LinkTraversalBasedQueryEngineConfig.FOLLOWED_PREDICATES), nodeDict );
+		IntHashSet ignored = encode( config.getStringValue(LinkTraversalBasedQueryEngineConfig.IGNORED_PREDICATES), nodeDict );
+		if ( followed != null || ignored != null ) {
+			c = restrictPredicates( c, followed, ignored );
+		}
+
+		if ( config.isTrue(LinkTraversalBasedQueryEngineConfig.SAME_HOST_LINKS_ONLY) ) {
+			c = restrictToSameHost( c, nodeDict );
+		}
+
+		return c;
+	}
+
+	/**
+	 * Returns a criterion that follows the links in those triples that match
+	 * a triple pattern (or a property path pattern) of the given query.
+	 */
+	static public ReachabilityCriterion match ( Op op, NodeDictionary nodeDict )
+	{
+		PatternCollector c = new PatternCollector( nodeDict );
+		OpWalker.walk( op, c );
+		return new Match( c.patterns.toArray(new int[c.patterns.size()][]) );
+	}
+
+	/**
+	 * Returns a criterion that follows the links that the given criterion
+	 * follows if the predicate of the link is in the given set of followed
+	 * predicates (if any) and not in the given set of ignored predicates (if
+	 * any).
+	 *
+	 * @param followed identifiers of the predicates of links that may be
+	 *                 followed (null means all predicates)
+	 * @param ignored identifiers of the predicates of links that must not be
+	 *                followed (may be null)
+	 */
+	static public ReachabilityCriterion restrictPredicates ( ReachabilityCriterion c, IntHashSet followed, IntHashSet ignored )
+	{
+		return new PredicateRestriction( c, followed, ignored );
+	}
+
+	/**
+	 * Returns a criterion that follows the links that the given criterion
+	 * follows if the linked URI has the same host as the other URIs in the
+	 * link (or as the source URI for URIs discovered without a triple).
+	 */
+	static public ReachabilityCriterion restrictToSameHost ( ReachabilityCriterion c, NodeDictionary nodeDict )
+	{
+		return new SameHostRestriction( c, nodeDict );
+	}
+
+
+	// helpers
+
+	/**
+	 * Returns the identifiers of the URIs in the given white-space separated
+	 * list, or null if the list is empty.
+	 */
+	static protected IntHashSet encode ( String uris, NodeDictionary nodeDict )
+	{
+		if ( uris.length() == 0 ) {
+			return null;
+		}
+
+		IntHashSet ids = new IntHashSet ();
+		for ( String uri : uris.split(" ") ) {
+			ids.add( nodeDict.createId(Node.createURI(uri)) );
+		}
+		return ids;
+	}
+
+	static protected class Match implements ReachabilityCriterion
+	{
+		/** the constants of the triple patterns; {@link Triple#UNKNOWN_IDENTIFIER} denotes a variable */
+		final protected int[][] patterns;
+
+		public Match ( int[][] patterns ) { this.patterns = patterns; }
+
+		public boolean followLink ( Triple t, int uriID )
+		{
+			for ( int[] p : patterns )
+			{
+				if (    ( p[0] == Triple.UNKNOWN_IDENTIFIER || p[0] == t.s )
+				     && ( p[1] == Triple.UNKNOWN_IDENTIFIER || p[1] == t.p )
+				     && ( p[2] == Triple.UNKNOWN_IDENTIFIER || p[2] == t.o ) ) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public boolean followDiscoveredURI ( int srcUriID, int uriID ) { return true; }
+
+		@Override
+		public String toString () { return "MATCH(" + patterns.length + " patterns)"; }
+	}
+
+	static protected class PredicateRestriction implements ReachabilityCriterion
+	{
+		final protected ReachabilityCriterion base;
+		final protected IntHashSet followed;
+		final protected IntHashSet ignored;
+
+		public PredicateRestriction ( ReachabilityCriterion base, IntHashSet followed, IntHashSet ignored )
+		{
+			assert base != null;
+
+			this.base = base;
+			this.followed = followed;
+			this.ignored = ignored;
+		}
+
+		public boolean followLink ( Triple t, int uriID )
+		{
+			if ( followed != null && ! followed.contains(t.p) ) {
+				return false;
+			}
+			if ( ignored != null && ignored.contains(t.p) ) {
+				return false;
+			}
+			return base.followLink( t, uriID );
+		}
+
+		public boolean followDiscoveredURI ( int srcUriID, int uriID ) { return base.followDiscoveredURI( srcUriID, uriID ); }
+	}
+
+	static protected class SameHostRestriction implements ReachabilityCriterion
+	{
+		final protected ReachabilityCriterion base;
+		final protected NodeDictionary nodeDict;
+
+		public SameHostRestriction ( ReachabilityCriterion base, NodeDictionary nodeDict )
+		{
+			assert base != null;
+			assert nodeDict != null;
+
+			this.base = base;
+			this.nodeDict = nodeDict;
+		}
+
+		public boolean followLink ( Triple t, int uriID )
+		{
+			String host = getHost( uriID );
+			if ( host == null ) {
+				return false;
+			}
+
+			// a link to a URI of another host is only followed if the
+			// triple mentions no other URI of the same host
+			boolean otherURI = false;
+			for ( int id : new int[] {t.s,t.o} )
+			{
+				if ( id == uriID ) {
+					continue;
+				}
+
+				String h = getHost( id );
+				if ( h != null ) {
+					if ( h.equals(host) ) {
+						return base.followLink( t, uriID );
+					}
+					otherURI = true;
+				}
+			}
+
+			return ! otherURI && base.followLink( t, uriID );
+		}
+
+		public boolean followDiscoveredURI ( int srcUriID, int uriID )
+		{
+			String host = getHost( uriID );
+			return host != null && host.equals( getHost(srcUriID) ) && base.followDiscoveredURI( srcUriID, uriID );
+		}
+
+		protected String getHost ( int id )
+		{
+			Node n = nodeDict.getNode( id );
+			return ( n == null || ! n.isURI() ) ? null : HostStatistics.getHost( n.getURI() );
+		}
+	}
+
+	/**
+	 * Collects the ID-encoded constants of all triple patterns and property
+	 * path patterns (whose predicate is considered to be a variable) of a
+	 * query.
+	 */
+	static protected class PatternCollector extends OpVisitorBase
+	{
+		final protected List<int[]> patterns = new ArrayList<int[]> ();
+		final protected NodeDictionary nodeDict;
+
+		public PatternCollector ( NodeDictionary nodeDict ) { this.nodeDict = nodeDict; }
+
+		@Override
+		public void visit ( OpBGP opBGP ) { collect( opBGP.getPattern() ); }
+
+		@Override
+		public void visit ( OpQuadPattern quadPattern ) { collect( quadPattern.getBasicPattern() ); }
+
+		@Override
+		public void visit ( OpPath opPath )
+		{
+			patterns.add( new int[] { encode(opPath.getTriplePath().getSubject()),
+			                          Triple.UNKNOWN_IDENTIFIER,
+			                          encode(opPath.getTriplePath().getObject()) } );
+		}
+
+		protected void collect ( BasicPattern bgp )
+		{
+			for ( com.hp.hpl.jena.graph.Triple t : bgp.getList() ) {
+				patterns.add( new int[] { encode(t.getSubject()), encode(t.getPredicate()), encode(t.getObject()) } );
+			}
+		}
+
+		protected int encode ( Node n )
+		{
+			return n.isConcrete() ? nodeDict.createId( n ) : Triple.UNKNOWN_IDENTIFIER;
+		}
+	}
+
+}
@@ -0,0 +1,354 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.TransformCopy;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.algebra.op.OpBGP;
+import com.hp.hpl.jena.sparql.algebra.op.OpFilter;
+import com.hp.hpl.jena.sparql.algebra.op.OpPath;
+import com.hp.hpl.jena.sparql.algebra.op.OpTriple;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.sparql.graph.NodeTransform;
+import com.hp.hpl.jena.sparql.graph.NodeTransformLib;
+
+import org.squin.common.Statistics;
+import org.squin.common.StatisticsProvider;
+import org.squin.common.impl.StatisticsImpl;
+
+
+/**
+ * Remembers which URIs contributed to the solutions of previous query
+ * executions in order to predict the URIs that a new query execution is
+ * going to need; the engine looks up these URIs at the start of the
+ * execution, in parallel to the seed URIs of the query (see
+ * {@link LinkTraversalBasedQueryEngineConfig#MAX_PREDICTED_SEED_URIS}).
+ * A URI contributed to the solutions of an execution if data about it has
+ * been looked up for a triple pattern that had matching triples.
+ * The history is organized by query shapes; the shape of a query is its
+ * operator tree with all constants in subject and object position of triple
+ * patterns and all constants in filter expressions normalized (see
+ * {@link #createKey}). For an execution of a query the history predicts i)
+ * the URIs that contributed to the last execution of the same query and
+ * ii) the URIs that contributed to (at least) half of the executions of
+ * queries with the same shape.
+ * The history is bounded; it evicts the least recently used shapes.
+ * This class is thread-safe.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class TraversalHistory implements StatisticsProvider
+{
+	// members
+
+	static final public int DEFAULT_CAPACITY = 128;
+
+	/** the maximum number of URIs that are remembered per shape and per query */
+	static final public int MAX_URIS_PER_ENTRY = 256;
+
+	/** the maximum number of queries that are remembered per shape */
+	static final public int MAX_QUERIES_PER_SHAPE = 8;
+
+	/** replaces the constants of a query to obtain its shape */
+	static final protected Node CONSTANT = Node.createURI( "urn:x-squin:constant" );
+
+	static private TraversalHistory defaultHistory;
+
+	final public int capacity;
+
+	// attention: access to this member must be synchronized on this history
+	final private LinkedHashMap<String,ShapeEntry> shapes;
+
+	// counters for statistics
+	private long predictedExecCounter = 0;
+	private long unpredictedExecCounter = 0;
+	private long predictedFirstResultCounter = 0;
+	private long unpredictedFirstResultCounter = 0;
+	private long predictedTimeToFirstResult = 0L;
+	private long unpredictedTimeToFirstResult = 0L;
+	private long predictedURICounter = 0;
+	private long predictionHitCounter = 0;
+
+
+	// initialization
+
+	public TraversalHistory ( int capacity )
+	{
+		if ( capacity < 1 ) {
+			throw new IllegalArgumentException( "The capacity of a traversal history must be positive (" + capacity + ")." );
+		}
+
+		this.capacity = capacity;
+		shapes = new LinkedHashMap<String,ShapeEntry> ( 16, 0.75f, true ) {
+			@Override
+			protected boolean removeEldestEntry ( Map.Entry<String,ShapeEntry> eldest ) { return size() > TraversalHistory.this.capacity; }
+		};
+	}
+
+	/**
+	 * Returns the history that is shared by all query executions of the
+	 * {@link LinkTraversalBasedQueryEngine}.
+	 */
+	synchronized static public TraversalHistory getDefault ()
+	{
+		if ( defaultHistory == null ) {
+			defaultHistory = new TraversalHistory( DEFAULT_CAPACITY );
+		}
+		return defaultHistory;
+	}
+
+
+	// operations
+
+	/**
+	 * Returns the key under which the executions of the given operator tree
+	 * are recorded.
+	 */
+	static public Key createKey ( Op op )
+	{
+		String shape = Transformer.transform( new ShapeTransform(), op ).toString();
+		return new Key( shape, op.toString() );
+	}
+
+	/**
+	 * Returns the URIs that are likely to contribute to the solutions of an
+	 * execution of the query with the given key; the URIs that contributed
+	 * to the last execution of the same query come first.
+	 *
+	 * @param max the maximum number of URIs returned
+	 */
+	synchronized public List<String> predict ( Key key, int max )
+	{
+		ShapeEntry e = shapes.get( key.shape );
+		if ( e == null || max < 1 ) {
+			return new ArrayList<String> ();
+		}
+
+		Set<String> predicted = new LinkedHashSet<String> ();
+		Set<String> lastURIs = e.queries.get( key.query );
+		if ( lastURIs != null ) {
+			for ( String uri : lastURIs )
+			{
+				if ( predicted.size() >= max ) {
+					break;
+				}
+				predicted.add( uri );
+			}
+		}
+
+		// the most recently contributing URIs come last
+		List<String> frequentURIs = new ArrayList<String> ();
+		for ( Map.Entry<String,Integer> c : e.contributions.entrySet() )
+		{
+			int n = c.getValue().intValue();
+			if ( n >= 2 && 2*n >= e.executions ) {
+				frequentURIs.add( c.getKey() );
+			}
+		}
+		for ( int i = frequentURIs.size() - 1; i >= 0 && predicted.size() < max; i-- ) {
+			predicted.add( frequentURIs.get(i) );
+		}
+
+		return new ArrayList<String> ( predicted );
+	}
+
+	/**
+	 * Records an execution of the query with the given key.
+	 *
+	 * @param contributingURIs the URIs that contributed to the solutions
+	 * @param predictedURIs the URIs that have been predicted for the
+	 *                      execution (may be empty)
+	 * @param timeToFirstResult the time (in ms) until the first solution had
+	 *                          been found, or -1 if there was no solution
+	 */
+	synchronized public void record ( Key key, Collection<String> contributingURIs, Collection<String> predictedURIs, long timeToFirstResult )
+	{
+		ShapeEntry e = shapes.get( key.shape );
+		if ( e == null ) {
+			e = new ShapeEntry ();
+			shapes.put( key.shape, e );
+		}
+
+		e.executions++;
+		for ( String uri : contributingURIs )
+		{
+			Integer n = e.contributions.remove( uri );
+			e.contributions.put( uri, Integer.valueOf((n == null) ? 1 : n.intValue() + 1) );
+		}
+
+		Set<String> lastURIs = new LinkedHashSet<String> ();
+		for ( String uri : contributingURIs )
+		{
+			if ( lastURIs.size() >= MAX_URIS_PER_ENTRY ) {
+				break;
+			}
+			lastURIs.add( uri );
+		}
+		e.queries.put( key.query, lastURIs );
+
+		if ( predictedURIs.isEmpty() )
+		{
+			unpredictedExecCounter++;
+			if ( timeToFirstResult >= 0L ) {
+				unpredictedFirstResultCounter++;
+				unpredictedTimeToFirstResult += timeToFirstResult;
+			}
+		}
+		else
+		{
+			predictedExecCounter++;
+			if ( timeToFirstResult >= 0L ) {
+				predictedFirstResultCounter++;
+				predictedTimeToFirstResult += timeToFirstResult;
+			}
+
+			predictedURICounter += predictedURIs.size();
+			Set<String> contributing = new HashSet<String> ( contributingURIs );
+			for ( String uri : predictedURIs )
+			{
+				if ( contributing.contains(uri) ) {
+					predictionHitCounter++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forgets all recorded executions.
+	 */
+	synchronized public void clear ()
+	{
+		shapes.clear();
+	}
+
+
+	// implementation of the StatisticsProvider interface
+
+	public Statistics getStatistics ()
+	{
+		StatisticsImpl.AttributeList statAttrs = new StatisticsImpl.AttributeList();
+		synchronized ( this ) {
+			statAttrs.add( "capacity", capacity );
+			statAttrs.add( "size", shapes.size() );
+			statAttrs.add( "predictedExecCounter", predictedExecCounter );
+			statAttrs.add( "unpredictedExecCounter", unpredictedExecCounter );
+			statAttrs.add( "avgTimeToFirstResultPredicted", (predictedFirstResultCounter == 0) ? 0L : predictedTimeToFirstResult / predictedFirstResultCounter );
+			statAttrs.add( "avgTimeToFirstResultUnpredicted", (unpredictedFirstResultCounter == 0) ? 0L : unpredictedTimeToFirstResult / unpredictedFirstResultCounter );
+			statAttrs.add( "predictedURICounter", predictedURICounter );
+			statAttrs.add( "predictionHitCounter", predictionHitCounter );
+		}
+		return new StatisticsImpl( statAttrs );
+	}
+
+
+	// helpers
+
+	/**
+	 * Identifies the executions of a query in the history.
+	 */
+	static public class Key
+	{
+		/** the operator tree with normalized constants */
+		final public String shape;
+
+		/** the operator tree itself */
+		final public String query;
+
+		public Key ( String shape, String query )
+		{
+			this.shape = shape;
+			this.query = query;
+		}
+	}
+
+	/**
+	 * The executions recorded for a query shape.
+	 */
+	static protected class ShapeEntry
+	{
+		/** the number of recorded executions */
+		public int executions = 0;
+
+		/**
+		 * the number of executions each URI contributed to; ordered by the
+		 * most recent contribution
+		 */
+		final public LinkedHashMap<String,Integer> contributions = new LinkedHashMap<String,Integer> () {
+			@Override
+			protected boolean removeEldestEntry ( Map.Entry<String,Integer> eldest ) { return size() > MAX_URIS_PER_ENTRY; }
+		};
+
+		/** the URIs that contributed to the last execution of each query */
+		final public LinkedHashMap<String,Set<String>> queries = new LinkedHashMap<String,Set<String>> ( 16, 0.75f, true ) {
+			@Override
+			protected boolean removeEldestEntry ( Map.Entry<String,Set<String>> eldest ) { return size() > MAX_QUERIES_PER_SHAPE; }
+		};
+	}
+
+	/**
+	 * Normalizes the constants in subject and object position of triple
+	 * patterns and in filter expressions; predicates are kept because they
+	 * determine the structure of a query.
+	 */
+	static protected class ShapeTransform extends TransformCopy
+	{
+		final protected NodeTransform constants = new NodeTransform() {
+			public Node convert ( Node n ) { return normalize( n ); }
+		};
+
+		@Override
+		public Op transform ( OpBGP opBGP )
+		{
+			BasicPattern bgp = new BasicPattern ();
+			for ( Triple t : opBGP.getPattern().getList() ) {
+				bgp.add( normalize(t) );
+			}
+			return new OpBGP( bgp );
+		}
+
+		@Override
+		public Op transform ( OpTriple opTriple )
+		{
+			return new OpTriple( normalize(opTriple.getTriple()) );
+		}
+
+		@Override
+		public Op transform ( OpPath opPath )
+		{
+			TriplePath tp = opPath.getTriplePath();
+			return new OpPath( new TriplePath(normalize(tp.getSubject()), tp.getPath(), normalize(tp.getObject())) );
+		}
+
+		@Override
+		public Op transform ( OpFilter opFilter, Op subOp )
+		{
+			return OpFilter.filter( NodeTransformLib.transform(constants,opFilter.getExprs()), subOp );
+		}
+
+		static protected Triple normalize ( Triple t )
+		{
+			return Triple.create( normalize(t.getSubject()), t.getPredicate(), normalize(t.getObject()) );
+		}
+
+		static protected Node normalize ( Node n )
+		{
+			return n.isConcrete() ? CONSTANT : n;
+		}
+	}
+
+}
@@ -27,7 +27,7 @@ public class URICollector extends OpVisitorBase
 	final protected Set<Node> uris = new HashSet<Node> ();
 	final protected boolean includePredicates;
 
-	URICollector ( boolean includePredicates )
+	public URICollector ( boolean includePredicates )
 	{
 		this.includePredicates = includePredicates;
 	}
@@ -0,0 +1,725 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine.push;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.ARQ;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.algebra.Algebra;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.OpVars;
+import com.hp.hpl.jena.sparql.algebra.OpWalker;
+import com.hp.hpl.jena.sparql.algebra.op.OpBGP;
+import com.hp.hpl.jena.sparql.algebra.op.OpDistinct;
+import com.hp.hpl.jena.sparql.algebra.op.OpFilter;
+import com.hp.hpl.jena.sparql.algebra.op.OpProject;
+import com.hp.hpl.jena.sparql.algebra.op.OpReduced;
+import com.hp.hpl.jena.sparql.algebra.op.OpSlice;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import com.hp.hpl.jena.sparql.expr.Expr;
+
+import org.squin.common.Priority;
+import org.squin.dataset.RDFGraphProvenance;
+import org.squin.dataset.Triple;
+import org.squin.dataset.query.SolutionMapping;
+import org.squin.dataset.query.TriplePattern;
+import org.squin.dataset.query.arq.IdBasedFilter;
+import org.squin.dataset.query.arq.VarDictionary;
+import org.squin.engine.LinkTraversalBasedExecutionContext;
+import org.squin.engine.LinkTraversalBasedQueryEngineConfig;
+import org.squin.engine.LinkedDataCacheWrappingDatasetGraph;
+import org.squin.engine.OpExecutor;
+import org.squin.engine.ReachabilityCriteria;
+import org.squin.engine.URICollector;
+import org.squin.ldcache.DataImportListener;
+import org.squin.ldcache.DataRetrievedListener;
+import org.squin.ldcache.TraversalBudget;
+import org.squin.ldcache.jenaimpl.JenaIOBasedLinkedDataCache;
+import org.squin.lookup.ReachabilityCriterion;
+import org.squin.util.IntHashSet;
+
+
+/**
+ * Base class of the executions of a query as a dataflow of incremental
+ * operators (see {@link PushBasedQueryExecution} and {@link StandingQuery}).
+ *
+ * The execution pushes each graph imported by the Linked Data cache (see
+ * {@link DataImportListener}) through a {@link TriplePatternNode} per
+ * triple pattern and a left-deep tree of {@link JoinNode}s. The sink at the
+ * top of the dataflow (see {@link #createResultSink}) turns the derived
+ * solutions into the items that are pushed to the {@link Subscriber}.
+ * Links are traversed as in the iterator-based engine: the execution
+ * requests the data for the seed URIs in the query and for the URIs in each
+ * triple that matches a triple pattern.
+ *
+ * Supported are SELECT queries whose pattern is a single basic graph
+ * pattern, optionally with FILTERs, projection, DISTINCT/REDUCED, OFFSET and
+ * LIMIT (subclasses may restrict these further).
+ * An execution supports a single subscriber.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+abstract public class DataflowQueryExecution<T> implements Publisher<T>,
+                                                           DataImportListener,
+                                                           DataRetrievedListener
+{
+	final private Logger log = LoggerFactory.getLogger( DataflowQueryExecution.class );
+
+	// members
+
+	final public Query query;
+	final protected JenaIOBasedLinkedDataCache ldcache;
+	final protected LinkTraversalBasedExecutionContext execCxt;
+
+	final protected Op bgpOp;
+	final protected TriplePatternNode[] patternNodes;
+	final protected List<IdBasedFilter> filters = new ArrayList<IdBasedFilter> ();
+	final protected Var[] projectVars;
+	final protected int[] projectVarIds;
+	/**
+	 * the identifiers of the projected variables that occur in the BGP (i.e.
+	 * {@link #projectVarIds} without -1); the key for DISTINCT is built
+	 * from these only
+	 */
+	final protected int[] distinctVarIds;
+	final protected boolean distinct;
+	final protected long offset;
+	final protected long limit;
+
+	// attention: the dataflow (i.e. the pattern nodes and the members of the
+	//            result sink) must be accessed while holding this lock only
+	final protected Object dataflowLock = new Object ();
+
+	/** the URIs whose data has been requested by this execution */
+	final protected IntHashSet requestedURIs = new IntHashSet ();
+
+	// attention: access to the following members must be synchronized on
+	//            this execution
+
+	protected Subscriber<? super T> subscriber;
+	final protected Queue<T> buffer = new LinkedList<T> ();
+	protected long demand = 0L;
+
+	/** the URIs whose data retrieval is still pending */
+	final protected Set<Integer> pendingURIs = new HashSet<Integer> ();
+
+	protected boolean started = false;
+	protected boolean finished = false; // no further solutions will be emitted
+	protected boolean terminated = false; // the subscriber must not be called anymore
+	protected Throwable error = null;
+
+	/** serializes the calls of the subscriber (see {@link #drain}) */
+	final protected AtomicInteger drainRequests = new AtomicInteger( 0 );
+
+	// counters for statistics
+	protected long importCounter = 0;
+	protected long solCounter = 0;
+
+
+	// initialization
+
+	/**
+	 * @param budget bounds the data retrieval of the execution (may be null)
+	 * @throws IllegalArgumentException if the given query is not supported
+	 */
+	protected DataflowQueryExecution ( Query query, JenaIOBasedLinkedDataCache ldcache, LinkTraversalBasedQueryEngineConfig config, TraversalBudget budget ) throws IllegalArgumentException
+	{
+		if ( ! query.isSelectType() ) {
+			throw new IllegalArgumentException( "The push-based query execution supports SELECT queries only." );
+		}
+
+		this.query = query;
+		this.ldcache = ldcache;
+
+		// strip the supported solution modifiers and filters
+		Op op = Algebra.compile( query );
+		long offset = Query.NOLIMIT;
+		long limit = Query.NOLIMIT;
+		boolean distinct = false;
+		List<Var> projectVars = null;
+		List<Expr> filterExprs = new ArrayList<Expr> ();
+
+		if ( op instanceof OpSlice ) {
+			offset = ( (OpSlice) op ).getStart();
+			limit = ( (OpSlice) op ).getLength();
+			op = ( (OpSlice) op ).getSubOp();
+		}
+		if ( op instanceof OpDistinct || op instanceof OpReduced ) {
+			distinct = true;
+			op = ( op instanceof OpDistinct ) ? ((OpDistinct) op).getSubOp() : ((OpReduced) op).getSubOp();
+		}
+		if ( op instanceof OpProject ) {
+			projectVars = ( (OpProject) op ).getVars();
+			op = ( (OpProject) op ).getSubOp();
+		}
+		if ( op instanceof OpFilter ) {
+			for ( Expr e : ((OpFilter) op).getExprs() ) {
+				filterExprs.add( e );
+			}
+			op = ( (OpFilter) op ).getSubOp();
+		}
+		if ( ! (op instanceof OpBGP) || ((OpBGP) op).getPattern().isEmpty() ) {
+			throw new IllegalArgumentException( "The push-based query execution supports queries with a single basic graph pattern only (given: " + op.getName() + ")." );
+		}
+
+		this.bgpOp = op;
+		this.offset = ( offset == Query.NOLIMIT ) ? 0L : offset;
+		this.limit = limit;
+		this.distinct = distinct;
+
+		VarDictionary varDict = new VarDictionary();
+		for ( Var v : OpVars.allVars(op) ) {
+			varDict.createId( v );
+		}
+
+		LinkedDataCacheWrappingDatasetGraph dsg = new LinkedDataCacheWrappingDatasetGraph( ldcache );
+		// the pushed solutions are produced by a single worker in no particular
+		// order, the input solutions are not looked ahead, and provenance is not
+		// recorded for pushed data
+		LinkTraversalBasedQueryEngineConfig cxtConfig = new LinkTraversalBasedQueryEngineConfig( config );
+		cxtConfig.setValue( LinkTraversalBasedQueryEngineConfig.BGP_PARALLELISM, 1 );
+		cxtConfig.setValue( LinkTraversalBasedQueryEngineConfig.PRESERVE_SOLUTION_ORDER, false );
+		cxtConfig.setValue( LinkTraversalBasedQueryEngineConfig.LOOKAHEAD_WINDOW, 0 );
+		cxtConfig.setValue( LinkTraversalBasedQueryEngineConfig.RECORD_PROVENANCE, false );
+
+		execCxt = new LinkTraversalBasedExecutionContext( cxtConfig,
+		                                                  ReachabilityCriteria.create(config,op,ldcache.getNodeDictionary()),
+		                                                  budget,
+		                                                  ldcache.getNodeDictionary(),
+		                                                  varDict,
+		                                                  ARQ.getContext().copy(),
+		                                                  dsg.getDefaultGraph(),
+		                                                  dsg,
+		                                                  OpExecutor.getFactory() );
+
+		try {
+			for ( Expr e : filterExprs ) {
+				filters.add( new IdBasedFilter(e,execCxt) );
+			}
+		}
+		catch ( IllegalArgumentException e ) {
+			execCxt.release();
+			throw e;
+		}
+
+		if ( projectVars == null ) {
+			projectVars = new ArrayList<Var> ();
+			for ( int i = 0; i < varDict.size(); i++ ) {
+				projectVars.add( varDict.getVar(i) );
+			}
+		}
+		this.projectVars = projectVars.toArray( new Var[projectVars.size()] );
+		projectVarIds = new int[ this.projectVars.length ];
+		for ( int i = 0; i < projectVarIds.length; i++ ) {
+			projectVarIds[i] = varDict.contains( this.projectVars[i] ) ? varDict.getId( this.projectVars[i] ) : -1;
+		}
+
+		int knownCount = 0;
+		for ( int id : projectVarIds ) {
+			if ( id != -1 ) {
+				knownCount++;
+			}
+		}
+		distinctVarIds = new int[ knownCount ];
+		knownCount = 0;
+		for ( int id : projectVarIds ) {
+			if ( id != -1 ) {
+				distinctVarIds[knownCount++] = id;
+			}
+		}
+
+		patternNodes = createDataflow( ((OpBGP) op).getPattern().getList() );
+	}
+
+
+	// implementation of the Publisher interface
+
+	public void subscribe ( Subscriber<? super T> s )
+	{
+		synchronized ( this )
+		{
+			if ( subscriber != null ) {
+				s.onSubscribe( new RejectedSubscription() );
+				s.onError( new IllegalStateException("The push-based query execution supports a single subscriber only.") );
+				return;
+			}
+			subscriber = s;
+		}
+
+		s.onSubscribe( new ExecutionSubscription() );
+		start();
+	}
+
+
+	// implementation of the DataImportListener interface
+
+	public void dataImported ( List<Triple> data, RDFGraphProvenance prv )
+	{
+		synchronized ( dataflowLock )
+		{
+			if ( isFinished() ) {
+				return;
+			}
+
+			importCounter++;
+			try {
+				for ( Triple t : data ) {
+					for ( TriplePatternNode n : patternNodes ) {
+						if ( n.push(t) ) {
+							requestURIs( t );
+						}
+					}
+				}
+			}
+			catch ( RuntimeException e ) {
+				fail( e );
+			}
+		}
+
+		drain();
+	}
+
+
+	// implementation of the DataRetrievedListener interface
+
+	public void ensureAvailabilityFinished ( int uriID )
+	{
+		synchronized ( this )
+		{
+			if ( ! pendingURIs.remove(Integer.valueOf(uriID)) ) {
+				return;
+			}
+			if ( pendingURIs.isEmpty() && started && ! finished ) {
+				log.debug( "All data retrievals finished (imported graphs: {}, solutions: {}).", importCounter, solCounter );
+				retrievalsFinished();
+			}
+		}
+
+		drain();
+	}
+
+
+	// helper methods
+
+	/**
+	 * Creates the sink at the top of the dataflow, which receives the
+	 * solutions of the basic graph pattern (i.e. before the filters and the
+	 * solution modifiers have been applied).
+	 */
+	abstract protected SolutionSink createResultSink ();
+
+	/**
+	 * Called (while holding the lock of this execution) when all data
+	 * retrievals requested by this execution have been finished.
+	 */
+	abstract protected void retrievalsFinished ();
+
+	/**
+	 * Called (while holding the {@link #dataflowLock}) for each matching
+	 * triple that has been found in the cache when the execution started.
+	 */
+	protected void scanned ( Triple t ) {}
+
+	/**
+	 * Creates the dataflow for the given triple patterns and returns the
+	 * operators for the triple patterns. The join order is chosen such that
+	 * each triple pattern shares a variable with the preceding ones (if
+	 * possible), preferring triple patterns with more constants.
+	 */
+	protected TriplePatternNode[] createDataflow ( List<com.hp.hpl.jena.graph.Triple> bgp )
+	{
+		List<com.hp.hpl.jena.graph.Triple> remaining = new ArrayList<com.hp.hpl.jena.graph.Triple> ( bgp );
+		List<com.hp.hpl.jena.graph.Triple> ordered = new ArrayList<com.hp.hpl.jena.graph.Triple> ();
+		Set<Var> boundVars = new HashSet<Var> ();
+		while ( ! remaining.isEmpty() )
+		{
+			com.hp.hpl.jena.graph.Triple best = null;
+			int bestScore = -1;
+			for ( com.hp.hpl.jena.graph.Triple t : remaining )
+			{
+				int score = 3 - vars( t ).size();
+				if ( ordered.isEmpty() || ! disjoint(vars(t),boundVars) ) {
+					score += 4;
+				}
+				if ( score > bestScore ) {
+					best = t;
+					bestScore = score;
+				}
+			}
+			remaining.remove( best );
+			ordered.add( best );
+			boundVars.addAll( vars(best) );
+		}
+
+		// create the operators top-down: the sink of the last join is the
+		// result sink, the sink of every other join is the left input of the
+		// join above it
+		int size = execCxt.varDict.size();
+		TriplePatternNode[] nodes = new TriplePatternNode[ ordered.size() ];
+		SolutionSink sink = createResultSink();
+		for ( int i = ordered.size() - 1; i > 0; i-- )
+		{
+			Set<Var> leftVars = new HashSet<Var> ();
+			for ( int j = 0; j < i; j++ ) {
+				leftVars.addAll( vars(ordered.get(j)) );
+			}
+			leftVars.retainAll( vars(ordered.get(i)) );
+
+			int[] joinVarIds = new int[ leftVars.size() ];
+			int k = 0;
+			for ( Var v : leftVars ) {
+				joinVarIds[k++] = execCxt.varDict.getId( v );
+			}
+
+			JoinNode join = new JoinNode( joinVarIds, sink );
+			nodes[i] = new TriplePatternNode( encode(ordered.get(i)), size, join.right );
+			sink = join.left;
+		}
+		nodes[0] = new TriplePatternNode( encode(ordered.get(0)), size, sink );
+		return nodes;
+	}
+
+	/**
+	 * Starts the execution: registers this execution as a listener for
+	 * imported data, pushes the matching triples that are in the cache
+	 * already, and requests the data for the seed URIs of the query.
+	 */
+	protected void start ()
+	{
+		if ( limit == 0L )
+		{
+			// LIMIT 0; there is nothing to traverse links for
+			synchronized ( this ) {
+				started = true;
+				finished = true;
+			}
+			drain();
+			return;
+		}
+
+		ldcache.addDataImportListener( this );
+
+		synchronized ( dataflowLock )
+		{
+			try {
+				// the triples found here may also be pushed by an import that
+				// happens concurrently; the pattern nodes ignore duplicates
+				for ( TriplePatternNode n : patternNodes )
+				{
+					if ( isFinished() ) {
+						break;
+					}
+
+					TriplePattern tp = n.tp;
+					Iterator<Triple> it = ldcache.find( execCxt.accessContext,
+					                                    tp.sIsVar ? Triple.UNKNOWN_IDENTIFIER : tp.s,
+					                                    tp.pIsVar ? Triple.UNKNOWN_IDENTIFIER : tp.p,
+					                                    tp.oIsVar ? Triple.UNKNOWN_IDENTIFIER : tp.o );
+					while ( it.hasNext() && ! isFinished() )
+					{
+						Triple t = it.next();
+						if ( ! n.matches(t) ) {
+							continue;
+						}
+
+						scanned( t );
+						if ( n.push(t) ) {
+							requestURIs( t );
+						}
+					}
+				}
+
+				URICollector c = new URICollector( execCxt.predicateLookUpEnabled );
+				OpWalker.walk( bgpOp, c );
+				for ( Node uriNode : c.getURIs() ) {
+					requestURI( execCxt.nodeDict.createId(uriNode), Priority.HIGH );
+				}
+			}
+			catch ( RuntimeException e ) {
+				fail( e );
+			}
+		}
+
+		synchronized ( this ) {
+			started = true;
+			if ( pendingURIs.isEmpty() && ! finished ) {
+				retrievalsFinished();
+			}
+		}
+
+		drain();
+	}
+
+	/**
+	 * Requests the data for the URIs in the given (matching) triple if the
+	 * reachability criterion of this execution follows the corresponding
+	 * links. Must be called while holding the {@link #dataflowLock}.
+	 */
+	protected void requestURIs ( Triple t )
+	{
+		ReachabilityCriterion c = execCxt.reachability;
+		if ( c.followLink(t,t.s) ) {
+			requestURI( t.s, Priority.MEDIUM );
+		}
+		if ( execCxt.predicateLookUpEnabled && c.followLink(t,t.p) ) {
+			requestURI( t.p, Priority.MEDIUM );
+		}
+		if ( c.followLink(t,t.o) ) {
+			requestURI( t.o, Priority.MEDIUM );
+		}
+	}
+
+	/**
+	 * Must be called while holding the {@link #dataflowLock}.
+	 */
+	protected void requestURI ( int nodeID, Priority prio )
+	{
+		if ( ! requestedURIs.add(nodeID) ) {
+			return;
+		}
+
+		Node node = execCxt.nodeDict.getNode( nodeID );
+		if ( node == null || ! node.isURI() ) {
+			return;
+		}
+
+		// we register the retrieval as pending while holding the lock of this
+		// execution; hence, the notification about the finished retrieval
+		// cannot arrive before
+		synchronized ( this )
+		{
+			if ( finished ) {
+				return;
+			}
+			if ( ! ldcache.ensureAvailability(execCxt.accessContext,nodeID,prio,this) ) {
+				pendingURIs.add( Integer.valueOf(nodeID) );
+			}
+		}
+	}
+
+	synchronized protected boolean isFinished ()
+	{
+		return finished;
+	}
+
+	/**
+	 * Terminates the execution because of the given error.
+	 */
+	protected void fail ( Throwable t )
+	{
+		log.debug( "Push-based query execution failed: {}", t.getMessage() );
+		synchronized ( this ) {
+			if ( error == null ) {
+				error = t;
+			}
+			finished = true;
+		}
+	}
+
+	/**
+	 * Emits the buffered solutions as requested by the subscriber and
+	 * signals completion or failure. The subscriber is called by at most one
+	 * thread at a time: a thread that calls this method while another thread
+	 * is draining leaves the work to the other thread.
+	 */
+	protected void drain ()
+	{
+		if ( drainRequests.getAndIncrement() != 0 ) {
+			return;
+		}
+
+		do
+		{
+			while ( true )
+			{
+				T item;
+				synchronized ( this )
+				{
+					if ( terminated || subscriber == null || demand == 0L || buffer.isEmpty() ) {
+						break;
+					}
+					item = buffer.poll();
+					if ( demand != Long.MAX_VALUE ) {
+						demand--;
+					}
+				}
+				subscriber.onNext( item );
+			}
+
+			boolean complete = false;
+			Throwable failure = null;
+			synchronized ( this )
+			{
+				if ( ! terminated && subscriber != null )
+				{
+					if ( error != null ) {
+						failure = error;
+						terminated = true;
+						buffer.clear();
+					}
+					else if ( finished && buffer.isEmpty() ) {
+						complete = true;
+						terminated = true;
+					}
+				}
+			}
+
+			if ( failure != null ) {
+				release();
+				subscriber.onError( failure );
+			}
+			else if ( complete ) {
+				release();
+				subscriber.onComplete();
+			}
+		}
+		while ( drainRequests.decrementAndGet() != 0 );
+	}
+
+	/**
+	 * Stops listening to imported data and releases the access context of
+	 * this execution (which withdraws the pending data retrievals).
+	 */
+	protected void release ()
+	{
+		ldcache.removeDataImportListener( this );
+		execCxt.release();
+	}
+
+	static protected Set<Var> vars ( com.hp.hpl.jena.graph.Triple t )
+	{
+		Set<Var> result = new HashSet<Var> ();
+		if ( Var.isVar(t.getSubject()) ) {
+			result.add( Var.alloc(t.getSubject()) );
+		}
+		if ( Var.isVar(t.getPredicate()) ) {
+			result.add( Var.alloc(t.getPredicate()) );
+		}
+		if ( Var.isVar(t.getObject()) ) {
+			result.add( Var.alloc(t.getObject()) );
+		}
+		return result;
+	}
+
+	static protected boolean disjoint ( Set<Var> s1, Set<Var> s2 )
+	{
+		for ( Var v : s1 ) {
+			if ( s2.contains(v) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	protected TriplePattern encode ( com.hp.hpl.jena.graph.Triple tp )
+	{
+		boolean sIsVar = Var.isVar( tp.getSubject() );
+		boolean pIsVar = Var.isVar( tp.getPredicate() );
+		boolean oIsVar = Var.isVar( tp.getObject() );
+
+		return new TriplePattern( sIsVar, (sIsVar) ? execCxt.varDict.getId(Var.alloc(tp.getSubject())) : execCxt.nodeDict.createId(tp.getSubject()),
+		                          pIsVar, (pIsVar) ? execCxt.varDict.getId(Var.alloc(tp.getPredicate())) : execCxt.nodeDict.createId(tp.getPredicate()),
+		                          oIsVar, (oIsVar) ? execCxt.varDict.getId(Var.alloc(tp.getObject())) : execCxt.nodeDict.createId(tp.getObject()) );
+	}
+
+
+	/**
+	 * Returns true if the given solution satisfies the filters of the query.
+	 */
+	protected boolean accept ( SolutionMapping m )
+	{
+		for ( IdBasedFilter f : filters ) {
+			if ( ! f.accept(m) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the projection of the given solution as a binding.
+	 */
+	protected Binding toBinding ( SolutionMapping m )
+	{
+		BindingMap b = new BindingMap();
+		for ( int i = 0; i < projectVarIds.length; i++ ) {
+			if ( projectVarIds[i] != -1 && m.contains(projectVarIds[i]) ) {
+				b.add( projectVars[i], execCxt.nodeDict.getNode(m.get(projectVarIds[i])) );
+			}
+		}
+		return b;
+	}
+
+	/**
+	 * Adds the given item to the buffer of items to be pushed to the
+	 * subscriber (see {@link #drain}).
+	 */
+	synchronized protected void emit ( T item )
+	{
+		buffer.offer( item );
+		solCounter++;
+	}
+
+
+	/**
+	 * The subscription of the subscriber of this execution.
+	 */
+	protected class ExecutionSubscription implements Subscription
+	{
+		public void request ( long n )
+		{
+			synchronized ( DataflowQueryExecution.this )
+			{
+				if ( n <= 0L ) {
+					if ( error == null ) {
+						error = new IllegalArgumentException( "The number of requested solutions must be positive (" + n + ")." );
+					}
+					finished = true;
+				}
+				else {
+					demand = ( demand + n < 0L ) ? Long.MAX_VALUE : demand + n; // avoid overflow
+				}
+			}
+			drain();
+		}
+
+		public void cancel ()
+		{
+			synchronized ( DataflowQueryExecution.this ) {
+				if ( terminated ) {
+					return;
+				}
+				terminated = true;
+				finished = true;
+				buffer.clear();
+			}
+			release();
+		}
+	}
+
+	/**
+	 * The subscription passed to a rejected subscriber.
+	 */
+	static protected class RejectedSubscription implements Subscription
+	{
+		public void request ( long n ) {}
+		public void cancel () {}
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine.push;
+
+import java.util.Arrays;
+
+import org.squin.dataset.query.SolutionMapping;
+
+
+/**
+ * A tuple of identifiers to be used as a key in hash based data structures.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class IdTuple
+{
+	// members
+
+	final protected int[] ids;
+	final protected int hash;
+
+
+	// initialization
+
+	public IdTuple ( int... ids )
+	{
+		this.ids = ids;
+		hash = Arrays.hashCode( ids );
+	}
+
+	/**
+	 * Creates a tuple of the values that the given solution mapping binds to
+	 * the given variables.
+	 */
+	static public IdTuple create ( SolutionMapping m, int[] varIds )
+	{
+		int[] ids = new int[ varIds.length ];
+		for ( int i = 0; i < varIds.length; i++ ) {
+			ids[i] = m.get( varIds[i] );
+		}
+		return new IdTuple( ids );
+	}
+
+
+	// redefinition of Object methods
+
+	@Override
+	public int hashCode ()
+	{
+		return hash;
+	}
+
+	@Override
+	public boolean equals ( Object o )
+	{
+		return ( o instanceof IdTuple ) && Arrays.equals( ids, ((IdTuple) o).ids );
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine.push;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.squin.dataset.query.SolutionMapping;
+import org.squin.dataset.query.impl.FixedSizeSolutionMappingImpl;
+
+
+/**
+ * The operator of the dataflow of a {@link DataflowQueryExecution} that
+ * joins the solution mappings pushed to its two inputs (symmetric hash
+ * join).
+ * Each solution mapping pushed to one input is kept in a hash table (using
+ * the join variables as key) and it is joined with the solution mappings
+ * kept for the other input. Hence, every compatible pair of solution
+ * mappings is pushed to the sink exactly once, regardless of the order in
+ * which the mappings arrive. Retracting a solution mapping from one input
+ * removes it from its hash table and retracts all merged solution mappings
+ * that it has been part of.
+ * This class is not thread-safe.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class JoinNode
+{
+	// members
+
+	/** the variables that are bound in the solution mappings of both inputs */
+	final protected int[] joinVarIds;
+
+	final protected SolutionSink sink;
+
+	final protected Map<IdTuple,List<SolutionMapping>> leftTable = new HashMap<IdTuple,List<SolutionMapping>> ();
+	final protected Map<IdTuple,List<SolutionMapping>> rightTable = new HashMap<IdTuple,List<SolutionMapping>> ();
+
+	final public SolutionSink left = new SolutionSink () {
+		public void push ( SolutionMapping m ) { insertAndProbe( m, leftTable, rightTable ); }
+		public void retract ( SolutionMapping m ) { removeAndProbe( m, leftTable, rightTable ); }
+	};
+
+	final public SolutionSink right = new SolutionSink () {
+		public void push ( SolutionMapping m ) { insertAndProbe( m, rightTable, leftTable ); }
+		public void retract ( SolutionMapping m ) { removeAndProbe( m, rightTable, leftTable ); }
+	};
+
+
+	// initialization
+
+	public JoinNode ( int[] joinVarIds, SolutionSink sink )
+	{
+		this.joinVarIds = joinVarIds;
+		this.sink = sink;
+	}
+
+
+	// helpers
+
+	protected void insertAndProbe ( SolutionMapping m, Map<IdTuple,List<SolutionMapping>> ownTable, Map<IdTuple,List<SolutionMapping>> otherTable )
+	{
+		IdTuple key = IdTuple.create( m, joinVarIds );
+
+		List<SolutionMapping> own = ownTable.get( key );
+		if ( own == null ) {
+			own = new ArrayList<SolutionMapping> ();
+			ownTable.put( key, own );
+		}
+		own.add( m );
+
+		List<SolutionMapping> others = otherTable.get( key );
+		if ( others == null ) {
+			return;
+		}
+
+		// attention: pushing to the sink may not modify the other table
+		//            because the dataflow is a tree
+		for ( SolutionMapping other : others ) {
+			sink.push( merge(m,other) );
+		}
+	}
+
+	protected void removeAndProbe ( SolutionMapping m, Map<IdTuple,List<SolutionMapping>> ownTable, Map<IdTuple,List<SolutionMapping>> otherTable )
+	{
+		IdTuple key = IdTuple.create( m, joinVarIds );
+		List<SolutionMapping> own = ownTable.get( key );
+		if ( own == null || ! removeEqual(own,m) ) {
+			return;
+		}
+		if ( own.isEmpty() ) {
+			ownTable.remove( key );
+		}
+
+		List<SolutionMapping> others = otherTable.get( key );
+		if ( others == null ) {
+			return;
+		}
+
+		for ( SolutionMapping other : others ) {
+			sink.retract( merge(m,other) );
+		}
+	}
+
+	/**
+	 * Removes the first solution mapping from the given list that has the
+	 * same bindings as the given solution mapping.
+	 *
+	 * @return true if such a solution mapping has been removed
+	 */
+	static protected boolean removeEqual ( List<SolutionMapping> l, SolutionMapping m )
+	{
+		Iterator<SolutionMapping> it = l.iterator();
+		while ( it.hasNext() )
+		{
+			SolutionMapping candidate = it.next();
+			if ( sameBindings(candidate,m) ) {
+				it.remove();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static protected boolean sameBindings ( SolutionMapping m1, SolutionMapping m2 )
+	{
+		for ( int i = 0; i < m1.size(); i++ )
+		{
+			if ( m1.contains(i) != m2.contains(i) ) {
+				return false;
+			}
+			if ( m1.contains(i) && m1.get(i) != m2.get(i) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Merges two solution mappings that are compatible because they agree on
+	 * all join variables (which are the only variables bound in both).
+	 */
+	static protected SolutionMapping merge ( SolutionMapping m1, SolutionMapping m2 )
+	{
+		SolutionMapping result = new FixedSizeSolutionMappingImpl( m1 );
+		for ( int i = 0; i < m2.size(); i++ ) {
+			if ( ! result.contains(i) && m2.contains(i) ) {
+				result.set( i, m2.get(i), m2.getProvenance(i) );
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,25 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine.push;
+
+
+/**
+ * A producer of items that are pushed to a {@link Subscriber} (modeled after
+ * the Publisher interface of the Reactive Streams specification).
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public interface Publisher<T>
+{
+	/**
+	 * Adds the given subscriber. The subscriber is passed a
+	 * {@link Subscription} via {@link Subscriber#onSubscribe}; items are
+	 * pushed to the subscriber only as requested via this subscription.
+	 * If the subscription is rejected (e.g. because the publisher supports
+	 * a single subscriber only) the subscriber is notified via
+	 * {@link Subscriber#onError}.
+	 */
+	public void subscribe ( Subscriber<? super T> subscriber );
+}
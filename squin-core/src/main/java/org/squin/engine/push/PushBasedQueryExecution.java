@@ -0,0 +1,126 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine.push;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+
+import org.squin.dataset.query.SolutionMapping;
+import org.squin.engine.LinkTraversalBasedQueryEngineConfig;
+import org.squin.ldcache.jenaimpl.JenaIOBasedLinkedDataCache;
+
+
+/**
+ * A push-based alternative to executing a query with the iterator-based
+ * {@link org.squin.engine.LinkTraversalBasedQueryEngine}.
+ *
+ * Instead of pulling solutions through a chain of iterators that wait for
+ * the data they need, the execution pushes each graph imported by the
+ * Linked Data cache (see {@link org.squin.ldcache.DataImportListener})
+ * through a dataflow of incremental operators (see
+ * {@link DataflowQueryExecution}). A solution is emitted to the
+ * {@link Subscriber} as soon as it can be derived from the data imported so
+ * far; hence, the time to the first solution depends on the arrival of the
+ * data rather than on the order of the operators.
+ * The execution completes when all data retrievals that it requested have
+ * been finished.
+ *
+ * Supported are SELECT queries whose pattern is a single basic graph
+ * pattern, optionally with FILTERs, projection, DISTINCT/REDUCED, OFFSET and
+ * LIMIT; other queries have to be executed with a
+ * {@link com.hp.hpl.jena.query.QueryExecution}. Since the cache only grows
+ * during the execution, replaced graphs do not retract solutions that have
+ * been emitted already; every solution is emitted at most once (see
+ * {@link StandingQuery} for an execution that retracts solutions).
+ * An execution supports a single subscriber.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class PushBasedQueryExecution extends DataflowQueryExecution<Binding>
+{
+	// initialization
+
+	public PushBasedQueryExecution ( Query query, JenaIOBasedLinkedDataCache ldcache )
+	{
+		this( query, ldcache, new LinkTraversalBasedQueryEngineConfig() );
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the given query is not supported
+	 */
+	public PushBasedQueryExecution ( Query query, JenaIOBasedLinkedDataCache ldcache, LinkTraversalBasedQueryEngineConfig config ) throws IllegalArgumentException
+	{
+		super( query, ldcache, config, config.createTraversalBudget() );
+	}
+
+
+	// implementation of the DataflowQueryExecution abstract methods
+
+	protected SolutionSink createResultSink ()
+	{
+		return new ResultSink();
+	}
+
+	protected void retrievalsFinished ()
+	{
+		finished = true;
+	}
+
+
+	/**
+	 * The top of the dataflow; applies the filters and the solution modifiers
+	 * and adds the resulting solutions to the buffer of this execution.
+	 * Accessed while holding the {@link #dataflowLock} only.
+	 */
+	protected class ResultSink implements SolutionSink
+	{
+		final protected Set<IdTuple> emitted = new HashSet<IdTuple> ();
+		protected long skipped = 0L;
+		protected long produced = 0L;
+
+		public void push ( SolutionMapping m )
+		{
+			if ( isFinished() || ! accept(m) ) {
+				return;
+			}
+
+			if ( distinct && ! emitted.add(IdTuple.create(m,distinctVarIds)) ) {
+				return;
+			}
+
+			if ( skipped < offset ) {
+				skipped++;
+				return;
+			}
+
+			if ( limit != Query.NOLIMIT && produced >= limit ) {
+				return;
+			}
+
+			produced++;
+			boolean limitReached = ( limit != Query.NOLIMIT && produced >= limit );
+			synchronized ( PushBasedQueryExecution.this ) {
+				emit( toBinding(m) );
+				if ( limitReached ) {
+					finished = true;
+				}
+			}
+
+			if ( limitReached ) {
+				// no need to traverse further links
+				release();
+			}
+		}
+
+		public void retract ( SolutionMapping m )
+		{
+			// the push-based execution never retracts triples
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine.push;
+
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+
+
+/**
+ * A change of the result of a {@link StandingQuery}; i.e. a solution that
+ * has been added to or removed from the result.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class ResultDelta
+{
+	// members
+
+	/** true if the solution has been added, false if it has been removed */
+	final public boolean added;
+
+	final public Binding solution;
+
+
+	// initialization
+
+	public ResultDelta ( boolean added, Binding solution )
+	{
+		this.added = added;
+		this.solution = solution;
+	}
+
+
+	// redefinition of Object methods
+
+	@Override
+	public String toString ()
+	{
+		return ( (added) ? "+ " : "- " ) + solution.toString();
+	}
+
+}
@@ -0,0 +1,30 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine.push;
+
+import org.squin.dataset.query.SolutionMapping;
+
+
+/**
+ * An operator of the dataflow of a {@link DataflowQueryExecution} that
+ * consumes solution mappings pushed (and retracted) by the operators below
+ * it.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public interface SolutionSink
+{
+	/**
+	 * Consumes a new solution mapping (which must not be modified).
+	 */
+	public void push ( SolutionMapping m );
+
+	/**
+	 * Retracts a solution mapping that has been pushed before (i.e. a
+	 * mapping with the same bindings) because the data from which it has
+	 * been derived is not available anymore.
+	 */
+	public void retract ( SolutionMapping m );
+}
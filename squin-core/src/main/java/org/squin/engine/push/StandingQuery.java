@@ -0,0 +1,331 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine.push;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.Query;
+
+import org.squin.common.Priority;
+import org.squin.common.Statistics;
+import org.squin.common.StatisticsProvider;
+import org.squin.common.impl.StatisticsImpl;
+import org.squin.dataset.RDFGraphProvenance;
+import org.squin.dataset.Triple;
+import org.squin.dataset.query.SolutionMapping;
+import org.squin.engine.LinkTraversalBasedQueryEngineConfig;
+import org.squin.ldcache.jenaimpl.JenaIOBasedLinkedDataCache;
+
+
+/**
+ * A query that is registered against a Linked Data cache and whose result
+ * is maintained incrementally while the cache changes.
+ *
+ * A standing query is executed by a dataflow of incremental operators (see
+ * {@link DataflowQueryExecution}) that never completes; instead of the
+ * solutions themselves, it pushes {@link ResultDelta}s to its subscriber:
+ * first an addition for each solution of the initial result, and then an
+ * addition (or removal) for each solution that appears in (or disappears
+ * from) the result whenever the cache imports a new graph or replaces a
+ * graph with a more recent version (e.g. because the
+ * {@link org.squin.lookup.RelookupDecisionMaker} decided to look up a URI
+ * again). Only the part of the query that is affected by the changed
+ * triples is re-evaluated: the triples of the new version that match a
+ * triple pattern are pushed through the dataflow, and the matching triples
+ * of the old version that are not in the cache anymore are retracted from
+ * the dataflow.
+ * To this end, the standing query remembers the matching triples of each
+ * graph. The source of the matching triples that have been in the cache
+ * already when the standing query started is unknown; these triples are
+ * checked whenever a graph is imported for the first time during the
+ * lifetime of the standing query.
+ * The data that a standing query traversed is not looked up again
+ * automatically; {@link #refresh} requests it again so that the cache may
+ * replace outdated graphs. The data retrieval of a standing query is not
+ * bounded by a traversal budget.
+ *
+ * Supported are SELECT queries whose pattern is a single basic graph
+ * pattern, optionally with FILTERs, projection and DISTINCT/REDUCED. With
+ * DISTINCT, a removal is emitted when the last derivation of a solution
+ * disappears; without, each derivation is added and removed individually.
+ * The standing query is stopped by cancelling the subscription.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class StandingQuery extends DataflowQueryExecution<ResultDelta>
+                           implements StatisticsProvider
+{
+	final private Logger log = LoggerFactory.getLogger( StandingQuery.class );
+
+	// members
+
+	// attention: access to the following members must be synchronized on the
+	//            dataflowLock
+
+	/** the matching triples of each imported graph (identified by its source URL) */
+	final protected Map<URL,Set<IdTuple>> triplesBySource = new HashMap<URL,Set<IdTuple>> ();
+
+	/** matching triples that have been in the cache when the standing query started */
+	final protected Set<IdTuple> unattributedTriples = new HashSet<IdTuple> ();
+
+	// counters for statistics
+	protected long replacedGraphCounter = 0;
+	protected long retractedTripleCounter = 0;
+	protected long addedSolutionCounter = 0;
+	protected long removedSolutionCounter = 0;
+	protected long refreshCounter = 0;
+
+
+	// initialization
+
+	public StandingQuery ( Query query, JenaIOBasedLinkedDataCache ldcache )
+	{
+		this( query, ldcache, new LinkTraversalBasedQueryEngineConfig() );
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the given query is not supported
+	 */
+	public StandingQuery ( Query query, JenaIOBasedLinkedDataCache ldcache, LinkTraversalBasedQueryEngineConfig config ) throws IllegalArgumentException
+	{
+		super( query, ldcache, config, null );
+
+		if ( offset > 0L || limit != Query.NOLIMIT ) {
+			release();
+			throw new IllegalArgumentException( "Standing queries do not support OFFSET and LIMIT." );
+		}
+	}
+
+
+	// operations
+
+	/**
+	 * Requests the data for all URIs that this standing query traversed
+	 * again. The cache looks up those URIs again whose data is outdated
+	 * (as decided by its {@link org.squin.lookup.RelookupDecisionMaker});
+	 * the changes are propagated to the result.
+	 */
+	public void refresh ()
+	{
+		int[] uriIDs;
+		synchronized ( dataflowLock ) {
+			uriIDs = requestedURIs.toArray();
+		}
+
+		log.debug( "Refreshing the data for {} URIs.", uriIDs.length );
+		synchronized ( this )
+		{
+			if ( finished ) {
+				return;
+			}
+
+			refreshCounter++;
+			for ( int uriID : uriIDs )
+			{
+				Node node = execCxt.nodeDict.getNode( uriID );
+				if ( node == null || ! node.isURI() ) {
+					continue;
+				}
+				if ( ! ldcache.ensureAvailability(execCxt.accessContext,uriID,Priority.LOW,this) ) {
+					pendingURIs.add( Integer.valueOf(uriID) );
+				}
+			}
+		}
+	}
+
+
+	// implementation of the DataImportListener interface
+
+	@Override
+	public void dataImported ( List<Triple> data, RDFGraphProvenance prv )
+	{
+		synchronized ( dataflowLock )
+		{
+			if ( isFinished() ) {
+				return;
+			}
+
+			importCounter++;
+			try {
+				Set<IdTuple> current = new HashSet<IdTuple> ();
+				for ( Triple t : data )
+				{
+					boolean matching = false;
+					for ( TriplePatternNode n : patternNodes )
+					{
+						if ( ! n.matches(t) ) {
+							continue;
+						}
+
+						matching = true;
+						if ( n.push(t) ) {
+							requestURIs( t );
+						}
+					}
+
+					if ( matching ) {
+						current.add( new IdTuple(t.s,t.p,t.o) );
+					}
+				}
+
+				// determine the matching triples that may have disappeared
+				URL src = prv.getAccessedResourceURL();
+				Set<IdTuple> previous = ( current.isEmpty() ) ? triplesBySource.remove( src ) : triplesBySource.put( src, current );
+				Set<IdTuple> candidates = new HashSet<IdTuple> ();
+				if ( previous != null ) {
+					replacedGraphCounter++;
+					candidates.addAll( previous );
+				}
+				else if ( ! unattributedTriples.isEmpty() ) {
+					// the graph may have been in the cache before
+					unattributedTriples.removeAll( current );
+					candidates.addAll( unattributedTriples );
+				}
+				candidates.removeAll( current );
+
+				for ( IdTuple c : candidates )
+				{
+					// the triple may still be contained in another graph
+					if ( ! ldcache.find(execCxt.accessContext,c.ids[0],c.ids[1],c.ids[2]).hasNext() ) {
+						retract( new Triple(c.ids[0],c.ids[1],c.ids[2]) );
+					}
+				}
+			}
+			catch ( RuntimeException e ) {
+				fail( e );
+			}
+		}
+
+		drain();
+	}
+
+
+	// implementation of the StatisticsProvider interface
+
+	public Statistics getStatistics ()
+	{
+		StatisticsImpl.AttributeList statAttrs = new StatisticsImpl.AttributeList();
+		synchronized ( dataflowLock ) {
+			statAttrs.add( "importCounter", importCounter );
+			statAttrs.add( "replacedGraphCounter", replacedGraphCounter );
+			statAttrs.add( "retractedTripleCounter", retractedTripleCounter );
+			statAttrs.add( "addedSolutionCounter", addedSolutionCounter );
+			statAttrs.add( "removedSolutionCounter", removedSolutionCounter );
+		}
+		synchronized ( this ) {
+			statAttrs.add( "refreshCounter", refreshCounter );
+			statAttrs.add( "pendingURIs", pendingURIs.size() );
+		}
+		return new StatisticsImpl( statAttrs );
+	}
+
+
+	// implementation of the DataflowQueryExecution abstract methods
+
+	protected SolutionSink createResultSink ()
+	{
+		return new DeltaSink();
+	}
+
+	protected void retrievalsFinished ()
+	{
+		// a standing query does not complete; its result is up to date now
+		log.debug( "Result of the standing query is up to date (imported graphs: {}).", importCounter );
+	}
+
+	@Override
+	protected void scanned ( Triple t )
+	{
+		unattributedTriples.add( new IdTuple(t.s,t.p,t.o) );
+	}
+
+
+	// helper methods
+
+	/**
+	 * Retracts the given triple from all triple patterns it matches.
+	 * Must be called while holding the {@link #dataflowLock}.
+	 */
+	protected void retract ( Triple t )
+	{
+		unattributedTriples.remove( new IdTuple(t.s,t.p,t.o) );
+
+		boolean retracted = false;
+		for ( TriplePatternNode n : patternNodes ) {
+			if ( n.retract(t) ) {
+				retracted = true;
+			}
+		}
+		if ( retracted ) {
+			retractedTripleCounter++;
+		}
+	}
+
+
+	/**
+	 * The top of the dataflow; applies the filters and the projection and
+	 * turns the pushed and retracted solutions into result deltas.
+	 * Accessed while holding the {@link #dataflowLock} only.
+	 */
+	protected class DeltaSink implements SolutionSink
+	{
+		/** the number of derivations of each (projected) solution in the result */
+		final protected Map<IdTuple,Integer> derivations = new HashMap<IdTuple,Integer> ();
+
+		public void push ( SolutionMapping m )
+		{
+			if ( isFinished() || ! accept(m) ) {
+				return;
+			}
+
+			if ( distinct )
+			{
+				IdTuple key = IdTuple.create( m, distinctVarIds );
+				Integer n = derivations.get( key );
+				derivations.put( key, Integer.valueOf((n == null) ? 1 : n.intValue() + 1) );
+				if ( n != null ) {
+					return;
+				}
+			}
+
+			addedSolutionCounter++;
+			emit( new ResultDelta(true,toBinding(m)) );
+		}
+
+		public void retract ( SolutionMapping m )
+		{
+			if ( isFinished() || ! accept(m) ) {
+				return;
+			}
+
+			if ( distinct )
+			{
+				IdTuple key = IdTuple.create( m, distinctVarIds );
+				Integer n = derivations.get( key );
+				if ( n == null ) {
+					return;
+				}
+				if ( n.intValue() > 1 ) {
+					derivations.put( key, Integer.valueOf(n.intValue() - 1) );
+					return;
+				}
+				derivations.remove( key );
+			}
+
+			removedSolutionCounter++;
+			emit( new ResultDelta(false,toBinding(m)) );
+		}
+	}
+
+}
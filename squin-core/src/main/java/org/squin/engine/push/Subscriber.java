@@ -0,0 +1,39 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine.push;
+
+
+/**
+ * A receiver of items pushed by a {@link Publisher} (modeled after the
+ * Subscriber interface of the Reactive Streams specification).
+ * The methods of a subscriber are never called concurrently, but they may
+ * be called by different threads.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public interface Subscriber<T>
+{
+	/**
+	 * Called before any other method of this subscriber is called.
+	 */
+	public void onSubscribe ( Subscription subscription );
+
+	/**
+	 * Called for each item; the number of calls never exceeds the number of
+	 * items requested via {@link Subscription#request}.
+	 */
+	public void onNext ( T item );
+
+	/**
+	 * Called if the publisher failed; no other method is called afterwards.
+	 */
+	public void onError ( Throwable t );
+
+	/**
+	 * Called if there are no further items; no other method is called
+	 * afterwards.
+	 */
+	public void onComplete ();
+}
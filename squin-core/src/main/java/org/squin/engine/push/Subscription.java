@@ -0,0 +1,29 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine.push;
+
+
+/**
+ * Links a {@link Subscriber} to a {@link Publisher} (modeled after the
+ * Subscription interface of the Reactive Streams specification).
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public interface Subscription
+{
+	/**
+	 * Requests the given number of further items; {@link Long#MAX_VALUE}
+	 * requests all items. A non-positive number causes an
+	 * {@link IllegalArgumentException} to be passed to
+	 * {@link Subscriber#onError}.
+	 */
+	public void request ( long n );
+
+	/**
+	 * Stops pushing items to the subscriber (eventually) and releases the
+	 * resources of the publisher.
+	 */
+	public void cancel ();
+}
@@ -0,0 +1,130 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.engine.push;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.squin.dataset.Triple;
+import org.squin.dataset.query.SolutionMapping;
+import org.squin.dataset.query.TriplePattern;
+import org.squin.dataset.query.impl.FixedSizeSolutionMappingImpl;
+
+
+/**
+ * The operator of the dataflow of a {@link DataflowQueryExecution} that
+ * turns the triples matching a triple pattern into solution mappings.
+ * Each matching triple is turned into a solution mapping only once, even if
+ * it is pushed multiple times (e.g. because it has been imported again or
+ * because it has also been found by the initial scan of the cache), unless
+ * it has been retracted in between.
+ * This class is not thread-safe.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class TriplePatternNode
+{
+	// members
+
+	final public TriplePattern tp;
+
+	/** the size of the created solution mappings (i.e. the number of query variables) */
+	final protected int size;
+
+	final protected SolutionSink sink;
+
+	/** the matching triples that have been pushed already */
+	final protected Set<IdTuple> seen = new HashSet<IdTuple> ();
+
+
+	// initialization
+
+	public TriplePatternNode ( TriplePattern tp, int size, SolutionSink sink )
+	{
+		this.tp = tp;
+		this.size = size;
+		this.sink = sink;
+	}
+
+
+	// operations
+
+	/**
+	 * Pushes a solution mapping for the given triple to the sink of this
+	 * operator if the triple matches the triple pattern of this operator.
+	 *
+	 * @return true if the triple matches and has not been pushed before
+	 */
+	public boolean push ( Triple t )
+	{
+		if ( ! matches(t) || ! seen.add(new IdTuple(t.s,t.p,t.o)) ) {
+			return false;
+		}
+
+		sink.push( createSolution(t) );
+		return true;
+	}
+
+	/**
+	 * Retracts the solution mapping for the given triple from the sink of
+	 * this operator if the triple has been pushed before.
+	 *
+	 * @return true if the triple has been pushed before
+	 */
+	public boolean retract ( Triple t )
+	{
+		if ( ! matches(t) || ! seen.remove(new IdTuple(t.s,t.p,t.o)) ) {
+			return false;
+		}
+
+		sink.retract( createSolution(t) );
+		return true;
+	}
+
+
+	// helpers
+
+	protected SolutionMapping createSolution ( Triple t )
+	{
+		SolutionMapping m = new FixedSizeSolutionMappingImpl( size );
+		if ( tp.sIsVar ) {
+			m.set( tp.s, t.s, null );
+		}
+		if ( tp.pIsVar ) {
+			m.set( tp.p, t.p, null );
+		}
+		if ( tp.oIsVar ) {
+			m.set( tp.o, t.o, null );
+		}
+		return m;
+	}
+
+	protected boolean matches ( Triple t )
+	{
+		if ( ! tp.sIsVar && tp.s != t.s ) {
+			return false;
+		}
+		if ( ! tp.pIsVar && tp.p != t.p ) {
+			return false;
+		}
+		if ( ! tp.oIsVar && tp.o != t.o ) {
+			return false;
+		}
+
+		// the same variable at multiple positions requires the same values
+		if ( tp.sIsVar && tp.pIsVar && tp.s == tp.p && t.s != t.p ) {
+			return false;
+		}
+		if ( tp.sIsVar && tp.oIsVar && tp.s == tp.o && t.s != t.o ) {
+			return false;
+		}
+		if ( tp.pIsVar && tp.oIsVar && tp.p == tp.o && t.p != t.o ) {
+			return false;
+		}
+
+		return true;
+	}
+
+}
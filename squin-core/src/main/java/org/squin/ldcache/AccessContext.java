@@ -4,6 +4,10 @@
 */
 package org.squin.ldcache;
 
+import java.io.Closeable;
+
+import org.squin.lookup.ReachabilityCriterion;
+
 
 /**
  * This interface represents a context in which a {@link LinkedDataCache} will
@@ -13,11 +17,13 @@ package org.squin.ldcache;
  * different contexts of access. Different contexts should be registered for
  * different query executions. Once an access context ceases to exist it is
  * necessary to unregister the corresponding {@link AccessContext} object via
- * the method {@link LinkedDataCache#unregisterAccessContext}.
+ * the method {@link LinkedDataCache#unregisterAccessContext} (or, which is
+ * the same, to close it). Hence, the lifecycle of an access context should
+ * be bound to the lifecycle of the corresponding query execution.
  *
  * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
  */
-public interface AccessContext
+public interface AccessContext extends Closeable
 {
 	/**
 	 * Returns the {@link LinkedDataCache} for which this access context has
@@ -29,4 +35,24 @@ public interface AccessContext
 	 * Returns true if this access context is (still) registered.
 	 */
 	public boolean isRegistered ();
+
+	/**
+	 * Returns the reachability criterion that decides which links discovered
+	 * during the look-ups requested within this access context have to be
+	 * followed; null means that all links are followed.
+	 */
+	public ReachabilityCriterion getReachabilityCriterion ();
+
+	/**
+	 * Returns the budget that bounds the data retrieval within this access
+	 * context; null means that the data retrieval is not bounded.
+	 */
+	public TraversalBudget getTraversalBudget ();
+
+	/**
+	 * Unregisters this access context (see
+	 * {@link LinkedDataCache#unregisterAccessContext}) unless it has been
+	 * unregistered already.
+	 */
+	public void close ();
 }
@@ -0,0 +1,184 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.ldcache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The pending result of an asynchronous request for data retrieval (see
+ * {@link LinkedDataCache#ensureAvailabilityAsync}); i.e. a future that
+ * completes when the requested data is available in the cache (or when the
+ * retrieval has been withdrawn, in which case the data that is in the cache
+ * is all that will be available).
+ * Instead of waiting for the completion with one of the get methods, a
+ * component may register callbacks with {@link #whenDone}; hence, data
+ * retrievals can be composed (see {@link #allOf}) without blocking threads.
+ * Callbacks are executed by the thread that completes the future (usually a
+ * thread of the URI look-up manager) and, therefore, should not block.
+ * The requests of different components for the same URI share the same
+ * future while the retrieval is pending. Notice, only the waiting for the
+ * completion is asynchronous; the request that returns this future may
+ * still be registered synchronously by the cache (see
+ * {@link org.squin.ldcache.impl.LinkedDataCacheImpl}). Cancelling the future is not supported; use
+ * {@link LinkedDataCache#cancelDataRetrievals} to withdraw requests.
+ * This class is thread-safe.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class DataAvailability implements Future<Void>
+{
+	final private Logger log = LoggerFactory.getLogger( DataAvailability.class );
+
+	// members
+
+	final private CountDownLatch latch = new CountDownLatch( 1 );
+
+	// attention: access to the following member must be synchronized on this object
+	/** the callbacks to execute on completion; null after the completion */
+	private List<Runnable> callbacks = new ArrayList<Runnable> ();
+
+
+	// initialization
+
+	/**
+	 * Returns a future that has been completed already.
+	 */
+	static public DataAvailability completed ()
+	{
+		DataAvailability f = new DataAvailability ();
+		f.complete();
+		return f;
+	}
+
+	/**
+	 * Returns a future that completes when all of the given futures have
+	 * completed.
+	 */
+	static public DataAvailability allOf ( List<DataAvailability> futures )
+	{
+		final DataAvailability all = new DataAvailability ();
+		if ( futures.isEmpty() ) {
+			all.complete();
+			return all;
+		}
+
+		final AtomicInteger remaining = new AtomicInteger( futures.size() );
+		Runnable countDown = new Runnable() {
+			public void run ()
+			{
+				if ( remaining.decrementAndGet() == 0 ) {
+					all.complete();
+				}
+			}
+		};
+
+		for ( DataAvailability f : futures ) {
+			f.whenDone( countDown );
+		}
+		return all;
+	}
+
+
+	// operations
+
+	/**
+	 * Registers the given callback which will be executed when this future
+	 * completes. If this future has completed already, the callback is
+	 * executed immediately by the calling thread.
+	 */
+	public void whenDone ( Runnable callback )
+	{
+		synchronized ( this ) {
+			if ( callbacks != null ) {
+				callbacks.add( callback );
+				return;
+			}
+		}
+
+		execute( callback );
+	}
+
+	/**
+	 * Completes this future; executes the registered callbacks and wakes up
+	 * all threads that are waiting for the completion. Returns false if this
+	 * future has been completed before.
+	 */
+	public boolean complete ()
+	{
+		List<Runnable> toExecute;
+		synchronized ( this ) {
+			if ( callbacks == null ) {
+				return false;
+			}
+			toExecute = callbacks;
+			callbacks = null;
+		}
+
+		latch.countDown();
+		for ( Runnable callback : toExecute ) {
+			execute( callback );
+		}
+		return true;
+	}
+
+
+	// implementation of the Future interface
+
+	/**
+	 * Cancelling is not supported; returns false.
+	 */
+	public boolean cancel ( boolean mayInterruptIfRunning )
+	{
+		return false;
+	}
+
+	public boolean isCancelled ()
+	{
+		return false;
+	}
+
+	public boolean isDone ()
+	{
+		return latch.getCount() == 0L;
+	}
+
+	public Void get () throws InterruptedException
+	{
+		latch.await();
+		return null;
+	}
+
+	public Void get ( long timeout, TimeUnit unit ) throws InterruptedException, TimeoutException
+	{
+		if ( ! latch.await(timeout,unit) ) {
+			throw new TimeoutException();
+		}
+		return null;
+	}
+
+
+	// helper methods
+
+	private void execute ( Runnable callback )
+	{
+		try {
+			callback.run();
+		}
+		catch ( RuntimeException e ) {
+			log.warn( "Executing callback {} caused a {}: {}", new Object[] {callback,e.getClass().getName(),e.getMessage()} );
+		}
+	}
+
+}
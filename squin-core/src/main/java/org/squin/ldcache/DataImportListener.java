@@ -0,0 +1,33 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.ldcache;
+
+import java.util.List;
+
+import org.squin.dataset.RDFGraphProvenance;
+import org.squin.dataset.Triple;
+
+
+/**
+ * Interface of a listener which will be notified whenever data retrieved
+ * from the Web has been added to a {@link LinkedDataCache}.
+ * Such a listener has to be registered by calling
+ * {@link LinkedDataCache#addDataImportListener}.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public interface DataImportListener
+{
+	/**
+	 * Called by the thread that imported the given data after the data has
+	 * been added to the queried dataset of the cache. The call happens before
+	 * the listeners of the corresponding data retrieval are notified (see
+	 * {@link DataRetrievedListener}).
+	 *
+	 * @param data the imported triples (must not be modified)
+	 * @param prv the provenance of the imported data
+	 */
+	public void dataImported ( List<Triple> data, RDFGraphProvenance prv );
+}
@@ -0,0 +1,80 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.ldcache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Records how many triples the data retrieved from the different hosts on
+ * the Web contained. This is thread-safe.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class HostStatistics
+{
+	// members
+
+	/** the maximum number of hosts recorded; if exceeded, the statistics are reset */
+	static final public int MAX_HOSTS = 100000;
+
+	// attention: access to this member must be synchronized on this object
+	/** maps host names to the number of retrievals and the number of retrieved triples */
+	final protected Map<String,long[]> counters = new HashMap<String,long[]> ();
+
+
+	// accessors
+
+	/**
+	 * Returns the average number of triples per retrieval from the given
+	 * host, or -1 if nothing has been retrieved from the host yet.
+	 */
+	synchronized public double getAverageTripleCount ( String host )
+	{
+		long[] c = counters.get( host );
+		return ( c == null ) ? -1.0 : (double) c[1] / c[0];
+	}
+
+
+	// operations
+
+	/**
+	 * Records a retrieval of the given number of triples from the given host.
+	 */
+	synchronized public void record ( String host, long tripleCount )
+	{
+		long[] c = counters.get( host );
+		if ( c == null )
+		{
+			if ( counters.size() >= MAX_HOSTS ) {
+				counters.clear();
+			}
+			c = new long[2];
+			counters.put( host, c );
+		}
+		c[0]++;
+		c[1] += tripleCount;
+	}
+
+	/**
+	 * Returns the host of the given URI, or null if the URI has no host.
+	 */
+	static public String getHost ( String uri )
+	{
+		int start = uri.indexOf( "://" );
+		if ( start == -1 ) {
+			return null;
+		}
+		start += 3;
+
+		int end = start;
+		while ( end < uri.length() && "/?#".indexOf(uri.charAt(end)) == -1 ) {
+			end++;
+		}
+		return uri.substring( start, end ).toLowerCase();
+	}
+
+}
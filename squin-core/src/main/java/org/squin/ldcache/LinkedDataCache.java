@@ -12,6 +12,7 @@ import org.squin.common.Priority;
 import org.squin.common.StatisticsProvider;
 import org.squin.dataset.TraceableTriple;
 import org.squin.dataset.Triple;
+import org.squin.lookup.ReachabilityCriterion;
 
 
 /**
@@ -33,10 +34,39 @@ public interface LinkedDataCache extends StatisticsProvider
 	 */
 	public AccessContext registerAccessContext ();
 
+	/**
+	 * Registers a new {@link AccessContext} object (see
+	 * {@link #registerAccessContext()}) for which the given reachability
+	 * criterion decides which links discovered during the look-ups requested
+	 * within the access context have to be followed.
+	 *
+	 * @param criterion the reachability criterion (may be null, in which case
+	 *                  all links are followed)
+	 */
+	public AccessContext registerAccessContext ( ReachabilityCriterion criterion );
+
+	/**
+	 * Registers a new {@link AccessContext} object (see
+	 * {@link #registerAccessContext(ReachabilityCriterion)}) within which the
+	 * data retrieval is bounded by the given budget.
+	 * Once the budget is exhausted, requests for data retrieval issued within
+	 * the access context are answered with the data available in the cache,
+	 * and the pending data retrievals of the access context are cancelled
+	 * (see {@link #cancelDataRetrievals}).
+	 *
+	 * @param criterion the reachability criterion (may be null, in which case
+	 *                  all links are followed)
+	 * @param budget the traversal budget (may be null, in which case the data
+	 *               retrieval is not bounded)
+	 */
+	public AccessContext registerAccessContext ( ReachabilityCriterion criterion, TraversalBudget budget );
+
 	/**
 	 * Unregisters an access context.
 	 * After unregistering an {@link AccessContext} object, that object cannot
 	 * be used anymore to access the Linked Data cache.
+	 * Data retrievals that are still pending for the access context are
+	 * cancelled (see {@link #cancelDataRetrievals}).
 	 *
 	 * @param ac the access context to unregister
 	 * @see #registerAccessContext
@@ -58,6 +88,30 @@ public interface LinkedDataCache extends StatisticsProvider
 	 */
 	public Iterator<TraceableTriple> findWithProvenance ( AccessContext ac, int s, int p, int o );
 
+	/**
+	 * Returns the version of the data in this cache; i.e. a number that
+	 * changes whenever data is added to (or replaced in) the cache. Results
+	 * of {@link #find} that have been obtained with the same version are
+	 * still valid.
+	 */
+	public long getDataVersion ();
+
+	/**
+	 * Returns statistics about the data retrieved from the different hosts.
+	 */
+	public HostStatistics getHostStatistics ();
+
+	/**
+	 * Registers a listener that will be notified whenever data retrieved from
+	 * the Web has been added to this cache.
+	 */
+	public void addDataImportListener ( DataImportListener l );
+
+	/**
+	 * Unregisters a listener registered with {@link #addDataImportListener}.
+	 */
+	public void removeDataImportListener ( DataImportListener l );
+
 	/**
 	 * Ensures that data from the Web about the given URI is available in the
 	 * cache.
@@ -87,6 +141,78 @@ public interface LinkedDataCache extends StatisticsProvider
 	 */
 	public boolean ensureAvailability ( AccessContext ac, int uriID, Priority priority, DataRetrievedListener l );
 
+	/**
+	 * Ensures that data from the Web about all of the given URIs is available
+	 * in the cache (see {@link #ensureAvailability(AccessContext,int,Priority)}).
+	 * Requesting a batch of URIs is cheaper than requesting each of them
+	 * separately because the cache is locked only once for the batch.
+	 *
+	 * @param ac the access context to which this request belongs
+	 * @param uriIDs identifiers of the URIs for which the data is requested
+	 * @param priority priority for this request
+	 * @return true if the data for all of the URIs is already in the cache
+	 */
+	public boolean ensureAvailability ( AccessContext ac, int[] uriIDs, Priority priority );
+
+	/**
+	 * Ensures that data from the Web about all of the given URIs is available
+	 * in the cache (see {@link #ensureAvailability(AccessContext,int[],Priority)}),
+	 * where the data about the URI at index i of the given array of URIs is
+	 * requested with the priority at index i of the given array of
+	 * priorities.
+	 *
+	 * @param ac the access context to which this request belongs
+	 * @param uriIDs identifiers of the URIs for which the data is requested
+	 * @param priorities priorities for the requests (must be at least as
+	 *                   long as the array of URIs)
+	 * @return true if the data for all of the URIs is already in the cache
+	 */
+	public boolean ensureAvailability ( AccessContext ac, int[] uriIDs, Priority[] priorities );
+
+	/**
+	 * Ensures that data from the Web about the given URI is available in the
+	 * cache and returns a future that completes when the data is available
+	 * (or when the retrieval has been withdrawn).
+	 * In contrast to the listener-based
+	 * {@link #ensureAvailability(AccessContext,int,Priority,DataRetrievedListener)},
+	 * all requests for the same URI share the same future as long as the
+	 * retrieval is pending; waiting for the future (or registering callbacks
+	 * with it) does not block the cache. Notice, issuing the request itself
+	 * may still block briefly because an implementation may have to
+	 * synchronize the bookkeeping of its pending retrievals.
+	 *
+	 * @param ac the access context to which this request belongs
+	 * @param uriID identifier of the URI for which the data is requested
+	 * @param priority priority for this request
+	 * @return a future that has completed already if the requested data is
+	 *         in the cache
+	 */
+	public DataAvailability ensureAvailabilityAsync ( AccessContext ac, int uriID, Priority priority );
+
+	/**
+	 * Ensures that data from the Web about all of the given URIs is available
+	 * in the cache (see {@link #ensureAvailabilityAsync(AccessContext,int,Priority)})
+	 * and returns a future that completes when the data for all of these
+	 * URIs is available.
+	 *
+	 * @param ac the access context to which this request belongs
+	 * @param uriIDs identifiers of the URIs for which the data is requested
+	 * @param priority priority for this request
+	 */
+	public DataAvailability ensureAvailabilityAsync ( AccessContext ac, int[] uriIDs, Priority priority );
+
+	/**
+	 * Withdraws all requests for data retrieval that have been issued within
+	 * the given access context and that are still pending.
+	 * Listeners registered with these requests are notified immediately (as
+	 * if the retrieval had finished) so that nobody keeps waiting for them.
+	 * Retrievals that are not requested within any other access context are
+	 * dropped if they have not been started yet.
+	 *
+	 * @param ac the access context whose requests are withdrawn
+	 */
+	public void cancelDataRetrievals ( AccessContext ac );
+
 	/**
 	 * Shuts down this cache.
 	 *
@@ -0,0 +1,165 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.ldcache;
+
+
+/**
+ * Bounds the data retrieval within an {@link AccessContext} (i.e. for a
+ * single query execution).
+ * A budget limits the number of retrieved documents, the number of
+ * retrieved bytes, the number of look-ups that may be in flight at the same
+ * time, and the time until which data may be retrieved. A limit of 0 means
+ * that the corresponding resource is not limited.
+ * Once the budget is exhausted the {@link LinkedDataCache} does not retrieve
+ * data within the access context anymore; instead, requests are answered
+ * with the data that is available in the cache already. If a data retrieval
+ * has been skipped (or withdrawn) for this reason, the budget records that
+ * the query result may be partial (see {@link #hasLimitedTraversal}).
+ * This class is thread-safe.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class TraversalBudget
+{
+	// members
+
+	/** the maximum number of retrieved documents (0 means unlimited) */
+	final public int maxDocuments;
+
+	/** the maximum number of retrieved bytes (0 means unlimited) */
+	final public long maxBytes;
+
+	/** the maximum number of look-ups in flight at the same time (0 means unlimited) */
+	final public int maxLookUpsInFlight;
+
+	/** the time (in ms since the epoch) after which no data is retrieved anymore (0 means no deadline) */
+	final public long deadline;
+
+	// attention: access to the following members must be synchronized on this object
+	protected int documentCount = 0;
+	protected long byteCount = 0L;
+	protected int lookUpsInFlight = 0;
+	protected boolean limited = false;
+
+
+	// initialization
+
+	/**
+	 * @param timeout the time (in ms) from now on during which data may be
+	 *                retrieved (0 means no deadline)
+	 */
+	public TraversalBudget ( int maxDocuments, long maxBytes, int maxLookUpsInFlight, long timeout )
+	{
+		assert maxDocuments >= 0;
+		assert maxBytes >= 0L;
+		assert maxLookUpsInFlight >= 0;
+		assert timeout >= 0L;
+
+		this.maxDocuments = maxDocuments;
+		this.maxBytes = maxBytes;
+		this.maxLookUpsInFlight = maxLookUpsInFlight;
+		deadline = ( timeout == 0L ) ? 0L : System.currentTimeMillis() + timeout;
+	}
+
+
+	// accessors
+
+	/**
+	 * Returns true if no more data may be retrieved within the access
+	 * context.
+	 */
+	synchronized public boolean isExhausted ()
+	{
+		return    ( maxDocuments > 0 && documentCount >= maxDocuments )
+		       || ( maxBytes > 0L && byteCount >= maxBytes )
+		       || ( deadline > 0L && System.currentTimeMillis() >= deadline );
+	}
+
+	/**
+	 * Returns true if another look-up may be initiated within the access
+	 * context without exceeding the limit for look-ups in flight.
+	 */
+	synchronized public boolean hasLookUpCapacity ()
+	{
+		return maxLookUpsInFlight == 0 || lookUpsInFlight < maxLookUpsInFlight;
+	}
+
+	/**
+	 * Returns true if data retrievals have been skipped or withdrawn because
+	 * this budget was exhausted; that is, if the result of the corresponding
+	 * query execution may be partial.
+	 */
+	synchronized public boolean hasLimitedTraversal ()
+	{
+		return limited;
+	}
+
+	synchronized public int getDocumentCount ()
+	{
+		return documentCount;
+	}
+
+	synchronized public long getByteCount ()
+	{
+		return byteCount;
+	}
+
+	synchronized public int getLookUpsInFlight ()
+	{
+		return lookUpsInFlight;
+	}
+
+	@Override
+	synchronized public String toString ()
+	{
+		return   "TraversalBudget(documents=" + documentCount + "/" + maxDocuments
+		       + ", bytes=" + byteCount + "/" + maxBytes
+		       + ", lookUpsInFlight=" + lookUpsInFlight + "/" + maxLookUpsInFlight
+		       + ", deadline=" + deadline
+		       + ", limited=" + limited + ")";
+	}
+
+
+	// operations
+
+	/**
+	 * Records that a look-up has been initiated within the access context.
+	 */
+	synchronized public void lookUpStarted ()
+	{
+		lookUpsInFlight++;
+	}
+
+	/**
+	 * Records that a look-up initiated within the access context has
+	 * finished (or that it is not needed within the context anymore).
+	 */
+	synchronized public void lookUpFinished ()
+	{
+		if ( lookUpsInFlight > 0 ) {
+			lookUpsInFlight--;
+		}
+	}
+
+	/**
+	 * Charges the given number of documents and bytes retrieved for the
+	 * access context to this budget.
+	 */
+	synchronized public void recordRetrieval ( int documents, long bytes )
+	{
+		documentCount += documents;
+		byteCount += bytes;
+	}
+
+	/**
+	 * Records that a data retrieval has been skipped or withdrawn because
+	 * this budget was exhausted.
+	 */
+	synchronized public void setLimited ()
+	{
+		limited = true;
+	}
+
+}
@@ -4,23 +4,37 @@
 */
 package org.squin.ldcache.impl;
 
-import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.squin.ldcache.AccessContext;
 import org.squin.ldcache.LinkedDataCache;
+import org.squin.ldcache.TraversalBudget;
+import org.squin.lookup.ReachabilityCriterion;
+import org.squin.util.ResourceCleaner;
 
 
 /**
  * Registry of {@link AccessContext}s for a specific {@link LinkedDataCache}.
+ * The registration state is kept in the access contexts themselves; hence,
+ * checking whether an access context is registered (which the cache does
+ * for every access) requires no locking.
+ * Access contexts that become unreachable without having been unregistered
+ * are reported by a {@link ResourceCleaner}.
  * This implementation is thread-safe.
  *
  * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
  */
 public class AccessContextRegistry
 {
+	final private Logger log = LoggerFactory.getLogger( AccessContextRegistry.class );
+
 	final public LinkedDataCache cache;
-	final protected Collection<Integer> registeredIDs = new java.util.HashSet<Integer> ();
-	protected int nextFreeID = 0;
+	final protected AtomicInteger nextFreeID = new AtomicInteger( 0 );
+	final protected AtomicInteger registeredCount = new AtomicInteger( 0 );
 
 	public AccessContextRegistry ( LinkedDataCache cache )
 	{
@@ -29,54 +43,103 @@ public class AccessContextRegistry
 		this.cache = cache;
 	}
 
-	synchronized public AccessContext getNewAccessContext ()
+	public AccessContext getNewAccessContext ()
 	{
-		registeredIDs.add( Integer.valueOf(nextFreeID) );
-		return new AccessContextImpl( nextFreeID++ );
+		return getNewAccessContext( null );
 	}
 
-	synchronized public boolean isRegistered ( AccessContext ac )
+	public AccessContext getNewAccessContext ( ReachabilityCriterion criterion )
 	{
-		if ( ac instanceof AccessContextImpl ) {
-			int id = ( (AccessContextImpl) ac ).id;
-			return registeredIDs.contains( Integer.valueOf(id) );
-		} else {
-			return false;
-		}
+		return getNewAccessContext( criterion, null );
 	}
 
-	synchronized public void unregister ( AccessContext ac ) throws UnregisteredAccessContextException
+	public AccessContext getNewAccessContext ( ReachabilityCriterion criterion, TraversalBudget budget )
 	{
-		if ( ! ac.isRegistered() ) {
-			throw new UnregisteredAccessContextException();
-		}
+		AccessContextImpl ac = new AccessContextImpl( nextFreeID.getAndIncrement(), criterion, budget );
+		ac.cleanable = ResourceCleaner.register( ac, new LeakReport(ac.id) );
+		registeredCount.incrementAndGet();
+		return ac;
+	}
 
-		if ( ! (ac instanceof AccessContextImpl) ) {
+	public boolean isRegistered ( AccessContext ac )
+	{
+		return    ac instanceof AccessContextImpl
+		       && ( (AccessContextImpl) ac ).getRegistry() == this
+		       && ac.isRegistered();
+	}
+
+	public void unregister ( AccessContext ac ) throws UnregisteredAccessContextException
+	{
+		if ( ! (ac instanceof AccessContextImpl) || ((AccessContextImpl) ac).getRegistry() != this ) {
 			throw new UnregisteredAccessContextException();
 		}
 
-		if ( ! isRegistered(ac) ) {
+		AccessContextImpl acImpl = (AccessContextImpl) ac;
+		if ( ! acImpl.registered.compareAndSet(true,false) ) {
 			throw new UnregisteredAccessContextException();
 		}
 
-		int id = ( (AccessContextImpl) ac ).id;
-		registeredIDs.remove( Integer.valueOf(id) );
-		( (AccessContextImpl) ac ).setUnregistered();
+		acImpl.cleanable.cancel();
+		registeredCount.decrementAndGet();
+	}
+
+	/**
+	 * Returns the number of access contexts that are currently registered.
+	 */
+	public int getRegisteredCount ()
+	{
+		return registeredCount.get();
 	}
 
 
 	class AccessContextImpl implements AccessContext
 	{
 		final public int id;
-		protected boolean registered = true;
+		final public ReachabilityCriterion criterion;
+		final public TraversalBudget budget;
+		final protected AtomicBoolean registered = new AtomicBoolean( true );
+		protected ResourceCleaner.Cleanable cleanable;
 
-		public AccessContextImpl ( int id ) { this.id = id; }
-		protected void finalize () throws Throwable { unregister(this); }
+		public AccessContextImpl ( int id, ReachabilityCriterion criterion, TraversalBudget budget ) { this.id = id; this.criterion = criterion; this.budget = budget; }
 
 		public LinkedDataCache getCache () { return cache; }
-		synchronized public boolean isRegistered () { return registered; }
+		public boolean isRegistered () { return registered.get(); }
+		public ReachabilityCriterion getReachabilityCriterion () { return criterion; }
+		public TraversalBudget getTraversalBudget () { return budget; }
+
+		public void close ()
+		{
+			if ( isRegistered() ) {
+				try {
+					cache.unregisterAccessContext( this );
+				}
+				catch ( UnregisteredAccessContextException e ) {
+					// unregistered concurrently
+				}
+			}
+		}
+
+		protected AccessContextRegistry getRegistry () { return AccessContextRegistry.this; }
+
+		@Override
+		public String toString () { return "AccessContext(" + id + ")"; }
+	}
 
-		synchronized public void setUnregistered () { registered = false; }
+	/**
+	 * Reports an access context that has become unreachable without having
+	 * been unregistered; must not refer to the access context itself.
+	 */
+	class LeakReport implements Runnable
+	{
+		final public int id;
+
+		public LeakReport ( int id ) { this.id = id; }
+
+		public void run ()
+		{
+			registeredCount.decrementAndGet();
+			log.warn( "Access context {} became unreachable without having been unregistered.", id );
+		}
 	}
 
 }
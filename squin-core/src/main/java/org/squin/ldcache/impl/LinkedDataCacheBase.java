@@ -4,15 +4,33 @@
 */
 package org.squin.ldcache.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.squin.common.Priority;
 import org.squin.dataset.QueriedDataset;
+import org.squin.dataset.RDFGraphProvenance;
 import org.squin.dataset.TraceableTriple;
 import org.squin.dataset.Triple;
 import org.squin.ldcache.AccessContext;
+import org.squin.ldcache.DataAvailability;
+import org.squin.ldcache.DataImportListener;
 import org.squin.ldcache.DataRetrievedListener;
+import org.squin.ldcache.HostStatistics;
 import org.squin.ldcache.LinkedDataCache;
+import org.squin.ldcache.TraversalBudget;
+import org.squin.lookup.ReachabilityCriterion;
 
 
 /**
@@ -22,11 +40,26 @@ import org.squin.ldcache.LinkedDataCache;
  */
 public abstract class LinkedDataCacheBase implements LinkedDataCache
 {
+	final private Logger log = LoggerFactory.getLogger( LinkedDataCacheBase.class );
+
 	// members
 
+	/** timer that cancels the data retrievals of access contexts whose deadline has passed */
+	static final private Timer deadlineTimer = new Timer( "SQUIN traversal deadlines", true );
+
 	final protected AccessContextRegistry acRegistry;
 	final protected QueriedDataset dataset;
 
+	/** see {@link #getDataVersion} */
+	final private AtomicLong dataVersion = new AtomicLong( 0L );
+
+	final private List<DataImportListener> importListeners = new CopyOnWriteArrayList<DataImportListener> ();
+
+	final protected HostStatistics hostStats = new HostStatistics ();
+
+	/** the scheduled deadline tasks of the registered access contexts */
+	final private Map<AccessContext,TimerTask> deadlineTasks = new HashMap<AccessContext,TimerTask> ();
+
 
 	// initialization
 
@@ -46,8 +79,60 @@ public abstract class LinkedDataCacheBase implements LinkedDataCache
 		return acRegistry.getNewAccessContext();
 	}
 
+	final public AccessContext registerAccessContext ( ReachabilityCriterion criterion )
+	{
+		return acRegistry.getNewAccessContext( criterion );
+	}
+
+	final public AccessContext registerAccessContext ( ReachabilityCriterion criterion, TraversalBudget budget )
+	{
+		final AccessContext ac = acRegistry.getNewAccessContext( criterion, budget );
+
+		if ( budget != null && budget.deadline > 0L )
+		{
+			// when the deadline passes, the pending data retrievals of the
+			// access context are withdrawn so that nobody keeps waiting for them
+			TimerTask t = new TimerTask() {
+				public void run ()
+				{
+					synchronized ( deadlineTasks ) {
+						if ( deadlineTasks.remove(ac) == null ) {
+							return;
+						}
+					}
+
+					log.debug( "Deadline of access context {} passed. Cancelling its data retrievals.", ac );
+					try {
+						cancelDataRetrievalsWithin( ac );
+					}
+					catch ( RuntimeException e ) {
+						log.warn( "Cancelling the data retrievals after the deadline caused a {}: {}", e.getClass().getName(), e.getMessage() );
+					}
+				}
+			};
+
+			synchronized ( deadlineTasks ) {
+				deadlineTasks.put( ac, t );
+			}
+			deadlineTimer.schedule( t, Math.max(0L, budget.deadline - System.currentTimeMillis()) );
+		}
+
+		return ac;
+	}
+
 	final public void unregisterAccessContext ( AccessContext ac )
 	{
+		TimerTask t;
+		synchronized ( deadlineTasks ) {
+			t = deadlineTasks.remove( ac );
+		}
+		if ( t != null ) {
+			t.cancel();
+		}
+
+		if ( acRegistry.isRegistered(ac) ) {
+			cancelDataRetrievalsWithin( ac );
+		}
 		acRegistry.unregister( ac );
 	}
 
@@ -63,6 +148,26 @@ public abstract class LinkedDataCacheBase implements LinkedDataCache
 		return findWithProvenance( s, p, o );
 	}
 
+	final public long getDataVersion ()
+	{
+		return dataVersion.get();
+	}
+
+	final public HostStatistics getHostStatistics ()
+	{
+		return hostStats;
+	}
+
+	final public void addDataImportListener ( DataImportListener l )
+	{
+		importListeners.add( l );
+	}
+
+	final public void removeDataImportListener ( DataImportListener l )
+	{
+		importListeners.remove( l );
+	}
+
 	final public boolean ensureAvailability ( AccessContext ac, int uriID, Priority prio ) throws UnregisteredAccessContextException
 	{
 		return ensureAvailability( ac, uriID, prio, null );
@@ -71,7 +176,49 @@ public abstract class LinkedDataCacheBase implements LinkedDataCache
 	final public boolean ensureAvailability ( AccessContext ac, int uriID, Priority prio, DataRetrievedListener l ) throws UnregisteredAccessContextException
 	{
 		ensureRegistered( ac );
-		return ensureAvailability( uriID, prio, l );
+		return ensureAvailabilityWithin( ac, uriID, prio, l );
+	}
+
+	final public boolean ensureAvailability ( AccessContext ac, int[] uriIDs, Priority prio ) throws UnregisteredAccessContextException
+	{
+		Priority[] prios = new Priority[ uriIDs.length ];
+		Arrays.fill( prios, prio );
+		return ensureAvailability( ac, uriIDs, prios );
+	}
+
+	final public boolean ensureAvailability ( AccessContext ac, int[] uriIDs, Priority[] prios ) throws UnregisteredAccessContextException
+	{
+		assert prios.length >= uriIDs.length;
+
+		ensureRegistered( ac );
+		return ensureAvailabilityWithin( ac, uriIDs, prios );
+	}
+
+	final public DataAvailability ensureAvailabilityAsync ( AccessContext ac, int uriID, Priority prio ) throws UnregisteredAccessContextException
+	{
+		ensureRegistered( ac );
+		return ensureAvailabilityAsyncWithin( ac, uriID, prio );
+	}
+
+	final public DataAvailability ensureAvailabilityAsync ( AccessContext ac, int[] uriIDs, Priority prio ) throws UnregisteredAccessContextException
+	{
+		ensureRegistered( ac );
+
+		List<DataAvailability> futures = new ArrayList<DataAvailability> ( uriIDs.length );
+		for ( int uriID : uriIDs )
+		{
+			DataAvailability f = ensureAvailabilityAsyncWithin( ac, uriID, prio );
+			if ( ! f.isDone() ) {
+				futures.add( f );
+			}
+		}
+		return DataAvailability.allOf( futures );
+	}
+
+	final public void cancelDataRetrievals ( AccessContext ac ) throws UnregisteredAccessContextException
+	{
+		ensureRegistered( ac );
+		cancelDataRetrievalsWithin( ac );
 	}
 
 
@@ -87,7 +234,49 @@ public abstract class LinkedDataCacheBase implements LinkedDataCache
 		return dataset.findWithProvenance( s, p, o );
 	}
 
-	abstract protected boolean ensureAvailability ( int uriID, Priority prio, DataRetrievedListener l );
+	/**
+	 * Has to be called after data has been added to the queried dataset of
+	 * this cache (see {@link #getDataVersion}).
+	 */
+	final protected void dataChanged ()
+	{
+		dataVersion.incrementAndGet();
+	}
+
+	/**
+	 * Returns true if there are listeners that have to be notified about
+	 * imported data (see {@link #dataImported}).
+	 */
+	final protected boolean hasDataImportListeners ()
+	{
+		return ! importListeners.isEmpty();
+	}
+
+	/**
+	 * Has to be called after the given data has been added to the queried
+	 * dataset of this cache; notifies the registered
+	 * {@link DataImportListener}s.
+	 */
+	final protected void dataImported ( List<Triple> data, RDFGraphProvenance prv )
+	{
+		for ( DataImportListener l : importListeners )
+		{
+			try {
+				l.dataImported( data, prv );
+			}
+			catch ( RuntimeException e ) {
+				log.warn( "Notifying listener {} about imported data caused a {}: {}", new Object[] {l,e.getClass().getName(),e.getMessage()} );
+			}
+		}
+	}
+
+	abstract protected boolean ensureAvailabilityWithin ( AccessContext ac, int uriID, Priority prio, DataRetrievedListener l );
+
+	abstract protected boolean ensureAvailabilityWithin ( AccessContext ac, int[] uriIDs, Priority[] prios );
+
+	abstract protected DataAvailability ensureAvailabilityAsyncWithin ( AccessContext ac, int uriID, Priority prio );
+
+	abstract protected void cancelDataRetrievalsWithin ( AccessContext ac );
 
 
 	// helper methods
@@ -10,7 +10,10 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
@@ -26,18 +29,29 @@ import org.squin.dataset.QueriedDataset;
 import org.squin.dataset.RDFGraphProvenance;
 import org.squin.dataset.Triple;
 import org.squin.ldcache.AccessContext;
+import org.squin.ldcache.DataAvailability;
 import org.squin.ldcache.DataRetrievedListener;
+import org.squin.ldcache.TraversalBudget;
 import org.squin.lookup.DataImporter;
 import org.squin.lookup.FinishedURILookUp;
 import org.squin.lookup.RelookupDecisionMaker;
 import org.squin.lookup.URILookUpManager;
 import org.squin.lookup.URILookUpResult;
+import org.squin.lookup.deref.DataAnalyzer;
+import org.squin.lookup.deref.DereferencingResult;
 import org.squin.lookup.impl.RelookupDecisionMakerImpl;
 
 
 /**
  * An implementation of an active cache of Linked Data that
  * makes use of a {@link org.squin.lookup.URILookUpManager}.
+ * The pending look-up requests, the deferred requests, and the traversal
+ * budgets are guarded by the monitor of this cache. Hence, all requests for
+ * data retrieval are registered under this monitor, including the
+ * asynchronous requests (see {@link #ensureAvailabilityAsync}); only waiting
+ * for the completion of the latter does not hold the monitor. Concurrent
+ * query executions that request many look-ups at the same time contend for
+ * this monitor.
  *
  * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
  */
@@ -54,6 +68,24 @@ public class LinkedDataCacheImpl extends LinkedDataCacheBase
 	final protected RelookupDecisionMaker relookupDecisionMaker;
 	final protected Map<Integer,PendingLookUpRequest> pendingLookUpRequests = new HashMap<Integer,PendingLookUpRequest> ();
 
+	/**
+	 * the requests that have been deferred because the corresponding access
+	 * context had too many look-ups in flight (see
+	 * {@link TraversalBudget#maxLookUpsInFlight})
+	 */
+	final protected Map<AccessContext,Queue<DeferredLookUpRequest>> deferredLookUpRequests = new HashMap<AccessContext,Queue<DeferredLookUpRequest>> ();
+
+	/**
+	 * the futures of the asynchronous requests (see
+	 * {@link #ensureAvailabilityAsync}) for which the data retrieval is still
+	 * pending; does not require synchronization on this cache
+	 */
+	final protected ConcurrentHashMap<Integer,DataAvailability> pendingAvailabilities = new ConcurrentHashMap<Integer,DataAvailability> ();
+
+	// counters for statistics (access must be synchronized on this cache)
+	private long abandonedLookUpCount = 0;
+	private long demotedLookUpCount = 0;
+
 	private boolean shuttingdown = false;
 	private boolean shutdown = false;
 
@@ -68,7 +100,31 @@ public class LinkedDataCacheImpl extends LinkedDataCacheBase
 		this.lookupMgr = lookupMgr;
 
 		dataImporter = new DataImporter() {
-			public void importData ( Iterator<Triple> data, RDFGraphProvenance prv ) { getQueriedDataset().putRDFGraph(data,prv); }
+			public void importData ( Iterator<Triple> data, RDFGraphProvenance prv )
+			{
+				if ( ! hasDataImportListeners() )
+				{
+					final long[] tripleCount = new long[] { 0L };
+					getQueriedDataset().putRDFGraph( new DataAnalyzer.DataAnalyzingIterator(data) {
+						protected void analyze ( Triple t ) { tripleCount[0]++; }
+					}, prv );
+					dataChanged(); // invalidates matches memorized during query executions
+					recordRetrieval( prv, tripleCount[0] );
+					return;
+				}
+
+				// the listeners need the imported triples; hence, we have to
+				// materialize them before they are consumed by the dataset
+				List<Triple> triples = new ArrayList<Triple> ();
+				while ( data.hasNext() ) {
+					triples.add( data.next() );
+				}
+
+				getQueriedDataset().putRDFGraph( triples.iterator(), prv );
+				dataChanged();
+				recordRetrieval( prv, triples.size() );
+				dataImported( triples, prv );
+			}
 		};
 
 		relookupDecisionMaker = RelookupDecisionMakerImpl.get();
@@ -77,14 +133,38 @@ public class LinkedDataCacheImpl extends LinkedDataCacheBase
 
 	// implementation of the LinkedDataCacheBase abstract worker methods
 
-	protected boolean ensureAvailability ( int uriID, Priority priority, DataRetrievedListener listener )
+	protected boolean ensureAvailabilityWithin ( AccessContext ac, int uriID, Priority priority, DataRetrievedListener listener )
 	{
 		log.debug( "ensureAvailability for URI {} requested {}.", uriID, (listener==null) ? "(no listener)" : "by listener "+listener.toString() );
 
 		Integer id = Integer.valueOf( uriID );
+		TraversalBudget budget = ac.getTraversalBudget();
 
 		synchronized ( this ) {
+			if ( budget != null && budget.isExhausted() )
+			{
+				// we do not retrieve data within the access context anymore;
+				// the request is answered with the data in the cache
+				if ( ! lookupMgr.getLookUpStatus(uriID).isFinished() ) {
+					log.debug( "Traversal budget exhausted; skipping the data retrieval for URI {}.", uriID );
+					budget.setLimited();
+				}
+				return true;
+			}
+
 			PendingLookUpRequest pendReq = pendingLookUpRequests.get( id );
+			if ( pendReq == null && budget != null && ! budget.hasLookUpCapacity() )
+			{
+				log.debug( "Too many look-ups in flight; deferring the data retrieval for URI {}.", uriID );
+				Queue<DeferredLookUpRequest> deferred = deferredLookUpRequests.get( ac );
+				if ( deferred == null ) {
+					deferred = new PriorityQueue<DeferredLookUpRequest> ();
+					deferredLookUpRequests.put( ac, deferred );
+				}
+				deferred.offer( new DeferredLookUpRequest(uriID, priority, listener) );
+				return false;
+			}
+
 			if ( pendReq == null ) {
 				log.debug( "No URI look-up request pending for URI {}. Requesting a new look-up ...", uriID );
 
@@ -94,6 +174,9 @@ public class LinkedDataCacheImpl extends LinkedDataCacheBase
 					                                     getURILookUpPriority(priority),
 					                                     relookupDecisionMaker,
 					                                     dataImporter,
+					                                     ac.getReachabilityCriterion(),
+					                                     ac, // the look-up is accounted to the share of the access context
+					                                     getDeadline(ac),
 					                                     this ); // URILookUpListener
 				} catch ( Exception e ) {
 					log.warn( "Requesting a look-up of URI {} caused a {}: {}", new Object[] {uriID,e.getClass().getName(),e.getMessage()} );
@@ -103,24 +186,210 @@ public class LinkedDataCacheImpl extends LinkedDataCacheBase
 
 				if ( initiated ) {
 					log.debug( "... look-up for URI {} initiated.", uriID );
-					pendReq = new PendingLookUpRequest();
+					pendReq = new PendingLookUpRequest( getURILookUpPriority(priority) );
 					pendingLookUpRequests.put( id, pendReq );
+					if ( budget != null ) {
+						budget.lookUpStarted();
+						pendReq.initiator = ac;
+					}
 				}
 				else  {
 					log.debug( "... look-up for URI {} rejected.", uriID );
 				}
 			}
-			else if ( log.isDebugEnabled() ) {
+			else
+			{
 				log.debug( "A pending URI look-up request exists for URI {}.", uriID );
+
+				// if the look-up is more important now, or if the links
+				// discovered during the look-up may be relevant for another
+				// access context, we request it again so that the look-up
+				// manager upgrades the queued task and/or adds the reachability
+				// criterion of the access context to the task
+				Priority lookupPriority = getURILookUpPriority( priority );
+				boolean upgrade = lookupPriority.compareTo( pendReq.lookupPriority ) < 0;
+				if ( upgrade || ! pendReq.hasInterest(ac) )
+				{
+					log.debug( "Requesting the pending look-up for URI {} again with priority {}.", uriID, lookupPriority );
+					try {
+						lookupMgr.requestLookUp( uriID, lookupPriority, relookupDecisionMaker, dataImporter, ac.getReachabilityCriterion(), ac, getDeadline(ac), null );
+						if ( upgrade ) {
+							pendReq.lookupPriority = lookupPriority;
+						}
+					} catch ( Exception e ) {
+						log.warn( "Requesting the look-up of URI {} again caused a {}: {}", new Object[] {uriID,e.getClass().getName(),e.getMessage()} );
+					}
+				}
 			}
 
-			if ( pendReq != null && listener != null ) {
-				pendReq.queue( listener, priority );
+			if ( pendReq != null ) {
+				pendReq.addInterest( ac, getURILookUpPriority(priority) );
+				if ( listener != null ) {
+					pendReq.queue( listener, priority );
+					pendReq.listenerContexts.put( listener, ac );
+				}
 			}
 			return ( pendReq == null );
 		}
 	}
 
+	protected boolean ensureAvailabilityWithin ( AccessContext ac, int[] uriIDs, Priority[] priorities )
+	{
+		log.debug( "ensureAvailability for {} URIs requested.", uriIDs.length );
+
+		// we acquire the monitor once for the whole batch; the nested
+		// acquisitions by ensureAvailabilityWithin are cheap then
+		boolean allAvailable = true;
+		synchronized ( this ) {
+			for ( int i = 0; i < uriIDs.length; i++ ) {
+				if ( ! ensureAvailabilityWithin(ac,uriIDs[i],priorities[i],null) ) {
+					allAvailable = false;
+				}
+			}
+		}
+		return allAvailable;
+	}
+
+	protected DataAvailability ensureAvailabilityAsyncWithin ( AccessContext ac, int uriID, Priority priority )
+	{
+		Integer id = Integer.valueOf( uriID );
+		while ( true )
+		{
+			// all requests for the URI share the same future; we create it
+			// before requesting the data retrieval so that the completion of
+			// the retrieval cannot be missed
+			DataAvailability f = pendingAvailabilities.get( id );
+			if ( f == null ) {
+				DataAvailability newF = new DataAvailability ();
+				f = pendingAvailabilities.putIfAbsent( id, newF );
+				if ( f == null ) {
+					f = newF;
+				}
+			}
+
+			if ( ensureAvailabilityWithin(ac,uriID,priority,null) )
+			{
+				// the request is answered with the data in the cache (e.g.
+				// because the traversal budget is exhausted); the shared
+				// future must not be completed if the retrieval is still
+				// pending for another request
+				if ( retrievalSettledUnlessPending(uriID) ) {
+					return f;
+				}
+				return DataAvailability.completed();
+			}
+
+			if ( ! f.isDone() ) {
+				return f;
+			}
+
+			// the future has been completed by a retrieval that finished in
+			// the meantime, but our request initiated a new retrieval
+			log.debug( "Future for URI {} completed concurrently; retrying.", uriID );
+		}
+	}
+
+	protected void cancelDataRetrievalsWithin ( AccessContext ac )
+	{
+		List<Integer> uriIDs = new ArrayList<Integer> ();
+		List<Integer> settledURIIDs = new ArrayList<Integer> ();
+		List<DataRetrievedListener> listeners = new ArrayList<DataRetrievedListener> ();
+		List<Integer> cancelledURIIDs = new ArrayList<Integer> ();
+		List<Integer> demotedURIIDs = new ArrayList<Integer> ();
+		List<Priority> demotedPriorities = new ArrayList<Priority> ();
+		TraversalBudget budget = ac.getTraversalBudget();
+		boolean withdrawn = false;
+
+		synchronized ( this )
+		{
+			Queue<DeferredLookUpRequest> deferred = deferredLookUpRequests.remove( ac );
+			if ( deferred != null )
+			{
+				for ( DeferredLookUpRequest r : deferred )
+				{
+					if ( r.listener != null ) {
+						uriIDs.add( Integer.valueOf(r.uriID) );
+						listeners.add( r.listener );
+					}
+					if ( ! pendingLookUpRequests.containsKey(Integer.valueOf(r.uriID)) ) {
+						settledURIIDs.add( Integer.valueOf(r.uriID) );
+					}
+				}
+				withdrawn = ! deferred.isEmpty();
+			}
+
+			Iterator<Map.Entry<Integer,PendingLookUpRequest>> it = pendingLookUpRequests.entrySet().iterator();
+			while ( it.hasNext() )
+			{
+				Map.Entry<Integer,PendingLookUpRequest> e = it.next();
+				PendingLookUpRequest pendReq = e.getValue();
+				LookUpInterest withdrawnInterest = pendReq.removeInterest( ac );
+				if ( withdrawnInterest == null ) {
+					continue;
+				}
+
+				log.debug( "Withdrawing {} request(s) for the look-up of URI {}.", withdrawnInterest.refCount, e.getKey() );
+
+				withdrawn = true;
+				if ( pendReq.initiator == ac ) {
+					budget.lookUpFinished();
+					pendReq.initiator = null;
+				}
+
+				for ( DataRetrievedListener l : pendReq.removeListenersOf(ac) ) {
+					uriIDs.add( e.getKey() );
+					listeners.add( l );
+				}
+
+				if ( ! pendReq.hasInterest() )
+				{
+					// Nobody is interested in this look-up anymore. Since we
+					// do not listen to the look-up anymore either, we forget
+					// about the request even if the look-up cannot be dropped.
+					it.remove();
+					cancelledURIIDs.add( e.getKey() );
+					settledURIIDs.add( e.getKey() );
+				}
+				else if ( withdrawnInterest.priority.compareTo(pendReq.lookupPriority) <= 0 )
+				{
+					// The withdrawn interest may have been the reason for the
+					// priority of the look-up; the look-up is demoted to the
+					// priority of the most important remaining interest.
+					Priority remaining = pendReq.getMostImportantInterest();
+					if ( remaining.compareTo(pendReq.lookupPriority) > 0 )
+					{
+						pendReq.lookupPriority = remaining;
+						demotedURIIDs.add( e.getKey() );
+						demotedPriorities.add( remaining );
+					}
+				}
+			}
+		}
+
+		// the look-up manager is called outside of the synchronized block
+		// because its threads call back into this cache while holding its
+		// own locks
+		for ( Integer id : cancelledURIIDs ) {
+			cancelLookUp( id.intValue() );
+		}
+		for ( int i = 0; i < demotedURIIDs.size(); i++ ) {
+			demoteLookUp( demotedURIIDs.get(i).intValue(), demotedPriorities.get(i) );
+		}
+
+		if ( withdrawn && budget != null && budget.isExhausted() ) {
+			budget.setLimited();
+		}
+
+		// notify the listeners outside of the synchronized block because
+		// they may want to request further data retrievals
+		for ( int i = 0; i < listeners.size(); i++ ) {
+			listeners.get( i ).ensureAvailabilityFinished( uriIDs.get(i).intValue() );
+		}
+		for ( Integer id : settledURIIDs ) {
+			retrievalSettledUnlessPending( id.intValue() );
+		}
+	}
+
 	public void shutdownNow ( long timeoutInMilliSeconds ) throws ExecutionException, TimeoutException
 	{
 		if ( shutdown ) {
@@ -162,6 +431,11 @@ public class LinkedDataCacheImpl extends LinkedDataCacheBase
 	{
 		StatisticsImpl.AttributeList statAttrs = new StatisticsImpl.AttributeList();
 		statAttrs.add( "dataset", dataset.getStatistics() );
+		synchronized ( this ) {
+			statAttrs.add( "abandonedLookUpCount", abandonedLookUpCount );
+			statAttrs.add( "demotedLookUpCount", demotedLookUpCount );
+		}
+		statAttrs.add( "pendingAvailabilities", pendingAvailabilities.size() );
 		statAttrs.add( "lookupMgr", lookupMgr.getStatistics() );
 		return new StatisticsImpl( statAttrs );
 	}
@@ -175,6 +449,15 @@ public class LinkedDataCacheImpl extends LinkedDataCacheBase
 			request = pendingLookUpRequests.remove( Integer.valueOf(result.getURIID()) );
 		}
 
+		if ( request == null ) {
+			// the request has been cancelled in the meantime
+			log.debug( "Look-up for URI {} finished but the request has been cancelled before.", result.getURIID() );
+			retrievalSettled( result.getURIID() );
+			return;
+		}
+
+		chargeTraversalBudgets( request, result );
+
 		log.debug( "Look-up for URI {} finished. Notifying listeners ...", result.getURIID() );
 
 
@@ -184,6 +467,8 @@ public class LinkedDataCacheImpl extends LinkedDataCacheBase
 			l.ensureAvailabilityFinished( result.getURIID() );
 		}
 
+		retrievalSettled( result.getURIID() );
+
 		log.debug( "Finished notifying listeners about the finished look-up of URI {}.", result.getURIID() );
 	}
 
@@ -200,6 +485,297 @@ public class LinkedDataCacheImpl extends LinkedDataCacheBase
 		return dataset;
 	}
 
+	/**
+	 * Records the retrieval of the given number of triples in the host
+	 * statistics of this cache.
+	 */
+	final protected void recordRetrieval ( RDFGraphProvenance prv, long tripleCount )
+	{
+		if ( prv == null || prv.getAccessedResourceURL() == null ) {
+			return;
+		}
+
+		String host = prv.getAccessedResourceURL().getHost();
+		if ( host != null && host.length() > 0 ) {
+			hostStats.record( host.toLowerCase(), tripleCount );
+		}
+	}
+
+	/**
+	 * Charges the documents and bytes retrieved by the given finished look-up
+	 * to the traversal budgets of all access contexts that requested the
+	 * look-up, and releases the look-up slot of the access context that
+	 * initiated it. Access contexts whose budget is exhausted thereafter are
+	 * cancelled; deferred requests of the initiating access context are
+	 * resumed otherwise.
+	 */
+	protected void chargeTraversalBudgets ( PendingLookUpRequest request, URILookUpResult result )
+	{
+		List<AccessContext> budgeted = new ArrayList<AccessContext> ();
+		AccessContext initiator;
+		synchronized ( this )
+		{
+			for ( AccessContext ac : request.getInterestedContexts() ) {
+				if ( ac.getTraversalBudget() != null ) {
+					budgeted.add( ac );
+				}
+			}
+
+			initiator = request.initiator;
+			request.initiator = null;
+			if ( initiator != null ) {
+				initiator.getTraversalBudget().lookUpFinished();
+			}
+		}
+
+		if ( budgeted.isEmpty() ) {
+			return;
+		}
+
+		int documents = 0;
+		long bytes = 0L;
+		if ( ! result.hasThrownException() )
+		{
+			for ( Integer id : result.getIDsOfDereferencedURIs() )
+			{
+				DereferencingResult r = result.getDereferencingResult( id );
+				if ( r != null && ! r.isFailure() && ! r.hasBeenRedirected() ) {
+					documents++;
+					bytes += r.getContentSize();
+				}
+			}
+		}
+
+		for ( AccessContext ac : budgeted )
+		{
+			TraversalBudget budget = ac.getTraversalBudget();
+			budget.recordRetrieval( documents, bytes );
+			if ( budget.isExhausted() ) {
+				log.debug( "Traversal budget of access context {} exhausted: {}", ac, budget );
+				cancelDataRetrievalsWithin( ac );
+			}
+			else if ( ac == initiator ) {
+				resumeDeferredLookUpRequests( ac );
+			}
+		}
+
+		// the initiator may not be interested in the look-up anymore
+		if ( initiator != null && ! budgeted.contains(initiator) ) {
+			resumeDeferredLookUpRequests( initiator );
+		}
+	}
+
+	/**
+	 * Issues the requests that have been deferred within the given access
+	 * context as long as the access context has capacity for further
+	 * look-ups.
+	 */
+	protected void resumeDeferredLookUpRequests ( AccessContext ac )
+	{
+		TraversalBudget budget = ac.getTraversalBudget();
+		while ( true )
+		{
+			DeferredLookUpRequest r;
+			synchronized ( this )
+			{
+				Queue<DeferredLookUpRequest> deferred = deferredLookUpRequests.get( ac );
+				if ( deferred == null || (! budget.isExhausted() && ! budget.hasLookUpCapacity()) ) {
+					return;
+				}
+
+				r = deferred.poll();
+				if ( deferred.isEmpty() ) {
+					deferredLookUpRequests.remove( ac );
+				}
+			}
+
+			log.debug( "Resuming the deferred data retrieval for URI {}.", r.uriID );
+			if ( ensureAvailabilityWithin(ac,r.uriID,r.priority,r.listener) )
+			{
+				if ( r.listener != null ) {
+					r.listener.ensureAvailabilityFinished( r.uriID );
+				}
+				retrievalSettledUnlessPending( r.uriID );
+			}
+		}
+	}
+
+	/**
+	 * Cancels the look-up of the given URI for which this cache has
+	 * forgotten the pending request (see {@link #cancelDataRetrievalsWithin}).
+	 * Must not be called while holding the monitor of this cache.
+	 */
+	protected void cancelLookUp ( int uriID )
+	{
+		log.debug( "Cancelling the look-up for URI {}.", uriID );
+		boolean abandoned = lookupMgr.cancelLookUp( uriID, this );
+
+		PendingLookUpRequest pendReq;
+		AccessContext ac = null;
+		synchronized ( this )
+		{
+			if ( abandoned ) {
+				abandonedLookUpCount++;
+			}
+
+			pendReq = pendingLookUpRequests.get( Integer.valueOf(uriID) );
+			if ( pendReq != null ) {
+				ac = ( pendReq.initiator != null ) ? pendReq.initiator : pendReq.getInterestedContexts().iterator().next();
+			}
+		}
+
+		if ( pendReq == null ) {
+			return;
+		}
+
+		// The URI has been requested again before we cancelled the look-up;
+		// the new request may have relied on the look-up that we cancelled
+		// (and on this cache still listening to it). Hence, we request the
+		// look-up again.
+		log.debug( "URI {} requested again while cancelling its look-up; requesting the look-up again.", uriID );
+		boolean pending;
+		try {
+			pending = lookupMgr.requestLookUp( uriID, pendReq.lookupPriority, relookupDecisionMaker, dataImporter, ac.getReachabilityCriterion(), ac, getDeadline(ac), this );
+		}
+		catch ( IllegalStateException e ) {
+			// the look-up is notifying its listeners already; we are still
+			// one of them because we could not unregister either
+			pending = true;
+		}
+
+		if ( pending ) {
+			return;
+		}
+
+		// the look-up has finished in the meantime; the new request is
+		// answered with the data in the cache
+		AccessContext initiator;
+		synchronized ( this )
+		{
+			if ( pendingLookUpRequests.get(Integer.valueOf(uriID)) != pendReq ) {
+				return;
+			}
+			pendingLookUpRequests.remove( Integer.valueOf(uriID) );
+
+			initiator = pendReq.initiator;
+			pendReq.initiator = null;
+			if ( initiator != null ) {
+				initiator.getTraversalBudget().lookUpFinished();
+			}
+		}
+
+		DataRetrievedListener l;
+		while ( (l=pendReq.poll()) != null ) {
+			l.ensureAvailabilityFinished( uriID );
+		}
+		retrievalSettled( uriID );
+
+		if ( initiator != null ) {
+			resumeDeferredLookUpRequests( initiator );
+		}
+	}
+
+	/**
+	 * Demotes the look-up of the given URI to the given priority (see
+	 * {@link #cancelDataRetrievalsWithin}). Must not be called while holding
+	 * the monitor of this cache.
+	 */
+	protected void demoteLookUp ( int uriID, Priority priority )
+	{
+		log.debug( "Demoting the look-up for URI {} to priority {}.", uriID, priority );
+		boolean demoted = lookupMgr.demoteLookUp( uriID, priority );
+
+		Priority current = null;
+		AccessContext ac = null;
+		synchronized ( this )
+		{
+			if ( demoted ) {
+				demotedLookUpCount++;
+			}
+
+			PendingLookUpRequest pendReq = pendingLookUpRequests.get( Integer.valueOf(uriID) );
+			if ( pendReq != null && pendReq.lookupPriority.compareTo(priority) < 0 ) {
+				current = pendReq.lookupPriority;
+				ac = ( pendReq.initiator != null ) ? pendReq.initiator : pendReq.getInterestedContexts().iterator().next();
+			}
+		}
+
+		// the look-up may have been upgraded again before we demoted it
+		if ( demoted && current != null ) {
+			try {
+				lookupMgr.requestLookUp( uriID, current, relookupDecisionMaker, dataImporter, ac.getReachabilityCriterion(), ac, getDeadline(ac), null );
+			} catch ( Exception e ) {
+				log.warn( "Upgrading the look-up of URI {} again caused a {}: {}", new Object[] {uriID,e.getClass().getName(),e.getMessage()} );
+			}
+		}
+	}
+
+	/**
+	 * Completes the future of the asynchronous requests for the given URI
+	 * (if any) because the data retrieval for the URI is not pending anymore.
+	 */
+	protected void retrievalSettled ( int uriID )
+	{
+		DataAvailability f = pendingAvailabilities.remove( Integer.valueOf(uriID) );
+		if ( f != null ) {
+			f.complete();
+		}
+	}
+
+	/**
+	 * Completes the future of the asynchronous requests for the given URI
+	 * (if any) unless the data retrieval for the URI is still pending for
+	 * some access context; i.e. unless a look-up of the URI is in flight or
+	 * has been deferred. Returns true if the future has been completed (or
+	 * if there is none).
+	 */
+	protected boolean retrievalSettledUnlessPending ( int uriID )
+	{
+		Integer id = Integer.valueOf( uriID );
+		if ( ! pendingAvailabilities.containsKey(id) ) {
+			return true;
+		}
+
+		DataAvailability f;
+		synchronized ( this )
+		{
+			if ( pendingLookUpRequests.containsKey(id) ) {
+				return false;
+			}
+
+			for ( Queue<DeferredLookUpRequest> deferred : deferredLookUpRequests.values() ) {
+				for ( DeferredLookUpRequest r : deferred ) {
+					if ( r.uriID == uriID ) {
+						return false;
+					}
+				}
+			}
+
+			// removing the future while holding the monitor makes sure that
+			// no look-up of the URI is initiated in the meantime; requests
+			// issued afterwards get a new future
+			f = pendingAvailabilities.remove( id );
+		}
+
+		// the callbacks are executed outside of the synchronized block
+		// because they may request further data retrievals
+		if ( f != null ) {
+			f.complete();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the deadline of the look-ups requested within the given access
+	 * context; i.e. the deadline of its traversal budget, or 0 (no deadline)
+	 * if the access context does not have a budget.
+	 */
+	static protected long getDeadline ( AccessContext ac )
+	{
+		TraversalBudget budget = ac.getTraversalBudget();
+		return ( budget == null ) ? 0L : budget.deadline;
+	}
+
 	/**
 	 * Returns a priority for URI look-ups that is equally important as the
 	 * given priority for data retrieval.
@@ -220,6 +796,135 @@ public class LinkedDataCacheImpl extends LinkedDataCacheBase
 
 
 	static class PendingLookUpRequest extends PrioritizedQueueImpl<DataRetrievedListener>
-	{}
+	{
+		/** the most important priority with which the look-up has been requested */
+		Priority lookupPriority;
+
+		/** the interests of the access contexts within which the look-up has been requested */
+		final Map<AccessContext,LookUpInterest> interests = new HashMap<AccessContext,LookUpInterest> ();
+
+		/** the access context whose look-up slot is occupied by the look-up (if it has a traversal budget) */
+		AccessContext initiator = null;
+
+		/** the access context within which each listener has been queued */
+		final Map<DataRetrievedListener,AccessContext> listenerContexts = new HashMap<DataRetrievedListener,AccessContext> ();
+
+		PendingLookUpRequest ( Priority lookupPriority )
+		{
+			this.lookupPriority = lookupPriority;
+		}
+
+		/**
+		 * Records a request for the look-up within the given access context.
+		 */
+		void addInterest ( AccessContext ac, Priority priority )
+		{
+			LookUpInterest i = interests.get( ac );
+			if ( i == null ) {
+				interests.put( ac, new LookUpInterest(priority) );
+			}
+			else {
+				i.refCount++;
+				if ( priority.compareTo(i.priority) < 0 ) {
+					i.priority = priority;
+				}
+			}
+		}
+
+		/**
+		 * Withdraws all requests for the look-up within the given access
+		 * context and returns the interest of the access context (or null
+		 * if the look-up has not been requested within the access context).
+		 */
+		LookUpInterest removeInterest ( AccessContext ac )
+		{
+			return interests.remove( ac );
+		}
+
+		boolean hasInterest ( AccessContext ac )
+		{
+			return interests.containsKey( ac );
+		}
+
+		/**
+		 * Returns true if the look-up is requested within some access context.
+		 */
+		boolean hasInterest ()
+		{
+			return ! interests.isEmpty();
+		}
+
+		Set<AccessContext> getInterestedContexts ()
+		{
+			return interests.keySet();
+		}
+
+		/**
+		 * Returns the most important priority with which the look-up has
+		 * been requested within the access contexts that are (still)
+		 * interested in it (or null if there is no such context).
+		 */
+		Priority getMostImportantInterest ()
+		{
+			Priority p = null;
+			for ( LookUpInterest i : interests.values() ) {
+				if ( p == null || i.priority.compareTo(p) < 0 ) {
+					p = i.priority;
+				}
+			}
+			return p;
+		}
+
+		/**
+		 * Removes all listeners from this queue that have been queued within
+		 * the given access context and returns these listeners.
+		 */
+		List<DataRetrievedListener> removeListenersOf ( AccessContext ac )
+		{
+			List<DataRetrievedListener> removed = new ArrayList<DataRetrievedListener> ();
+			Iterator<Map.Entry<DataRetrievedListener,AccessContext>> it = listenerContexts.entrySet().iterator();
+			while ( it.hasNext() )
+			{
+				Map.Entry<DataRetrievedListener,AccessContext> e = it.next();
+				if ( e.getValue() == ac && remove(e.getKey()) ) {
+					removed.add( e.getKey() );
+					it.remove();
+				}
+			}
+			return removed;
+		}
+	}
+
+	/**
+	 * The interest of an access context in a look-up: the number of requests
+	 * for the look-up that have been issued within the access context and the
+	 * most important priority of these requests.
+	 */
+	static class LookUpInterest
+	{
+		int refCount = 1;
+		Priority priority;
+
+		LookUpInterest ( Priority priority ) { this.priority = priority; }
+	}
+
+	static class DeferredLookUpRequest implements Comparable<DeferredLookUpRequest>
+	{
+		final int uriID;
+		final Priority priority;
+		final DataRetrievedListener listener;
+
+		DeferredLookUpRequest ( int uriID, Priority priority, DataRetrievedListener listener )
+		{
+			this.uriID = uriID;
+			this.priority = priority;
+			this.listener = listener;
+		}
+
+		public int compareTo ( DeferredLookUpRequest other )
+		{
+			return priority.compareTo( other.priority );
+		}
+	}
 
 }
@@ -12,9 +12,11 @@ import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.graph.TripleMatch;
 import com.hp.hpl.jena.graph.impl.GraphBase;
 import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.NullIterator;
 
 import org.squin.common.Priority;
 import org.squin.dataset.jenacommon.DecodingTriplesIterator;
+import org.squin.dataset.jenacommon.EncodedTripleMatch;
 import org.squin.dataset.jenacommon.JenaIOBasedQueriedDataset;
 import org.squin.dataset.jenacommon.NodeDictionary;
 import org.squin.ldcache.AccessContext;
@@ -77,10 +79,11 @@ public class JenaIOBasedLinkedDataCache extends LinkedDataCacheImpl
 			@Override
 			protected ExtendedIterator<Triple> graphBaseFind ( TripleMatch m )
 			{
-				int s = ( m.getMatchSubject() == null ) ? org.squin.dataset.Triple.UNKNOWN_IDENTIFIER : getNodeDictionary().createId( m.getMatchSubject() );
-				int p = ( m.getMatchPredicate() == null ) ? org.squin.dataset.Triple.UNKNOWN_IDENTIFIER : getNodeDictionary().createId( m.getMatchPredicate() );
-				int o = ( m.getMatchObject() == null ) ? org.squin.dataset.Triple.UNKNOWN_IDENTIFIER : getNodeDictionary().createId( m.getMatchObject() );
-				return new DecodingTriplesIterator( getNodeDictionary(), findWrap(s,p,o) );
+				EncodedTripleMatch em = EncodedTripleMatch.encode( m, getNodeDictionary() );
+				if ( em == null ) {
+					return NullIterator.instance();
+				}
+				return new DecodingTriplesIterator( ( (JenaIOBasedQueriedDataset) dataset ).decodeCache, findWrap(em.s,em.p,em.o) );
 			}
 
 			@Override
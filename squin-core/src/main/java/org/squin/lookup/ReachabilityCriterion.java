@@ -0,0 +1,37 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.lookup;
+
+import org.squin.dataset.Triple;
+
+
+/**
+ * This interface represents a reachability criterion; that is, a component
+ * that decides which of the links discovered in retrieved data have to be
+ * followed (i.e. which of the linked URIs have to be looked up).
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public interface ReachabilityCriterion
+{
+	/**
+	 * Returns true if the link to the URI with the given identifier that is
+	 * established by the given triple has to be followed.
+	 *
+	 * @param t the triple that contains the URI
+	 * @param uriID identifier of the linked URI
+	 */
+	public boolean followLink ( Triple t, int uriID );
+
+	/**
+	 * Returns true if the URI with the given identifier, which has been
+	 * discovered without an RDF triple by dereferencing the given source URI
+	 * (e.g. via a link element in an HTML document), has to be dereferenced.
+	 *
+	 * @param srcUriID identifier of the dereferenced URI
+	 * @param uriID identifier of the discovered URI
+	 */
+	public boolean followDiscoveredURI ( int srcUriID, int uriID );
+}
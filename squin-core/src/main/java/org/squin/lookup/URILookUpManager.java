@@ -49,6 +49,83 @@ public interface URILookUpManager extends StatisticsProvider
 	                               DataImporter importer,
 	                               TaskListener<URILookUpResult> listener )  throws IllegalStateException;
 
+	/**
+	 * Initiates a URI look-up if necessary.
+	 * The links discovered during the look-up are only followed if the given
+	 * reachability criterion (or the criterion given by another request for
+	 * the same, pending look-up) accepts them.
+	 *
+	 * @param uriID identifier of the URI to be looked up
+	 * @param priority the priority of this look-up request (must not be null)
+	 * @param relookup the decision maker that decides about looking up URIs
+	 *                 again that have been looked up before (must not be null)
+	 * @param importer the data importer to be used for the data retrieved
+	 *                 during the look-up (must not be null)
+	 * @param criterion decides which of the discovered links have to be
+	 *                  followed (optional parameter; if null, all links are
+	 *                  followed)
+	 * @param listener a listener that has to be notified when the initiated
+	 *                 look-up has finished (optional parameter; i.e. can be
+	 *                 null)
+	 * @return true, if an asynchronous URI look-up task has been queued; false,
+	 *         if the given URI was already looked up before and a new look-up
+	 *         is not necessary
+	 * @throws IllegalStateException if it is impossible to accept look-up
+	 *                     requests (see above)
+	 */
+	public boolean requestLookUp ( int uriID,
+	                               Priority priority,
+	                               RelookupDecisionMaker relookup,
+	                               DataImporter importer,
+	                               ReachabilityCriterion criterion,
+	                               TaskListener<URILookUpResult> listener )  throws IllegalStateException;
+
+	/**
+	 * Initiates a URI look-up if necessary (see
+	 * {@link #requestLookUp(int,Priority,RelookupDecisionMaker,DataImporter,ReachabilityCriterion,TaskListener)}).
+	 * An initiated look-up task (and the dereferencing tasks it requests) is
+	 * accounted to the given share of the execution capacity; the capacity is
+	 * shared fairly among the tasks of different shares (see
+	 * {@link org.squin.common.impl.FairShareTaskQueue}).
+	 * Among the look-ups with the same priority, the look-up with the
+	 * earliest deadline is executed first; a look-up whose deadline has
+	 * passed before it has been started is dropped (i.e. the listeners are
+	 * notified about an interrupted look-up and the look-up status of the URI
+	 * is reset to 'unknown'). If several requests share a look-up, the latest
+	 * of their deadlines applies.
+	 *
+	 * @param uriID identifier of the URI to be looked up
+	 * @param priority the priority of this look-up request (must not be null)
+	 * @param relookup the decision maker that decides about looking up URIs
+	 *                 again that have been looked up before (must not be null)
+	 * @param importer the data importer to be used for the data retrieved
+	 *                 during the look-up (must not be null)
+	 * @param criterion decides which of the discovered links have to be
+	 *                  followed (optional parameter; if null, all links are
+	 *                  followed)
+	 * @param share the share to which an initiated look-up is accounted,
+	 *              e.g. the access context of the request (optional
+	 *              parameter; i.e. can be null)
+	 * @param deadline the time (in ms since the epoch) by which the look-up
+	 *                 is needed (0 means no deadline)
+	 * @param listener a listener that has to be notified when the initiated
+	 *                 look-up has finished (optional parameter; i.e. can be
+	 *                 null)
+	 * @return true, if an asynchronous URI look-up task has been queued; false,
+	 *         if the given URI was already looked up before and a new look-up
+	 *         is not necessary
+	 * @throws IllegalStateException if it is impossible to accept look-up
+	 *                     requests (see above)
+	 */
+	public boolean requestLookUp ( int uriID,
+	                               Priority priority,
+	                               RelookupDecisionMaker relookup,
+	                               DataImporter importer,
+	                               ReachabilityCriterion criterion,
+	                               Object share,
+	                               long deadline,
+	                               TaskListener<URILookUpResult> listener )  throws IllegalStateException;
+
 	/**
 	 * Initiates a URI look-up if necessary.
 	 *
@@ -71,6 +148,35 @@ public interface URILookUpManager extends StatisticsProvider
 	                               RelookupDecisionMaker relookup,
 	                               DataImporter importer )  throws IllegalStateException;
 
+	/**
+	 * Withdraws the interest of the given listener in the look-up of the
+	 * given URI.
+	 * If, afterwards, nobody else waits for the look-up, the corresponding
+	 * look-up task is dropped if it is still queued (the look-up status of
+	 * the URI is reset to 'unknown' in this case); a look-up task that is
+	 * already running is stopped early and drops those of its dereferencing
+	 * tasks that are still queued and not shared with other look-ups.
+	 *
+	 * @param uriID identifier of the URI
+	 * @param listener the listener that is not interested in the look-up
+	 *                 anymore (optional parameter; i.e. may be null)
+	 * @return true if the look-up task has been dropped or stopped
+	 */
+	public boolean cancelLookUp ( int uriID, TaskListener<URILookUpResult> listener );
+
+	/**
+	 * Lowers the priority of the look-up task for the given URI to the given
+	 * priority if the task is still queued; i.e. the requester that was
+	 * interested in the more important look-up has withdrawn its interest.
+	 * This method has no effect if the look-up task is already running or if
+	 * its priority is not more important than the given priority.
+	 *
+	 * @param uriID identifier of the URI
+	 * @param priority the new priority of the look-up
+	 * @return true if the look-up task has been demoted
+	 */
+	public boolean demoteLookUp ( int uriID, Priority priority );
+
 	/**
 	 * Shuts down this look-up manager.
 	 *
@@ -66,6 +66,15 @@ public interface DereferencingResult
 	public Set<DiscoveredURI> getDiscoveredURIs () throws UnsupportedOperationException;
 
 
+	// retrieved content
+
+	/**
+	 * Returns the number of bytes of content that have been read for the
+	 * dereferenced URI (0 if no content has been read).
+	 */
+	public long getContentSize ();
+
+
 	// failure
 
 	/**
@@ -80,6 +80,68 @@ public interface URIDerefManager extends StatisticsProvider
 	                                                  DataAnalyzer analyzer,
 	                                                  TaskListener<DereferencingResult> listener ) throws IllegalStateException, IllegalArgumentException;
 
+	/**
+	 * Initiates the dereferencing of a URI (see
+	 * {@link #requestDereferencing(int,Priority,RederefDecisionMaker,DataImporter,DataAnalyzer,TaskListener)}).
+	 * An initiated dereferencing task is accounted to the given share of the
+	 * execution capacity (see {@link org.squin.common.Task#getShare}).
+	 * Among the dereferencing tasks with the same priority, the task with
+	 * the earliest deadline is executed first; a task whose deadline has
+	 * passed before it has been started is dropped and the dereferencing
+	 * status of the URI is reset to 'unknown'. If several requests share a
+	 * task, the latest of their deadlines applies.
+	 *
+	 * @param uriID identifier of the URI to be dereferenced; this URI must be
+	 *              dereferenceable (see {@link #getAsDereferenceableURI})
+	 * @param priority the priority of this request (must not be null)
+	 * @param rederef the decision maker that decides about dereferencing
+	 *                URIs again which have been dereferenced before (must
+	 *                not be null)
+	 * @param importer the data importer to be used for the data retrieved
+	 *                 during the dereferencing
+	 * @param analyzer a data analyzer to be used for the data retrieved
+	 *                 during the dereferencing (optional parameter; i.e. may
+	 *                 be null)
+	 * @param share the share to which an initiated dereferencing task is
+	 *              accounted (optional parameter; i.e. may be null)
+	 * @param deadline the time (in ms since the epoch) by which the
+	 *                 dereferencing is needed (0 means no deadline)
+	 * @param listener a listener that has to be notified when the initiated
+	 *                 look-up has finished (optional parameter; i.e. may be
+	 *                 null)
+	 * @return either null (if a new dereferencing task has been queued for
+	 *         asynchronous execution) or the result of the (previously)
+	 *         finished dereferencing of the given URI
+	 * @throws IllegalStateException if it is impossible to accept dereferencing
+	 *                               requests (see above)
+	 * @throws IllegalArgumentException if the URI identified by the given
+	 *                                  ID is not dereferenceable
+	 */
+	public DereferencingResult requestDereferencing ( int uriID,
+	                                                  Priority priority,
+	                                                  RederefDecisionMaker rederef,
+	                                                  DataImporter importer,
+	                                                  DataAnalyzer analyzer,
+	                                                  Object share,
+	                                                  long deadline,
+	                                                  TaskListener<DereferencingResult> listener ) throws IllegalStateException, IllegalArgumentException;
+
+	/**
+	 * Withdraws the interest of the given listener in the dereferencing of
+	 * the given URI.
+	 * If, afterwards, nobody else waits for the dereferencing and the
+	 * corresponding task is still queued (i.e. it has not been started yet),
+	 * the task is dropped and the dereferencing status of the URI is reset
+	 * to 'unknown'.
+	 *
+	 * @param uriID identifier of the URI
+	 * @param listener the listener that is not interested in the
+	 *                 dereferencing anymore (optional parameter; i.e. may be
+	 *                 null)
+	 * @return true if a queued dereferencing task has been dropped
+	 */
+	public boolean cancelDereferencing ( int uriID, TaskListener<DereferencingResult> listener );
+
 	/**
 	 * Shuts down this dereferencing manager (terminates and forgets
 	 * all running and queued dereferencing task, respectively).
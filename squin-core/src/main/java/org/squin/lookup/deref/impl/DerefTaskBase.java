@@ -4,6 +4,7 @@
 */
 package org.squin.lookup.deref.impl;
 
+import java.io.FilterInputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
@@ -154,6 +155,12 @@ abstract public class DerefTaskBase extends TaskBase<DereferencingResult>
 		return new Failure( uriID, getTimestamp(), getExecutionStartTimestamp(), e );
 	}
 
+	@Override
+	protected DereferencingResult createExpiredResult ()
+	{
+		return new Failure( uriID, getTimestamp(), getExecutionStartTimestamp(), new DereferencingException("Deadline passed before the dereferencing of URI <" + url.toString() + "> (ID: " + uriID + ") started.") );
+	}
+
 
 	// implementation of the Callable interface
 
@@ -305,9 +312,9 @@ abstract public class DerefTaskBase extends TaskBase<DereferencingResult>
 		                       provideHeaderFields(con) );
 		}
 
-		InputStream in = null;
+		CountingInputStream in = null;
 		try {
-			in = con.getInputStream();
+			in = new CountingInputStream( con.getInputStream() );
 		}
 		catch ( IOException e ) {
 			String errmsg = "Exception (type: " + e.getClass().getName() + ") caught while obtaining the input stream for URI <" + url.toString() + "> (ID: " + uriID + "): " + e.getMessage();
@@ -321,16 +328,7 @@ abstract public class DerefTaskBase extends TaskBase<DereferencingResult>
 
 		Set<DiscoveredURI> discoveredURIs;
 		try {
-			discoveredURIs = handleContent( con.getInputStream(), con.getContentType(), con.getContentEncoding() );
-		}
-		catch ( SocketTimeoutException e ) {
-			String errmsg = "Reading the content retrieved for URI <" + url.toString() + "> (ID: " + uriID + ") timed out.";
-			log.debug( errmsg );
-			return new Failure( uriID,
-			                    getTimestamp(),
-			                    getExecutionStartTimestamp(),
-			                    new DereferencingException(errmsg,e),
-		                       provideHeaderFields(con) );
+			discoveredURIs = handleContent( in, con.getContentType(), con.getContentEncoding() );
 		}
 		catch ( DereferencingException e ) {
 			log.debug( e.getMessage() );
@@ -376,7 +374,8 @@ abstract public class DerefTaskBase extends TaskBase<DereferencingResult>
 		                          getExecutionStartTimestamp(),
 		                          sourceURLs,
 		                          discoveredURIs,
-		                          provideHeaderFields(con) );
+		                          provideHeaderFields(con),
+		                          in.count );
 	}
 
 	protected DereferencingResult handleRedirection ( HttpURLConnection con, int responseCode )
@@ -528,6 +527,7 @@ abstract public class DerefTaskBase extends TaskBase<DereferencingResult>
 		public int getRedirectionURI () { throw new UnsupportedOperationException(); }
 		public Set<DiscoveredURI> getDiscoveredURIs () { throw new UnsupportedOperationException(); }
 		public Exception getException () { throw new UnsupportedOperationException(); }
+		public long getContentSize () { return 0L; }
 		public long getQueueTime () { return queueTime; }
 		public long getExecutionTime () { return execTime; }
 	}
@@ -550,8 +550,10 @@ abstract public class DerefTaskBase extends TaskBase<DereferencingResult>
 	static protected class DataRetrieved extends URIsDiscovered
 	{
 		final public Set<URL> sourceURLs;
+		final public long contentSize;
 
-		public DataRetrieved ( int uriID, long taskInitTimestamp, long taskStartTimestamp, Set<URL> sourceURLs, Set<DiscoveredURI> discoveredURIs, Map<String,List<String>> headerFields ) { super( uriID, taskInitTimestamp, taskStartTimestamp, discoveredURIs, headerFields ); this.sourceURLs = sourceURLs; }
+		public DataRetrieved ( int uriID, long taskInitTimestamp, long taskStartTimestamp, Set<URL> sourceURLs, Set<DiscoveredURI> discoveredURIs, Map<String,List<String>> headerFields, long contentSize ) { super( uriID, taskInitTimestamp, taskStartTimestamp, discoveredURIs, headerFields ); this.sourceURLs = sourceURLs; this.contentSize = contentSize; }
+		public DataRetrieved ( int uriID, long taskInitTimestamp, long taskStartTimestamp, Set<URL> sourceURLs, Set<DiscoveredURI> discoveredURIs, Map<String,List<String>> headerFields ) { this( uriID, taskInitTimestamp, taskStartTimestamp, sourceURLs, discoveredURIs, headerFields, 0L ); }
 		public DataRetrieved ( int uriID, long taskInitTimestamp, long taskStartTimestamp, Set<URL> sourceURLs, Set<DiscoveredURI> discoveredURIs ) { this( uriID, taskInitTimestamp, taskStartTimestamp, sourceURLs, discoveredURIs, null ); }
 		public DataRetrieved ( int uriID, long taskInitTimestamp, long taskStartTimestamp, Set<URL> sourceURLs ) { this( uriID, taskInitTimestamp, taskStartTimestamp, sourceURLs, null, null ); }
 		public DataRetrieved ( int uriID, long taskInitTimestamp, long taskStartTimestamp, Set<URL> sourceURLs, Map<String,List<String>> headerFields ) { this( uriID, taskInitTimestamp, taskStartTimestamp, sourceURLs, null, headerFields ); }
@@ -559,6 +561,9 @@ abstract public class DerefTaskBase extends TaskBase<DereferencingResult>
 		public boolean hasBeenRedirected () { return false; }
 		public boolean hasDiscoveredOtherURIs () { return false; }
 		public boolean isFailure () { return false; }
+
+		@Override
+		public long getContentSize () { return contentSize; }
 	}
 
 	static protected class Redirected extends DereferencingResultBase
@@ -599,6 +604,44 @@ abstract public class DerefTaskBase extends TaskBase<DereferencingResult>
 		protected void analyze ( Triple t ) { tripleCount++; }
 	}
 
+	/**
+	 * Counts the bytes read from the content retrieved for the URI.
+	 */
+	static protected class CountingInputStream extends FilterInputStream
+	{
+		protected long count = 0L;
+
+		public CountingInputStream ( InputStream in ) { super( in ); }
+
+		@Override
+		public int read () throws IOException
+		{
+			int b = super.read();
+			if ( b != -1 ) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read ( byte[] b, int off, int len ) throws IOException
+		{
+			int n = super.read( b, off, len );
+			if ( n > 0 ) {
+				count += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip ( long n ) throws IOException
+		{
+			long skipped = super.skip( n );
+			count += skipped;
+			return skipped;
+		}
+	}
+
 	static protected class SimpleRDFGraphProvenanceImpl implements RDFGraphProvenance
 	{
 		final public URL accessedResourceURL;
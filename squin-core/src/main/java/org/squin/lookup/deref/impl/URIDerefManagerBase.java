@@ -5,7 +5,6 @@
 package org.squin.lookup.deref.impl;
 
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.TimeUnit;
@@ -20,6 +19,7 @@ import org.squin.common.TaskListener;
 import org.squin.common.impl.LockableTaskStatus;
 import org.squin.common.impl.LockableTaskStatusBase;
 import org.squin.common.impl.StatisticsImpl;
+import org.squin.common.impl.TaskExecutorFactory;
 import org.squin.common.impl.TaskStatusIndexBase;
 import org.squin.lookup.DataImporter;
 import org.squin.lookup.deref.DataAnalyzer;
@@ -39,7 +39,7 @@ public abstract class URIDerefManagerBase implements URIDerefManager, TaskListen
 {
 	static final private Logger log = LoggerFactory.getLogger( URIDerefManagerBase.class );
 
-	// configuration parameters for the thread pool
+	// configuration parameters for the thread pool (see TaskExecutorFactory)
 	static final private int executorDefaultCorePoolSize = 10;
 	static final private int executorDefaultMaximumPoolSize = 20;
 	static final private long executorDefaultKeepAliveTime = 600; // 10 min
@@ -63,7 +63,11 @@ public abstract class URIDerefManagerBase implements URIDerefManager, TaskListen
 
 	private long finishedTaskCount = 0;
 	private long failedTaskCount = 0;
+	private long cancelledTaskCount = 0;
 	private long redirectionCount = 0;
+	private long deadlineTaskCount = 0;
+	private long droppedTaskCount = 0;
+	private long missedDeadlineCount = 0;
 	private long overallQueueTime = 0;
 	private long overallExecTime = 0;
 
@@ -72,26 +76,20 @@ public abstract class URIDerefManagerBase implements URIDerefManager, TaskListen
 
 	public URIDerefManagerBase ()
 	{
-		executor = new ThreadPoolExecutor( executorDefaultCorePoolSize,
-		                                   executorDefaultMaximumPoolSize,
-		                                   executorDefaultKeepAliveTime,
-		                                   executorDefaultTimeUnit,
-		                                   new PriorityBlockingQueue<Runnable> () );
+		this( TaskExecutorFactory.DEFAULT );
 	}
 
-	public void finalize ()
+	/**
+	 * Creates a deref. manager whose thread pool is created by the given
+	 * factory.
+	 */
+	public URIDerefManagerBase ( TaskExecutorFactory executorFactory )
 	{
-		if ( ! executor.isTerminated() )
-		{
-			log.warn( "Finalizing a deref. manager (type: {}) that still seems to be running. Let's try to shut it down.", getClass().getName() );
-
-			try {
-				shutdownNow( 3000 );
-			}
-			catch ( Exception e ) {
-				log.error( "Shutting down the deref. manager (type: {}) caused a {}: {}", new Object[] {getClass().getName(),e.getClass().getName(),e.getMessage()} );
-			}
-		}
+		executor = executorFactory.createExecutor( executorDefaultCorePoolSize,
+		                                          executorDefaultMaximumPoolSize,
+		                                          executorDefaultKeepAliveTime,
+		                                          executorDefaultTimeUnit );
+		TaskExecutorFactory.shutdownWhenUnreachable( this, executor );
 	}
 
 
@@ -110,8 +108,21 @@ public abstract class URIDerefManagerBase implements URIDerefManager, TaskListen
 	                                                  DataImporter importer,
 	                                                  DataAnalyzer analyzer,
 	                                                  TaskListener<DereferencingResult> listener ) throws IllegalStateException
+	{
+		return requestDereferencing( uriID, priority, rederef, importer, analyzer, null, 0L, listener );
+	}
+
+	public DereferencingResult requestDereferencing ( int uriID,
+	                                                  Priority priority,
+	                                                  RederefDecisionMaker rederef,
+	                                                  DataImporter importer,
+	                                                  DataAnalyzer analyzer,
+	                                                  Object share,
+	                                                  long deadline,
+	                                                  TaskListener<DereferencingResult> listener ) throws IllegalStateException
 	{
 		assert priority != null;
+		assert deadline >= 0L;
 		assert rederef != null;
 		assert importer != null;
 
@@ -138,14 +149,14 @@ public abstract class URIDerefManagerBase implements URIDerefManager, TaskListen
 			try {
 				if ( s.isUnknown() )
 				{
-					initiateDereferencing( uriID, priority, importer, analyzer, listener );
+					initiateDereferencing( uriID, priority, importer, analyzer, share, deadline, listener );
 					result = null;
 				}
 				else if ( s.isFinished() )
 				{
 					if ( rederef.decideAboutRedereferencing(uriID,s.asFinishedDereferencing()) )
 					{
-						initiateDereferencing( uriID, priority, importer, analyzer, listener );
+						initiateDereferencing( uriID, priority, importer, analyzer, share, deadline, listener );
 						result = null;
 					}
 					else {
@@ -157,7 +168,7 @@ public abstract class URIDerefManagerBase implements URIDerefManager, TaskListen
 				}
 				else if ( s.isPending() )
 				{
-					dealWithPendingTask( uriID, (PendingDereferencing) s, importer, analyzer, priority, listener );
+					dealWithPendingTask( uriID, (PendingDereferencing) s, importer, analyzer, priority, deadline, listener );
 					result = null;
 				}
 				else
@@ -185,6 +196,51 @@ public abstract class URIDerefManagerBase implements URIDerefManager, TaskListen
 		}
 	}
 
+	public boolean cancelDereferencing ( int uriID, TaskListener<DereferencingResult> listener )
+	{
+		DereferencingStatus s;
+		synchronized ( statuses ) {
+			s = statuses.getLockedStatus( uriID );
+		}
+
+		if ( ! s.isPending() )
+		{
+			synchronized ( statuses ) {
+				statuses.unlockStatus( uriID );
+			}
+			return false;
+		}
+
+		DerefTaskBase task = (DerefTaskBase) ( (PendingDereferencing) s ).task;
+		boolean dropped;
+		synchronized ( task )
+		{
+			if ( listener != null ) {
+				task.unregisterListener( listener );
+			}
+
+			// drop the task only if it is still awaiting execution and
+			// if this manager is the only remaining listener
+			dropped =    ! task.isRunning()
+			          && task.getListenerCount() <= 1
+			          && executor.remove( task );
+		}
+
+		synchronized ( statuses ) {
+			if ( dropped ) {
+				statuses.updateStatus( uriID, new UnknownDereferencingStatus() );
+			} else {
+				statuses.unlockStatus( uriID );
+			}
+		}
+
+		if ( dropped ) {
+			log.debug( "Queued dereferencing task for the URI with identifier {} dropped.", uriID );
+			cancelledTaskCount++;
+		}
+		return dropped;
+	}
+
 	public void shutdownNow ( long timeoutInMilliSeconds ) throws ExecutionException, TimeoutException
 	{
 		// check whether shut down already completed
@@ -243,9 +299,15 @@ public abstract class URIDerefManagerBase implements URIDerefManager, TaskListen
 		statAttrs.add( "thread pool - largestPoolSize", executor.getLargestPoolSize() );
 		statAttrs.add( "thread pool - completedTaskCount", executor.getCompletedTaskCount() );
 		statAttrs.add( "thread pool - taskCount", executor.getTaskCount() );
+		statAttrs.add( "thread pool - activeShareCount", TaskExecutorFactory.getActiveShareCount(executor) );
 		statAttrs.add( "finishedTaskCount", finishedTaskCount );
 		statAttrs.add( "redirectionCount", redirectionCount );
 		statAttrs.add( "failedTaskCount", failedTaskCount );
+		statAttrs.add( "cancelledTaskCount", cancelledTaskCount );
+		statAttrs.add( "deadlineTaskCount", deadlineTaskCount );
+		statAttrs.add( "droppedTaskCount (deadline passed before start)", droppedTaskCount );
+		statAttrs.add( "missedDeadlineCount (incl. dropped)", missedDeadlineCount );
+		statAttrs.add( "deadline miss rate", (deadlineTaskCount != 0 ) ? (double) missedDeadlineCount / deadlineTaskCount : 0.0 );
 		statAttrs.add( "overall queue time", overallQueueTime );
 		statAttrs.add( "avg queue time", (finishedTaskCount != 0 ) ? overallQueueTime / finishedTaskCount : 0 );
 		statAttrs.add( "overall exec. time", overallExecTime );
@@ -266,11 +328,15 @@ public abstract class URIDerefManagerBase implements URIDerefManager, TaskListen
 	                                       Priority priority,
 	                                       DataImporter importer,
 	                                       DataAnalyzer analyzer,
+	                                       Object share,
+	                                       long deadline,
 	                                       TaskListener<DereferencingResult> listener )
 	{
 		log.debug( "Initiate dereferencing of the URI with identifier {}.", uriID );
 
 		DerefTask task = createDerefTask( uriID, priority, importer, analyzer );
+		( (DerefTaskBase) task ).setShare( share );
+		( (DerefTaskBase) task ).setDeadline( deadline );
 		task.registerListener( this, Priority.HIGH );
 		if ( listener != null ) {
 			task.registerListener( listener, priority );
@@ -293,6 +359,7 @@ public abstract class URIDerefManagerBase implements URIDerefManager, TaskListen
 	                                     DataImporter importer,
 	                                     DataAnalyzer analyzer,
 	                                     Priority priority,
+	                                     long deadline,
 	                                     TaskListener<DereferencingResult> listener )
 	{
 		log.debug( "Trying to deal with pending dereferencing task for the URI with identifier {}.", uriID );
@@ -330,13 +397,23 @@ public abstract class URIDerefManagerBase implements URIDerefManager, TaskListen
 				}
 			}
 
-			// adjust the priority of the (pending) task if it is still awaiting execution
-			if (    ! task.isRunning()
-			     && task.getPriority().compareTo(priority) > 0
-			     && executor.remove(task) )
+			// adjust the priority and the deadline of the (pending) task; since
+			// the executor orders its queue by both, a task that is still
+			// awaiting execution has to be re-queued
+			boolean upgrade = task.getPriority().compareTo( priority ) > 0;
+			boolean extend = task.isLaterDeadline( deadline );
+			if ( upgrade || extend )
 			{
-				task.upgradePriority( priority );
-				executor.execute( task );
+				boolean requeue = ! task.isRunning() && executor.remove( task );
+				if ( upgrade && requeue ) {
+					task.upgradePriority( priority );
+				}
+				if ( extend ) {
+					task.setDeadline( deadline );
+				}
+				if ( requeue ) {
+					executor.execute( task );
+				}
 			}
 
 			// unlock the current status
@@ -362,6 +439,23 @@ public abstract class URIDerefManagerBase implements URIDerefManager, TaskListen
 			}
 		}
 
+		DerefTaskBase task = (DerefTaskBase) ( (PendingDereferencing) s ).task;
+		if ( task.getDeadline() > 0L ) {
+			deadlineTaskCount++;
+			if ( task.hasMissedDeadline() ) { missedDeadlineCount++; }
+		}
+
+		if ( task.hasBeenDropped() )
+		{
+			// the URI has not been dereferenced; hence, it may be
+			// dereferenced for a later request
+			droppedTaskCount++;
+			synchronized ( statuses ) {
+				statuses.updateStatus( result.getURIID(), new UnknownDereferencingStatus() );
+			}
+			return;
+		}
+
 		// update statistics
 		finishedTaskCount++;
 		if ( result.hasBeenRedirected() ) { redirectionCount++; }
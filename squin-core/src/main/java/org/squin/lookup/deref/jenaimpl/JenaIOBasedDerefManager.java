@@ -7,6 +7,7 @@ package org.squin.lookup.deref.jenaimpl;
 import com.hp.hpl.jena.graph.Node;
 
 import org.squin.common.Priority;
+import org.squin.common.impl.TaskExecutorFactory;
 import org.squin.dataset.Triple;
 import org.squin.dataset.jenacommon.NodeDictionary;
 import org.squin.lookup.DataImporter;
@@ -37,6 +38,12 @@ public class JenaIOBasedDerefManager extends URIDerefManagerBase
 
 	public JenaIOBasedDerefManager ( JenaIOBasedDerefContext derefCxt )
 	{
+		this( derefCxt, TaskExecutorFactory.DEFAULT );
+	}
+
+	public JenaIOBasedDerefManager ( JenaIOBasedDerefContext derefCxt, TaskExecutorFactory executorFactory )
+	{
+		super( executorFactory );
 		assert derefCxt != null;
 		this.derefCxt = derefCxt;
 	}
@@ -5,7 +5,6 @@
 package org.squin.lookup.impl;
 
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.TimeUnit;
@@ -20,9 +19,11 @@ import org.squin.common.TaskListener;
 import org.squin.common.impl.LockableTaskStatus;
 import org.squin.common.impl.LockableTaskStatusBase;
 import org.squin.common.impl.StatisticsImpl;
+import org.squin.common.impl.TaskExecutorFactory;
 import org.squin.common.impl.TaskStatusIndexBase;
 import org.squin.lookup.DataImporter;
 import org.squin.lookup.FinishedURILookUp;
+import org.squin.lookup.ReachabilityCriterion;
 import org.squin.lookup.RelookupDecisionMaker;
 import org.squin.lookup.URILookUpManager;
 import org.squin.lookup.URILookUpResult;
@@ -39,7 +40,7 @@ public class URILookUpManagerBase implements URILookUpManager, TaskListener<URIL
 {
 	static final private Logger log = LoggerFactory.getLogger( URILookUpManagerBase.class );
 
-	// configuration parameters for the thread pool
+	// configuration parameters for the thread pool (see TaskExecutorFactory)
 	static final public int executorDefaultCorePoolSize = 10;
 	static final public int executorDefaultMaximumPoolSize = 20;
 	static final public long executorDefaultKeepAliveTime = 600; // 10 min
@@ -66,8 +67,12 @@ public class URILookUpManagerBase implements URILookUpManager, TaskListener<URIL
 	private long requestCount = 0;
 	private long finishedTaskCount = 0;
 	private long failedTaskCount = 0;
+	private long cancelledTaskCount = 0;
 	private long timedOutTaskCount = 0;
 	private long overallMaxStepsReachedCount = 0;
+	private long deadlineTaskCount = 0;
+	private long droppedTaskCount = 0;
+	private long missedDeadlineCount = 0;
 	private long overallQueueTime = 0;
 	private long overallExecTime = 0;
 
@@ -76,29 +81,23 @@ public class URILookUpManagerBase implements URILookUpManager, TaskListener<URIL
 
 	public URILookUpManagerBase ( URILookUpContext lookupCxt )
 	{
-		assert lookupCxt != null;
-		this.lookupCxt = lookupCxt;
-
-		executor = new ThreadPoolExecutor( executorDefaultCorePoolSize,
-		                                   executorDefaultMaximumPoolSize,
-		                                   executorDefaultKeepAliveTime,
-		                                   executorDefaultTimeUnit,
-		                                   new PriorityBlockingQueue<Runnable> () );
+		this( lookupCxt, TaskExecutorFactory.DEFAULT );
 	}
 
-	public void finalize ()
+	/**
+	 * Creates a look-up manager whose thread pool is created by the given
+	 * factory.
+	 */
+	public URILookUpManagerBase ( URILookUpContext lookupCxt, TaskExecutorFactory executorFactory )
 	{
-		if ( ! executor.isTerminated() )
-		{
-			log.warn( "Finalizing a look-up manager (type: {}) that still seems to be running. Let's try to shut it down.", getClass().getName() );
+		assert lookupCxt != null;
+		this.lookupCxt = lookupCxt;
 
-			try {
-				shutdownNow( 3000 );
-			}
-			catch ( Exception e ) {
-				log.error( "Shutting down the look-up manager (type: {}) caused a {}: {}", new Object[] {getClass().getName(),e.getClass().getName(),e.getMessage()} );
-			}
-		}
+		executor = executorFactory.createExecutor( executorDefaultCorePoolSize,
+		                                          executorDefaultMaximumPoolSize,
+		                                          executorDefaultKeepAliveTime,
+		                                          executorDefaultTimeUnit );
+		TaskExecutorFactory.shutdownWhenUnreachable( this, executor );
 	}
 
 
@@ -116,8 +115,31 @@ public class URILookUpManagerBase implements URILookUpManager, TaskListener<URIL
 	                               RelookupDecisionMaker relookup,
 	                               DataImporter importer,
 	                               TaskListener<URILookUpResult> listener ) throws IllegalStateException
+	{
+		return requestLookUp( uriID, priority, relookup, importer, null, listener );
+	}
+
+	public boolean requestLookUp ( int uriID,
+	                               Priority priority,
+	                               RelookupDecisionMaker relookup,
+	                               DataImporter importer,
+	                               ReachabilityCriterion criterion,
+	                               TaskListener<URILookUpResult> listener ) throws IllegalStateException
+	{
+		return requestLookUp( uriID, priority, relookup, importer, criterion, null, 0L, listener );
+	}
+
+	public boolean requestLookUp ( int uriID,
+	                               Priority priority,
+	                               RelookupDecisionMaker relookup,
+	                               DataImporter importer,
+	                               ReachabilityCriterion criterion,
+	                               Object share,
+	                               long deadline,
+	                               TaskListener<URILookUpResult> listener ) throws IllegalStateException
 	{
 		assert priority != null;
+		assert deadline >= 0L;
 		assert relookup != null;
 		assert importer != null;
 
@@ -144,14 +166,14 @@ public class URILookUpManagerBase implements URILookUpManager, TaskListener<URIL
 			try {
 				if ( s.isUnknown() )
 				{
-					initiateLookUp( uriID, priority, s, importer, listener );
+					initiateLookUp( uriID, priority, s, importer, criterion, share, deadline, listener );
 					result = true;
 				}
 				else if ( s.isFinished() )
 				{
 					if ( relookup.decideAboutRelookup(uriID,s.asFinishedURILookUp()) )
 					{
-						initiateLookUp( uriID, priority, s, importer, listener );
+						initiateLookUp( uriID, priority, s, importer, criterion, share, deadline, listener );
 						result = true;
 					}
 					else {
@@ -163,7 +185,7 @@ public class URILookUpManagerBase implements URILookUpManager, TaskListener<URIL
 				}
 				else if ( s.isPending() )
 				{
-					dealWithPendingTask( uriID, (PendingURILookUpStatus) s, importer, priority, listener );
+					dealWithPendingTask( uriID, (PendingURILookUpStatus) s, importer, priority, criterion, deadline, listener );
 					result = true;
 				}
 				else {
@@ -198,6 +220,99 @@ public class URILookUpManagerBase implements URILookUpManager, TaskListener<URIL
 		return requestLookUp( uriID, priority, relookup, importer, null );
 	}
 
+	public boolean cancelLookUp ( int uriID, TaskListener<URILookUpResult> listener )
+	{
+		URILookUpStatus s;
+		synchronized ( statuses ) {
+			s = statuses.getLockedStatus( uriID );
+		}
+
+		if ( ! s.isPending() )
+		{
+			synchronized ( statuses ) {
+				statuses.unlockStatus( uriID );
+			}
+			return false;
+		}
+
+		URILookUpTask task = ( (PendingURILookUpStatus) s ).task;
+		boolean dropped = false;
+		boolean stop = false;
+		synchronized ( task )
+		{
+			if ( listener != null ) {
+				task.unregisterListener( listener );
+			}
+
+			// this manager itself is always registered as a listener
+			if ( task.getListenerCount() <= 1 )
+			{
+				if ( ! task.isRunning() ) {
+					dropped = executor.remove( task );
+				} else {
+					stop = ! task.isNotifying();
+				}
+			}
+		}
+
+		synchronized ( statuses ) {
+			if ( dropped ) {
+				statuses.updateStatus( uriID, new UnknownURILookUpStatus() );
+			} else {
+				statuses.unlockStatus( uriID );
+			}
+		}
+
+		if ( dropped ) {
+			log.debug( "Queued look-up task for the URI with identifier {} dropped.", uriID );
+			cancelledTaskCount++;
+		}
+		else if ( stop ) {
+			log.debug( "Stopping the running look-up task for the URI with identifier {}.", uriID );
+			task.cancel();
+		}
+
+		return dropped || stop;
+	}
+
+	public boolean demoteLookUp ( int uriID, Priority priority )
+	{
+		assert priority != null;
+
+		URILookUpStatus s;
+		synchronized ( statuses ) {
+			s = statuses.getLockedStatus( uriID );
+		}
+
+		boolean demoted = false;
+		if ( s.isPending() )
+		{
+			URILookUpTask task = ( (PendingURILookUpStatus) s ).task;
+			synchronized ( task )
+			{
+				// the task has to be re-queued because the executor orders
+				// its queue by the priorities of the tasks
+				if (    ! task.isRunning()
+				     && task.getPriority().compareTo(priority) < 0
+				     && executor.remove(task) )
+				{
+					task.downgradePriority( priority );
+					executor.execute( task );
+					demoted = true;
+				}
+			}
+		}
+
+		synchronized ( statuses ) {
+			statuses.unlockStatus( uriID );
+		}
+
+		if ( demoted ) {
+			log.debug( "Demoted the queued look-up task for the URI with identifier {} to priority {}.", uriID, priority );
+		}
+		return demoted;
+	}
+
 	public void shutdownNow ( long timeoutInMilliSeconds ) throws ExecutionException, TimeoutException
 	{
 		// check whether shut down already completed
@@ -289,10 +404,16 @@ public class URILookUpManagerBase implements URILookUpManager, TaskListener<URIL
 		statAttrs.add( "thread pool - largestPoolSize", executor.getLargestPoolSize() );
 		statAttrs.add( "thread pool - completedTaskCount", executor.getCompletedTaskCount() );
 		statAttrs.add( "thread pool - taskCount", executor.getTaskCount() );
+		statAttrs.add( "thread pool - activeShareCount", TaskExecutorFactory.getActiveShareCount(executor) );
 		statAttrs.add( "requestCount", requestCount );
 		statAttrs.add( "finishedTaskCount", finishedTaskCount );
 		statAttrs.add( "timedOutTaskCount", timedOutTaskCount );
 		statAttrs.add( "failedTaskCount", failedTaskCount );
+		statAttrs.add( "cancelledTaskCount", cancelledTaskCount );
+		statAttrs.add( "deadlineTaskCount", deadlineTaskCount );
+		statAttrs.add( "droppedTaskCount (deadline passed before start)", droppedTaskCount );
+		statAttrs.add( "missedDeadlineCount (incl. dropped)", missedDeadlineCount );
+		statAttrs.add( "deadline miss rate", (deadlineTaskCount != 0 ) ? (double) missedDeadlineCount / deadlineTaskCount : 0.0 );
 		statAttrs.add( "overall queue time", overallQueueTime );
 		statAttrs.add( "avg queue time", (finishedTaskCount != 0 ) ? overallQueueTime / finishedTaskCount : 0 );
 		statAttrs.add( "overall exec. time", overallExecTime );
@@ -317,11 +438,17 @@ public class URILookUpManagerBase implements URILookUpManager, TaskListener<URIL
 	                                Priority priority,
 	                                URILookUpStatus currentStatus,
 	                                DataImporter importer,
+	                                ReachabilityCriterion criterion,
+	                                Object share,
+	                                long deadline,
 	                                TaskListener<URILookUpResult> listener )
 	{
 		log.debug( "Initiate look-up of the URI with identifier {}.", uriID );
 
 		URILookUpTask task = new URILookUpTask( uriID, priority, lookupCxt, importer, currentStatus );
+		task.setShare( share );
+		task.setDeadline( deadline );
+		task.addReachabilityCriterion( criterion );
 		task.registerListener( this, Priority.HIGH );
 		if ( listener != null ) {
 			task.registerListener( listener, priority );
@@ -343,6 +470,8 @@ public class URILookUpManagerBase implements URILookUpManager, TaskListener<URIL
 	                                     PendingURILookUpStatus currentStatus,
 	                                     DataImporter importer,
 	                                     Priority priority,
+	                                     ReachabilityCriterion criterion,
+	                                     long deadline,
 	                                     TaskListener<URILookUpResult> listener )
 	{
 		log.debug( "Trying to deal with pending look-up task for the URI with identifier {}.", uriID );
@@ -374,13 +503,26 @@ public class URILookUpManagerBase implements URILookUpManager, TaskListener<URIL
 				}
 			}
 
-			// adjust the priority of the (pending) task if it is still awaiting execution
-			if (    ! task.isRunning()
-			     && task.getPriority().compareTo(priority) > 0
-			     && executor.remove(task) )
+			// the links that are relevant for this request have to be followed as well
+			task.addReachabilityCriterion( criterion );
+
+			// adjust the priority and the deadline of the (pending) task; since
+			// the executor orders its queue by both, a task that is still
+			// awaiting execution has to be re-queued
+			boolean upgrade = task.getPriority().compareTo( priority ) > 0;
+			boolean extend = task.isLaterDeadline( deadline );
+			if ( upgrade || extend )
 			{
-				task.upgradePriority( priority );
-				executor.execute( task );
+				boolean requeue = ! task.isRunning() && executor.remove( task );
+				if ( upgrade && requeue ) {
+					task.upgradePriority( priority );
+				}
+				if ( extend ) {
+					task.setDeadline( deadline );
+				}
+				if ( requeue ) {
+					executor.execute( task );
+				}
 			}
 
 			// unlock the current status
@@ -406,6 +548,23 @@ public class URILookUpManagerBase implements URILookUpManager, TaskListener<URIL
 			}
 		}
 
+		URILookUpTask task = ( (PendingURILookUpStatus) s ).task;
+		if ( task.getDeadline() > 0L ) {
+			deadlineTaskCount++;
+			if ( task.hasMissedDeadline() ) { missedDeadlineCount++; }
+		}
+
+		if ( task.hasBeenDropped() )
+		{
+			// the URI has not been looked up; hence, it may be looked
+			// up for a later request
+			droppedTaskCount++;
+			synchronized ( statuses ) {
+				statuses.updateStatus( result.getURIID(), new UnknownURILookUpStatus() );
+			}
+			return;
+		}
+
 		// update statistics
 		finishedTaskCount++;
 		if ( result.hasTimedOut() ) { timedOutTaskCount++; }
@@ -5,10 +5,13 @@
 package org.squin.lookup.impl;
 
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
@@ -19,6 +22,7 @@ import org.squin.common.TaskListener;
 import org.squin.common.impl.TaskBase;
 import org.squin.dataset.Triple;
 import org.squin.lookup.DataImporter;
+import org.squin.lookup.ReachabilityCriterion;
 import org.squin.lookup.URILookUpResult;
 import org.squin.lookup.URILookUpStatus;
 import org.squin.lookup.deref.DataAnalyzer;
@@ -50,10 +54,15 @@ public class URILookUpTask extends TaskBase<URILookUpResult>
 	final protected DereferencingResultListener derefListener = new DereferencingResultListener ();
 	final protected URISearchResultListener searchListener = new URISearchResultListener ();
 
+	/** the criteria that decide which discovered links are followed (see {@link #addReachabilityCriterion}) */
+	final protected List<ReachabilityCriterion> criteria = new CopyOnWriteArrayList<ReachabilityCriterion> ();
+	protected volatile boolean followAllLinks = false;
+
 	// this member must only be accessed when stepCountersOfPendingDerefs is locked
 	final protected Map<Integer,DereferencingResult> resultsOfDereferencedURIs = new HashMap<Integer,DereferencingResult> ();
 
 	protected boolean stopped = false;
+	protected volatile boolean cancelled = false;
 
 	protected int maxStepsReachedCounter = 0;
 	protected int successfulDerefTaskCounter = 0;
@@ -98,6 +107,51 @@ public class URILookUpTask extends TaskBase<URILookUpResult>
 	}
 
 
+	// operations
+
+	/**
+	 * Adds a criterion that decides which of the links discovered during this
+	 * look-up have to be followed. A link is followed if any of the added
+	 * criteria accepts it because this task serves all requests for the URI.
+	 * Adding null means that every link has to be followed.
+	 */
+	public void addReachabilityCriterion ( ReachabilityCriterion criterion )
+	{
+		if ( criterion == null ) {
+			followAllLinks = true;
+		}
+		else if ( ! criteria.contains(criterion) ) {
+			criteria.add( criterion );
+		}
+	}
+
+	/**
+	 * Stops this (running) task early because nobody is interested in its
+	 * result anymore.
+	 * Dereferencing tasks that this task has requested and that are still
+	 * queued are cancelled (see {@link org.squin.lookup.deref.URIDerefManager#cancelDereferencing}).
+	 * The task finishes with an "interrupted" result so that the URI
+	 * may be looked up again immediately.
+	 */
+	public void cancel ()
+	{
+		cancelled = true;
+
+		List<Integer> pendingDerefs;
+		synchronized ( stepCountersOfPendingDerefs ) {
+			pendingDerefs = new ArrayList<Integer>( stepCountersOfPendingDerefs.keySet() );
+		}
+
+		for ( Integer id : pendingDerefs ) {
+			lookupCxt.derefMgr.cancelDereferencing( id.intValue(), derefListener );
+		}
+
+		synchronized ( this ) {
+			notify();
+		}
+	}
+
+
 	// implementation of the TaskBase<URILookUpResult> abstract methods
 
 	public URILookUpResult createFailureResult ( Exception e )
@@ -105,6 +159,16 @@ public class URILookUpTask extends TaskBase<URILookUpResult>
 		return new Failed( uriID, getTimestamp(), getExecutionStartTimestamp(), e );
 	}
 
+	/**
+	 * A look-up whose deadline has passed finishes with an "interrupted"
+	 * result so that the URI may be looked up again for a later request.
+	 */
+	@Override
+	protected URILookUpResult createExpiredResult ()
+	{
+		return new Interrupted( uriID, getTimestamp(), getExecutionStartTimestamp() );
+	}
+
 
 	// implementation of the Callable interface
 
@@ -135,8 +199,10 @@ public class URILookUpTask extends TaskBase<URILookUpResult>
 					Iterator<Triple> it = lookupCxt.getSeeAlsoQueriedDataset().find( uriID, seeAlsoPredicateID, Triple.UNKNOWN_IDENTIFIER );
 					while ( it.hasNext() ) {
 						Triple seeAlsoTriple = it.next();
-						log.debug( "Found a seeAlso triple for URI {} that refers to URI {}.", uriID, seeAlsoTriple.o );
-						dereferenceRecursively( seeAlsoTriple.o, 0 );
+						if ( followLink(seeAlsoTriple) ) {
+							log.debug( "Found a seeAlso triple for URI {} that refers to URI {}.", uriID, seeAlsoTriple.o );
+							dereferenceRecursively( seeAlsoTriple.o, 0 );
+						}
 					}
 				}
 			}
@@ -146,10 +212,13 @@ public class URILookUpTask extends TaskBase<URILookUpResult>
 		  // allSubTasksFinished for the first time.
 
 		try {
-			if ( lookupCxt.timeout == 0 ) {
-				wait();
-			} else {
-				wait( lookupCxt.timeout );
+			// do not wait if cancel() has been called in the meantime
+			if ( ! cancelled ) {
+				if ( lookupCxt.timeout == 0 ) {
+					wait();
+				} else {
+					wait( lookupCxt.timeout );
+				}
 			}
 			stopped = true;
 		}
@@ -165,6 +234,11 @@ public class URILookUpTask extends TaskBase<URILookUpResult>
 			return new Interrupted( uriID, getTimestamp(), getExecutionStartTimestamp() );
 		}
 
+		if ( cancelled ) {
+			log.debug( "URI look-up task cancelled (successfulDerefTaskCounter: {}, failedDerefTaskCounter: {}, task type: {}, task: {})", new Object[] {successfulDerefTaskCounter,failedDerefTaskCounter,getClass().getName(),toString()} );
+			return new Interrupted( uriID, getTimestamp(), getExecutionStartTimestamp() );
+		}
+
 		if ( allSubTasksFinished() ) {
 			log.debug( "URI look-up task finished completely (successfulDerefTaskCounter: {}, failedDerefTaskCounter: {}, task type: {}, task: {})", new Object[] {successfulDerefTaskCounter,failedDerefTaskCounter,getClass().getName(),toString()} );
 			return new Completed( uriID, getTimestamp(), getExecutionStartTimestamp(), maxStepsReachedCounter, resultsOfDereferencedURIs );
@@ -177,6 +251,42 @@ public class URILookUpTask extends TaskBase<URILookUpResult>
 
 	// helper methods
 
+	/**
+	 * Returns true if the link to the object of the given triple has to be
+	 * followed according to the criteria added to this task.
+	 */
+	protected boolean followLink ( Triple t )
+	{
+		if ( followAllLinks ) {
+			return true;
+		}
+
+		for ( ReachabilityCriterion c : criteria ) {
+			if ( c.followLink(t,t.o) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the given discovered URI has to be dereferenced
+	 * according to the criteria added to this task.
+	 */
+	protected boolean followDiscoveredURI ( DiscoveredURI d )
+	{
+		if ( followAllLinks ) {
+			return true;
+		}
+
+		for ( ReachabilityCriterion c : criteria ) {
+			if ( c.followDiscoveredURI(d.srcUriID,d.uriID) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	protected boolean allSubTasksFinished ()
 	{
 		synchronized ( pendingURISearch ) {
@@ -287,6 +397,10 @@ if ( redirectionUriID == 0 ) { System.err.println("redirectionUriID = " + redire
 
 		if ( result.hasDiscoveredOtherURIs() ) {
 			for ( DiscoveredURI d : result.getDiscoveredURIs() ) {
+				if ( ! followDiscoveredURI(d) ) {
+					log.debug( "Ignoring URI {} discovered by dereferencing the URI {} because it is not reachable.", d.uriID, result.getURIID() );
+					continue;
+				}
 				log.debug( "Relevant URI {} discovered by dereferencing the URI {} during the look-up of URI {} (discovery type: {}).", new Object[] {d.uriID,result.getURIID(),this.uriID,d.discoveryType.toString()} );
 				dereferenceRecursively( d.uriID, currentStep );
 			}
@@ -295,7 +409,7 @@ if ( redirectionUriID == 0 ) { System.err.println("redirectionUriID = " + redire
 
 	protected void dereferenceRecursively ( int uriID, int currentStep )
 	{
-		if ( stopped ) {
+		if ( stopped || cancelled ) {
 			return;
 		}
 
@@ -344,6 +458,8 @@ if ( redirectionUriID == 0 ) { System.err.println("redirectionUriID = " + redire
 			                                                   lookupCxt.rederef,
 			                                                   importer,
 			                                                   analyzer,
+			                                                   getShare(),
+			                                                   getDeadline(),
 			                                                   derefListener );
 		} catch ( IllegalStateException e ) {
 			// This exception will be caught while we are in the processing of
@@ -464,7 +580,7 @@ if ( redirectionUriID == 0 ) { System.err.println("redirectionUriID = " + redire
 			{
 				if ( t.s == uriID ) {
 					for ( int seeAlsoPredicateID : lookupCxt.getSeeAlsoPredicateIDs() ) {
-						if ( t.p == seeAlsoPredicateID ) {
+						if ( t.p == seeAlsoPredicateID && followLink(t) ) {
 							log.debug( "Retrieved a relevant seeAlso triple for URI {} that refers to URI {}.", uriID, t.o );
 							dereferenceRecursively( t.o, 0 );
 						}
@@ -6,11 +6,13 @@ package org.squin.lookup.jenaimpl;
 
 import com.hp.hpl.jena.vocabulary.RDFS;
 
+import org.squin.common.impl.TaskExecutorFactory;
 import org.squin.dataset.jenacommon.JenaIOBasedQueriedDataset;
 import org.squin.lookup.impl.URILookUpContext;
 import org.squin.lookup.impl.URILookUpManagerBase;
 import org.squin.lookup.deref.FinishedDereferencing;
 import org.squin.lookup.deref.RederefDecisionMaker;
+import org.squin.lookup.deref.jenaimpl.JenaIOBasedDerefContext;
 import org.squin.lookup.deref.jenaimpl.JenaIOBasedDerefManager;
 import org.squin.lookup.urisearch.FinishedURISearch;
 import org.squin.lookup.urisearch.SearchAgainDecisionMaker;
@@ -26,6 +28,15 @@ import org.squin.lookup.urisearch.jenaimpl.JenaIOBasedURISearchManager;
  */
 public class JenaIOBasedURILookUpManager extends URILookUpManagerBase
 {
+	// members
+
+	/**
+	 * the time (in ms) that must have elapsed since a URI has been
+	 * dereferenced before it is dereferenced again when it is looked up again
+	 */
+	static final public long ELAPSED_TIME_TO_REPEAT_DEREFERENCING = 86400000L; // 24h
+
+
 	// initialization
 
 	public JenaIOBasedURILookUpManager ( JenaIOBasedQueriedDataset dataset )
@@ -36,17 +47,32 @@ public class JenaIOBasedURILookUpManager extends URILookUpManagerBase
 
 	public JenaIOBasedURILookUpManager ( JenaIOBasedQueriedDataset dataset, boolean enableURISearch )
 	{
-		super( initURILookUpContext(dataset,enableURISearch) );
+		this( dataset, enableURISearch, TaskExecutorFactory.DEFAULT );
+	}
+
+	/**
+	 * Creates a look-up manager whose thread pool (as well as the thread
+	 * pools of its deref. manager and URI search manager) is created by the
+	 * given factory.
+	 */
+	public JenaIOBasedURILookUpManager ( JenaIOBasedQueriedDataset dataset, boolean enableURISearch, TaskExecutorFactory executorFactory )
+	{
+		super( initURILookUpContext(dataset,enableURISearch,executorFactory), executorFactory );
 	}
 
 	static public URILookUpContext initURILookUpContext ( JenaIOBasedQueriedDataset dataset, boolean enableURISearch )
+	{
+		return initURILookUpContext( dataset, enableURISearch, TaskExecutorFactory.DEFAULT );
+	}
+
+	static public URILookUpContext initURILookUpContext ( JenaIOBasedQueriedDataset dataset, boolean enableURISearch, TaskExecutorFactory executorFactory )
 	{
 		int [] seeAlsoPredicateIDs = { dataset.nodeDict.createId(RDFS.seeAlso.asNode()) };
 
-		URISearchManager searchMgr = ( enableURISearch ) ? new JenaIOBasedURISearchManager(dataset.nodeDict) : null;
+		URISearchManager searchMgr = ( enableURISearch ) ? new JenaIOBasedURISearchManager(dataset.nodeDict,executorFactory) : null;
 		SearchAgainDecisionMaker searchAgain = ( enableURISearch ) ? new MySearchAgainDecisionMaker() : null;
 
-		URILookUpContext cxt = new URILookUpContext( new JenaIOBasedDerefManager(dataset.nodeDict),
+		URILookUpContext cxt = new URILookUpContext( new JenaIOBasedDerefManager(new JenaIOBasedDerefContext(dataset.nodeDict),executorFactory),
 		                                             new MyRederefDecisionMaker(),
 		                                             searchMgr,
 		                                             searchAgain,
@@ -69,7 +95,7 @@ public class JenaIOBasedURILookUpManager extends URILookUpManagerBase
 			// a number of previous dereferencings (e.g. always everything okay,
 			// permanent failures), an estimated change frequency, etc.
 			long age = System.currentTimeMillis() - status.getFinishTimeMillis();
-			boolean decision = age > 86400000; // older than 24 hrs?
+			boolean decision = age > ELAPSED_TIME_TO_REPEAT_DEREFERENCING;
 
 			log.debug( "decideAboutRedereferencing for URI with identifier {} - decision: {}", uriID, decision );
 
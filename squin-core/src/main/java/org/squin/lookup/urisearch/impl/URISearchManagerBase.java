@@ -5,7 +5,6 @@
 package org.squin.lookup.urisearch.impl;
 
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.TimeUnit;
@@ -20,6 +19,7 @@ import org.squin.common.TaskListener;
 import org.squin.common.impl.LockableTaskStatus;
 import org.squin.common.impl.LockableTaskStatusBase;
 import org.squin.common.impl.StatisticsImpl;
+import org.squin.common.impl.TaskExecutorFactory;
 import org.squin.common.impl.TaskStatusIndexBase;
 import org.squin.lookup.urisearch.URISearchResult;
 import org.squin.lookup.urisearch.URISearchStatus;
@@ -37,7 +37,7 @@ abstract public class URISearchManagerBase implements URISearchManager, TaskList
 {
 	static final private Logger log = LoggerFactory.getLogger( URISearchManagerBase.class );
 
-	// configuration parameters for the thread pool
+	// configuration parameters for the thread pool (see TaskExecutorFactory)
 	static final private int executorDefaultCorePoolSize = 10;
 	static final private int executorDefaultMaximumPoolSize = 20;
 	static final private long executorDefaultKeepAliveTime = 600; // 10 min
@@ -69,26 +69,20 @@ abstract public class URISearchManagerBase implements URISearchManager, TaskList
 
 	public URISearchManagerBase ()
 	{
-		executor = new ThreadPoolExecutor( executorDefaultCorePoolSize,
-		                                   executorDefaultMaximumPoolSize,
-		                                   executorDefaultKeepAliveTime,
-		                                   executorDefaultTimeUnit,
-		                                   new PriorityBlockingQueue<Runnable> () );
+		this( TaskExecutorFactory.DEFAULT );
 	}
 
-	public void finalize ()
+	/**
+	 * Creates a URI search manager whose thread pool is created by the given
+	 * factory.
+	 */
+	public URISearchManagerBase ( TaskExecutorFactory executorFactory )
 	{
-		if ( ! executor.isTerminated() )
-		{
-			log.warn( "Finalizing a URI search manager (type: {}) that still seems to be running. Let's try to shut it down.", getClass().getName() );
-
-			try {
-				shutdownNow( 3000 );
-			}
-			catch ( Exception e ) {
-				log.error( "Shutting down the URISearchManagerBase manager (type: {}) caused a {}: {}", new Object[] {getClass().getName(),e.getClass().getName(),e.getMessage()} );
-			}
-		}
+		executor = executorFactory.createExecutor( executorDefaultCorePoolSize,
+		                                          executorDefaultMaximumPoolSize,
+		                                          executorDefaultKeepAliveTime,
+		                                          executorDefaultTimeUnit );
+		TaskExecutorFactory.shutdownWhenUnreachable( this, executor );
 	}
 
 
@@ -4,6 +4,7 @@
 */
 package org.squin.lookup.urisearch.jenaimpl;
 
+import org.squin.common.impl.TaskExecutorFactory;
 import org.squin.dataset.jenacommon.NodeDictionary;
 import org.squin.lookup.urisearch.impl.QueryProcessor;
 import org.squin.lookup.urisearch.impl.URISearchManagerBase;
@@ -26,6 +27,12 @@ public class JenaIOBasedURISearchManager extends URISearchManagerBase
 
 	public JenaIOBasedURISearchManager ( NodeDictionary nodeDict )
 	{
+		this( nodeDict, TaskExecutorFactory.DEFAULT );
+	}
+
+	public JenaIOBasedURISearchManager ( NodeDictionary nodeDict, TaskExecutorFactory executorFactory )
+	{
+		super( executorFactory );
 		this.nodeDict = nodeDict;
 	}
 
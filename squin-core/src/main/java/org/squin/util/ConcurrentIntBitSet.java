@@ -0,0 +1,96 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * A set of non-negative int values (usually node identifiers) that is
+ * represented as a bit set and that can be accessed by multiple threads
+ * without locking.
+ * The bits are stored in pages which are allocated on demand; since node
+ * identifiers are assigned sequentially, a set usually needs only a few
+ * pages. Removing values is not supported.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class ConcurrentIntBitSet
+{
+	// members
+
+	/** the number of bits per page (as a power of 2) */
+	static final protected int PAGE_SHIFT = 18;
+
+	/** the number of longs per page */
+	static final protected int PAGE_LENGTH = 1 << ( PAGE_SHIFT - 6 );
+
+	/** the number of pages required to cover all non-negative int values */
+	static final protected int PAGE_COUNT = 1 << ( 31 - PAGE_SHIFT );
+
+	final protected AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<AtomicLongArray> ( PAGE_COUNT );
+
+
+	// accessors
+
+	public boolean contains ( int value )
+	{
+		assert value >= 0;
+
+		AtomicLongArray page = pages.get( value >>> PAGE_SHIFT );
+		if ( page == null ) {
+			return false;
+		}
+		return ( page.get(wordIndex(value)) & mask(value) ) != 0L;
+	}
+
+
+	// operations
+
+	/**
+	 * Adds the given value to this set.
+	 *
+	 * @return true if the value has not been contained in this set before
+	 */
+	public boolean add ( int value )
+	{
+		assert value >= 0;
+
+		int pageIndex = value >>> PAGE_SHIFT;
+		AtomicLongArray page = pages.get( pageIndex );
+		if ( page == null ) {
+			pages.compareAndSet( pageIndex, null, new AtomicLongArray(PAGE_LENGTH) );
+			page = pages.get( pageIndex );
+		}
+
+		int i = wordIndex( value );
+		long mask = mask( value );
+		while ( true )
+		{
+			long word = page.get( i );
+			if ( (word & mask) != 0L ) {
+				return false;
+			}
+			if ( page.compareAndSet(i, word, word | mask) ) {
+				return true;
+			}
+		}
+	}
+
+
+	// helper methods
+
+	static protected int wordIndex ( int value )
+	{
+		return ( value & ((1 << PAGE_SHIFT) - 1) ) >>> 6;
+	}
+
+	static protected long mask ( int value )
+	{
+		return 1L << ( value & 63 );
+	}
+
+}
@@ -0,0 +1,202 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.util;
+
+
+/**
+ * A hash map with primitive int keys.
+ * This map uses open addressing with linear probing and, thus, avoids
+ * boxing the keys (which are usually node or variable identifiers) and
+ * creating entry objects.
+ * Null values are not supported; {@link #get} returns null for keys that
+ * are not in the map.
+ * Instances of this class are not thread-safe.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class IntHashMap<V>
+{
+	// members
+
+	static final protected int DEFAULT_INITIAL_CAPACITY = 16;
+
+	protected int[] keys;
+	protected Object[] values;
+	protected int size = 0;
+
+
+	// initialization
+
+	public IntHashMap ()
+	{
+		this( DEFAULT_INITIAL_CAPACITY );
+	}
+
+	public IntHashMap ( int initialCapacity )
+	{
+		int capacity = 2;
+		while ( capacity < initialCapacity * 2 ) {
+			capacity <<= 1;
+		}
+
+		keys = new int[capacity];
+		values = new Object[capacity];
+	}
+
+
+	// accessors
+
+	/**
+	 * Returns the value associated with the given key, or null if there is
+	 * no such value.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get ( int key )
+	{
+		return (V) values[ indexOf(key) ];
+	}
+
+	public boolean containsKey ( int key )
+	{
+		return values[ indexOf(key) ] != null;
+	}
+
+	public int size ()
+	{
+		return size;
+	}
+
+	public boolean isEmpty ()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * Returns all keys of this map (in no particular order).
+	 */
+	public int[] keys ()
+	{
+		int[] result = new int[size];
+		int j = 0;
+		for ( int i = 0; i < values.length; i++ ) {
+			if ( values[i] != null ) {
+				result[j++] = keys[i];
+			}
+		}
+		return result;
+	}
+
+
+	// operations
+
+	/**
+	 * Associates the given value with the given key.
+	 *
+	 * @return the value previously associated with the key, or null
+	 * @throws IllegalArgumentException if the given value is null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put ( int key, V value )
+	{
+		if ( value == null ) {
+			throw new IllegalArgumentException( "Null values are not supported." );
+		}
+
+		int i = indexOf( key );
+		V old = (V) values[i];
+		keys[i] = key;
+		values[i] = value;
+
+		if ( old == null && ++size * 2 > values.length ) {
+			rehash( values.length * 2 );
+		}
+
+		return old;
+	}
+
+	/**
+	 * Removes the value associated with the given key.
+	 *
+	 * @return the removed value, or null if there was no such value
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove ( int key )
+	{
+		int i = indexOf( key );
+		V old = (V) values[i];
+		if ( old == null ) {
+			return null;
+		}
+
+		values[i] = null;
+		size--;
+
+		// re-insert the subsequent entries of the same cluster so that
+		// linear probing still finds them
+		int mask = values.length - 1;
+		int j = ( i + 1 ) & mask;
+		while ( values[j] != null )
+		{
+			int k = keys[j];
+			Object v = values[j];
+			values[j] = null;
+			int n = indexOf( k );
+			keys[n] = k;
+			values[n] = v;
+			j = ( j + 1 ) & mask;
+		}
+
+		return old;
+	}
+
+	public void clear ()
+	{
+		for ( int i = 0; i < values.length; i++ ) {
+			values[i] = null;
+		}
+		size = 0;
+	}
+
+
+	// helpers
+
+	/**
+	 * Returns the slot that contains the given key or, if the key is not in
+	 * the map, the free slot where it would have to be inserted.
+	 */
+	final protected int indexOf ( int key )
+	{
+		int mask = values.length - 1;
+		int i = hash( key ) & mask;
+		while ( values[i] != null && keys[i] != key ) {
+			i = ( i + 1 ) & mask;
+		}
+		return i;
+	}
+
+	static protected int hash ( int key )
+	{
+		int h = key * 0x9E3779B9;
+		return h ^ ( h >>> 16 );
+	}
+
+	protected void rehash ( int newCapacity )
+	{
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		keys = new int[newCapacity];
+		values = new Object[newCapacity];
+		for ( int i = 0; i < oldValues.length; i++ )
+		{
+			if ( oldValues[i] != null ) {
+				int n = indexOf( oldKeys[i] );
+				keys[n] = oldKeys[i];
+				values[n] = oldValues[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.util;
+
+
+/**
+ * A hash set of primitive int values.
+ * Like {@link IntHashMap}, this set uses open addressing with linear probing
+ * and, thus, avoids boxing the values (which are usually node identifiers).
+ * Removing single values is not supported.
+ * Instances of this class are not thread-safe.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class IntHashSet
+{
+	// members
+
+	static final protected int DEFAULT_INITIAL_CAPACITY = 16;
+
+	protected int[] values;
+	protected boolean[] used;
+	protected int size = 0;
+
+
+	// initialization
+
+	public IntHashSet ()
+	{
+		this( DEFAULT_INITIAL_CAPACITY );
+	}
+
+	public IntHashSet ( int initialCapacity )
+	{
+		int capacity = 2;
+		while ( capacity < initialCapacity * 2 ) {
+			capacity <<= 1;
+		}
+
+		values = new int[capacity];
+		used = new boolean[capacity];
+	}
+
+
+	// accessors
+
+	public boolean contains ( int value )
+	{
+		return used[ indexOf(value) ];
+	}
+
+	public int size ()
+	{
+		return size;
+	}
+
+	public boolean isEmpty ()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * Returns all values of this set (in no particular order).
+	 */
+	public int[] toArray ()
+	{
+		int[] result = new int[size];
+		int j = 0;
+		for ( int i = 0; i < used.length; i++ ) {
+			if ( used[i] ) {
+				result[j++] = values[i];
+			}
+		}
+		return result;
+	}
+
+
+	// operations
+
+	/**
+	 * Adds the given value to this set.
+	 *
+	 * @return true if the set did not contain the given value before
+	 */
+	public boolean add ( int value )
+	{
+		int i = indexOf( value );
+		if ( used[i] ) {
+			return false;
+		}
+
+		values[i] = value;
+		used[i] = true;
+
+		if ( ++size * 2 > used.length ) {
+			rehash( used.length * 2 );
+		}
+
+		return true;
+	}
+
+	public void clear ()
+	{
+		for ( int i = 0; i < used.length; i++ ) {
+			used[i] = false;
+		}
+		size = 0;
+	}
+
+
+	// helpers
+
+	/**
+	 * Returns the slot that contains the given value or, if the value is not
+	 * in the set, the free slot where it would have to be inserted.
+	 */
+	final protected int indexOf ( int value )
+	{
+		int mask = used.length - 1;
+		int i = IntHashMap.hash( value ) & mask;
+		while ( used[i] && values[i] != value ) {
+			i = ( i + 1 ) & mask;
+		}
+		return i;
+	}
+
+	protected void rehash ( int newCapacity )
+	{
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+
+		values = new int[newCapacity];
+		used = new boolean[newCapacity];
+		for ( int i = 0; i < oldUsed.length; i++ )
+		{
+			if ( oldUsed[i] ) {
+				int n = indexOf( oldValues[i] );
+				values[n] = oldValues[i];
+				used[n] = true;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.util;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Runs clean-up actions for objects that have become unreachable without
+ * having released their resources explicitly.
+ * This is a safety net that replaces finalizers: objects are tracked by
+ * phantom references, which neither delay their collection nor resurrect
+ * them. A single daemon thread runs the action registered for an object
+ * once the object has been collected. Hence, a clean-up action must not
+ * refer to the object it cleans up (otherwise the object never becomes
+ * unreachable); usually, it refers to the resources of the object only.
+ * This class is thread-safe.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class ResourceCleaner
+{
+	// members
+
+	static final private Logger log = LoggerFactory.getLogger( ResourceCleaner.class );
+
+	static final private ReferenceQueue<Object> queue = new ReferenceQueue<Object> ();
+
+	/** keeps the registrations reachable until they are cleaned or cancelled */
+	static final private Set<Cleanable> registrations = Collections.synchronizedSet( new HashSet<Cleanable>() );
+
+	static {
+		Thread t = new Thread( "SQUIN resource cleaner" ) {
+			@Override
+			public void run ()
+			{
+				while ( true )
+				{
+					try {
+						Reference<?> r = queue.remove();
+						( (Cleanable) r ).clean();
+					}
+					catch ( InterruptedException e ) {
+						// keep on cleaning
+					}
+				}
+			}
+		};
+		t.setDaemon( true );
+		t.start();
+	}
+
+
+	// operations
+
+	/**
+	 * Registers the given action to be run after the given object has become
+	 * unreachable.
+	 *
+	 * @param referent the object whose resources have to be cleaned up
+	 * @param action the clean-up action; must not refer to the given object
+	 * @return the registration, which has to be cancelled (see
+	 *         {@link Cleanable#cancel}) once the object has released its
+	 *         resources explicitly
+	 */
+	static public Cleanable register ( Object referent, Runnable action )
+	{
+		assert referent != null;
+		assert action != null;
+
+		Cleanable c = new Cleanable( referent, action );
+		registrations.add( c );
+		return c;
+	}
+
+
+	/**
+	 * The registration of a clean-up action.
+	 */
+	static public class Cleanable extends PhantomReference<Object>
+	{
+		private Runnable action;
+
+		protected Cleanable ( Object referent, Runnable action )
+		{
+			super( referent, queue );
+			this.action = action;
+		}
+
+		/**
+		 * Runs the clean-up action unless it has been run or cancelled before.
+		 */
+		public void clean ()
+		{
+			Runnable a = takeAction();
+			if ( a != null )
+			{
+				try {
+					a.run();
+				}
+				catch ( RuntimeException e ) {
+					log.warn( "Running a clean-up action caused a {}: {}", e.getClass().getName(), e.getMessage() );
+				}
+			}
+		}
+
+		/**
+		 * Cancels the registration without running the clean-up action.
+		 */
+		public void cancel ()
+		{
+			takeAction();
+		}
+
+		synchronized private Runnable takeAction ()
+		{
+			Runnable a = action;
+			action = null;
+			registrations.remove( this );
+			clear();
+			return a;
+		}
+	}
+
+}
@@ -33,6 +33,10 @@ import com.hp.hpl.jena.sparql.util.Utils;
 import org.squin.Constants;
 import org.squin.cache.QueryResultCache;
 import org.squin.cache.impl.QueryResultCacheImpl;
+import org.squin.engine.LinkTraversalBasedQueryEngineConfig;
+import org.squin.engine.QueryPlan;
+import org.squin.engine.QueryPlanCache;
+import org.squin.ldcache.TraversalBudget;
 
 
 /**
@@ -48,8 +52,13 @@ public class DirectResultRequestParameters
 
 	protected String queryString;
 	protected Query query;
+	protected QueryPlan queryPlan;
 	protected String responseContentType;
 	protected boolean ignoreQueryCache;
+	protected int maxDocuments;
+	protected long maxBytes;
+	protected int maxLookUps;
+	protected long timeout;
 
 	static final public String dfltResponseContentType = Constants.MIME_TYPE_RESULT_XML;
 	static final public boolean dfltIgnoreQueryCache = false;
@@ -58,11 +67,22 @@ public class DirectResultRequestParameters
 	// operation
 
 	public boolean process ( HttpServletRequest req )
+	{
+		return process( req, new LinkTraversalBasedQueryEngineConfig() );
+	}
+
+	/**
+	 * Processes the parameters of the given request. The query is parsed
+	 * only if there is no plan for it (and for the given engine
+	 * configuration) in the {@link QueryPlanCache}.
+	 */
+	public boolean process ( HttpServletRequest req, LinkTraversalBasedQueryEngineConfig engineConfig )
 	{
 		errorMsgs = "";
 
 		// - the SPARQL query
 		query = null;
+		queryPlan = null;
 		queryString = req.getParameter( "query" );
 		if ( queryString == null || queryString.equals("") )
 		{
@@ -72,7 +92,8 @@ public class DirectResultRequestParameters
 		{
 			try
 			{
-				query = QueryFactory.create( queryString );
+				queryPlan = QueryPlanCache.getDefault().getPlan( queryString, engineConfig );
+				query = queryPlan.query;
 				if ( ! query.isSelectType() ) {
 					errorMsgs += "Query must be a SELECT query. ";
 				}
@@ -131,9 +152,57 @@ public class DirectResultRequestParameters
 			}
 		}
 
+		// - the traversal budget
+		maxDocuments = (int) parseLimit( req, "maxDocuments", Integer.MAX_VALUE );
+		maxBytes = parseLimit( req, "maxBytes", Long.MAX_VALUE );
+		maxLookUps = (int) parseLimit( req, "maxLookups", Integer.MAX_VALUE );
+		timeout = parseLimit( req, "timeout", Long.MAX_VALUE );
+
 		return ( errorMsgs.equals("") );
 	}
 
+	/**
+	 * Returns a new traversal budget with the limits requested by the
+	 * parameters maxDocuments, maxBytes, maxLookups, and timeout (in ms), or
+	 * null if none of these parameters has been specified.
+	 * The timeout is the latency target of the client; the look-ups for the
+	 * query are scheduled earliest deadline first with respect to it (see
+	 * {@link org.squin.common.Task#getDeadline}).
+	 */
+	public TraversalBudget createTraversalBudget ()
+	{
+		if ( maxDocuments == 0 && maxBytes == 0L && maxLookUps == 0 && timeout == 0L ) {
+			return null;
+		}
+		return new TraversalBudget( maxDocuments, maxBytes, maxLookUps, timeout );
+	}
+
+
+	// helper methods
+
+	/**
+	 * Returns the value of the given limit parameter, or 0 (i.e. unlimited)
+	 * if the parameter has not been specified or is invalid.
+	 */
+	protected long parseLimit ( HttpServletRequest req, String paramName, long maxValue )
+	{
+		String param = req.getParameter( paramName );
+		if ( param == null || param.equals("") ) {
+			return 0L;
+		}
+
+		try {
+			long l = Long.parseLong( param.trim() );
+			if ( l >= 0L && l <= maxValue ) {
+				return l;
+			}
+		}
+		catch ( NumberFormatException e ) {}
+
+		errorMsgs += "Unsupported " + paramName + " parameter (" + param + ") ";
+		return 0L;
+	}
+
 
 	// accessors
 
@@ -149,6 +218,10 @@ public class DirectResultRequestParameters
 		return query;
 	}
 
+	public QueryPlan getQueryPlan () {
+		return queryPlan;
+	}
+
 	public String getResponseContentType () {
 		return responseContentType;
 	}
@@ -38,6 +38,8 @@ import org.squin.cache.QueryResultCache;
 import org.squin.cache.impl.QueryResultCacheImpl;
 import org.squin.engine.LinkedDataCacheWrappingDataset;
 import org.squin.engine.LinkTraversalBasedQueryEngine;
+import org.squin.engine.LinkTraversalBasedQueryEngineConfig;
+import org.squin.ldcache.TraversalBudget;
 import org.squin.ldcache.jenaimpl.JenaIOBasedLinkedDataCache;
 
 
@@ -52,6 +54,9 @@ public class DirectResultRequestServlet extends Servlet
 
 	static private Logger log = LoggerFactory.getLogger( DirectResultRequestServlet.class );
 
+	/** the configuration of the query engine for all requests */
+	static final protected LinkTraversalBasedQueryEngineConfig engineConfig = new LinkTraversalBasedQueryEngineConfig();
+
 
 	// initialization
 
@@ -97,7 +102,7 @@ log.info( "getInitialFilesDirectory: " + getInitialFilesDirectory() );
 
 		// get (and check) the request parameters
 		DirectResultRequestParameters params = new DirectResultRequestParameters ();
-		if ( ! params.process(req) )
+		if ( ! params.process(req,engineConfig) )
 		{
 			log.info( "BAD REQUEST for request " + req.hashCode() + ": " + params.getErrorMsgs() );
 
@@ -112,6 +117,7 @@ log.info( "getInitialFilesDirectory: " + getInitialFilesDirectory() );
 
 		InputStream cachedResultSet = null;
 		ResultSetMem resultSet = null;
+		boolean partialResult = false;
 		if ( ! params.getIgnoreQueryCache() && cache != null && cache.hasResults(params.getQueryString(),params.getResponseContentType()) )
 		{
 			log.info( "Found cached result set for request " + req.hashCode() + " with query: " + params.getQueryString() );
@@ -128,9 +134,16 @@ log.info( "getInitialFilesDirectory: " + getInitialFilesDirectory() );
 			JenaIOBasedLinkedDataCache ldcache = getLinkedDataCache();
 			QueryExecution qe = QueryExecutionFactory.create( params.getQuery(),
 			                                                  new LinkedDataCacheWrappingDataset(ldcache) );
+			qe.getContext().set( LinkTraversalBasedQueryEngine.ctxtKeyConfig, engineConfig );
+			qe.getContext().set( LinkTraversalBasedQueryEngine.ctxtKeyQueryPlan, params.getQueryPlan() );
+			TraversalBudget budget = params.createTraversalBudget();
+			if ( budget != null ) {
+				qe.getContext().set( LinkTraversalBasedQueryEngine.ctxtKeyTraversalBudget, budget );
+			}
 			resultSet = new ResultSetMem( qe.execSelect() );
+			partialResult = budget != null && budget.hasLimitedTraversal();
 
-			log.info( "Created the result set (size: " + resultSet.size() + ") for request " + req.hashCode() + "." );
+			log.info( "Created the " + (partialResult ? "partial " : "") + "result set (size: " + resultSet.size() + ") for request " + req.hashCode() + "." );
 		}
 
 		// create the response
@@ -153,6 +166,9 @@ log.info( "getInitialFilesDirectory: " + getInitialFilesDirectory() );
 
 		// write the response
 		resp.setContentType( params.getResponseContentType() );
+		if ( partialResult ) {
+			resp.setHeader( Constants.HTTP_HEADER_PARTIAL_RESULT, "true" );
+		}
 		try
 		{
 			if ( cachedResultSet == null )
@@ -194,7 +210,8 @@ log.info( "getInitialFilesDirectory: " + getInitialFilesDirectory() );
 
 		log.info( "Finished processing request " + req.hashCode() + " with " + getLinkedDataCache().toString() + "." );
 
-		if ( cache != null && cachedResultSet == null ) {
+		// partial results must not be served for later requests
+		if ( cache != null && cachedResultSet == null && ! partialResult ) {
 			cache.cacheResults( params.getQueryString(), resultSet );
 		}
 	}
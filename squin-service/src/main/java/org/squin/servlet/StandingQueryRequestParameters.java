@@ -0,0 +1,132 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryException;
+
+import org.squin.engine.LinkTraversalBasedQueryEngineConfig;
+import org.squin.engine.QueryPlanCache;
+
+
+/**
+ * Processes and provides the parameters of standing query requests.
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class StandingQueryRequestParameters
+{
+	// members
+
+	protected String errorMsgs;
+
+	protected String queryString;
+	protected Query query;
+	protected long refreshInterval;
+	protected long duration;
+
+	/** the default interval (in seconds) in which the traversed data is requested again */
+	static final public long dfltRefreshInterval = 300L;
+
+
+	// operation
+
+	/**
+	 * Processes the parameters of the given request. The query is parsed
+	 * only if there is no plan for it (and for the given engine
+	 * configuration) in the {@link QueryPlanCache}.
+	 */
+	public boolean process ( HttpServletRequest req, LinkTraversalBasedQueryEngineConfig engineConfig )
+	{
+		errorMsgs = "";
+
+		// - the SPARQL query
+		query = null;
+		queryString = req.getParameter( "query" );
+		if ( queryString == null || queryString.equals("") )
+		{
+			errorMsgs += "Query not specified. ";
+		}
+		else
+		{
+			try
+			{
+				query = QueryPlanCache.getDefault().getPlan( queryString, engineConfig ).query;
+				if ( ! query.isSelectType() ) {
+					errorMsgs += "Query must be a SELECT query. ";
+				}
+			}
+			catch ( QueryException e ) {
+				errorMsgs += e.getMessage() + " ";
+			}
+		}
+
+		// - the refresh interval and the duration of the stream (in seconds)
+		refreshInterval = parseSeconds( req, "refresh", dfltRefreshInterval );
+		duration = parseSeconds( req, "duration", 0L );
+
+		return ( errorMsgs.equals("") );
+	}
+
+
+	// helper methods
+
+	/**
+	 * Returns the value of the given parameter (in seconds), or the given
+	 * default value if the parameter has not been specified or is invalid.
+	 */
+	protected long parseSeconds ( HttpServletRequest req, String paramName, long dfltValue )
+	{
+		String param = req.getParameter( paramName );
+		if ( param == null || param.equals("") ) {
+			return dfltValue;
+		}
+
+		try {
+			long l = Long.parseLong( param.trim() );
+			if ( l >= 0L && l <= Long.MAX_VALUE / 1000L ) {
+				return l;
+			}
+		}
+		catch ( NumberFormatException e ) {}
+
+		errorMsgs += "Unsupported " + paramName + " parameter (" + param + ") ";
+		return dfltValue;
+	}
+
+
+	// accessors
+
+	public String getErrorMsgs () {
+		return errorMsgs;
+	}
+
+	public String getQueryString () {
+		return queryString;
+	}
+
+	public Query getQuery () {
+		return query;
+	}
+
+	/**
+	 * Returns the interval (in ms) in which the data traversed by the
+	 * standing query is requested again (0 means never).
+	 */
+	public long getRefreshInterval () {
+		return refreshInterval * 1000L;
+	}
+
+	/**
+	 * Returns the time (in ms) after which the stream is closed (0 means
+	 * when the client disconnects).
+	 */
+	public long getDuration () {
+		return duration * 1000L;
+	}
+
+}
@@ -0,0 +1,266 @@
+/*
+    This file is part of SQUIN and it falls under the
+    copyright as specified for the whole SQUIN package.
+*/
+package org.squin.servlet;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.util.Utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.squin.Constants;
+import org.squin.engine.push.ResultDelta;
+import org.squin.engine.push.StandingQuery;
+import org.squin.engine.push.Subscriber;
+import org.squin.engine.push.Subscription;
+
+
+/**
+ * The servlet that registers standing queries (see {@link StandingQuery})
+ * and streams the changes of their results to the client.
+ * The response is an event stream (server-sent events) with an event
+ * "add" or "remove" per {@link ResultDelta}; the data of an event is the
+ * solution in the JSON format for SPARQL query results. The traversed data
+ * is requested again in the interval given by the parameter refresh (in
+ * seconds, 0 means never); the stream ends after the time given by the
+ * parameter duration (in seconds, 0 means when the client disconnects).
+ *
+ * @author Olaf Hartig (hartig@informatik.hu-berlin.de)
+ */
+public class StandingQueryServlet extends Servlet
+{
+	// members
+
+	static private Logger log = LoggerFactory.getLogger( StandingQueryServlet.class );
+
+	/** the interval (in ms) in which a comment is sent to detect disconnected clients */
+	static final public long HEARTBEAT_INTERVAL = 15000L;
+
+	/** the number of result deltas that may be buffered for a client */
+	static final public int BUFFER_SIZE = 256;
+
+
+	// implementation of the HttpServlet interface
+
+	protected void doGet ( HttpServletRequest req, HttpServletResponse resp )
+	{
+		log.info( "Start processing standing query request " + req.hashCode() + "." );
+
+		// get (and check) the request parameters
+		StandingQueryRequestParameters params = new StandingQueryRequestParameters ();
+		if ( ! params.process(req,DirectResultRequestServlet.engineConfig) )
+		{
+			log.info( "BAD REQUEST for request " + req.hashCode() + ": " + params.getErrorMsgs() );
+			sendError( req, resp, params.getErrorMsgs() );
+			return;
+		}
+
+		StandingQuery sq;
+		try {
+			sq = new StandingQuery( params.getQuery(), getLinkedDataCache(), DirectResultRequestServlet.engineConfig );
+		}
+		catch ( IllegalArgumentException e )
+		{
+			log.info( "BAD REQUEST for request " + req.hashCode() + ": " + e.getMessage() );
+			sendError( req, resp, e.getMessage() );
+			return;
+		}
+
+		log.info( "Registered standing query for request " + req.hashCode() + ":" );
+		log.info( params.getQueryString() );
+
+		DeltaQueue deltas = new DeltaQueue ();
+		sq.subscribe( deltas );
+
+		try
+		{
+			resp.setContentType( Constants.MIME_TYPE_EVENT_STREAM );
+			resp.setCharacterEncoding( "UTF-8" );
+			resp.setHeader( "Cache-Control", "no-cache" );
+			Writer out = new OutputStreamWriter( resp.getOutputStream(), "UTF-8" );
+			out.write( ": standing query registered\n\n" );
+			out.flush();
+			resp.flushBuffer();
+
+			long now = System.currentTimeMillis();
+			long end = ( params.getDuration() == 0L ) ? Long.MAX_VALUE : now + params.getDuration();
+			long nextRefresh = ( params.getRefreshInterval() == 0L ) ? Long.MAX_VALUE : now + params.getRefreshInterval();
+			boolean done = false;
+			while ( ! done && now < end )
+			{
+				if ( now >= nextRefresh ) {
+					sq.refresh();
+					nextRefresh = now + params.getRefreshInterval();
+				}
+
+				Object item = deltas.queue.poll( Math.min(HEARTBEAT_INTERVAL, Math.min(end,nextRefresh) - now), TimeUnit.MILLISECONDS );
+				if ( item == null ) {
+					out.write( ": heartbeat\n\n" );
+				}
+
+				// write all deltas that are available before flushing
+				while ( item != null && ! done )
+				{
+					if ( item instanceof ResultDelta ) {
+						writeDelta( (ResultDelta) item, out );
+						deltas.subscription.request( 1L );
+						item = deltas.queue.poll();
+					}
+					else if ( item instanceof Throwable ) {
+						log.info( "Standing query for request " + req.hashCode() + " failed: " + ((Throwable) item).getMessage() );
+						out.write( "event: error\ndata: " + escape(String.valueOf(((Throwable) item).getMessage())) + "\n\n" );
+						done = true;
+					}
+					else {
+						done = true; // completed
+					}
+				}
+
+				out.flush();
+				resp.flushBuffer();
+				now = System.currentTimeMillis();
+			}
+
+			out.close();
+		}
+		catch ( IOException e ) {
+			log.info( "Streaming the result deltas for request " + req.hashCode() + " stopped: " + Utils.className(e) + ": " + e.getMessage() );
+		}
+		catch ( InterruptedException e ) {
+			log.info( "Streaming the result deltas for request " + req.hashCode() + " interrupted." );
+		}
+		finally {
+			deltas.subscription.cancel();
+		}
+
+		log.info( "Finished processing standing query request " + req.hashCode() + "." );
+	}
+
+
+	// helper methods
+
+	protected void sendError ( HttpServletRequest req, HttpServletResponse resp, String msg )
+	{
+		try {
+			resp.sendError( HttpServletResponse.SC_BAD_REQUEST, msg );
+		} catch ( IOException e ) {
+			log.error( "Sending the error reponse to request " + req.hashCode() + " caused a " + Utils.className(e) + ": " + e.getMessage(), e );
+		}
+	}
+
+	/**
+	 * Writes the given result delta as an event; the data of the event is
+	 * the solution in the JSON format for SPARQL query results.
+	 */
+	static protected void writeDelta ( ResultDelta d, Writer out ) throws IOException
+	{
+		out.write( (d.added) ? "event: add\n" : "event: remove\n" );
+		out.write( "data: {" );
+
+		Binding b = d.solution;
+		boolean first = true;
+		for ( Iterator<Var> it = b.vars(); it.hasNext(); )
+		{
+			Var v = it.next();
+			Node n = b.get( v );
+			if ( n == null ) {
+				continue;
+			}
+
+			if ( ! first ) {
+				out.write( ", " );
+			}
+			first = false;
+
+			out.write( "\"" + escape(v.getVarName()) + "\": { " );
+			if ( n.isURI() ) {
+				out.write( "\"type\": \"uri\", \"value\": \"" + escape(n.getURI()) + "\"" );
+			}
+			else if ( n.isBlank() ) {
+				out.write( "\"type\": \"bnode\", \"value\": \"" + escape(n.getBlankNodeLabel()) + "\"" );
+			}
+			else {
+				out.write( "\"type\": \"literal\", \"value\": \"" + escape(n.getLiteralLexicalForm()) + "\"" );
+				String lang = n.getLiteralLanguage();
+				if ( lang != null && lang.length() > 0 ) {
+					out.write( ", \"xml:lang\": \"" + escape(lang) + "\"" );
+				}
+				else if ( n.getLiteralDatatypeURI() != null ) {
+					out.write( ", \"datatype\": \"" + escape(n.getLiteralDatatypeURI()) + "\"" );
+				}
+			}
+			out.write( " }" );
+		}
+
+		out.write( "}\n\n" );
+	}
+
+	/**
+	 * Escapes the given string for a JSON string literal; line breaks are
+	 * escaped as well so that the string fits into a single data line of an
+	 * event.
+	 */
+	static protected String escape ( String s )
+	{
+		StringBuilder b = new StringBuilder( s.length() );
+		for ( int i = 0; i < s.length(); i++ )
+		{
+			char c = s.charAt( i );
+			switch ( c ) {
+				case '"':  b.append( "\\\"" ); break;
+				case '\\': b.append( "\\\\" ); break;
+				case '\n': b.append( "\\n" ); break;
+				case '\r': b.append( "\\r" ); break;
+				case '\t': b.append( "\\t" ); break;
+				default:
+					if ( c < 0x20 ) {
+						b.append( String.format("\\u%04x", (int) c) );
+					} else {
+						b.append( c );
+					}
+			}
+		}
+		return b.toString();
+	}
+
+
+	/**
+	 * Hands the result deltas of a standing query over to the thread that
+	 * writes the response; the deltas are requested as they are written so
+	 * that at most {@link #BUFFER_SIZE} deltas are buffered.
+	 */
+	static protected class DeltaQueue implements Subscriber<ResultDelta>
+	{
+		/** contains result deltas, a Throwable if the standing query failed, or a marker if it completed */
+		final public BlockingQueue<Object> queue = new LinkedBlockingQueue<Object> ();
+
+		protected Subscription subscription;
+
+		public void onSubscribe ( Subscription s )
+		{
+			subscription = s;
+			s.request( BUFFER_SIZE );
+		}
+
+		public void onNext ( ResultDelta d ) { queue.offer( d ); }
+
+		public void onError ( Throwable t ) { queue.offer( t ); }
+
+		public void onComplete () { queue.offer( Boolean.TRUE ); }
+	}
+
+}